@@ -0,0 +1,101 @@
+package com.tenx.payment;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures the time from launching the application to its first served {@code POST /api/rest/account},
+ * for the default launch, the fast-startup profile with AOT and the fast-startup profile with the class
+ * data sharing archive as well.
+ *
+ * Run with {@code ./gradlew startupBenchmark -PfastStartup}, the application is launched from build/cds.
+ */
+public class StartupBenchmark {
+
+    private static final int RUNS = 5;
+    private static final Duration TIMEOUT = Duration.ofMinutes(2);
+    private static final String ACCOUNT_REQUEST = "{\"balance\":100.00,\"currency\":\"EUR\"}";
+
+    public static void main(String[] args) throws Exception {
+        File appDirectory = new File(args[0]);
+        String java = args[1];
+
+        Map<String, List<String>> variants = new LinkedHashMap<>();
+        variants.put("default", List.of());
+        variants.put("fast-startup", List.of("-Dspring.aot.enabled=true", "-Dspring.profiles.active=fast-startup"));
+        variants.put("fast-startup+cds", List.of("-Dspring.aot.enabled=true", "-Dspring.profiles.active=fast-startup",
+                "-XX:SharedArchiveFile=app.jsa"));
+
+        HttpClient client = HttpClient.newHttpClient();
+        for (Map.Entry<String, List<String>> variant : variants.entrySet()) {
+            long[] millis = new long[RUNS];
+            // First launch warms the OS file cache, not measured
+            timeToFirstRequest(client, appDirectory, java, variant.getValue());
+            for (int i = 0; i < RUNS; i++) {
+                millis[i] = timeToFirstRequest(client, appDirectory, java, variant.getValue());
+            }
+            Arrays.sort(millis);
+            System.out.printf("%-18s median %5d ms  min %5d ms  max %5d ms%n",
+                    variant.getKey(), millis[RUNS / 2], millis[0], millis[RUNS - 1]);
+        }
+    }
+
+    private static long timeToFirstRequest(HttpClient client, File appDirectory, String java, List<String> jvmArgs)
+            throws Exception {
+        int port = freePort();
+        List<String> command = new ArrayList<>();
+        command.add(java);
+        command.addAll(jvmArgs);
+        command.addAll(List.of("-jar", "app.jar", "--server.port=" + port));
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/rest/account"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(ACCOUNT_REQUEST))
+                .build();
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .directory(appDirectory)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        try {
+            while (System.nanoTime() - start < TIMEOUT.toNanos()) {
+                try {
+                    HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                    if (response.statusCode() / 100 == 2) {
+                        return Duration.ofNanos(System.nanoTime() - start).toMillis();
+                    }
+                } catch (ConnectException e) {
+                    // Not listening yet
+                }
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("Application exited with " + process.exitValue());
+                }
+                Thread.sleep(5);
+            }
+            throw new IllegalStateException("No request served within " + TIMEOUT);
+        } finally {
+            process.destroy();
+            process.waitFor();
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
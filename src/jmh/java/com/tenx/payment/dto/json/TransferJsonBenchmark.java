@@ -0,0 +1,79 @@
+package com.tenx.payment.dto.json;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import com.tenx.payment.dto.account.AccountResponseDto;
+import com.tenx.payment.dto.transaction.TransactionRequestDto;
+import com.tenx.payment.dto.transaction.TransactionResponseDto;
+import com.tenx.payment.model.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the transfer DTO codecs against reflective bean binding, with and without Blackbird.
+ *
+ * Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransferJsonBenchmark {
+
+    @Param({"reflective", "blackbird", "codecs"})
+    private String binding;
+
+    private ObjectMapper objectMapper;
+
+    private final String transactionRequestJson =
+            "{\"amount\":1250.75,\"sourceAccountId\":1048576,\"targetAccountId\":2097152,\"currency\":\"EUR\"}";
+
+    private final TransactionResponseDto transactionResponseDto = new TransactionResponseDto(new BigDecimal("1250.75"),
+            1048576L, 2097152L, Currency.getInstance("EUR"), 4194304L, Transaction.Status.COMPLETED, null);
+
+    private final AccountResponseDto accountResponseDto = new AccountResponseDto(1048576L,
+            new BigDecimal("98234.1200000000"), Currency.getInstance("USD"), 1700000000000L);
+
+    @Setup
+    public void setUp() {
+        // Registered by Spring Boot as well, the request DTO is bound through its constructor
+        objectMapper = new ObjectMapper().registerModule(new ParameterNamesModule());
+        switch (binding) {
+            case "blackbird" -> objectMapper.registerModule(new BlackbirdModule());
+            case "codecs" -> objectMapper.registerModule(new TransferJsonModule());
+            default -> {
+            }
+        }
+    }
+
+    @Benchmark
+    public TransactionRequestDto readTransactionRequest() throws Exception {
+        return objectMapper.readValue(transactionRequestJson, TransactionRequestDto.class);
+    }
+
+    @Benchmark
+    public byte[] writeTransactionResponse() throws Exception {
+        return objectMapper.writeValueAsBytes(transactionResponseDto);
+    }
+
+    @Benchmark
+    public byte[] writeAccountResponse() throws Exception {
+        return objectMapper.writeValueAsBytes(accountResponseDto);
+    }
+}
@@ -2,7 +2,11 @@ package com.tenx.payment;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.retry.annotation.EnableRetry;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
+@EnableRetry
+@EnableScheduling
 @SpringBootApplication
 public class ThanksPayApplication {
 
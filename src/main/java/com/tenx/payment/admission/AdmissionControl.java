@@ -0,0 +1,117 @@
+package com.tenx.payment.admission;
+
+import com.tenx.payment.config.AdmissionProperties;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admission of requests before they reach the database: token buckets limiting the rate per API client and
+ * the rate of transfers per source account, and an adaptive limit of the requests in flight. Rejected requests
+ * are told when to retry rather than queued, which under a spike would only stretch the latency of everyone
+ * and have the clients retry on top.
+ */
+public class AdmissionControl {
+
+    private final boolean enabled;
+    private final TokenBucketLimiter<String> clientLimiter;
+    private final TokenBucketLimiter<Long> accountLimiter;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final long overloadedRetryAfterNanos;
+
+    public AdmissionControl(AdmissionProperties properties) {
+        AdmissionProperties.Concurrency concurrency = properties.getConcurrency();
+        this.enabled = properties.isEnabled();
+        this.clientLimiter = new TokenBucketLimiter<>(properties.getClient().getPerSecond(), properties.getClient().getBurst());
+        this.accountLimiter = new TokenBucketLimiter<>(properties.getAccount().getPerSecond(), properties.getAccount().getBurst());
+        this.concurrencyLimiter = new AdaptiveConcurrencyLimiter(concurrency.getInitialLimit(), concurrency.getMinLimit(),
+                concurrency.getMaxLimit(), concurrency.getLatencyThreshold().toNanos(), concurrency.getBackoffRatio());
+        this.overloadedRetryAfterNanos = concurrency.getLatencyThreshold().toNanos();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param clientId identifying the API client
+     * @return 0 if admitted, otherwise the nanoseconds until the client may send again
+     */
+    public long admitClient(String clientId) {
+        return enabled ? clientLimiter.tryAcquire(clientId) : 0;
+    }
+
+    /**
+     * @param sourceAccountId account the transfer debits
+     * @return 0 if admitted, otherwise the nanoseconds until the account may transfer again
+     */
+    public long admitTransfer(long sourceAccountId) {
+        return enabled ? accountLimiter.tryAcquire(sourceAccountId) : 0;
+    }
+
+    /**
+     * Admits a transfer debiting several accounts, taking a token of each only if all of them have one.
+     * A transfer losing a race between the check and the take still rejects with the tokens taken so far spent.
+     *
+     * @param sourceAccountIds accounts the transfer debits
+     * @return 0 if admitted, otherwise the nanoseconds until the accounts may transfer again
+     */
+    public long admitTransfer(Set<Long> sourceAccountIds) {
+        if (!enabled) {
+            return 0;
+        }
+        long retryAfterNanos = 0;
+        for (Long sourceAccountId : sourceAccountIds) {
+            retryAfterNanos = Math.max(retryAfterNanos, accountLimiter.availableIn(sourceAccountId));
+        }
+        if (retryAfterNanos > 0) {
+            return retryAfterNanos;
+        }
+        for (Long sourceAccountId : sourceAccountIds) {
+            retryAfterNanos = Math.max(retryAfterNanos, accountLimiter.tryAcquire(sourceAccountId));
+        }
+        return retryAfterNanos;
+    }
+
+    /**
+     * @return whether the request may proceed, in which case it must {@link #exit(long) exit} once done
+     */
+    public boolean tryEnter() {
+        return !enabled || concurrencyLimiter.tryAcquire();
+    }
+
+    /**
+     * @param latencyNanos time the request took
+     */
+    public void exit(long latencyNanos) {
+        if (enabled) {
+            concurrencyLimiter.release(latencyNanos);
+        }
+    }
+
+    /**
+     * @return the nanoseconds an overloaded service asks clients to wait, a request's worth of congestion
+     */
+    public long getOverloadedRetryAfterNanos() {
+        return overloadedRetryAfterNanos;
+    }
+
+    public AdaptiveConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    @Scheduled(fixedDelay = 60_000)
+    public void evictIdleBuckets() {
+        clientLimiter.evictIdle();
+        accountLimiter.evictIdle();
+    }
+
+    /**
+     * @param nanos to wait
+     * @return the value of the Retry-After header, whole seconds rounded up
+     */
+    public static String retryAfterSeconds(long nanos) {
+        return String.valueOf(Math.max(1, (nanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1)));
+    }
+}
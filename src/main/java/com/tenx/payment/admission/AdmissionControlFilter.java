@@ -0,0 +1,90 @@
+package com.tenx.payment.admission;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tenx.payment.controller.ApiErrorDetails;
+import com.tenx.payment.exception.Rejection;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.security.Principal;
+import java.util.Set;
+
+/**
+ * Applies the {@link AdmissionControl} of the API clients and of the requests in flight to the API requests.
+ * The rate of transfers per source account is limited by the transaction API once the request is read.
+ *
+ * Clients are told apart by what they cannot pick themselves: the authenticated principal, the client id header
+ * of a trusted gateway if configured, or else the remote address.
+ *
+ * The streaming and bulk endpoints are left to the limit of the requests in flight per frame or per chunk by their
+ * APIs. Held for their whole duration, they would read as a single slow request and shrink the limit.
+ */
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    private static final Set<String> PER_UNIT_PATHS = Set.of("/api/rest/transaction/stream", "/api/rest/accounts/bulk");
+
+    private final AdmissionControl admissionControl;
+    private final String clientIdHeader;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * @param clientIdHeader set by a gateway having authenticated the client, null to not read any
+     */
+    public AdmissionControlFilter(AdmissionControl admissionControl, String clientIdHeader, ObjectMapper objectMapper) {
+        this.admissionControl = admissionControl;
+        this.clientIdHeader = clientIdHeader;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !admissionControl.isEnabled();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long retryAfterNanos = admissionControl.admitClient(clientId(request));
+        if (retryAfterNanos > 0) {
+            reject(response, Rejection.RATE_LIMITED, retryAfterNanos);
+            return;
+        }
+        if (PER_UNIT_PATHS.contains(request.getRequestURI().substring(request.getContextPath().length()))) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        if (!admissionControl.tryEnter()) {
+            reject(response, Rejection.OVERLOADED, admissionControl.getOverloadedRetryAfterNanos());
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            admissionControl.exit(System.nanoTime() - start);
+        }
+    }
+
+    private String clientId(HttpServletRequest request) {
+        Principal principal = request.getUserPrincipal();
+        if (principal != null) {
+            return "principal:" + principal.getName();
+        }
+        String clientId = clientIdHeader != null ? request.getHeader(clientIdHeader) : null;
+        return clientId != null ? "client:" + clientId : "address:" + request.getRemoteAddr();
+    }
+
+    private void reject(HttpServletResponse response, Rejection rejection, long retryAfterNanos) throws IOException {
+        response.setStatus(rejection.getHttpCode());
+        response.setHeader(HttpHeaders.RETRY_AFTER, AdmissionControl.retryAfterSeconds(retryAfterNanos));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), ApiErrorDetails.of(rejection));
+    }
+}
@@ -0,0 +1,88 @@
+package com.tenx.payment.admission;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token buckets per key, refilled at a fixed rate up to a burst capacity. Each bucket is a single atomic
+ * holding the time at which it will be full again, so taking a token refills the bucket and takes the token
+ * in one compare-and-set without any lock. Buckets left to refill completely are evicted by
+ * {@link #evictIdle()}, they would start out full anyway.
+ *
+ * @param <K> type of the keys
+ */
+public class TokenBucketLimiter<K> {
+
+    private final long nanosPerToken;
+    private final long burstNanos;
+    private final LongSupplier nanoClock;
+    private final ConcurrentMap<K, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    public TokenBucketLimiter(double tokensPerSecond, int burst) {
+        this(tokensPerSecond, burst, System::nanoTime);
+    }
+
+    TokenBucketLimiter(double tokensPerSecond, int burst, LongSupplier nanoClock) {
+        this.nanosPerToken = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / tokensPerSecond));
+        this.burstNanos = nanosPerToken * burst;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Takes a token from the bucket of the key if one is available.
+     *
+     * @param key of the bucket
+     * @return 0 if a token was taken, otherwise the nanoseconds until the next token becomes available
+     */
+    public long tryAcquire(K key) {
+        AtomicLong fullAt = buckets.get(key);
+        if (fullAt == null) {
+            fullAt = buckets.computeIfAbsent(key, ignored -> new AtomicLong(nanoClock.getAsLong()));
+        }
+
+        long now = nanoClock.getAsLong();
+        while (true) {
+            long current = fullAt.get();
+            // Full buckets do not fill beyond their capacity
+            long next = (current - now < 0 ? now : current) + nanosPerToken;
+            long wait = next - now - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Checks the bucket of the key without taking a token.
+     *
+     * @param key of the bucket
+     * @return 0 if a token is available, otherwise the nanoseconds until the next token becomes available
+     */
+    public long availableIn(K key) {
+        AtomicLong fullAt = buckets.get(key);
+        if (fullAt == null) {
+            return 0;
+        }
+        long now = nanoClock.getAsLong();
+        long current = fullAt.get();
+        return Math.max(0, (current - now < 0 ? now : current) + nanosPerToken - now - burstNanos);
+    }
+
+    /**
+     * Removes the buckets which are full again.
+     */
+    public void evictIdle() {
+        long now = nanoClock.getAsLong();
+        buckets.values().removeIf(fullAt -> fullAt.get() - now <= 0);
+    }
+
+    int size() {
+        return buckets.size();
+    }
+}
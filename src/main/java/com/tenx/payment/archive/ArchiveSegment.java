@@ -0,0 +1,446 @@
+package com.tenx.payment.archive;
+
+import com.tenx.payment.model.Transaction;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Immutable file of archived transactions holding a leg per transaction and account taking part in it, sorted by
+ * account and transaction identifier. Legs are stored in blocks, column by column and deflated, so the runs of
+ * identifiers, timestamps and currencies of a column compress well. A sparse index at the end of the file holds the
+ * first and last account of every block, the legs of an account are read from the few blocks holding them. Along
+ * with them it holds the lowest and highest transaction of every block, a transaction looked up by its identifier is
+ * read from the blocks whose range covers it.
+ *
+ * Layout: a header (magic, version), the blocks, the index (first account, last account, lowest and highest
+ * transaction, offset and length of every block) and a trailer (offset of the index, blocks, legs, magic). Files are written aside and moved in place once
+ * complete, a segment file is never seen half written.
+ */
+public final class ArchiveSegment {
+
+    private static final int BLOCK_LEGS = 1024;
+    private static final int MAGIC = 0x54504153;
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 8;
+    private static final int INDEX_ENTRY_BYTES = 44;
+    private static final int TRAILER_BYTES = 24;
+    private static final Transaction.Status[] STATUSES = Transaction.Status.values();
+
+    /**
+     * Transaction as booked on one of its accounts.
+     *
+     * @param accountId account the leg is booked on
+     * @param transaction the leg belongs to
+     */
+    public record Leg(long accountId, ArchivedTransaction transaction) {
+
+        public boolean isDebit() {
+            return accountId == transaction.sourceAccountId();
+        }
+    }
+
+    private final Path file;
+    private final long[] firstAccountIds;
+    private final long[] lastAccountIds;
+    private final long[] minTransactionIds;
+    private final long[] maxTransactionIds;
+    private final long[] offsets;
+    private final int[] lengths;
+    private final long legCount;
+
+    private ArchiveSegment(Path file, long[] firstAccountIds, long[] lastAccountIds, long[] minTransactionIds,
+                           long[] maxTransactionIds, long[] offsets, int[] lengths, long legCount) {
+        this.file = file;
+        this.firstAccountIds = firstAccountIds;
+        this.lastAccountIds = lastAccountIds;
+        this.minTransactionIds = minTransactionIds;
+        this.maxTransactionIds = maxTransactionIds;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.legCount = legCount;
+    }
+
+    /**
+     * Writes a segment.
+     *
+     * @param file to write, replaced if it exists
+     * @param legs sorted by account and transaction identifier
+     * @return the segment written
+     */
+    public static ArchiveSegment write(Path file, Iterator<Leg> legs) {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        List<long[]> index = new ArrayList<>();
+        long legCount = 0;
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFully(channel, ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).flip());
+
+            List<Leg> block = new ArrayList<>(BLOCK_LEGS);
+            long previousAccountId = Long.MIN_VALUE;
+            while (legs.hasNext()) {
+                Leg leg = legs.next();
+                if (leg.accountId() < previousAccountId) {
+                    throw new IllegalArgumentException("Legs not sorted by account, " + leg.accountId() + " after " + previousAccountId);
+                }
+                previousAccountId = leg.accountId();
+                block.add(leg);
+                legCount++;
+                if (block.size() == BLOCK_LEGS) {
+                    index.add(writeBlock(channel, block));
+                    block.clear();
+                }
+            }
+            if (!block.isEmpty()) {
+                index.add(writeBlock(channel, block));
+            }
+
+            long indexOffset = channel.position();
+            ByteBuffer indexBuffer = ByteBuffer.allocate(index.size() * INDEX_ENTRY_BYTES + TRAILER_BYTES);
+            for (long[] entry : index) {
+                indexBuffer.putLong(entry[0]).putLong(entry[1]).putLong(entry[2]).putLong(entry[3]).putLong(entry[4])
+                        .putInt((int) entry[5]);
+            }
+            indexBuffer.putLong(indexOffset).putInt(index.size()).putLong(legCount).putInt(MAGIC);
+            writeFully(channel, indexBuffer.flip());
+            channel.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        try {
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return open(file);
+    }
+
+    /**
+     * Opens a segment, reading its index.
+     *
+     * @param file of the segment
+     * @return the segment
+     */
+    public static ArchiveSegment open(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = readFully(channel, 0, HEADER_BYTES);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IllegalStateException("Not an archive segment: " + file);
+            }
+            ByteBuffer trailer = readFully(channel, channel.size() - TRAILER_BYTES, TRAILER_BYTES);
+            long indexOffset = trailer.getLong();
+            int blocks = trailer.getInt();
+            long legCount = trailer.getLong();
+            if (trailer.getInt() != MAGIC) {
+                throw new IllegalStateException("Archive segment incomplete: " + file);
+            }
+
+            ByteBuffer index = readFully(channel, indexOffset, blocks * INDEX_ENTRY_BYTES);
+            long[] firstAccountIds = new long[blocks];
+            long[] lastAccountIds = new long[blocks];
+            long[] minTransactionIds = new long[blocks];
+            long[] maxTransactionIds = new long[blocks];
+            long[] offsets = new long[blocks];
+            int[] lengths = new int[blocks];
+            for (int i = 0; i < blocks; i++) {
+                firstAccountIds[i] = index.getLong();
+                lastAccountIds[i] = index.getLong();
+                minTransactionIds[i] = index.getLong();
+                maxTransactionIds[i] = index.getLong();
+                offsets[i] = index.getLong();
+                lengths[i] = index.getInt();
+            }
+            return new ArchiveSegment(file, firstAccountIds, lastAccountIds, minTransactionIds, maxTransactionIds,
+                    offsets, lengths, legCount);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public long getLegCount() {
+        return legCount;
+    }
+
+    public int getBlockCount() {
+        return offsets.length;
+    }
+
+    /**
+     * Reads the legs of the accounts within a range of identifiers, only the blocks holding them are read.
+     *
+     * @param fromAccountId first account, inclusive
+     * @param toAccountId last account, inclusive
+     * @param consumer receiving the legs in the order of the segment
+     */
+    public void forEachLeg(long fromAccountId, long toAccountId, Consumer<Leg> consumer) {
+        int block = firstBlockEndingAtOrAfter(fromAccountId);
+        if (block == offsets.length || firstAccountIds[block] > toAccountId) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (; block < offsets.length && firstAccountIds[block] <= toAccountId; block++) {
+                for (Leg leg : decodeBlock(readFully(channel, offsets[block], lengths[block]).array())) {
+                    if (leg.accountId() >= fromAccountId && leg.accountId() <= toAccountId) {
+                        consumer.accept(leg);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Finds a transaction by its identifier, only the blocks whose range of transactions covers it are read.
+     *
+     * @param transactionId identifier of the transaction
+     * @return the transaction or empty if not in the segment
+     */
+    public Optional<ArchivedTransaction> findTransaction(long transactionId) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (int block = 0; block < offsets.length; block++) {
+                if (transactionId < minTransactionIds[block] || transactionId > maxTransactionIds[block]) {
+                    continue;
+                }
+                for (Leg leg : decodeBlock(readFully(channel, offsets[block], lengths[block]).array())) {
+                    if (leg.transaction().id() == transactionId) {
+                        return Optional.of(leg.transaction());
+                    }
+                }
+            }
+            return Optional.empty();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int firstBlockEndingAtOrAfter(long accountId) {
+        int low = 0;
+        int high = lastAccountIds.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (lastAccountIds[middle] < accountId) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static long[] writeBlock(FileChannel channel, List<Leg> block) throws IOException {
+        long offset = channel.position();
+        byte[] bytes = encodeBlock(block);
+        writeFully(channel, ByteBuffer.wrap(bytes));
+        long minTransactionId = Long.MAX_VALUE;
+        long maxTransactionId = Long.MIN_VALUE;
+        for (Leg leg : block) {
+            minTransactionId = Math.min(minTransactionId, leg.transaction().id());
+            maxTransactionId = Math.max(maxTransactionId, leg.transaction().id());
+        }
+        return new long[]{block.get(0).accountId(), block.get(block.size() - 1).accountId(), minTransactionId,
+                maxTransactionId, offset, bytes.length};
+    }
+
+    // Column by column, identifiers and timestamps as deltas to the previous leg
+    private static byte[] encodeBlock(List<Leg> block) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+            out.writeInt(block.size());
+            long previous = 0;
+            for (Leg leg : block) {
+                writeVarLong(out, leg.accountId() - previous);
+                previous = leg.accountId();
+            }
+            previous = 0;
+            for (Leg leg : block) {
+                writeVarLong(out, leg.transaction().id() - previous);
+                previous = leg.transaction().id();
+            }
+            for (Leg leg : block) {
+                out.writeBoolean(leg.isDebit());
+            }
+            previous = 0;
+            for (Leg leg : block) {
+                long counterpartyId = leg.isDebit() ? leg.transaction().targetAccountId() : leg.transaction().sourceAccountId();
+                writeVarLong(out, counterpartyId - previous);
+                previous = counterpartyId;
+            }
+            previous = 0;
+            for (Leg leg : block) {
+                writeVarLong(out, leg.transaction().createAtTimestamp() - previous);
+                previous = leg.transaction().createAtTimestamp();
+            }
+            for (Leg leg : block) {
+                out.writeByte(leg.transaction().status().ordinal());
+            }
+            for (Leg leg : block) {
+                out.writeUTF(leg.transaction().currency().getCurrencyCode());
+            }
+            for (Leg leg : block) {
+                writeDecimal(out, leg.transaction().amount());
+            }
+            for (Leg leg : block) {
+                writeDecimal(out, leg.transaction().sourceAmount());
+            }
+            for (Leg leg : block) {
+                writeDecimal(out, leg.transaction().targetAmount());
+            }
+            for (Leg leg : block) {
+                String failureReason = leg.transaction().failureReason();
+                out.writeBoolean(failureReason != null);
+                if (failureReason != null) {
+                    out.writeUTF(failureReason);
+                }
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static List<Leg> decodeBlock(byte[] bytes) throws IOException {
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(bytes)))) {
+            int size = in.readInt();
+            long[] accountIds = new long[size];
+            long[] transactionIds = new long[size];
+            boolean[] debits = new boolean[size];
+            long[] counterpartyIds = new long[size];
+            long[] timestamps = new long[size];
+            Transaction.Status[] statuses = new Transaction.Status[size];
+            Currency[] currencies = new Currency[size];
+            BigDecimal[] amounts = new BigDecimal[size];
+            BigDecimal[] sourceAmounts = new BigDecimal[size];
+            BigDecimal[] targetAmounts = new BigDecimal[size];
+            String[] failureReasons = new String[size];
+
+            long previous = 0;
+            for (int i = 0; i < size; i++) {
+                accountIds[i] = previous += readVarLong(in);
+            }
+            previous = 0;
+            for (int i = 0; i < size; i++) {
+                transactionIds[i] = previous += readVarLong(in);
+            }
+            for (int i = 0; i < size; i++) {
+                debits[i] = in.readBoolean();
+            }
+            previous = 0;
+            for (int i = 0; i < size; i++) {
+                counterpartyIds[i] = previous += readVarLong(in);
+            }
+            previous = 0;
+            for (int i = 0; i < size; i++) {
+                timestamps[i] = previous += readVarLong(in);
+            }
+            for (int i = 0; i < size; i++) {
+                statuses[i] = STATUSES[in.readByte()];
+            }
+            for (int i = 0; i < size; i++) {
+                currencies[i] = Currency.getInstance(in.readUTF());
+            }
+            for (int i = 0; i < size; i++) {
+                amounts[i] = readDecimal(in);
+            }
+            for (int i = 0; i < size; i++) {
+                sourceAmounts[i] = readDecimal(in);
+            }
+            for (int i = 0; i < size; i++) {
+                targetAmounts[i] = readDecimal(in);
+            }
+            for (int i = 0; i < size; i++) {
+                failureReasons[i] = in.readBoolean() ? in.readUTF() : null;
+            }
+
+            List<Leg> legs = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                long sourceAccountId = debits[i] ? accountIds[i] : counterpartyIds[i];
+                long targetAccountId = debits[i] ? counterpartyIds[i] : accountIds[i];
+                legs.add(new Leg(accountIds[i], new ArchivedTransaction(transactionIds[i], sourceAccountId,
+                        targetAccountId, amounts[i], currencies[i], sourceAmounts[i], targetAmounts[i], statuses[i],
+                        failureReasons[i], timestamps[i])));
+            }
+            return legs;
+        }
+    }
+
+    private static void writeDecimal(DataOutputStream out, BigDecimal value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            writeVarLong(out, value.scale());
+            byte[] unscaled = value.unscaledValue().toByteArray();
+            writeVarLong(out, unscaled.length);
+            out.write(unscaled);
+        }
+    }
+
+    private static BigDecimal readDecimal(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        int scale = (int) readVarLong(in);
+        byte[] unscaled = new byte[(int) readVarLong(in)];
+        in.readFully(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+
+    // Zig-zag encoded, small deltas of either sign take a byte or two
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        long zigZag = (value << 1) ^ (value >> 63);
+        while ((zigZag & ~0x7FL) != 0) {
+            out.writeByte((int) (zigZag & 0x7F) | 0x80);
+            zigZag >>>= 7;
+        }
+        out.writeByte((int) zigZag);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long zigZag = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            zigZag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigZag >>> 1) ^ -(zigZag & 1);
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of archive segment at " + (position + buffer.position()));
+            }
+        }
+        return buffer.flip();
+    }
+}
@@ -0,0 +1,35 @@
+package com.tenx.payment.archive;
+
+import com.tenx.payment.model.Account;
+import com.tenx.payment.model.Transaction;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+/**
+ * {@link Transaction} moved to the archive, projected straight from the hot table without loading the entities.
+ */
+public record ArchivedTransaction(long id, long sourceAccountId, long targetAccountId, BigDecimal amount,
+                                  Currency currency, BigDecimal sourceAmount, BigDecimal targetAmount,
+                                  Transaction.Status status, String failureReason, long createAtTimestamp) {
+
+    /**
+     * @return the transaction as it was in the hot table, referencing its accounts by identifier only
+     */
+    public Transaction toTransaction() {
+        Transaction transaction = new Transaction(accountOf(sourceAccountId), accountOf(targetAccountId), amount,
+                currency, createAtTimestamp);
+        transaction.setId(id);
+        transaction.setSourceAmount(sourceAmount);
+        transaction.setTargetAmount(targetAmount);
+        transaction.setStatus(status);
+        transaction.setFailureReason(failureReason);
+        return transaction;
+    }
+
+    private static Account accountOf(long id) {
+        Account account = new Account();
+        account.setId(id);
+        return account;
+    }
+}
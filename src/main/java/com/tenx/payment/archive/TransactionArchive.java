@@ -0,0 +1,228 @@
+package com.tenx.payment.archive;
+
+import com.tenx.payment.model.Transaction;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+
+/**
+ * Transactions moved out of the hot table by {@link com.tenx.payment.job.TransactionArchiveJob}, kept in an
+ * {@link ArchiveSegment} per shard and month under {@code <dir>/shard-<index>/transactions-<yyyy-MM>.seg}.
+ *
+ * Months are archived whole and oldest first, without a pending transaction left in them. The archive of a shard
+ * holds every transaction created before {@link #archivedUntil(int)}, the hot table the ones created since. Readers
+ * query the hot table from that point on, so a transaction is read from one of them only, also while the rows of an
+ * archived month are still to be deleted.
+ *
+ * Segments are found by listing the directory on start and every refresh interval, nodes sharing the directory
+ * pick up the months archived by another node. Months are listed in UTC.
+ */
+@Slf4j
+@Component
+public class TransactionArchive {
+
+    private static final String SHARD_PREFIX = "shard-";
+    private static final String SEGMENT_PREFIX = "transactions-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final Path directory;
+    private final Map<Integer, NavigableMap<YearMonth, ArchiveSegment>> segments = new ConcurrentHashMap<>();
+
+    @Autowired
+    public TransactionArchive(@Value("${thanks-pay.archive.dir:archive}") Path directory) {
+        this.directory = directory;
+        refresh();
+    }
+
+    /**
+     * @param shardIndex index of the shard
+     * @return epoch millis before which the transactions of the shard are archived, 0 if none are
+     */
+    public long archivedUntil(int shardIndex) {
+        NavigableMap<YearMonth, ArchiveSegment> segmentsOfShard = segments.get(shardIndex);
+        return segmentsOfShard == null || segmentsOfShard.isEmpty() ? 0 : startOf(segmentsOfShard.lastKey().plusMonths(1));
+    }
+
+    /**
+     * @param shardIndex index of the shard
+     * @return the months archived, oldest first
+     */
+    public List<YearMonth> getArchivedMonths(int shardIndex) {
+        return List.copyOf(segmentsOf(shardIndex).keySet());
+    }
+
+    /**
+     * Archives a month of the shard, replacing its segment if it was archived already.
+     *
+     * @param shardIndex index of the shard
+     * @param month of the transactions
+     * @param legs of the transactions, sorted by account and transaction identifier
+     * @return the segment written
+     */
+    public ArchiveSegment archive(int shardIndex, YearMonth month, Iterator<ArchiveSegment.Leg> legs) {
+        Path shardDirectory = directory.resolve(SHARD_PREFIX + shardIndex);
+        try {
+            Files.createDirectories(shardDirectory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        ArchiveSegment segment = ArchiveSegment.write(shardDirectory.resolve(SEGMENT_PREFIX + month + SEGMENT_SUFFIX), legs);
+        segmentsOf(shardIndex).put(month, segment);
+        return segment;
+    }
+
+    /**
+     * Finds the archived transactions the account took part in either as source or as target, newest first.
+     *
+     * @param shardIndex index of the shard
+     * @param accountId identifier of the account
+     * @param archivedUntil as read along with the hot table, the months archived since are left out
+     * @param limit of the transactions to return
+     * @return the newest transactions of the account in the archive of the shard
+     */
+    public List<ArchivedTransaction> findByAccountId(int shardIndex, long accountId, long archivedUntil, int limit) {
+        List<ArchivedTransaction> transactions = new ArrayList<>();
+        for (ArchiveSegment segment : segmentsUntil(shardIndex, archivedUntil).descendingMap().values()) {
+            if (transactions.size() >= limit) {
+                break;
+            }
+            List<ArchivedTransaction> ofMonth = new ArrayList<>();
+            segment.forEachLeg(accountId, accountId, leg -> ofMonth.add(leg.transaction()));
+            Collections.reverse(ofMonth);
+            transactions.addAll(ofMonth.subList(0, Math.min(ofMonth.size(), limit - transactions.size())));
+        }
+        return transactions;
+    }
+
+    /**
+     * Finds an archived transaction by its identifier, newest month first.
+     *
+     * @param shardIndex index of the shard
+     * @param transactionId identifier of the transaction
+     * @param archivedUntil as read along with the hot table, the months archived since are left out
+     * @return the transaction or empty if not archived
+     */
+    public Optional<ArchivedTransaction> findById(int shardIndex, long transactionId, long archivedUntil) {
+        for (ArchiveSegment segment : segmentsUntil(shardIndex, archivedUntil).descendingMap().values()) {
+            Optional<ArchivedTransaction> transaction = segment.findTransaction(transactionId);
+            if (transaction.isPresent()) {
+                return transaction;
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Sum of the archived debits of the account, as {@link com.tenx.payment.repository.TransactionRepository#sumDebits}.
+     */
+    public BigDecimal sumDebits(int shardIndex, long accountId, long from, long to) {
+        return sum(shardIndex, accountId, from, to, true);
+    }
+
+    /**
+     * Sum of the archived credits of the account, as {@link com.tenx.payment.repository.TransactionRepository#sumCredits}.
+     */
+    public BigDecimal sumCredits(int shardIndex, long accountId, long from, long to) {
+        return sum(shardIndex, accountId, from, to, false);
+    }
+
+    /**
+     * Reads the archived legs of the accounts within a range of identifiers, month by month.
+     *
+     * @param shardIndex index of the shard
+     * @param fromAccountId first account, inclusive
+     * @param toAccountId last account, inclusive
+     * @param archivedUntil as read along with the hot table, the months archived since are left out
+     * @param consumer receiving the legs
+     */
+    public void forEachLeg(int shardIndex, long fromAccountId, long toAccountId, long archivedUntil,
+                           Consumer<ArchiveSegment.Leg> consumer) {
+        segmentsUntil(shardIndex, archivedUntil).values().forEach(segment -> segment.forEachLeg(fromAccountId, toAccountId, consumer));
+    }
+
+    /**
+     * Picks up the segments written since the last refresh, by any node sharing the directory.
+     */
+    @Scheduled(fixedDelayString = "${thanks-pay.archive.refresh-interval-ms:60000}")
+    public void refresh() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> shardDirectories = Files.newDirectoryStream(directory, SHARD_PREFIX + "*")) {
+            for (Path shardDirectory : shardDirectories) {
+                int shardIndex = Integer.parseInt(shardDirectory.getFileName().toString().substring(SHARD_PREFIX.length()));
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(shardDirectory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+                    for (Path file : files) {
+                        String name = file.getFileName().toString();
+                        YearMonth month = YearMonth.parse(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                        if (!segmentsOf(shardIndex).containsKey(month)) {
+                            segmentsOf(shardIndex).put(month, ArchiveSegment.open(file));
+                            log.debug("Opened archive segment {}", file);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param month in UTC
+     * @return epoch millis at the start of the month
+     */
+    public static long startOf(YearMonth month) {
+        return month.atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private BigDecimal sum(int shardIndex, long accountId, long from, long to, boolean debits) {
+        BigDecimal sum = BigDecimal.ZERO;
+        for (Map.Entry<YearMonth, ArchiveSegment> entry : segmentsOf(shardIndex).entrySet()) {
+            if (startOf(entry.getKey()) >= to || startOf(entry.getKey().plusMonths(1)) <= from) {
+                continue;
+            }
+            BigDecimal[] ofMonth = {BigDecimal.ZERO};
+            entry.getValue().forEachLeg(accountId, accountId, leg -> {
+                ArchivedTransaction transaction = leg.transaction();
+                BigDecimal amount = debits ? transaction.sourceAmount() : transaction.targetAmount();
+                if (leg.isDebit() == debits && transaction.status() == Transaction.Status.COMPLETED && amount != null
+                        && transaction.createAtTimestamp() >= from && transaction.createAtTimestamp() < to) {
+                    ofMonth[0] = ofMonth[0].add(amount);
+                }
+            });
+            sum = sum.add(ofMonth[0]);
+        }
+        return sum;
+    }
+
+    private NavigableMap<YearMonth, ArchiveSegment> segmentsUntil(int shardIndex, long archivedUntil) {
+        NavigableMap<YearMonth, ArchiveSegment> segmentsOfShard = segmentsOf(shardIndex);
+        return segmentsOfShard.headMap(YearMonth.from(Instant.ofEpochMilli(archivedUntil).atOffset(ZoneOffset.UTC)), false);
+    }
+
+    private NavigableMap<YearMonth, ArchiveSegment> segmentsOf(int shardIndex) {
+        return segments.computeIfAbsent(shardIndex, key -> new ConcurrentSkipListMap<>());
+    }
+}
@@ -0,0 +1,32 @@
+package com.tenx.payment.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tenx.payment.admission.AdmissionControl;
+import com.tenx.payment.admission.AdmissionControlFilter;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Admission control of the API, configured through {@code thanks-pay.admission}.
+ */
+@Configuration
+@EnableConfigurationProperties(AdmissionProperties.class)
+public class AdmissionConfig {
+
+    @Bean
+    public AdmissionControl admissionControl(AdmissionProperties admissionProperties) {
+        return new AdmissionControl(admissionProperties);
+    }
+
+    @Bean
+    public FilterRegistrationBean<AdmissionControlFilter> admissionControlFilter(AdmissionControl admissionControl,
+                                                                                 AdmissionProperties admissionProperties,
+                                                                                 ObjectMapper objectMapper) {
+        FilterRegistrationBean<AdmissionControlFilter> registration = new FilterRegistrationBean<>(
+                new AdmissionControlFilter(admissionControl, admissionProperties.getClientIdHeader(), objectMapper));
+        registration.addUrlPatterns("/api/rest/*");
+        return registration;
+    }
+}
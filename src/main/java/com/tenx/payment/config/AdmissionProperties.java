@@ -0,0 +1,60 @@
+package com.tenx.payment.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "thanks-pay.admission")
+public class AdmissionProperties {
+
+    // Off until the clients are told apart, see clientIdHeader
+    private boolean enabled;
+
+    // Requests of an API client, told apart by its authenticated principal, else by the client id header or else by
+    // its address. Behind a load balancer the address is the client's only with server.forward-headers-strategy=native,
+    // which takes X-Forwarded-For from the trusted internal proxies alone.
+    private Rate client = new Rate(500, 1000);
+
+    // Header carrying the client as authenticated by a gateway that strips it from the requests of clients, unset as
+    // clients could otherwise pick a fresh bucket with every request
+    private String clientIdHeader;
+
+    // Transfers from a source account
+    private Rate account = new Rate(50, 100);
+
+    private Concurrency concurrency = new Concurrency();
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Rate {
+
+        private double perSecond;
+
+        // Requests admitted at once after a quiet period
+        private int burst;
+    }
+
+    @Getter
+    @Setter
+    public static class Concurrency {
+
+        private int initialLimit = 64;
+
+        private int minLimit = 8;
+
+        private int maxLimit = 512;
+
+        // Requests slower than this count as congestion and shrink the limit
+        private Duration latencyThreshold = Duration.ofMillis(250);
+
+        private double backoffRatio = 0.9;
+    }
+}
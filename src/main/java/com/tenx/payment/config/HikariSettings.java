@@ -0,0 +1,28 @@
+package com.tenx.payment.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.core.env.Environment;
+
+/**
+ * Pools of the data sources built in place of the auto-configured one, tuned by the same
+ * {@code spring.datasource.hikari} properties, which are otherwise bound to the auto-configured pool only.
+ */
+final class HikariSettings {
+
+    private static final String PREFIX = "spring.datasource.hikari";
+
+    private HikariSettings() {
+    }
+
+    /**
+     * @return the pool built by the builder, with the {@code spring.datasource.hikari} properties applied
+     */
+    static HikariDataSource build(DataSourceBuilder<?> dataSourceBuilder, Environment environment) {
+        HikariDataSource dataSource = dataSourceBuilder.type(HikariDataSource.class).build();
+        Binder.get(environment).bind(PREFIX, Bindable.ofInstance(dataSource));
+        return dataSource;
+    }
+}
@@ -0,0 +1,28 @@
+package com.tenx.payment.config;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import com.tenx.payment.dto.json.TransferJsonModule;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.NativeDetector;
+
+/**
+ * Modules registered on the application {@code ObjectMapper}: hand-written codecs for the transfer DTOs,
+ * and Blackbird replacing reflection with generated accessors for every other bean.
+ * Native images cannot define classes at runtime, Blackbird is left out there.
+ */
+@Configuration
+public class JsonConfig {
+
+    @Bean
+    public Module transferJsonModule() {
+        return new TransferJsonModule();
+    }
+
+    @Bean
+    public Module blackbirdModule() {
+        return NativeDetector.inNativeImage() ? new SimpleModule("blackbird-disabled") : new BlackbirdModule();
+    }
+}
@@ -0,0 +1,78 @@
+package com.tenx.payment.config;
+
+import com.tenx.payment.controller.ApiErrorDetails;
+import com.tenx.payment.dto.account.AccountBalanceResponseDto;
+import com.tenx.payment.dto.account.AccountRequestDto;
+import com.tenx.payment.dto.account.AccountResponseDto;
+import com.tenx.payment.dto.account.BulkAccountResultDto;
+import com.tenx.payment.dto.transaction.ScheduledTransferRequestDto;
+import com.tenx.payment.dto.transaction.ScheduledTransferResponseDto;
+import com.tenx.payment.dto.transaction.SplitTransferRequestDto;
+import com.tenx.payment.dto.transaction.TransactionBatchRequestDto;
+import com.tenx.payment.dto.transaction.TransactionRequestDto;
+import com.tenx.payment.dto.transaction.TransactionResponseDto;
+import com.tenx.payment.model.Account;
+import com.tenx.payment.model.AccountBalanceBucket;
+import com.tenx.payment.model.BalanceSnapshot;
+import com.tenx.payment.model.OutboxEvent;
+import com.tenx.payment.model.PendingTransfer;
+import com.tenx.payment.model.PendingTransferCredit;
+import com.tenx.payment.model.ScheduledTransfer;
+import com.tenx.payment.model.Transaction;
+import com.tenx.payment.outbox.TransferCompletedEvent;
+import com.tenx.payment.validator.AllowedCurrencies;
+import com.tenx.payment.validator.CurrencyValidator;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+
+import java.util.Currency;
+import java.util.List;
+
+/**
+ * Reflection, serialization and resource hints of the native image, see the native profile in build.gradle.
+ * Only read by the AOT processing, the JVM ignores them.
+ */
+@Configuration
+@ImportRuntimeHints(NativeConfig.Hints.class)
+public class NativeConfig {
+
+    static class Hints implements RuntimeHintsRegistrar {
+
+        private static final List<Class<?>> ENTITIES = List.of(Account.class, AccountBalanceBucket.class,
+                BalanceSnapshot.class, Transaction.class, PendingTransfer.class, PendingTransferCredit.class,
+                OutboxEvent.class, ScheduledTransfer.class);
+
+        private final BindingReflectionHintsRegistrar bindingRegistrar = new BindingReflectionHintsRegistrar();
+
+        @Override
+        public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+            // Instantiated and populated by Hibernate through their fields
+            for (Class<?> entity : ENTITIES) {
+                hints.reflection().registerType(entity, MemberCategory.DECLARED_FIELDS,
+                        MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.INVOKE_DECLARED_METHODS);
+            }
+
+            // Lombok DTOs bound by Jackson through their generated accessors and constructors
+            bindingRegistrar.registerReflectionHints(hints.reflection(), AccountRequestDto.class,
+                    AccountResponseDto.class, AccountBalanceResponseDto.class, BulkAccountResultDto.class,
+                    TransactionRequestDto.class, TransactionResponseDto.class, ScheduledTransferRequestDto.class,
+                    ScheduledTransferResponseDto.class, SplitTransferRequestDto.class, SplitTransferRequestDto.Leg.class,
+                    TransactionBatchRequestDto.class, ApiErrorDetails.class, TransferCompletedEvent.class);
+
+            // Instantiated by Hibernate Validator, which reads the attributes of the constraint reflectively
+            hints.reflection().registerType(CurrencyValidator.class, MemberCategory.INVOKE_DECLARED_CONSTRUCTORS);
+            hints.reflection().registerType(AllowedCurrencies.class, MemberCategory.INVOKE_PUBLIC_METHODS);
+
+            // Currency is resolved by its code on deserialization and replaced by it on Java serialization
+            hints.reflection().registerType(Currency.class, MemberCategory.INVOKE_PUBLIC_METHODS);
+            hints.serialization().registerType(Currency.class);
+
+            // Migrations of the fast-startup profile, which the native image runs with
+            hints.resources().registerPattern("db/migration/*");
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.tenx.payment.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tenx.payment.outbox.FileOutboxSink;
+import com.tenx.payment.outbox.InProcessOutboxSink;
+import com.tenx.payment.outbox.KafkaOutboxSink;
+import com.tenx.payment.outbox.OutboxSink;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Selects the {@link OutboxSink} the outbox events are relayed to through {@code thanks-pay.outbox.sink}.
+ */
+@Configuration
+@EnableConfigurationProperties(OutboxProperties.class)
+public class OutboxConfig {
+
+    @Bean
+    @ConditionalOnProperty(prefix = "thanks-pay.outbox", name = "sink", havingValue = "in-process", matchIfMissing = true)
+    public OutboxSink inProcessOutboxSink(ApplicationEventPublisher applicationEventPublisher, ObjectMapper objectMapper) {
+        return new InProcessOutboxSink(applicationEventPublisher, objectMapper);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "thanks-pay.outbox", name = "sink", havingValue = "file")
+    public OutboxSink fileOutboxSink(OutboxProperties outboxProperties) {
+        return new FileOutboxSink(Path.of(outboxProperties.getFile().getPath()));
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "thanks-pay.outbox", name = "sink", havingValue = "kafka")
+    public KafkaProducer<String, String> outboxKafkaProducer(OutboxProperties outboxProperties) {
+        return new KafkaProducer<>(Map.of(
+                ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, outboxProperties.getKafka().getBootstrapServers(),
+                // Retries must not reorder the events of an account
+                ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true,
+                ProducerConfig.ACKS_CONFIG, "all",
+                ProducerConfig.LINGER_MS_CONFIG, 5),
+                new StringSerializer(), new StringSerializer());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "thanks-pay.outbox", name = "sink", havingValue = "kafka")
+    public OutboxSink kafkaOutboxSink(KafkaProducer<String, String> outboxKafkaProducer, OutboxProperties outboxProperties) {
+        return new KafkaOutboxSink(outboxKafkaProducer, outboxProperties.getKafka().getTopic());
+    }
+}
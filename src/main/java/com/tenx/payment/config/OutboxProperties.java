@@ -0,0 +1,40 @@
+package com.tenx.payment.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "thanks-pay.outbox")
+public class OutboxProperties {
+
+    public enum Sink {
+        IN_PROCESS, FILE, KAFKA
+    }
+
+    private Sink sink = Sink.IN_PROCESS;
+
+    // Maximum number of events delivered to the sink at once
+    private int batchSize = 500;
+
+    private File file = new File();
+
+    private Kafka kafka = new Kafka();
+
+    @Getter
+    @Setter
+    public static class File {
+
+        private String path = "outbox-events.jsonl";
+    }
+
+    @Getter
+    @Setter
+    public static class Kafka {
+
+        private String bootstrapServers = "localhost:9092";
+
+        private String topic = "thanks-pay.transfers";
+    }
+}
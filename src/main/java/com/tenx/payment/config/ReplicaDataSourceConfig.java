@@ -0,0 +1,61 @@
+package com.tenx.payment.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * Splits database access between the primary and a read replica once
+ * {@code thanks-pay.datasource.replica.url} is configured. Work running in a
+ * {@code @Transactional(readOnly = true)} method goes to the replica while it keeps up with the primary,
+ * all other work goes to the primary configured through the regular {@code spring.datasource} properties.
+ * Both pools are tuned by the {@code spring.datasource.hikari} properties.
+ *
+ * Not available together with sharding, see {@link ShardingConfig}. Requires {@code spring.jpa.open-in-view} to be
+ * disabled: the connection of a request would otherwise be taken by its first transaction and kept, writes following
+ * a read-only transaction would go to the replica.
+ */
+@Configuration
+@ConditionalOnExpression("!'${thanks-pay.datasource.replica.url:}'.isEmpty() and !${thanks-pay.sharding.enabled:false}")
+@EnableConfigurationProperties(ReplicaDataSourceProperties.class)
+public class ReplicaDataSourceConfig {
+
+    @Autowired
+    public ReplicaDataSourceConfig(@Value("${spring.jpa.open-in-view:true}") boolean openInView) {
+        if (openInView) {
+            throw new IllegalStateException("spring.jpa.open-in-view must be disabled along with a read replica");
+        }
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(ReplicaDataSourceProperties replicaProperties, Environment environment) {
+        DataSource replicaDataSource = HikariSettings.build(DataSourceBuilder.create()
+                .url(replicaProperties.getUrl())
+                .username(replicaProperties.getUsername())
+                .password(replicaProperties.getPassword()), environment);
+        return new ReplicaLagMonitor(replicaDataSource, replicaProperties.getLagQuery(), replicaProperties.getMaxLag());
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(DataSourceProperties primaryProperties,
+                                                             ReplicaLagMonitor replicaLagMonitor, Environment environment) {
+        DataSource primaryDataSource = HikariSettings.build(primaryProperties.initializeDataSourceBuilder(), environment);
+        return new ReplicaRoutingDataSource(primaryDataSource, replicaLagMonitor);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+}
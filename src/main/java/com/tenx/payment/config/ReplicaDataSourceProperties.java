@@ -0,0 +1,25 @@
+package com.tenx.payment.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "thanks-pay.datasource.replica")
+public class ReplicaDataSourceProperties {
+
+    private String url;
+
+    private String username;
+
+    private String password;
+
+    // Replicas lagging behind the primary by more than this are bypassed
+    private Duration maxLag = Duration.ofSeconds(5);
+
+    // Must return the replication lag of the replica in seconds, defaults to the PostgreSQL standby replay lag
+    private String lagQuery = "SELECT COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0)";
+}
@@ -0,0 +1,56 @@
+package com.tenx.payment.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Tracks the replication lag of the read replica. The replica is considered usable only while the last
+ * measured lag is within the configured maximum, a failing lag query marks it as unusable.
+ */
+@Slf4j
+public class ReplicaLagMonitor {
+
+    private final DataSource replicaDataSource;
+    private final JdbcTemplate replicaJdbcTemplate;
+    private final String lagQuery;
+    private final double maxLagSeconds;
+
+    private volatile boolean replicaUsable;
+
+    public ReplicaLagMonitor(DataSource replicaDataSource, String lagQuery, Duration maxLag) {
+        this.replicaDataSource = replicaDataSource;
+        this.replicaJdbcTemplate = new JdbcTemplate(replicaDataSource);
+        this.lagQuery = lagQuery;
+        this.maxLagSeconds = maxLag.toMillis() / 1000.0;
+        refresh();
+    }
+
+    @Scheduled(fixedDelayString = "${thanks-pay.datasource.replica.lag-check-interval-ms:1000}")
+    public void refresh() {
+        boolean usable;
+        try {
+            Double lagSeconds = replicaJdbcTemplate.queryForObject(lagQuery, Double.class);
+            usable = lagSeconds != null && lagSeconds <= maxLagSeconds;
+        } catch (RuntimeException e) {
+            log.debug("Replica lag check failed", e);
+            usable = false;
+        }
+
+        if (usable != replicaUsable) {
+            log.info("Read replica is now {}", usable ? "in use" : "bypassed, routing reads to the primary");
+        }
+        replicaUsable = usable;
+    }
+
+    public boolean isReplicaUsable() {
+        return replicaUsable;
+    }
+
+    public DataSource getReplicaDataSource() {
+        return replicaDataSource;
+    }
+}
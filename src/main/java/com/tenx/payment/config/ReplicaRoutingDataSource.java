@@ -0,0 +1,51 @@
+package com.tenx.payment.config;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Routes read-only transactions to the read replica and everything else to the primary.
+ *
+ * The lookup happens when the connection is obtained, so this data source must be wrapped in a
+ * {@link LazyConnectionDataSourceProxy} for the read-only flag of the transaction to be visible.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+    enum Target {
+        PRIMARY, REPLICA
+    }
+
+    private final DataSource primaryDataSource;
+    private final ReplicaLagMonitor replicaLagMonitor;
+
+    public ReplicaRoutingDataSource(DataSource primaryDataSource, ReplicaLagMonitor replicaLagMonitor) {
+        this.primaryDataSource = primaryDataSource;
+        this.replicaLagMonitor = replicaLagMonitor;
+        setTargetDataSources(Map.of(
+                Target.PRIMARY, primaryDataSource,
+                Target.REPLICA, replicaLagMonitor.getReplicaDataSource()));
+        setDefaultTargetDataSource(primaryDataSource);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly() && replicaLagMonitor.isReplicaUsable()) {
+            return Target.REPLICA;
+        }
+        return Target.PRIMARY;
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        for (DataSource dataSource : new DataSource[]{primaryDataSource, replicaLagMonitor.getReplicaDataSource()}) {
+            if (dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.tenx.payment.config;
+
+import com.tenx.payment.risk.AmountSpikeRule;
+import com.tenx.payment.risk.NewAccountLimitRule;
+import com.tenx.payment.risk.RiskRule;
+import com.tenx.payment.risk.RiskScreening;
+import com.tenx.payment.risk.VelocityRule;
+import com.tenx.payment.service.CurrencyService;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Risk screening of the transfers, configured through {@code thanks-pay.risk}. The built-in rules run first,
+ * cheapest first, followed by the {@link RiskRule} beans in their order.
+ */
+@Configuration
+@EnableConfigurationProperties(RiskProperties.class)
+public class RiskConfig {
+
+    @Bean
+    public RiskScreening riskScreening(RiskProperties riskProperties, CurrencyService currencyService,
+                                       ObjectProvider<RiskRule> customRules) {
+        List<RiskRule> rules = new ArrayList<>();
+        if (riskProperties.getVelocity().isEnabled()) {
+            rules.add(new VelocityRule(riskProperties.getVelocity().getMaxTransfers()));
+        }
+        if (riskProperties.getNewAccount().isEnabled()) {
+            rules.add(new NewAccountLimitRule(riskProperties.getNewAccount().getMaxAge().toMillis(),
+                    riskProperties.getNewAccount().getMaxAmount(), riskProperties.getNewAccount().getCurrency(),
+                    currencyService));
+        }
+        if (riskProperties.getAmountSpike().isEnabled()) {
+            rules.add(new AmountSpikeRule(riskProperties.getAmountSpike().getMultiplier(),
+                    riskProperties.getAmountSpike().getMinTransfers()));
+        }
+        customRules.orderedStream().forEach(rules::add);
+        return new RiskScreening(riskProperties.isEnabled(), rules, riskProperties.getWindow().toMillis(),
+                riskProperties.getTicks(), riskProperties.getLatencyBudget().toNanos());
+    }
+}
@@ -0,0 +1,68 @@
+package com.tenx.payment.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Currency;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "thanks-pay.risk")
+public class RiskProperties {
+
+    private boolean enabled = true;
+
+    // Activity of an account the rules look back on, kept in ticks of window / ticks
+    private Duration window = Duration.ofMinutes(1);
+
+    private int ticks = 12;
+
+    // Transfers whose rules take longer are let through
+    private Duration latencyBudget = Duration.ofMillis(1);
+
+    private Velocity velocity = new Velocity();
+
+    private AmountSpike amountSpike = new AmountSpike();
+
+    private NewAccount newAccount = new NewAccount();
+
+    @Getter
+    @Setter
+    public static class Velocity {
+
+        private boolean enabled = true;
+
+        // Transfers from an account within the window
+        private long maxTransfers = 300;
+    }
+
+    @Getter
+    @Setter
+    public static class AmountSpike {
+
+        private boolean enabled = true;
+
+        // Times the average amount of the window
+        private BigDecimal multiplier = new BigDecimal(20);
+
+        // Transfers within the window needed for an average to go by
+        private long minTransfers = 10;
+    }
+
+    @Getter
+    @Setter
+    public static class NewAccount {
+
+        private boolean enabled = true;
+
+        private Duration maxAge = Duration.ofDays(1);
+
+        // Amount within the window, converted from the currency below to the currency of the account
+        private BigDecimal maxAmount = new BigDecimal(10_000);
+
+        private Currency currency = Currency.getInstance("USD");
+    }
+}
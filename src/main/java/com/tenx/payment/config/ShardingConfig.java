@@ -0,0 +1,94 @@
+package com.tenx.payment.config;
+
+import com.tenx.payment.shard.ShardRouter;
+import com.tenx.payment.shard.ShardRoutingDataSource;
+import com.tenx.payment.shard.ShardSchemaExporter;
+import jakarta.persistence.EntityManagerFactory;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+/**
+ * Partitions accounts and the records owned by them across the databases listed in
+ * {@code thanks-pay.sharding.shards} once {@code thanks-pay.sharding.enabled} is set. Without sharding
+ * everything lives on the single database configured through the regular {@code spring.datasource} properties.
+ *
+ * Sharding requires {@code spring.jpa.open-in-view} to be disabled: the connection of a request would otherwise be
+ * taken by its first transaction and kept, later transactions of the request would run on the same shard.
+ */
+@Configuration
+@EnableConfigurationProperties(ShardingProperties.class)
+public class ShardingConfig {
+
+    @Bean
+    public ShardRouter shardRouter(ShardingProperties shardingProperties) {
+        return new ShardRouter(shardingProperties.isEnabled() ? shardingProperties.getShards().size() : 1);
+    }
+
+    @Configuration
+    @ConditionalOnProperty(prefix = "thanks-pay.sharding", name = "enabled", havingValue = "true")
+    static class ShardDataSourceConfig {
+
+        @Autowired
+        ShardDataSourceConfig(@Value("${spring.jpa.open-in-view:true}") boolean openInView) {
+            if (openInView) {
+                throw new IllegalStateException("spring.jpa.open-in-view must be disabled along with sharding");
+            }
+        }
+
+        /**
+         * A pool per shard, each tuned by the {@code spring.datasource.hikari} properties.
+         */
+        @Bean
+        public ShardRoutingDataSource shardRoutingDataSource(ShardingProperties shardingProperties, Environment environment) {
+            List<DataSource> shardDataSources = shardingProperties.getShards().stream()
+                    .map(shard -> (DataSource) HikariSettings.build(DataSourceBuilder.create()
+                            .url(shard.getUrl())
+                            .username(shard.getUsername())
+                            .password(shard.getPassword()), environment))
+                    .toList();
+            return new ShardRoutingDataSource(shardDataSources);
+        }
+
+        @Bean
+        @Primary
+        public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+            return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+        }
+
+        /**
+         * Applies the migrations to every shard rather than to the default shard only.
+         */
+        @Bean
+        public FlywayMigrationStrategy shardMigrationStrategy(ShardRoutingDataSource shardRoutingDataSource) {
+            return flyway -> {
+                for (DataSource shardDataSource : shardRoutingDataSource.getShardDataSources()) {
+                    Flyway.configure()
+                            .configuration(flyway.getConfiguration())
+                            .dataSource(shardDataSource)
+                            .load()
+                            .migrate();
+                }
+            };
+        }
+
+        @Bean
+        @ConditionalOnExpression("'${spring.jpa.hibernate.ddl-auto:none}'.startsWith('create')")
+        public ShardSchemaExporter shardSchemaExporter(EntityManagerFactory entityManagerFactory, ShardRouter shardRouter) {
+            return new ShardSchemaExporter(entityManagerFactory, shardRouter);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.tenx.payment.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "thanks-pay.sharding")
+public class ShardingProperties {
+
+    private boolean enabled;
+
+    // Order matters, the index of a shard is embedded in the identifiers of the records it holds
+    private List<Shard> shards = new ArrayList<>();
+
+    // Cross-shard transfers waiting for their credit longer than this are completed or compensated
+    private Duration inDoubtTransferTimeout = Duration.ofMinutes(1);
+
+    @Getter
+    @Setter
+    public static class Shard {
+
+        private String url;
+
+        private String username;
+
+        private String password;
+    }
+}
@@ -0,0 +1,58 @@
+package com.tenx.payment.config;
+
+import com.tenx.payment.admission.AdmissionControl;
+import com.tenx.payment.archive.TransactionArchive;
+import com.tenx.payment.job.BalanceBucketCompactor;
+import com.tenx.payment.job.BalanceSnapshotJob;
+import com.tenx.payment.job.OutboxRelayJob;
+import com.tenx.payment.job.PendingTransferRecoveryJob;
+import com.tenx.payment.job.ReconciliationJob;
+import com.tenx.payment.job.TransactionArchiveJob;
+import com.tenx.payment.risk.RiskScreening;
+import com.tenx.payment.scheduler.ScheduledTransferEngine;
+import com.tenx.payment.service.AccountIdIndex;
+import com.tenx.payment.service.AsyncTransferService;
+import com.tenx.payment.shard.ShardSchemaExporter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Startup behaviour of the fast-startup profile, which initializes beans lazily.
+ */
+@Slf4j
+@Configuration
+public class StartupConfig {
+
+    /**
+     * Beans doing their work on their own rather than on request must still be created at startup,
+     * scheduled jobs of a lazy bean would never run.
+     */
+    @Bean
+    public static LazyInitializationExcludeFilter eagerBackgroundBeans() {
+        return LazyInitializationExcludeFilter.forBeanTypes(BalanceBucketCompactor.class, BalanceSnapshotJob.class,
+                OutboxRelayJob.class, PendingTransferRecoveryJob.class, ReconciliationJob.class, AsyncTransferService.class,
+                ReplicaLagMonitor.class, ShardSchemaExporter.class, AdmissionControl.class,
+                ScheduledTransferEngine.class, AccountIdIndex.class, RiskScreening.class, TransactionArchive.class,
+                TransactionArchiveJob.class);
+    }
+
+    /**
+     * Stops the application once started, used by the training run recording the class data sharing archive.
+     * Checked at runtime rather than through a condition, AOT processing would freeze the condition at build time.
+     */
+    @Bean
+    public ApplicationListener<ApplicationReadyEvent> exitWhenReady(@Value("${thanks-pay.startup.exit-when-ready:false}") boolean exitWhenReady) {
+        return event -> {
+            if (exitWhenReady) {
+                log.info("Training run complete, exiting");
+                System.exit(SpringApplication.exit(event.getApplicationContext()));
+            }
+        };
+    }
+}
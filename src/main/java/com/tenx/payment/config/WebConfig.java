@@ -0,0 +1,18 @@
+package com.tenx.payment.config;
+
+import com.tenx.payment.controller.TransferBinaryHttpMessageConverter;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // Only selected when asked for explicitly, JSON stays the default
+        converters.add(new TransferBinaryHttpMessageConverter());
+    }
+}
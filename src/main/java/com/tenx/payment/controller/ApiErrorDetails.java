@@ -1,5 +1,7 @@
 package com.tenx.payment.controller;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.tenx.payment.exception.Rejection;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -14,9 +16,24 @@ public class ApiErrorDetails {
     private final List<String> messages;
     private final LocalDateTime time;
 
+    @JsonCreator
     public ApiErrorDetails(int httpCode, LocalDateTime time, String... messages) {
         this.httpCode = httpCode;
         this.time = time;
         this.messages = List.of(messages);
     }
+
+    private ApiErrorDetails(int httpCode, LocalDateTime time, List<String> messages) {
+        this.httpCode = httpCode;
+        this.time = time;
+        this.messages = messages;
+    }
+
+    /**
+     * @param rejection to report
+     * @return the error details of the rejection, sharing its cached messages
+     */
+    public static ApiErrorDetails of(Rejection rejection) {
+        return new ApiErrorDetails(rejection.getHttpCode(), LocalDateTime.now(), rejection.getMessages());
+    }
 }
\ No newline at end of file
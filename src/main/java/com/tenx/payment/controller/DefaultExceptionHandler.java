@@ -23,6 +23,9 @@ public class DefaultExceptionHandler extends ResponseEntityExceptionHandler {
 
     @ExceptionHandler(ApiException.class)
     public ResponseEntity<Object> handleApiException(ApiException ae) {
+        if (ae.getRejection() != null) {
+            return new ResponseEntity<>(ApiErrorDetails.of(ae.getRejection()), HttpStatusCode.valueOf(ae.getHttpCode()));
+        }
         return getApiErrorDetailsResponseEntityForException(ae.getHttpCode(), ae.getTime(), ae.getMessage());
     }
 
@@ -0,0 +1,72 @@
+package com.tenx.payment.controller;
+
+import com.tenx.payment.dto.binary.TransferBinaryCodec;
+import com.tenx.payment.dto.transaction.TransactionRequestDto;
+import com.tenx.payment.dto.transaction.TransactionResponseDto;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.lang.NonNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads and writes the transfer DTOs in the {@link TransferBinaryCodec} encoding, selected through the
+ * {@value TransferBinaryCodec#MEDIA_TYPE} content type and accept header. Errors are written in the same
+ * encoding so binary clients never have to parse JSON.
+ */
+public class TransferBinaryHttpMessageConverter extends AbstractHttpMessageConverter<Object> {
+
+    public static final MediaType MEDIA_TYPE = MediaType.parseMediaType(TransferBinaryCodec.MEDIA_TYPE);
+
+    public TransferBinaryHttpMessageConverter() {
+        super(MEDIA_TYPE);
+    }
+
+    @Override
+    protected boolean supports(@NonNull Class<?> clazz) {
+        return clazz == TransactionRequestDto.class || clazz == TransactionResponseDto.class || clazz == ApiErrorDetails.class;
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return mediaType != null && super.canRead(mediaType);
+    }
+
+    @Override
+    public boolean canRead(@NonNull Class<?> clazz, MediaType mediaType) {
+        return clazz == TransactionRequestDto.class && canRead(mediaType);
+    }
+
+    @Override
+    @NonNull
+    protected Object readInternal(@NonNull Class<?> clazz, @NonNull HttpInputMessage inputMessage) throws IOException {
+        byte[] body = inputMessage.getBody().readNBytes(TransferBinaryCodec.REQUEST_LENGTH + 1);
+        if (body.length != TransferBinaryCodec.REQUEST_LENGTH) {
+            throw new HttpMessageNotReadableException("Binary parse error: expected " + TransferBinaryCodec.REQUEST_LENGTH + " bytes", inputMessage);
+        }
+        try {
+            return TransferBinaryCodec.decodeRequest(ByteBuffer.wrap(body));
+        } catch (IllegalArgumentException e) {
+            throw new HttpMessageNotReadableException("Binary parse error: " + e.getMessage(), e, inputMessage);
+        }
+    }
+
+    @Override
+    protected void writeInternal(@NonNull Object body, @NonNull HttpOutputMessage outputMessage) throws IOException {
+        ByteBuffer buffer;
+        if (body instanceof TransactionResponseDto response) {
+            buffer = ByteBuffer.allocate(TransferBinaryCodec.responseLength(response));
+            TransferBinaryCodec.encodeResponse(response, buffer);
+        } else {
+            ApiErrorDetails error = (ApiErrorDetails) body;
+            buffer = ByteBuffer.allocate(TransferBinaryCodec.errorLength(error.getMessages()));
+            TransferBinaryCodec.encodeError(error.getHttpCode(), error.getMessages(), buffer);
+        }
+        outputMessage.getHeaders().setContentLength(buffer.capacity());
+        outputMessage.getBody().write(buffer.array());
+    }
+}
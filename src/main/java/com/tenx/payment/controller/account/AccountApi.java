@@ -1,26 +1,66 @@
 package com.tenx.payment.controller.account;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import com.tenx.payment.admission.AdmissionControl;
 import com.tenx.payment.controller.BaseApi;
+import com.tenx.payment.dto.account.AccountBalanceResponseDto;
 import com.tenx.payment.dto.account.AccountRequestDto;
 import com.tenx.payment.dto.account.AccountResponseDto;
+import com.tenx.payment.dto.account.BulkAccountResultDto;
+import com.tenx.payment.exception.Rejection;
 import com.tenx.payment.model.Account;
 import com.tenx.payment.service.AccountService;
+import com.tenx.payment.store.AccountState;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import jakarta.validation.Validator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
 
 @RestController
 public class AccountApi extends BaseApi {
 
+    public static final String CSV_MEDIA_TYPE = "text/csv";
+
+    // Rows of a bulk import persisted per transaction
+    private static final int BULK_CHUNK_SIZE = 1000;
+
     private final AccountService accountService;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final AdmissionControl admissionControl;
 
     @Autowired
-    public AccountApi(AccountService accountService) {
+    public AccountApi(AccountService accountService, ObjectMapper objectMapper, Validator validator,
+                      AdmissionControl admissionControl) {
         this.accountService = accountService;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.admissionControl = admissionControl;
     }
 
     @PostMapping("/account")
@@ -28,12 +68,178 @@ public class AccountApi extends BaseApi {
         return mapAccountToResponseDto(accountService.saveAccount(accountRequestDto));
     }
 
+    /**
+     * Bulk import for onboarding, taking a JSON array of {@link AccountRequestDto} or CSV with a header naming
+     * its fields. Rows are read as they arrive, validated one by one and persisted in chunks, each in one
+     * transaction with batched inserts on the shard picked for it. The persistence context lives as long as the
+     * transaction of its chunk, the accounts imported so far are not held on to. Answered with a JSON array of {@link BulkAccountResultDto}, one per row
+     * in the order of the request, written chunk by chunk. Each chunk takes a slot of the requests in flight of the
+     * {@link AdmissionControl} while it is persisted, the valid rows of a chunk finding none are answered with 503.
+     */
+    @PostMapping(value = "/accounts/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, CSV_MEDIA_TYPE},
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public void createAccounts(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        try (JsonGenerator output = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            output.writeStartArray();
+            List<BulkRow> chunk = new ArrayList<>(BULK_CHUNK_SIZE);
+            Consumer<BulkRow> rows = row -> {
+                chunk.add(row);
+                if (chunk.size() == BULK_CHUNK_SIZE) {
+                    writeChunk(chunk, output);
+                }
+            };
+            if (MediaType.parseMediaType(request.getContentType()).isCompatibleWith(MediaType.valueOf(CSV_MEDIA_TYPE))) {
+                if (request.getCharacterEncoding() == null) {
+                    request.setCharacterEncoding(StandardCharsets.UTF_8.name());
+                }
+                readCsv(request.getReader(), rows);
+            } else {
+                readJson(request, rows);
+            }
+            writeChunk(chunk, output);
+            output.writeEndArray();
+        }
+    }
+
+    /**
+     * Answered with an ETag derived from the version of the account, a request whose If-None-Match still matches it
+     * is answered with 304 from a lookup of the version alone. The tag is read before the account, a response never
+     * carries a tag newer than its account.
+     */
     @GetMapping("/account/{id}")
-    public AccountResponseDto getAccount(@PathVariable long id) {
+    public AccountResponseDto getAccount(@PathVariable long id, WebRequest request) {
+        String tag = accountService.findAccountTag(id).orElseThrow(Rejection.ACCOUNT_NOT_FOUND::exception);
+        if (request.checkNotModified(tag)) {
+            return null;
+        }
         return mapAccountToResponseDto(accountService.findAccountById(id));
     }
 
+    /**
+     * Balance of the account at a point in time, now if not given. The current balance is read through the
+     * {@link com.tenx.payment.store.AccountStateStore}, past ones are answered from the daily balance snapshots
+     * and the transfers since the last of them, see {@link com.tenx.payment.service.BalanceSnapshotService}.
+     */
+    @GetMapping("/account/{id}/balance")
+    public AccountBalanceResponseDto getAccountBalance(@PathVariable long id, @RequestParam(required = false) Long at) {
+        if (at == null) {
+            AccountState state = accountService.findAccountState(id);
+            return new AccountBalanceResponseDto(id, state.balance(), state.currency(), System.currentTimeMillis());
+        }
+        long atTimestamp = at;
+        Account account = accountService.findAccountById(id);
+        return new AccountBalanceResponseDto(id, accountService.getBalanceAt(account, atTimestamp), account.getCurrency(), atTimestamp);
+    }
+
+    private void readJson(HttpServletRequest request, Consumer<BulkRow> rows) throws IOException {
+        long row = 0;
+        try (MappingIterator<AccountRequestDto> accounts = objectMapper.readerFor(AccountRequestDto.class)
+                .readValues(request.getInputStream())) {
+            while (true) {
+                row++;
+                try {
+                    if (!accounts.hasNextValue()) {
+                        return;
+                    }
+                    rows.accept(validate(row, accounts.nextValue()));
+                } catch (MismatchedInputException e) {
+                    // The iterator skips the rest of the malformed record and goes on with the next one
+                    rows.accept(BulkRow.rejected(row, "JSON parse error: " + e.getOriginalMessage()));
+                } catch (JsonProcessingException e) {
+                    rows.accept(BulkRow.rejected(row, "JSON parse error: " + e.getOriginalMessage()));
+                    return;
+                }
+            }
+        }
+    }
+
+    private void readCsv(BufferedReader reader, Consumer<BulkRow> rows) throws IOException {
+        String header = reader.readLine();
+        if (header == null) {
+            return;
+        }
+        List<String> columns = List.of(header.toLowerCase(Locale.ROOT).replace(" ", "").split(","));
+        int balanceColumn = columns.indexOf("balance");
+        int currencyColumn = columns.indexOf("currency");
+        int highVolumeColumn = columns.indexOf("highvolume");
+
+        long row = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            row++;
+            String[] values = line.split(",", -1);
+            if (values.length != columns.size()) {
+                rows.accept(BulkRow.rejected(row, "CSV parse error: expected " + columns.size() + " values but found " + values.length));
+                continue;
+            }
+            try {
+                rows.accept(validate(row, AccountRequestDto.builder()
+                        .balance(balanceColumn >= 0 && !values[balanceColumn].isBlank() ? new BigDecimal(values[balanceColumn].trim()) : null)
+                        .currency(currencyColumn >= 0 && !values[currencyColumn].isBlank() ? Currency.getInstance(values[currencyColumn].trim()) : null)
+                        .highVolume(highVolumeColumn >= 0 && Boolean.parseBoolean(values[highVolumeColumn].trim()))
+                        .build()));
+            } catch (IllegalArgumentException e) {
+                rows.accept(BulkRow.rejected(row, "CSV parse error: " + e.getMessage()));
+            }
+        }
+    }
+
+    private BulkRow validate(long row, AccountRequestDto accountRequestDto) {
+        List<String> errors = validator.validate(accountRequestDto).stream()
+                .map(violation -> violation.getPropertyPath() + " field : " + violation.getMessage())
+                .toList();
+        return new BulkRow(row, errors.isEmpty() ? accountRequestDto : null, errors);
+    }
+
+    private void writeChunk(List<BulkRow> chunk, JsonGenerator output) {
+        List<AccountRequestDto> validAccounts = chunk.stream()
+                .filter(row -> row.account() != null)
+                .map(BulkRow::account)
+                .toList();
+        List<Account> accounts = validAccounts.isEmpty() || !admissionControl.tryEnter() ? null : saveAccounts(validAccounts);
+        try {
+            int created = 0;
+            for (BulkRow row : chunk) {
+                BulkAccountResultDto result;
+                if (row.account() == null) {
+                    result = new BulkAccountResultDto(row.row(), HttpStatus.BAD_REQUEST.value(), null, row.errors());
+                } else if (accounts == null) {
+                    result = new BulkAccountResultDto(row.row(), Rejection.OVERLOADED.getHttpCode(), null, Rejection.OVERLOADED.getMessages());
+                } else {
+                    result = new BulkAccountResultDto(row.row(), HttpStatus.OK.value(), accounts.get(created++).getId(), List.of());
+                }
+                output.writeObject(result);
+            }
+            output.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        chunk.clear();
+    }
+
+    // Holds a slot of the requests in flight, taken by the caller
+    private List<Account> saveAccounts(List<AccountRequestDto> accounts) {
+        long start = System.nanoTime();
+        try {
+            return accountService.saveAccounts(accounts);
+        } finally {
+            admissionControl.exit(System.nanoTime() - start);
+        }
+    }
+
+    // Row of a bulk import, the account data if valid or else the reasons it was rejected
+    private record BulkRow(long row, AccountRequestDto account, List<String> errors) {
+
+        private static BulkRow rejected(long row, String error) {
+            return new BulkRow(row, null, List.of(error));
+        }
+    }
+
     private AccountResponseDto mapAccountToResponseDto(Account account) {
-        return new AccountResponseDto(account.getId(), account.getBalance(), account.getCurrency(), account.getCreateAtTimestamp());
+        return new AccountResponseDto(account.getId(), accountService.getTotalBalance(account), account.getCurrency(), account.getCreateAtTimestamp());
     }
 }
@@ -0,0 +1,56 @@
+package com.tenx.payment.controller.transaction;
+
+import com.tenx.payment.controller.BaseApi;
+import com.tenx.payment.dto.transaction.ScheduledTransferRequestDto;
+import com.tenx.payment.dto.transaction.ScheduledTransferResponseDto;
+import com.tenx.payment.model.ScheduledTransfer;
+import com.tenx.payment.service.ScheduledTransferService;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+public class ScheduledTransferApi extends BaseApi {
+
+    private final ScheduledTransferService scheduledTransferService;
+
+    @Autowired
+    public ScheduledTransferApi(ScheduledTransferService scheduledTransferService) {
+        this.scheduledTransferService = scheduledTransferService;
+    }
+
+    @PostMapping("/scheduled-transfer")
+    public ScheduledTransferResponseDto createScheduledTransfer(@Valid @RequestBody ScheduledTransferRequestDto requestDto) {
+        return mapScheduledTransferToResponseDto(scheduledTransferService.schedule(requestDto));
+    }
+
+    @GetMapping("/scheduled-transfer/{id}")
+    public ScheduledTransferResponseDto getScheduledTransfer(@PathVariable long id) {
+        return mapScheduledTransferToResponseDto(scheduledTransferService.findScheduledTransferById(id));
+    }
+
+    @DeleteMapping("/scheduled-transfer/{id}")
+    public ScheduledTransferResponseDto cancelScheduledTransfer(@PathVariable long id) {
+        return mapScheduledTransferToResponseDto(scheduledTransferService.cancel(id));
+    }
+
+    private ScheduledTransferResponseDto mapScheduledTransferToResponseDto(ScheduledTransfer scheduledTransfer) {
+        return new ScheduledTransferResponseDto(
+                scheduledTransfer.getId(),
+                scheduledTransfer.getAmount(),
+                scheduledTransfer.getSourceAccountId(),
+                scheduledTransfer.getTargetAccountId(),
+                scheduledTransfer.getCurrency(),
+                scheduledTransfer.getCron(),
+                scheduledTransfer.getZone(),
+                scheduledTransfer.getNextExecutionTimestamp(),
+                scheduledTransfer.getStatus(),
+                scheduledTransfer.getExecutions(),
+                scheduledTransfer.getLastTransactionId());
+    }
+}
@@ -1,37 +1,264 @@
 package com.tenx.payment.controller.transaction;
 
+import com.tenx.payment.admission.AdmissionControl;
+import com.tenx.payment.controller.ApiErrorDetails;
 import com.tenx.payment.controller.BaseApi;
+import com.tenx.payment.dto.binary.TransferBinaryCodec;
+import com.tenx.payment.dto.transaction.SplitTransferRequestDto;
+import com.tenx.payment.dto.transaction.TransactionBatchRequestDto;
 import com.tenx.payment.dto.transaction.TransactionRequestDto;
 import com.tenx.payment.dto.transaction.TransactionResponseDto;
+import com.tenx.payment.exception.ApiException;
+import com.tenx.payment.exception.Rejection;
+import com.tenx.payment.exception.UnsupportedCurrencyException;
 import com.tenx.payment.model.Transaction;
+import com.tenx.payment.service.AsyncTransferService;
 import com.tenx.payment.service.TransactionService;
+import com.tenx.payment.service.TransferResult;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Valid;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+@Slf4j
 @RestController
 public class TransactionApi extends BaseApi {
 
+    // RFC 7240 preference asking to accept the transfer and apply it in the background
+    private static final String RESPOND_ASYNC = "respond-async";
+
+    public static final String STREAM_MEDIA_TYPE = "application/x-thanks-pay-transfer-stream";
+
+    private static final List<String> FRAME_RETRYABLE_FAILURE = List.of("Transfer could not be processed, retry later");
+    private static final List<String> FRAME_FAILURE = List.of("Transfer could not be processed");
+
     private final TransactionService transactionService;
+    private final AsyncTransferService asyncTransferService;
+    private final Validator validator;
+    private final AdmissionControl admissionControl;
+    private final EntityManagerFactory entityManagerFactory;
 
     @Autowired
-    public TransactionApi(TransactionService transactionService) {
+    public TransactionApi(TransactionService transactionService, AsyncTransferService asyncTransferService, Validator validator,
+                          AdmissionControl admissionControl, EntityManagerFactory entityManagerFactory) {
         this.transactionService = transactionService;
+        this.asyncTransferService = asyncTransferService;
+        this.validator = validator;
+        this.admissionControl = admissionControl;
+        this.entityManagerFactory = entityManagerFactory;
     }
 
     @PostMapping("/transaction")
-    public TransactionResponseDto createTransaction(@Valid @RequestBody TransactionRequestDto transactionRequestDto) {
-        transactionService.assertValidTransaction(transactionRequestDto);
-        Transaction transaction = transactionService.execute(transactionRequestDto);
+    public ResponseEntity<Object> createTransaction(@Valid @RequestBody TransactionRequestDto transactionRequestDto,
+                                                    @RequestHeader(name = "Prefer", required = false) String prefer) {
+        long retryAfterNanos = admissionControl.admitTransfer(transactionRequestDto.getSourceAccountId());
+        if (retryAfterNanos > 0) {
+            return ResponseEntity.status(Rejection.RATE_LIMITED.getHttpCode())
+                    .header(HttpHeaders.RETRY_AFTER, AdmissionControl.retryAfterSeconds(retryAfterNanos))
+                    .body(ApiErrorDetails.of(Rejection.RATE_LIMITED));
+        }
+
+        if (prefer != null && prefer.toLowerCase().contains(RESPOND_ASYNC)) {
+            transactionService.assertAcceptableTransaction(transactionRequestDto);
+            Transaction transaction = asyncTransferService.submit(transactionRequestDto);
+            URI location = ServletUriComponentsBuilder.fromCurrentRequestUri()
+                    .path("/{id}")
+                    .buildAndExpand(transaction.getId())
+                    .toUri();
+            return ResponseEntity.accepted().location(location).body(mapTransactionToResponseDto(transaction));
+        }
+
+        // Insufficient funds are a common outcome, reject them without going through an exception
+        TransferResult transferResult = transactionService.tryExecute(transactionRequestDto);
+        if (!transferResult.isCompleted()) {
+            Rejection rejection = transferResult.rejection();
+            return ResponseEntity.status(rejection.getHttpCode()).body(ApiErrorDetails.of(rejection));
+        }
+        return ResponseEntity.ok(mapTransactionToResponseDto(transferResult.transaction()));
+    }
+
+    /**
+     * Debits and credits several accounts in one atomic transfer, answered with the transaction booked per pair of
+     * debited and credited account, see {@link TransactionService#executeSplit(SplitTransferRequestDto)}.
+     */
+    @PostMapping("/transaction/split")
+    public ResponseEntity<Object> createSplitTransaction(@Valid @RequestBody SplitTransferRequestDto splitTransferRequestDto) {
+        // A token of each debited account, none is spent if one of them has to wait
+        Set<Long> debitedAccountIds = new TreeSet<>();
+        splitTransferRequestDto.getDebits().forEach(debit -> debitedAccountIds.add(debit.getAccountId()));
+        long retryAfterNanos = admissionControl.admitTransfer(debitedAccountIds);
+        if (retryAfterNanos > 0) {
+            return ResponseEntity.status(Rejection.RATE_LIMITED.getHttpCode())
+                    .header(HttpHeaders.RETRY_AFTER, AdmissionControl.retryAfterSeconds(retryAfterNanos))
+                    .body(ApiErrorDetails.of(Rejection.RATE_LIMITED));
+        }
+
+        return ResponseEntity.ok(transactionService.executeSplit(splitTransferRequestDto).stream()
+                .map(this::mapTransactionToResponseDto)
+                .toList());
+    }
+
+    /**
+     * Settles a batch of transfers atomically, netted per account, see
+     * {@link TransactionService#executeBatch(List)}. Answered with the transactions in the order of the batch.
+     */
+    @PostMapping("/transaction/batch")
+    public List<TransactionResponseDto> createTransactionBatch(@Valid @RequestBody TransactionBatchRequestDto transactionBatchRequestDto) {
+        // Not limited per account: an account of the batch gets a single balance update, however often it appears
+        return transactionService.executeBatch(transactionBatchRequestDto.getTransfers()).stream()
+                .map(this::mapTransactionToResponseDto)
+                .toList();
+    }
+
+    /**
+     * Bulk channel for high-volume integrators: many transfers multiplexed over one connection in the
+     * {@link TransferBinaryCodec} encoding. The request body is a stream of frames, each an int64 correlation id
+     * followed by a transfer request. Every frame is answered with the correlation id, an int16 HTTP status code,
+     * an int32 payload length and the transfer response or error, written as soon as the transfer is processed.
+     * A stream may run for long, nothing of a processed frame is held on to, also with open-in-view enabled.
+     * Each frame takes a slot of the requests in flight of the {@link AdmissionControl} while it is processed, a
+     * frame finding none is answered with 503. A frame failing unexpectedly is answered on its own as well, with 503
+     * if the failure is transient and may be retried, otherwise with 500, and the stream goes on.
+     */
+    @PostMapping(value = "/transaction/stream", consumes = STREAM_MEDIA_TYPE, produces = STREAM_MEDIA_TYPE)
+    public void streamTransactions(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType(STREAM_MEDIA_TYPE);
+        InputStream input = request.getInputStream();
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(response.getOutputStream()));
+        byte[] frame = new byte[8 + TransferBinaryCodec.REQUEST_LENGTH];
+        while (input.readNBytes(frame, 0, frame.length) == frame.length) {
+            ByteBuffer buffer = ByteBuffer.wrap(frame);
+            long correlationId = buffer.getLong();
+            ByteBuffer payload = processFrame(buffer);
+            clearRequestPersistenceContext();
+            output.writeLong(correlationId);
+            output.writeShort(payload.getShort(0));
+            output.writeInt(payload.capacity() - 2);
+            output.write(payload.array(), 2, payload.capacity() - 2);
+            if (input.available() == 0) {
+                // Nothing more to process right now, hand out what has been answered
+                output.flush();
+            }
+        }
+        output.flush();
+    }
+
+    @GetMapping("/transaction/{id}")
+    public TransactionResponseDto getTransaction(@PathVariable long id) {
+        return mapTransactionToResponseDto(transactionService.findTransactionById(id));
+    }
+
+    @GetMapping("/account/{id}/transactions")
+    public List<TransactionResponseDto> getAccountTransactions(@PathVariable long id,
+                                                               @RequestParam(defaultValue = "0") int page,
+                                                               @RequestParam(defaultValue = "50") int size) {
+        return transactionService.findTransactionsByAccountId(id, PageRequest.of(page, size)).stream()
+                .map(this::mapTransactionToResponseDto)
+                .toList();
+    }
+
+    // The persistence context bound to the request by open-in-view, if enabled, would keep the entities of every frame
+    private void clearRequestPersistenceContext() {
+        if (TransactionSynchronizationManager.getResource(entityManagerFactory) instanceof EntityManagerHolder holder) {
+            holder.getEntityManager().clear();
+        }
+    }
+
+    // Answer of a frame prefixed with its HTTP status code
+    private ByteBuffer processFrame(ByteBuffer frame) {
+        TransactionRequestDto transactionRequestDto;
+        try {
+            transactionRequestDto = TransferBinaryCodec.decodeRequest(frame);
+        } catch (IllegalArgumentException e) {
+            return encodeError(HttpStatus.BAD_REQUEST.value(), List.of("Binary parse error: " + e.getMessage()));
+        }
+
+        Set<ConstraintViolation<TransactionRequestDto>> violations = validator.validate(transactionRequestDto);
+        if (!violations.isEmpty()) {
+            return encodeError(HttpStatus.BAD_REQUEST.value(), violations.stream()
+                    .map(violation -> violation.getPropertyPath() + " field : " + violation.getMessage())
+                    .toList());
+        }
+
+        if (admissionControl.admitTransfer(transactionRequestDto.getSourceAccountId()) > 0) {
+            return encodeError(Rejection.RATE_LIMITED.getHttpCode(), Rejection.RATE_LIMITED.getMessages());
+        }
+
+        if (!admissionControl.tryEnter()) {
+            return encodeError(Rejection.OVERLOADED.getHttpCode(), Rejection.OVERLOADED.getMessages());
+        }
+        long start = System.nanoTime();
+        try {
+            TransferResult transferResult = transactionService.tryExecute(transactionRequestDto);
+            if (!transferResult.isCompleted()) {
+                return encodeError(transferResult.rejection().getHttpCode(), transferResult.rejection().getMessages());
+            }
+            TransactionResponseDto transactionResponseDto = mapTransactionToResponseDto(transferResult.transaction());
+            ByteBuffer answer = ByteBuffer.allocate(2 + TransferBinaryCodec.responseLength(transactionResponseDto));
+            answer.putShort((short) HttpStatus.OK.value());
+            TransferBinaryCodec.encodeResponse(transactionResponseDto, answer);
+            return answer;
+        } catch (ApiException e) {
+            return encodeError(e.getHttpCode(), List.of(e.getMessage()));
+        } catch (UnsupportedCurrencyException e) {
+            return encodeError(HttpStatus.BAD_REQUEST.value(), List.of(e.getMessage()));
+        } catch (TransientDataAccessException | CannotCreateTransactionException e) {
+            log.warn("Transfer of a stream frame failed transiently", e);
+            return encodeError(HttpStatus.SERVICE_UNAVAILABLE.value(), FRAME_RETRYABLE_FAILURE);
+        } catch (RuntimeException e) {
+            log.error("Transfer of a stream frame failed", e);
+            return encodeError(HttpStatus.INTERNAL_SERVER_ERROR.value(), FRAME_FAILURE);
+        } finally {
+            admissionControl.exit(System.nanoTime() - start);
+        }
+    }
+
+    private ByteBuffer encodeError(int httpCode, List<String> messages) {
+        ByteBuffer answer = ByteBuffer.allocate(2 + TransferBinaryCodec.errorLength(messages));
+        answer.putShort((short) httpCode);
+        TransferBinaryCodec.encodeError(httpCode, messages, answer);
+        return answer;
+    }
 
+    private TransactionResponseDto mapTransactionToResponseDto(Transaction transaction) {
         // Manual mapper, for prod usages use mapper like mapStruct
         return new TransactionResponseDto(
                 transaction.getAmount(),
                 transaction.getSourceAccount().getId(),
                 transaction.getTargetAccount().getId(),
                 transaction.getCurrency(),
-                transaction.getId());
+                transaction.getId(),
+                transaction.getStatus(),
+                transaction.getFailureReason());
     }
 }
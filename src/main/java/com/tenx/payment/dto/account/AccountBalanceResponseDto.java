@@ -0,0 +1,19 @@
+package com.tenx.payment.dto.account;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+@Data
+public class AccountBalanceResponseDto {
+
+    private final long id;
+
+    private final BigDecimal balance;
+
+    private final Currency currency;
+
+    // Epoch millis the balance is given at
+    private final long atTimestamp;
+}
@@ -0,0 +1,11 @@
+package com.tenx.payment.dto.account;
+
+/**
+ * Identifier and creation time of an account, projected straight from the account row to index the accounts
+ * without loading the entities.
+ *
+ * @param id identifier of the account
+ * @param createAtTimestamp epoch millis the account was created at
+ */
+public record AccountCreation(long id, long createAtTimestamp) {
+}
@@ -25,4 +25,7 @@ public class AccountRequestDto {
     @NotNull
     @AllowedCurrencies
     private Currency currency;
+
+    // Spreads incoming credits over sub-balance buckets, meant for accounts receiving many transfers
+    private boolean highVolume;
 }
@@ -0,0 +1,11 @@
+package com.tenx.payment.dto.account;
+
+/**
+ * Version of an account, projected straight from the account row to answer conditional reads without loading
+ * the entity.
+ *
+ * @param version of the account row, incremented on every update
+ * @param balanceBuckets number of sub-balance buckets, their credits leave the version as it is
+ */
+public record AccountVersion(long version, int balanceBuckets) {
+}
@@ -0,0 +1,23 @@
+package com.tenx.payment.dto.account;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Outcome of a row of a bulk account import.
+ */
+@Data
+public class BulkAccountResultDto {
+
+    // Position of the row in the request, starting at 1
+    private final long row;
+
+    // HTTP status code of the row, 200 once the account is created
+    private final int status;
+
+    // Identifier of the created account, null if the row was rejected
+    private final Long id;
+
+    private final List<String> errors;
+}
@@ -0,0 +1,153 @@
+package com.tenx.payment.dto.binary;
+
+import com.tenx.payment.dto.transaction.TransactionRequestDto;
+import com.tenx.payment.dto.transaction.TransactionResponseDto;
+import com.tenx.payment.model.Transaction;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Currency;
+import java.util.List;
+
+/**
+ * Fixed-layout binary encoding of the transfer DTOs, big-endian:
+ *
+ * <pre>
+ * Transfer request, 36 bytes
+ *   0  int64     sourceAccountId
+ *   8  int64     targetAccountId
+ *  16  int128    amount, unscaled two's complement value
+ *  32  int8      amount scale
+ *  33  char[3]   currency, ISO 4217 code in ASCII
+ *
+ * Transfer response, 47 bytes followed by the failure reason
+ *   0  request   as above
+ *  36  int64     id
+ *  44  int8      status ordinal, -1 if unknown
+ *  45  uint16    failure reason length in bytes, followed by the UTF-8 failure reason
+ *
+ * Error
+ *   0  int16     HTTP status code
+ *   2  uint16    number of messages, each a uint16 length followed by the UTF-8 message
+ * </pre>
+ */
+public final class TransferBinaryCodec {
+
+    public static final String MEDIA_TYPE = "application/x-thanks-pay-transfer";
+
+    public static final int REQUEST_LENGTH = 36;
+
+    private static final int AMOUNT_LENGTH = 16;
+
+    private static final Transaction.Status[] STATUSES = Transaction.Status.values();
+
+    private TransferBinaryCodec() {
+
+    }
+
+    public static void encodeRequest(TransactionRequestDto request, ByteBuffer buffer) {
+        buffer.putLong(request.getSourceAccountId());
+        buffer.putLong(request.getTargetAccountId());
+        encodeAmount(request.getAmount(), buffer);
+        buffer.put(request.getCurrency().getCurrencyCode().getBytes(StandardCharsets.US_ASCII), 0, 3);
+    }
+
+    public static TransactionRequestDto decodeRequest(ByteBuffer buffer) {
+        try {
+            long sourceAccountId = buffer.getLong();
+            long targetAccountId = buffer.getLong();
+            BigDecimal amount = decodeAmount(buffer);
+            byte[] currencyCode = new byte[3];
+            buffer.get(currencyCode);
+            Currency currency = Currency.getInstance(new String(currencyCode, StandardCharsets.US_ASCII));
+            return new TransactionRequestDto(amount, sourceAccountId, targetAccountId, currency);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated transfer request", e);
+        }
+    }
+
+    public static int responseLength(TransactionResponseDto response) {
+        return REQUEST_LENGTH + 8 + 1 + 2 + utf8Length(response.getFailureReason());
+    }
+
+    public static void encodeResponse(TransactionResponseDto response, ByteBuffer buffer) {
+        encodeRequest(response, buffer);
+        buffer.putLong(response.getId());
+        buffer.put(response.getStatus() == null ? -1 : (byte) response.getStatus().ordinal());
+        putString(response.getFailureReason(), buffer);
+    }
+
+    public static TransactionResponseDto decodeResponse(ByteBuffer buffer) {
+        TransactionRequestDto request = decodeRequest(buffer);
+        long id = buffer.getLong();
+        byte status = buffer.get();
+        String failureReason = getString(buffer);
+        return new TransactionResponseDto(request.getAmount(), request.getSourceAccountId(), request.getTargetAccountId(),
+                request.getCurrency(), id, status < 0 ? null : STATUSES[status], failureReason.isEmpty() ? null : failureReason);
+    }
+
+    public static int errorLength(List<String> messages) {
+        int length = 2 + 2;
+        for (String message : messages) {
+            length += 2 + utf8Length(message);
+        }
+        return length;
+    }
+
+    public static void encodeError(int httpCode, List<String> messages, ByteBuffer buffer) {
+        buffer.putShort((short) httpCode);
+        buffer.putShort((short) messages.size());
+        for (String message : messages) {
+            putString(message, buffer);
+        }
+    }
+
+    private static void encodeAmount(BigDecimal amount, ByteBuffer buffer) {
+        byte[] unscaled = amount.unscaledValue().toByteArray();
+        if (unscaled.length > AMOUNT_LENGTH || amount.scale() < Byte.MIN_VALUE || amount.scale() > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Amount out of range");
+        }
+        // Sign extension up to 16 bytes
+        byte padding = amount.signum() < 0 ? (byte) -1 : 0;
+        for (int i = unscaled.length; i < AMOUNT_LENGTH; i++) {
+            buffer.put(padding);
+        }
+        buffer.put(unscaled);
+        buffer.put((byte) amount.scale());
+    }
+
+    private static BigDecimal decodeAmount(ByteBuffer buffer) {
+        long high = buffer.getLong();
+        long low = buffer.getLong();
+        byte scale = buffer.get();
+        if ((high == 0 && low >= 0) || (high == -1 && low < 0)) {
+            return BigDecimal.valueOf(low, scale);
+        }
+        byte[] unscaled = new byte[AMOUNT_LENGTH];
+        ByteBuffer.wrap(unscaled).putLong(high).putLong(low);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+
+    private static void putString(String value, ByteBuffer buffer) {
+        if (value == null) {
+            buffer.putShort((short) 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int utf8Length(String value) {
+        return value == null ? 0 : value.getBytes(StandardCharsets.UTF_8).length;
+    }
+}
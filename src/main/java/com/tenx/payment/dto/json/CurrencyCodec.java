@@ -0,0 +1,72 @@
+package com.tenx.payment.dto.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+import java.io.IOException;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps {@link Currency} to and from its ISO 4217 code through a lookup table built once.
+ */
+final class CurrencyCodec {
+
+    private static final Map<String, Currency> CURRENCIES_BY_CODE = new HashMap<>();
+
+    static {
+        for (Currency currency : Currency.getAvailableCurrencies()) {
+            CURRENCIES_BY_CODE.put(currency.getCurrencyCode(), currency);
+        }
+    }
+
+    private CurrencyCodec() {
+
+    }
+
+    static void write(Currency currency, JsonGenerator generator) throws IOException {
+        if (currency == null) {
+            generator.writeNull();
+        } else {
+            generator.writeString(currency.getCurrencyCode());
+        }
+    }
+
+    static Currency read(JsonParser parser, DeserializationContext context) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (parser.currentToken() != JsonToken.VALUE_STRING) {
+            return (Currency) context.handleUnexpectedToken(Currency.class, parser);
+        }
+
+        String code = parser.getText();
+        Currency currency = CURRENCIES_BY_CODE.get(code);
+        if (currency == null) {
+            return (Currency) context.handleWeirdStringValue(Currency.class, code, "not a valid ISO 4217 currency code");
+        }
+        return currency;
+    }
+
+    static class Serializer extends JsonSerializer<Currency> {
+
+        @Override
+        public void serialize(Currency currency, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            write(currency, generator);
+        }
+    }
+
+    static class Deserializer extends JsonDeserializer<Currency> {
+
+        @Override
+        public Currency deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            return read(parser, context);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.tenx.payment.dto.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * Writes and reads monetary amounts. Amounts whose unscaled value fits in a long are formatted straight into
+ * a per-thread buffer handed to the generator, without the intermediate strings of {@link BigDecimal#toString()}.
+ */
+final class DecimalCodec {
+
+    // Sign, 19 digits, decimal point and leading zeros of the fraction
+    private static final int MAX_LENGTH = 64;
+
+    private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[MAX_LENGTH]);
+
+    private DecimalCodec() {
+
+    }
+
+    static void write(BigDecimal value, JsonGenerator generator) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+            return;
+        }
+
+        int scale = value.scale();
+        if (scale < 0 || scale > MAX_LENGTH - 22 || value.precision() > 18) {
+            generator.writeNumber(value);
+            return;
+        }
+
+        char[] buffer = BUFFER.get();
+        long unscaled = value.unscaledValue().longValue();
+        boolean negative = unscaled < 0;
+        long remaining = Math.abs(unscaled);
+
+        // Digits are written backwards from the end of the buffer
+        int position = MAX_LENGTH;
+        int digits = 0;
+        do {
+            if (digits == scale && scale > 0) {
+                buffer[--position] = '.';
+            }
+            buffer[--position] = (char) ('0' + remaining % 10);
+            remaining /= 10;
+            digits++;
+        } while (remaining > 0 || digits <= scale);
+        if (negative) {
+            buffer[--position] = '-';
+        }
+        generator.writeNumber(buffer, position, MAX_LENGTH - position);
+    }
+
+    static BigDecimal read(JsonParser parser, DeserializationContext context) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+            return parser.getDecimalValue();
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token == JsonToken.VALUE_STRING) {
+            try {
+                return new BigDecimal(parser.getText().trim());
+            } catch (NumberFormatException e) {
+                return (BigDecimal) context.handleWeirdStringValue(BigDecimal.class, parser.getText(), "not a valid representation");
+            }
+        }
+        return (BigDecimal) context.handleUnexpectedToken(BigDecimal.class, parser);
+    }
+}
@@ -0,0 +1,130 @@
+package com.tenx.payment.dto.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.tenx.payment.dto.account.AccountResponseDto;
+import com.tenx.payment.dto.transaction.TransactionRequestDto;
+import com.tenx.payment.dto.transaction.TransactionResponseDto;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Currency;
+
+/**
+ * Hand-written codecs for the DTOs on the hot transfer path, replacing reflective bean binding.
+ * Field names and order match what bean binding produced, so the JSON is unchanged.
+ */
+public class TransferJsonModule extends SimpleModule {
+
+    private static final SerializableString AMOUNT = new SerializedString("amount");
+    private static final SerializableString SOURCE_ACCOUNT_ID = new SerializedString("sourceAccountId");
+    private static final SerializableString TARGET_ACCOUNT_ID = new SerializedString("targetAccountId");
+    private static final SerializableString CURRENCY = new SerializedString("currency");
+    private static final SerializableString ID = new SerializedString("id");
+    private static final SerializableString STATUS = new SerializedString("status");
+    private static final SerializableString FAILURE_REASON = new SerializedString("failureReason");
+    private static final SerializableString BALANCE = new SerializedString("balance");
+    private static final SerializableString CREATED_AT_TIMESTAMP = new SerializedString("createdAtTimestamp");
+
+    public TransferJsonModule() {
+        super("TransferJsonModule");
+        addSerializer(Currency.class, new CurrencyCodec.Serializer());
+        addDeserializer(Currency.class, new CurrencyCodec.Deserializer());
+        addDeserializer(TransactionRequestDto.class, new TransactionRequestDtoDeserializer());
+        addSerializer(TransactionResponseDto.class, new TransactionResponseDtoSerializer());
+        addSerializer(AccountResponseDto.class, new AccountResponseDtoSerializer());
+    }
+
+    static class TransactionRequestDtoDeserializer extends JsonDeserializer<TransactionRequestDto> {
+
+        @Override
+        public TransactionRequestDto deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                return (TransactionRequestDto) context.handleUnexpectedToken(TransactionRequestDto.class, parser);
+            }
+
+            BigDecimal amount = null;
+            Long sourceAccountId = null;
+            Long targetAccountId = null;
+            Currency currency = null;
+            String field;
+            while ((field = parser.nextFieldName()) != null) {
+                parser.nextToken();
+                switch (field) {
+                    case "amount" -> amount = DecimalCodec.read(parser, context);
+                    case "sourceAccountId" -> sourceAccountId = readLong(parser, context);
+                    case "targetAccountId" -> targetAccountId = readLong(parser, context);
+                    case "currency" -> currency = CurrencyCodec.read(parser, context);
+                    default -> parser.skipChildren();
+                }
+            }
+
+            if (amount == null || sourceAccountId == null || targetAccountId == null || currency == null) {
+                throw MismatchedInputException.from(parser, TransactionRequestDto.class,
+                        "Missing required creator property of " + TransactionRequestDto.class.getSimpleName());
+            }
+            return new TransactionRequestDto(amount, sourceAccountId, targetAccountId, currency);
+        }
+
+        private static Long readLong(JsonParser parser, DeserializationContext context) throws IOException {
+            return switch (parser.currentToken()) {
+                case VALUE_NUMBER_INT -> parser.getLongValue();
+                case VALUE_NULL -> null;
+                default -> context.readValue(parser, Long.class);
+            };
+        }
+    }
+
+    static class TransactionResponseDtoSerializer extends JsonSerializer<TransactionResponseDto> {
+
+        @Override
+        public void serialize(TransactionResponseDto transaction, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeStartObject(transaction, 7);
+            generator.writeFieldName(AMOUNT);
+            DecimalCodec.write(transaction.getAmount(), generator);
+            generator.writeFieldName(SOURCE_ACCOUNT_ID);
+            generator.writeNumber(transaction.getSourceAccountId());
+            generator.writeFieldName(TARGET_ACCOUNT_ID);
+            generator.writeNumber(transaction.getTargetAccountId());
+            generator.writeFieldName(CURRENCY);
+            CurrencyCodec.write(transaction.getCurrency(), generator);
+            generator.writeFieldName(ID);
+            generator.writeNumber(transaction.getId());
+            generator.writeFieldName(STATUS);
+            if (transaction.getStatus() == null) {
+                generator.writeNull();
+            } else {
+                generator.writeString(transaction.getStatus().name());
+            }
+            generator.writeFieldName(FAILURE_REASON);
+            generator.writeString(transaction.getFailureReason());
+            generator.writeEndObject();
+        }
+    }
+
+    static class AccountResponseDtoSerializer extends JsonSerializer<AccountResponseDto> {
+
+        @Override
+        public void serialize(AccountResponseDto account, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeStartObject(account, 4);
+            generator.writeFieldName(ID);
+            generator.writeNumber(account.getId());
+            generator.writeFieldName(BALANCE);
+            DecimalCodec.write(account.getBalance(), generator);
+            generator.writeFieldName(CURRENCY);
+            CurrencyCodec.write(account.getCurrency(), generator);
+            generator.writeFieldName(CREATED_AT_TIMESTAMP);
+            generator.writeNumber(account.getCreatedAtTimestamp());
+            generator.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.tenx.payment.dto.reconciliation;
+
+import java.math.BigDecimal;
+
+/**
+ * Amount booked on an account, projected straight from the ledger queries of the reconciliation without
+ * loading the entities behind it.
+ *
+ * @param accountId account the amount is booked on
+ * @param amount in the currency of the account, null for transfers recorded before the per-leg amounts were
+ */
+public record LedgerEntry(Long accountId, BigDecimal amount) {
+}
@@ -0,0 +1,39 @@
+package com.tenx.payment.dto.reconciliation;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Outcome of a reconciliation of the ledger, see {@link com.tenx.payment.service.ReconciliationService}.
+ *
+ * @param startedAt epoch millis
+ * @param finishedAt epoch millis
+ * @param accounts number of accounts checked
+ * @param legs number of debits and credits replayed
+ * @param discrepancies accounts whose balance does not follow from their ledger, ordered by account
+ */
+public record ReconciliationReport(long startedAt, long finishedAt, long accounts, long legs,
+                                   List<Discrepancy> discrepancies) {
+
+    public enum Reason {
+        // Opening balance plus credits minus debits differs from the balance of the account
+        BALANCE_MISMATCH,
+        // No snapshot recording the opening balance, the account predates the balance snapshots
+        MISSING_OPENING_BALANCE,
+        // A transfer of the account predates the per-leg amounts and cannot be replayed
+        MISSING_LEG_AMOUNT
+    }
+
+    /**
+     * @param accountId account in question
+     * @param reason why the balance could not be confirmed
+     * @param expectedBalance following from the ledger, null if it cannot be told
+     * @param actualBalance of the account including its sub-balance buckets
+     */
+    public record Discrepancy(long accountId, Reason reason, BigDecimal expectedBalance, BigDecimal actualBalance) {
+    }
+
+    public boolean isBalanced() {
+        return discrepancies.isEmpty();
+    }
+}
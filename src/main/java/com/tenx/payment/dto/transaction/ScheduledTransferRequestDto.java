@@ -0,0 +1,47 @@
+package com.tenx.payment.dto.transaction;
+
+import com.tenx.payment.validator.AllowedCurrencies;
+import jakarta.validation.constraints.Digits;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+import static com.tenx.payment.util.ConstantUtils.DECIMAL_DIGITS_PRECISION;
+import static com.tenx.payment.util.ConstantUtils.DECIMAL_DIGITS_SCALE;
+
+/**
+ * Transfer to execute once at {@code executeAt}, or recurring on the {@code cron} schedule, e.g.
+ * {@code 0 0 9 * * FRI} for every Friday at nine in the {@code zone}.
+ */
+@Data
+@Builder
+public class ScheduledTransferRequestDto {
+
+    @NotNull
+    @Positive
+    @Digits(integer = DECIMAL_DIGITS_PRECISION, fraction = DECIMAL_DIGITS_SCALE)
+    private BigDecimal amount;
+
+    @NotNull
+    private Long sourceAccountId;
+
+    @NotNull
+    private Long targetAccountId;
+
+    @NotNull
+    @AllowedCurrencies
+    private Currency currency;
+
+    // Epoch millis of a one-off transfer
+    private Long executeAt;
+
+    // Spring cron expression of a recurring transfer
+    private String cron;
+
+    // Time zone of the cron expression, UTC if not given
+    private String zone;
+}
@@ -0,0 +1,33 @@
+package com.tenx.payment.dto.transaction;
+
+import com.tenx.payment.model.ScheduledTransfer;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+@Data
+public class ScheduledTransferResponseDto {
+
+    private final long id;
+
+    private final BigDecimal amount;
+
+    private final long sourceAccountId;
+
+    private final long targetAccountId;
+
+    private final Currency currency;
+
+    private final String cron;
+
+    private final String zone;
+
+    private final long nextExecutionTimestamp;
+
+    private final ScheduledTransfer.Status status;
+
+    private final int executions;
+
+    private final Long lastTransactionId;
+}
@@ -0,0 +1,50 @@
+package com.tenx.payment.dto.transaction;
+
+import com.tenx.payment.validator.AllowedCurrencies;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Digits;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.List;
+
+import static com.tenx.payment.util.ConstantUtils.DECIMAL_DIGITS_PRECISION;
+import static com.tenx.payment.util.ConstantUtils.DECIMAL_DIGITS_SCALE;
+
+/**
+ * Transfer debiting one or more accounts and crediting one or more accounts at once, e.g. a payroll split or a
+ * payout with its fee. The amounts of the legs are in the {@code currency} of the transfer, the debits must sum
+ * up to the credits.
+ */
+@Data
+@Builder
+public class SplitTransferRequestDto {
+
+    @NotEmpty
+    private List<@Valid @NotNull Leg> debits;
+
+    @NotEmpty
+    private List<@Valid @NotNull Leg> credits;
+
+    @NotNull
+    @AllowedCurrencies
+    private Currency currency;
+
+    @Data
+    @Builder
+    public static class Leg {
+
+        @NotNull
+        private Long accountId;
+
+        @NotNull
+        @Positive
+        @Digits(integer = DECIMAL_DIGITS_PRECISION, fraction = DECIMAL_DIGITS_SCALE)
+        private BigDecimal amount;
+    }
+}
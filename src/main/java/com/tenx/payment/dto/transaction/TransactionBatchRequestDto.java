@@ -0,0 +1,24 @@
+package com.tenx.payment.dto.transaction;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Transfers settled together, netted per account, e.g. the payouts and fees of a marketplace settlement run.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionBatchRequestDto {
+
+    @NotEmpty
+    @Size(max = 10_000)
+    private List<@Valid @NotNull TransactionRequestDto> transfers;
+}
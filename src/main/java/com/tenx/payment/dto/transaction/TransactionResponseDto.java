@@ -1,5 +1,7 @@
 package com.tenx.payment.dto.transaction;
 
+import com.tenx.payment.model.Transaction;
+
 import java.math.BigDecimal;
 import java.util.Currency;
 
@@ -7,12 +9,27 @@ public class TransactionResponseDto extends TransactionRequestDto {
 
     private final long id;
 
-    public TransactionResponseDto(BigDecimal amount, Long sourceAccountId, Long targetAccountId, Currency currency, long id) {
+    private final Transaction.Status status;
+
+    private final String failureReason;
+
+    public TransactionResponseDto(BigDecimal amount, Long sourceAccountId, Long targetAccountId, Currency currency, long id,
+                                  Transaction.Status status, String failureReason) {
         super(amount, sourceAccountId, targetAccountId, currency);
         this.id = id;
+        this.status = status;
+        this.failureReason = failureReason;
     }
 
     public long getId() {
         return id;
     }
+
+    public Transaction.Status getStatus() {
+        return status;
+    }
+
+    public String getFailureReason() {
+        return failureReason;
+    }
 }
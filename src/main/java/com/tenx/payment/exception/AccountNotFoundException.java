@@ -13,4 +13,8 @@ public class AccountNotFoundException extends ApiException {
     public AccountNotFoundException(String message, int httpCode) {
         super(message, httpCode, LocalDateTime.now());
     }
+
+    AccountNotFoundException(Rejection rejection) {
+        super(rejection);
+    }
 }
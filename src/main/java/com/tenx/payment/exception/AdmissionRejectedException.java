@@ -0,0 +1,8 @@
+package com.tenx.payment.exception;
+
+public class AdmissionRejectedException extends ApiException {
+
+    AdmissionRejectedException(Rejection rejection) {
+        super(rejection);
+    }
+}
@@ -4,16 +4,31 @@ import lombok.Getter;
 
 import java.time.LocalDateTime;
 
+/**
+ * Failure reported to the client with its HTTP status. These are expected outcomes rather than bugs,
+ * so no stack trace is captured.
+ */
 @Getter
 public class ApiException extends RuntimeException {
 
     private final int httpCode;
 
+    // Null for the shared exceptions of a rejection, which are not created when thrown
     private final LocalDateTime time;
 
+    private final Rejection rejection;
+
     public ApiException(String message, int httpCode, LocalDateTime time) {
-        super(message);
+        super(message, null, false, false);
         this.httpCode = httpCode;
         this.time = time;
+        this.rejection = null;
+    }
+
+    protected ApiException(Rejection rejection) {
+        super(rejection.getMessage(), null, false, false);
+        this.httpCode = rejection.getHttpCode();
+        this.time = null;
+        this.rejection = rejection;
     }
 }
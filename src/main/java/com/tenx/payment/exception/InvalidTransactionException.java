@@ -14,4 +14,8 @@ public class InvalidTransactionException extends ApiException {
     public InvalidTransactionException(String message, int httpCode) {
         super(message, httpCode, LocalDateTime.now());
     }
+
+    InvalidTransactionException(Rejection rejection) {
+        super(rejection);
+    }
 }
@@ -0,0 +1,57 @@
+package com.tenx.payment.exception;
+
+import org.springframework.http.HttpStatus;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Expected business rejections with a fixed message. Each rejection holds a single preallocated
+ * exception and its error messages, so rejecting a request allocates nothing.
+ */
+public enum Rejection {
+
+    SAME_ACCOUNT(HttpStatus.BAD_REQUEST, "Source and target account must be different", InvalidTransactionException::new),
+    INSUFFICIENT_AMOUNT(HttpStatus.BAD_REQUEST, "Insufficient amount", InvalidTransactionException::new),
+    TRANSFER_ABORTED(HttpStatus.BAD_REQUEST, "Transfer aborted", InvalidTransactionException::new),
+    ACCOUNT_NOT_FOUND(HttpStatus.NOT_FOUND, "Account not found with provided id", AccountNotFoundException::new),
+    BALANCE_NOT_AVAILABLE(HttpStatus.NOT_FOUND, "No balance of the account at the requested time", AccountNotFoundException::new),
+    TRANSACTION_NOT_FOUND(HttpStatus.NOT_FOUND, "Transaction not found with provided id", TransactionNotFoundException::new),
+    SCHEDULED_TRANSFER_NOT_FOUND(HttpStatus.NOT_FOUND, "Scheduled transfer not found with provided id", TransactionNotFoundException::new),
+    TRANSFER_QUEUE_FULL(HttpStatus.SERVICE_UNAVAILABLE, "Too many pending transfers, retry later", TransferQueueFullException::new),
+    RATE_LIMITED(HttpStatus.TOO_MANY_REQUESTS, "Too many requests, retry later", AdmissionRejectedException::new),
+    OVERLOADED(HttpStatus.SERVICE_UNAVAILABLE, "Service overloaded, retry later", AdmissionRejectedException::new),
+    TRANSFER_VELOCITY_EXCEEDED(HttpStatus.TOO_MANY_REQUESTS, "Too many transfers from the account, retry later", RiskRejectedException::new),
+    TRANSFER_RISK_REJECTED(HttpStatus.FORBIDDEN, "Transfer rejected by risk screening", RiskRejectedException::new);
+
+    private final int httpCode;
+    private final String message;
+    private final List<String> messages;
+    private final ApiException exception;
+
+    Rejection(HttpStatus httpStatus, String message, Function<Rejection, ApiException> exceptionFactory) {
+        this.httpCode = httpStatus.value();
+        this.message = message;
+        this.messages = List.of(message);
+        this.exception = exceptionFactory.apply(this);
+    }
+
+    public int getHttpCode() {
+        return httpCode;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public List<String> getMessages() {
+        return messages;
+    }
+
+    /**
+     * @return the shared, stackless exception of this rejection
+     */
+    public ApiException exception() {
+        return exception;
+    }
+}
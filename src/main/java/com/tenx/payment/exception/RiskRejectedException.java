@@ -0,0 +1,8 @@
+package com.tenx.payment.exception;
+
+public class RiskRejectedException extends ApiException {
+
+    RiskRejectedException(Rejection rejection) {
+        super(rejection);
+    }
+}
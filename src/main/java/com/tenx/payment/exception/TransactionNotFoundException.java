@@ -0,0 +1,16 @@
+package com.tenx.payment.exception;
+
+import org.springframework.http.HttpStatus;
+
+import java.time.LocalDateTime;
+
+public class TransactionNotFoundException extends ApiException {
+
+    public TransactionNotFoundException(String message) {
+        super(message, HttpStatus.NOT_FOUND.value(), LocalDateTime.now());
+    }
+
+    TransactionNotFoundException(Rejection rejection) {
+        super(rejection);
+    }
+}
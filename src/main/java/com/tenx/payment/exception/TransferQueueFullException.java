@@ -0,0 +1,16 @@
+package com.tenx.payment.exception;
+
+import org.springframework.http.HttpStatus;
+
+import java.time.LocalDateTime;
+
+public class TransferQueueFullException extends ApiException {
+
+    public TransferQueueFullException(String message) {
+        super(message, HttpStatus.SERVICE_UNAVAILABLE.value(), LocalDateTime.now());
+    }
+
+    TransferQueueFullException(Rejection rejection) {
+        super(rejection);
+    }
+}
@@ -0,0 +1,48 @@
+package com.tenx.payment.job;
+
+import com.tenx.payment.service.AccountService;
+import com.tenx.payment.service.BalanceBucketService;
+import com.tenx.payment.shard.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Periodically folds the sub-balance buckets of high-volume accounts back into their balance,
+ * so that debits rarely have to sweep the buckets themselves.
+ */
+@Slf4j
+@Component
+public class BalanceBucketCompactor {
+
+    private final AccountService accountService;
+    private final BalanceBucketService balanceBucketService;
+    private final ShardRouter shardRouter;
+
+    @Autowired
+    public BalanceBucketCompactor(AccountService accountService, BalanceBucketService balanceBucketService,
+                                  ShardRouter shardRouter) {
+        this.accountService = accountService;
+        this.balanceBucketService = balanceBucketService;
+        this.shardRouter = shardRouter;
+    }
+
+    @Scheduled(fixedDelayString = "${thanks-pay.account.balance-bucket-compaction-interval-ms:60000}")
+    public void compact() {
+        List<Long> accountIds = new ArrayList<>();
+        shardRouter.forEachShard(shardIndex -> accountIds.addAll(balanceBucketService.findAccountIdsToCompact()));
+        for (Long accountId : accountIds) {
+            try {
+                accountService.compactBalanceBuckets(accountId);
+            } catch (OptimisticLockingFailureException e) {
+                // The account was debited meanwhile, its buckets are picked up on the next run
+                log.debug("Skipped compaction of account {} due to concurrent update", accountId);
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.tenx.payment.job;
+
+import com.tenx.payment.service.BalanceSnapshotService;
+import com.tenx.payment.shard.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Snapshots the balances of the previous days once they are over, see {@link BalanceSnapshotService}.
+ * Runs shortly after midnight UTC, leaving time for the transfers of the day to commit. Days missed while
+ * the application was down are caught up within the lookback.
+ *
+ * A day with transactions still pending on any shard is deferred along with the days after it, and taken up
+ * again by the next runs from that day on, also once it is beyond the lookback. Pending transactions are retried
+ * until applied or failed, see {@link com.tenx.payment.service.AsyncTransferService}.
+ */
+@Slf4j
+@Component
+public class BalanceSnapshotJob {
+
+    private final BalanceSnapshotService balanceSnapshotService;
+    private final ShardRouter shardRouter;
+    private final int lookbackDays;
+
+    // First day deferred by a previous run, Long.MAX_VALUE if none
+    private volatile long deferredDay = Long.MAX_VALUE;
+
+    @Autowired
+    public BalanceSnapshotJob(BalanceSnapshotService balanceSnapshotService, ShardRouter shardRouter,
+                              @Value("${thanks-pay.balance-snapshot.lookback-days:7}") int lookbackDays) {
+        this.balanceSnapshotService = balanceSnapshotService;
+        this.shardRouter = shardRouter;
+        this.lookbackDays = lookbackDays;
+    }
+
+    @Scheduled(cron = "${thanks-pay.balance-snapshot.cron:0 15 0 * * *}", zone = "UTC")
+    public void snapshot() {
+        long yesterday = BalanceSnapshotService.epochDay(System.currentTimeMillis()) - 1;
+        long oldestPendingDay = findOldestPendingDay();
+        // Oldest first, each snapshot builds on the previous one
+        for (long epochDay = Math.min(yesterday - lookbackDays + 1, Math.min(deferredDay, oldestPendingDay));
+             epochDay <= yesterday; epochDay++) {
+            if (epochDay >= oldestPendingDay) {
+                log.info("Balance snapshots deferred from day {}, pending transactions left", epochDay);
+                deferredDay = epochDay;
+                return;
+            }
+            long day = epochDay;
+            shardRouter.forEachShard(shardIndex -> {
+                int snapshots = balanceSnapshotService.snapshotDay(day);
+                log.debug("Took {} balance snapshots of day {} on shard {}", snapshots, day, shardIndex);
+            });
+        }
+        deferredDay = Long.MAX_VALUE;
+    }
+
+    // The credit of a cross-shard transfer lands on another shard than its pending transaction
+    private long findOldestPendingDay() {
+        long[] oldest = {Long.MAX_VALUE};
+        shardRouter.forEachShard(shardIndex -> balanceSnapshotService.findOldestPendingDay()
+                .ifPresent(day -> oldest[0] = Math.min(oldest[0], day)));
+        return oldest[0];
+    }
+}
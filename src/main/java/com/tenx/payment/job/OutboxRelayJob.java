@@ -0,0 +1,50 @@
+package com.tenx.payment.job;
+
+import com.tenx.payment.config.OutboxProperties;
+import com.tenx.payment.outbox.OutboxSink;
+import com.tenx.payment.service.OutboxService;
+import com.tenx.payment.shard.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Drains the outbox of every shard into the configured {@link OutboxSink}.
+ */
+@Slf4j
+@Component
+public class OutboxRelayJob {
+
+    private final ShardRouter shardRouter;
+    private final OutboxService outboxService;
+    private final OutboxSink outboxSink;
+    private final OutboxProperties outboxProperties;
+
+    @Autowired
+    public OutboxRelayJob(ShardRouter shardRouter, OutboxService outboxService, OutboxSink outboxSink,
+                          OutboxProperties outboxProperties) {
+        this.shardRouter = shardRouter;
+        this.outboxService = outboxService;
+        this.outboxSink = outboxSink;
+        this.outboxProperties = outboxProperties;
+    }
+
+    @Scheduled(fixedDelayString = "${thanks-pay.outbox.relay-interval-ms:1000}")
+    public void relay() {
+        shardRouter.forEachShard(this::drainShard);
+    }
+
+    private void drainShard(int shardIndex) {
+        int batchSize = outboxProperties.getBatchSize();
+        try {
+            // A full batch means more events are probably waiting
+            while (outboxService.relay(outboxSink, batchSize) == batchSize) {
+                log.debug("Relayed a full batch of outbox events of shard {}", shardIndex);
+            }
+        } catch (Exception e) {
+            // Stop at the first failure, later events must not overtake the failed ones
+            log.warn("Failed to relay the outbox events of shard {}, retrying on the next run", shardIndex, e);
+        }
+    }
+}
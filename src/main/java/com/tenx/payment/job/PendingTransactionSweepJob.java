@@ -0,0 +1,36 @@
+package com.tenx.payment.job;
+
+import com.tenx.payment.service.AsyncTransferService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Queues the transactions left pending for long, e.g. by a full queue, a crash or another node gone away,
+ * until they are applied or marked as failed by the {@link AsyncTransferService}.
+ */
+@Slf4j
+@Component
+public class PendingTransactionSweepJob {
+
+    private final AsyncTransferService asyncTransferService;
+    private final long staleAfterMillis;
+
+    @Autowired
+    public PendingTransactionSweepJob(AsyncTransferService asyncTransferService,
+                                      @Value("${thanks-pay.transaction.async.stale-after-ms:60000}") long staleAfterMillis) {
+        this.asyncTransferService = asyncTransferService;
+        this.staleAfterMillis = staleAfterMillis;
+    }
+
+    @Scheduled(fixedDelayString = "${thanks-pay.transaction.async.sweep-interval-ms:60000}")
+    public void sweep() {
+        try {
+            asyncTransferService.resumePendingTransactions(System.currentTimeMillis() - staleAfterMillis);
+        } catch (RuntimeException e) {
+            log.warn("Failed to sweep the pending transactions, retrying on the next run", e);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.tenx.payment.job;
+
+import com.tenx.payment.config.ShardingProperties;
+import com.tenx.payment.model.PendingTransfer;
+import com.tenx.payment.service.CrossShardTransferService;
+import com.tenx.payment.shard.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resolves cross-shard transfers that got stuck between their debit and their credit, e.g. due to a crash.
+ */
+@Slf4j
+@Component
+public class PendingTransferRecoveryJob {
+
+    private final ShardRouter shardRouter;
+    private final CrossShardTransferService crossShardTransferService;
+    private final ShardingProperties shardingProperties;
+
+    @Autowired
+    public PendingTransferRecoveryJob(ShardRouter shardRouter, CrossShardTransferService crossShardTransferService,
+                                      ShardingProperties shardingProperties) {
+        this.shardRouter = shardRouter;
+        this.crossShardTransferService = crossShardTransferService;
+        this.shardingProperties = shardingProperties;
+    }
+
+    @Scheduled(fixedDelayString = "${thanks-pay.sharding.in-doubt-transfer-check-interval-ms:60000}")
+    public void recover() {
+        if (!shardRouter.isSharded()) {
+            return;
+        }
+
+        long createdBefore = System.currentTimeMillis() - shardingProperties.getInDoubtTransferTimeout().toMillis();
+        List<PendingTransfer> inDoubtTransfers = new ArrayList<>();
+        shardRouter.forEachShard(shardIndex -> inDoubtTransfers.addAll(crossShardTransferService.findInDoubtTransfers(createdBefore)));
+
+        for (PendingTransfer pendingTransfer : inDoubtTransfers) {
+            try {
+                crossShardTransferService.resolveInDoubt(pendingTransfer);
+            } catch (RuntimeException e) {
+                log.warn("Failed to resolve pending transfer {}, retrying on the next run", pendingTransfer.getId(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.tenx.payment.job;
+
+import com.tenx.payment.dto.reconciliation.ReconciliationReport;
+import com.tenx.payment.service.ReconciliationService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+/**
+ * Reconciles the ledger nightly, see {@link ReconciliationService}, and writes the discrepancies to a CSV
+ * report per day for the auditors. Runs after the balance snapshots of the previous day.
+ */
+@Slf4j
+@Component
+public class ReconciliationJob {
+
+    private final ReconciliationService reconciliationService;
+    private final Path reportDirectory;
+
+    @Autowired
+    public ReconciliationJob(ReconciliationService reconciliationService,
+                             @Value("${thanks-pay.reconciliation.report-dir:reconciliation}") Path reportDirectory) {
+        this.reconciliationService = reconciliationService;
+        this.reportDirectory = reportDirectory;
+    }
+
+    @Scheduled(cron = "${thanks-pay.reconciliation.cron:0 45 1 * * *}", zone = "UTC")
+    public void reconcile() {
+        ReconciliationReport report = reconciliationService.reconcile();
+        Path file = reportDirectory.resolve("reconciliation-" +
+                LocalDate.ofInstant(Instant.ofEpochMilli(report.startedAt()), ZoneOffset.UTC) + ".csv");
+        try {
+            write(report, file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        if (report.isBalanced()) {
+            log.info("Reconciled {} accounts and {} ledger legs in {} ms", report.accounts(), report.legs(),
+                    report.finishedAt() - report.startedAt());
+        } else {
+            log.warn("Reconciled {} accounts and {} ledger legs in {} ms, {} discrepancies reported to {}",
+                    report.accounts(), report.legs(), report.finishedAt() - report.startedAt(),
+                    report.discrepancies().size(), file);
+        }
+    }
+
+    private void write(ReconciliationReport report, Path file) throws IOException {
+        Files.createDirectories(reportDirectory);
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("account_id,reason,expected_balance,actual_balance\n");
+            for (ReconciliationReport.Discrepancy discrepancy : report.discrepancies()) {
+                writer.write(discrepancy.accountId() + "," + discrepancy.reason() + "," +
+                        (discrepancy.expectedBalance() != null ? discrepancy.expectedBalance().toPlainString() : "") + "," +
+                        discrepancy.actualBalance().toPlainString() + "\n");
+            }
+        }
+    }
+}
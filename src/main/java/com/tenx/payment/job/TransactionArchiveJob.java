@@ -0,0 +1,56 @@
+package com.tenx.payment.job;
+
+import com.tenx.payment.service.TransactionArchiveService;
+import com.tenx.payment.shard.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.YearMonth;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves the transactions older than the horizon out of the hot table into the
+ * {@link com.tenx.payment.archive.TransactionArchive} every night, see {@link TransactionArchiveService}.
+ * Disabled by default. The horizon must reach further back than the lookback of the {@link BalanceSnapshotJob},
+ * the days it snapshots are read from the hot table.
+ */
+@Slf4j
+@Component
+public class TransactionArchiveJob {
+
+    private final TransactionArchiveService transactionArchiveService;
+    private final ShardRouter shardRouter;
+    private final boolean enabled;
+    private final int horizonDays;
+
+    @Autowired
+    public TransactionArchiveJob(TransactionArchiveService transactionArchiveService, ShardRouter shardRouter,
+                                 @Value("${thanks-pay.archive.enabled:false}") boolean enabled,
+                                 @Value("${thanks-pay.archive.horizon-days:90}") int horizonDays,
+                                 @Value("${thanks-pay.balance-snapshot.lookback-days:7}") int lookbackDays) {
+        if (horizonDays <= lookbackDays) {
+            throw new IllegalStateException("Archive horizon of " + horizonDays
+                    + " days must exceed the balance snapshot lookback of " + lookbackDays + " days");
+        }
+        this.transactionArchiveService = transactionArchiveService;
+        this.shardRouter = shardRouter;
+        this.enabled = enabled;
+        this.horizonDays = horizonDays;
+    }
+
+    @Scheduled(cron = "${thanks-pay.archive.cron:0 45 1 * * *}", zone = "UTC")
+    public void archive() {
+        if (!enabled) {
+            return;
+        }
+        long before = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(horizonDays);
+        shardRouter.forEachShard(shardIndex -> {
+            List<YearMonth> months = transactionArchiveService.archive(shardIndex, before);
+            log.debug("Archived the transactions of {} on shard {}", months, shardIndex);
+        });
+    }
+}
@@ -1,12 +1,17 @@
 package com.tenx.payment.model;
 
+import com.tenx.payment.shard.ShardedSequenceGenerator;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
 import jakarta.persistence.Version;
 import lombok.Data;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 import java.math.BigDecimal;
 import java.util.Currency;
@@ -16,10 +21,15 @@ import static com.tenx.payment.util.ConstantUtils.DECIMAL_DIGITS_SCALE;
 
 @Data
 @Entity
+// Accounts created by other nodes are picked up by their creation time, see AccountIdIndex
+@Table(indexes = @Index(name = "ix_account_create_at_timestamp", columnList = "createAtTimestamp"))
 public class Account {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(generator = "account_seq")
+    @GenericGenerator(name = "account_seq", type = ShardedSequenceGenerator.class, parameters = {
+            @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "account_seq"),
+            @Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = "50")})
     private Long id;
 
     @Version
@@ -30,6 +40,9 @@ public class Account {
 
     private Currency currency;
 
+    // Number of sub-balance buckets receiving credits, 0 for regular accounts
+    private int balanceBuckets;
+
     private final long createAtTimestamp = System.currentTimeMillis();
 
     public Account() {
@@ -40,4 +53,8 @@ public class Account {
         this.balance = balance;
         this.currency = currency;
     }
+
+    public boolean hasBalanceBuckets() {
+        return balanceBuckets > 0;
+    }
 }
@@ -0,0 +1,53 @@
+package com.tenx.payment.model;
+
+import com.tenx.payment.shard.ShardedSequenceGenerator;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.Data;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+import java.math.BigDecimal;
+
+import static com.tenx.payment.util.ConstantUtils.DECIMAL_DIGITS_PRECISION;
+import static com.tenx.payment.util.ConstantUtils.DECIMAL_DIGITS_SCALE;
+
+@Data
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = {"account_id", "bucketIndex"}))
+public class AccountBalanceBucket {
+
+    @Id
+    @GeneratedValue(generator = "account_balance_bucket_seq")
+    @GenericGenerator(name = "account_balance_bucket_seq", type = ShardedSequenceGenerator.class, parameters = {
+            @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "account_balance_bucket_seq"),
+            @Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = "50")})
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "account_id", nullable = false)
+    private Account account;
+
+    private int bucketIndex;
+
+    @Column(precision = DECIMAL_DIGITS_PRECISION, scale = DECIMAL_DIGITS_SCALE)
+    private BigDecimal balance;
+
+    public AccountBalanceBucket() {
+
+    }
+
+    public AccountBalanceBucket(Account account, int bucketIndex) {
+        this.account = account;
+        this.bucketIndex = bucketIndex;
+        this.balance = BigDecimal.ZERO;
+    }
+}
@@ -0,0 +1,64 @@
+package com.tenx.payment.model;
+
+import com.tenx.payment.shard.ShardedSequenceGenerator;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.Data;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+import java.math.BigDecimal;
+
+import static com.tenx.payment.util.ConstantUtils.DECIMAL_DIGITS_PRECISION;
+import static com.tenx.payment.util.ConstantUtils.DECIMAL_DIGITS_SCALE;
+
+/**
+ * Balance of an account at the end of a day (UTC) together with the totals of the transfers of that day,
+ * in the currency of the account. Kept on the shard of the account, only for the days the account took
+ * part in a transfer. The opening balance of an account closes the day before its creation.
+ */
+@Data
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = {"accountId", "epochDay"}))
+public class BalanceSnapshot {
+
+    @Id
+    @GeneratedValue(generator = "balance_snapshot_seq")
+    @GenericGenerator(name = "balance_snapshot_seq", type = ShardedSequenceGenerator.class, parameters = {
+            @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "balance_snapshot_seq"),
+            @Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = "50")})
+    private Long id;
+
+    private long accountId;
+
+    // Days since 1970-01-01 in UTC
+    private long epochDay;
+
+    @Column(precision = DECIMAL_DIGITS_PRECISION, scale = DECIMAL_DIGITS_SCALE)
+    private BigDecimal credits;
+
+    @Column(precision = DECIMAL_DIGITS_PRECISION, scale = DECIMAL_DIGITS_SCALE)
+    private BigDecimal debits;
+
+    @Column(precision = DECIMAL_DIGITS_PRECISION, scale = DECIMAL_DIGITS_SCALE)
+    private BigDecimal closingBalance;
+
+    private final long createAtTimestamp = System.currentTimeMillis();
+
+    public BalanceSnapshot() {
+
+    }
+
+    public BalanceSnapshot(long accountId, long epochDay, BigDecimal credits, BigDecimal debits, BigDecimal closingBalance) {
+        this.accountId = accountId;
+        this.epochDay = epochDay;
+        this.credits = credits;
+        this.debits = debits;
+        this.closingBalance = closingBalance;
+    }
+}
@@ -0,0 +1,48 @@
+package com.tenx.payment.model;
+
+import com.tenx.payment.shard.ShardedSequenceGenerator;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.Id;
+import lombok.Data;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+/**
+ * Event waiting to be relayed to the downstream consumers, written in the same database transaction as
+ * the change it describes.
+ */
+@Data
+@Entity
+public class OutboxEvent {
+
+    // Not pooled, identifiers must follow the commit order of the events of an account
+    @Id
+    @GeneratedValue(generator = "outbox_event_seq")
+    @GenericGenerator(name = "outbox_event_seq", type = ShardedSequenceGenerator.class, parameters = {
+            @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "outbox_event_seq"),
+            @Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = "1")})
+    private Long id;
+
+    // Identifier of the account the event is ordered by
+    private long aggregateId;
+
+    private String type;
+
+    @Column(length = 4000)
+    private String payload;
+
+    private final long createAtTimestamp = System.currentTimeMillis();
+
+    public OutboxEvent() {
+
+    }
+
+    public OutboxEvent(long aggregateId, String type, String payload) {
+        this.aggregateId = aggregateId;
+        this.type = type;
+        this.payload = payload;
+    }
+}
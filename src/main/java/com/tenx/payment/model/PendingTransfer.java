@@ -0,0 +1,81 @@
+package com.tenx.payment.model;
+
+import com.tenx.payment.shard.ShardedSequenceGenerator;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.Id;
+import jakarta.persistence.Version;
+import lombok.Data;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+import static com.tenx.payment.util.ConstantUtils.DECIMAL_DIGITS_PRECISION;
+import static com.tenx.payment.util.ConstantUtils.DECIMAL_DIGITS_SCALE;
+
+/**
+ * Saga record of a transfer between accounts on different shards, kept on the shard of the source account.
+ */
+@Data
+@Entity
+public class PendingTransfer {
+
+    public enum Status {
+        // Source account debited, target account credit not confirmed yet
+        DEBITED,
+        // Target account credited and transaction recorded
+        COMPLETED,
+        // Target account could not be credited and the debit was reverted
+        COMPENSATED
+    }
+
+    @Id
+    @GeneratedValue(generator = "pending_transfer_seq")
+    @GenericGenerator(name = "pending_transfer_seq", type = ShardedSequenceGenerator.class, parameters = {
+            @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "pending_transfer_seq"),
+            @Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = "50")})
+    private Long id;
+
+    @Version
+    private long version;
+
+    private long sourceAccountId;
+
+    private long targetAccountId;
+
+    @Column(precision = DECIMAL_DIGITS_PRECISION, scale = DECIMAL_DIGITS_SCALE)
+    private BigDecimal amount;
+
+    private Currency currency;
+
+    // Amount debited from the source account in its currency
+    @Column(precision = DECIMAL_DIGITS_PRECISION, scale = DECIMAL_DIGITS_SCALE)
+    private BigDecimal sourceAmount;
+
+    @Enumerated(EnumType.STRING)
+    private Status status;
+
+    private Long transactionId;
+
+    private final long createAtTimestamp = System.currentTimeMillis();
+
+    public PendingTransfer() {
+
+    }
+
+    public PendingTransfer(long sourceAccountId, long targetAccountId, BigDecimal amount, Currency currency,
+                           BigDecimal sourceAmount) {
+        this.sourceAccountId = sourceAccountId;
+        this.targetAccountId = targetAccountId;
+        this.amount = amount;
+        this.currency = currency;
+        this.sourceAmount = sourceAmount;
+        this.status = Status.DEBITED;
+    }
+}
@@ -0,0 +1,55 @@
+package com.tenx.payment.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Version;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+import static com.tenx.payment.util.ConstantUtils.DECIMAL_DIGITS_PRECISION;
+import static com.tenx.payment.util.ConstantUtils.DECIMAL_DIGITS_SCALE;
+
+/**
+ * Outcome of the credit leg of a {@link PendingTransfer}, kept on the shard of the target account under the
+ * identifier of the pending transfer. Whichever of the credit and the recovery inserts it first decides
+ * whether the transfer completes or gets compensated.
+ */
+@Data
+@Entity
+public class PendingTransferCredit {
+
+    public enum Status {
+        CREDITED, ABORTED
+    }
+
+    @Id
+    private Long pendingTransferId;
+
+    // Null until persisted, tells the repository to insert rather than merge the assigned identifier
+    @Version
+    private Long version;
+
+    @Enumerated(EnumType.STRING)
+    private Status status;
+
+    // Target account and the amount credited in its currency, for the point-in-time balances
+    private Long accountId;
+
+    @Column(precision = DECIMAL_DIGITS_PRECISION, scale = DECIMAL_DIGITS_SCALE)
+    private BigDecimal amount;
+
+    private final long createAtTimestamp = System.currentTimeMillis();
+
+    public PendingTransferCredit() {
+
+    }
+
+    public PendingTransferCredit(long pendingTransferId, Status status) {
+        this.pendingTransferId = pendingTransferId;
+        this.status = status;
+    }
+}
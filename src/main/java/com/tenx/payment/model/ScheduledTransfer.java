@@ -0,0 +1,95 @@
+package com.tenx.payment.model;
+
+import com.tenx.payment.shard.ShardedSequenceGenerator;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.Version;
+import lombok.Data;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+import static com.tenx.payment.util.ConstantUtils.DECIMAL_DIGITS_PRECISION;
+import static com.tenx.payment.util.ConstantUtils.DECIMAL_DIGITS_SCALE;
+
+/**
+ * Transfer to be executed at a future time, once or recurring on a cron schedule. Kept on the shard of the
+ * source account, like the transactions it creates. Due transfers are found through the minute they are due
+ * in, see {@link com.tenx.payment.scheduler.ScheduledTransferEngine}.
+ */
+@Data
+@Entity
+@Table(indexes = @Index(name = "ix_scheduled_transfer_due", columnList = "status, dueBucket"))
+public class ScheduledTransfer {
+
+    public enum Status {
+        SCHEDULED,
+        // Executed for the last time
+        COMPLETED,
+        CANCELLED
+    }
+
+    @Id
+    @GeneratedValue(generator = "scheduled_transfer_seq")
+    @GenericGenerator(name = "scheduled_transfer_seq", type = ShardedSequenceGenerator.class, parameters = {
+            @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "scheduled_transfer_seq"),
+            @Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = "50")})
+    private Long id;
+
+    @Version
+    private long version;
+
+    private long sourceAccountId;
+
+    private long targetAccountId;
+
+    @Column(precision = DECIMAL_DIGITS_PRECISION, scale = DECIMAL_DIGITS_SCALE)
+    private BigDecimal amount;
+
+    private Currency currency;
+
+    // Spring cron expression of a recurring transfer in the zone, null for a one-off transfer
+    private String cron;
+
+    private String zone;
+
+    // Epoch millis of the next execution
+    private long nextExecutionTimestamp;
+
+    // Minutes since the epoch of the next execution
+    private long dueBucket;
+
+    @Enumerated(EnumType.STRING)
+    private Status status;
+
+    private int executions;
+
+    // Pending transaction created by the last execution
+    private Long lastTransactionId;
+
+    private final long createAtTimestamp = System.currentTimeMillis();
+
+    public ScheduledTransfer() {
+
+    }
+
+    public ScheduledTransfer(long sourceAccountId, long targetAccountId, BigDecimal amount, Currency currency,
+                             String cron, String zone) {
+        this.sourceAccountId = sourceAccountId;
+        this.targetAccountId = targetAccountId;
+        this.amount = amount;
+        this.currency = currency;
+        this.cron = cron;
+        this.zone = zone;
+        this.status = Status.SCHEDULED;
+    }
+}
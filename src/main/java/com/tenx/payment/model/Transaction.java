@@ -1,13 +1,22 @@
 package com.tenx.payment.model;
 
+import com.tenx.payment.shard.ShardedSequenceGenerator;
 import jakarta.persistence.Column;
+import jakarta.persistence.ConstraintMode;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.ForeignKey;
 import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Version;
 import lombok.Data;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 import java.math.BigDecimal;
 import java.util.Currency;
@@ -19,16 +28,30 @@ import static com.tenx.payment.util.ConstantUtils.DECIMAL_DIGITS_PRECISION;
 @Entity
 public class Transaction {
 
+    public enum Status {
+        // Accepted, waiting for a worker to apply it
+        PENDING,
+        COMPLETED,
+        FAILED
+    }
+
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(generator = "transaction_seq")
+    @GenericGenerator(name = "transaction_seq", type = ShardedSequenceGenerator.class, parameters = {
+            @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "transaction_seq"),
+            @Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = "50")})
     private Long id;
 
-    @ManyToOne
-    @JoinColumn(name = "source_account_id", nullable = false)
+    @Version
+    private long version;
+
+    // No foreign key constraints, the accounts of a cross-shard transfer live in different databases
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "source_account_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private Account sourceAccount;
 
-    @ManyToOne
-    @JoinColumn(name = "target_account_id", nullable = false)
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "target_account_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private Account targetAccount;
 
     @Column(precision = DECIMAL_DIGITS_PRECISION, scale = DECIMAL_DIGITS_SCALE)
@@ -36,14 +59,39 @@ public class Transaction {
 
     private Currency currency;
 
-    public Transaction() {
+    // Debited from the source account in its currency, set once completed
+    @Column(precision = DECIMAL_DIGITS_PRECISION, scale = DECIMAL_DIGITS_SCALE)
+    private BigDecimal sourceAmount;
+
+    // Credited to the target account in its currency, set once completed on the same shard only.
+    // The credit of a cross-shard transfer is recorded by the PendingTransferCredit on the target shard.
+    @Column(precision = DECIMAL_DIGITS_PRECISION, scale = DECIMAL_DIGITS_SCALE)
+    private BigDecimal targetAmount;
 
+    @Enumerated(EnumType.STRING)
+    private Status status;
+
+    private String failureReason;
+
+    private final long createAtTimestamp;
+
+    public Transaction() {
+        this.createAtTimestamp = System.currentTimeMillis();
     }
 
     public Transaction(Account sourceAccount, Account targetAccount, BigDecimal amount, Currency currency) {
+        this(sourceAccount, targetAccount, amount, currency, System.currentTimeMillis());
+    }
+
+    /**
+     * Transaction created at the given time, e.g. restored from the archive.
+     */
+    public Transaction(Account sourceAccount, Account targetAccount, BigDecimal amount, Currency currency, long createAtTimestamp) {
+        this.createAtTimestamp = createAtTimestamp;
         this.sourceAccount = sourceAccount;
         this.targetAccount = targetAccount;
         this.amount = amount;
         this.currency = currency;
+        this.status = Status.COMPLETED;
     }
 }
@@ -0,0 +1,32 @@
+package com.tenx.payment.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tenx.payment.model.OutboxEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Publishes the events as application events, consumed by {@link EventListener} methods of this application.
+ */
+public class InProcessOutboxSink implements OutboxSink {
+
+    private final ApplicationEventPublisher applicationEventPublisher;
+    private final ObjectMapper objectMapper;
+
+    public InProcessOutboxSink(ApplicationEventPublisher applicationEventPublisher, ObjectMapper objectMapper) {
+        this.applicationEventPublisher = applicationEventPublisher;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void publish(List<OutboxEvent> events) throws IOException {
+        for (OutboxEvent event : events) {
+            if (TransferCompletedEvent.TYPE.equals(event.getType())) {
+                applicationEventPublisher.publishEvent(objectMapper.readValue(event.getPayload(), TransferCompletedEvent.class));
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.tenx.payment.outbox;
+
+import com.tenx.payment.model.OutboxEvent;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Sends the events to a Kafka compatible broker, keyed by account so that the events of an account land
+ * on the same partition and keep their order.
+ */
+public class KafkaOutboxSink implements OutboxSink {
+
+    private final Producer<String, String> producer;
+    private final String topic;
+
+    public KafkaOutboxSink(Producer<String, String> producer, String topic) {
+        this.producer = producer;
+        this.topic = topic;
+    }
+
+    @Override
+    public void publish(List<OutboxEvent> events) throws ExecutionException, InterruptedException {
+        List<Future<RecordMetadata>> acknowledgements = new ArrayList<>(events.size());
+        for (OutboxEvent event : events) {
+            acknowledgements.add(producer.send(new ProducerRecord<>(topic, String.valueOf(event.getAggregateId()), event.getPayload())));
+        }
+        producer.flush();
+
+        for (Future<RecordMetadata> acknowledgement : acknowledgements) {
+            acknowledgement.get();
+        }
+    }
+}
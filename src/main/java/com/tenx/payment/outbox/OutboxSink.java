@@ -0,0 +1,21 @@
+package com.tenx.payment.outbox;
+
+import com.tenx.payment.model.OutboxEvent;
+
+import java.util.List;
+
+/**
+ * Destination of the relayed outbox events.
+ */
+public interface OutboxSink {
+
+    /**
+     * Delivers the batch in the given order. Returning normally acknowledges the whole batch, after which
+     * the events are removed from the outbox. Throwing leaves all of them in the outbox to be delivered
+     * again, so sinks must tolerate duplicates.
+     *
+     * @param events ordered by identifier
+     * @throws Exception if the batch could not be delivered
+     */
+    void publish(List<OutboxEvent> events) throws Exception;
+}
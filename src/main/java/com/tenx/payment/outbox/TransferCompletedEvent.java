@@ -0,0 +1,13 @@
+package com.tenx.payment.outbox;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+/**
+ * Published once a transfer has been committed, ordered per source account.
+ */
+public record TransferCompletedEvent(long transactionId, long sourceAccountId, long targetAccountId,
+                                     BigDecimal amount, Currency currency, long completedAtTimestamp) {
+
+    public static final String TYPE = "TransferCompleted";
+}
@@ -0,0 +1,45 @@
+package com.tenx.payment.repository;
+
+import com.tenx.payment.dto.reconciliation.LedgerEntry;
+import com.tenx.payment.model.AccountBalanceBucket;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static com.tenx.payment.util.ConstantUtils.LEDGER_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
+@Repository
+public interface AccountBalanceBucketRepository extends JpaRepository<AccountBalanceBucket, Long> {
+
+    @Modifying
+    @Query("update AccountBalanceBucket b set b.balance = b.balance + :amount " +
+            "where b.account.id = :accountId and b.bucketIndex = :bucketIndex")
+    int addToBalance(@Param("accountId") long accountId, @Param("bucketIndex") int bucketIndex,
+                     @Param("amount") BigDecimal amount);
+
+    @Query("select coalesce(sum(b.balance), 0) from AccountBalanceBucket b where b.account.id = :accountId")
+    BigDecimal sumBalanceByAccountId(@Param("accountId") long accountId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from AccountBalanceBucket b where b.account.id = :accountId order by b.bucketIndex")
+    List<AccountBalanceBucket> findAllByAccountIdForUpdate(@Param("accountId") long accountId);
+
+    @Query("select distinct b.account.id from AccountBalanceBucket b where b.balance <> 0")
+    List<Long> findAccountIdsWithNonZeroBalance();
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = LEDGER_FETCH_SIZE))
+    @Query("select new com.tenx.payment.dto.reconciliation.LedgerEntry(b.account.id, sum(b.balance)) " +
+            "from AccountBalanceBucket b where b.account.id between :fromId and :toId group by b.account.id")
+    Stream<LedgerEntry> streamBalances(@Param("fromId") long fromId, @Param("toId") long toId);
+}
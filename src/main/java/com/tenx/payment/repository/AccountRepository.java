@@ -1,11 +1,54 @@
 package com.tenx.payment.repository;
 
+import com.tenx.payment.dto.account.AccountCreation;
+import com.tenx.payment.dto.account.AccountVersion;
+import com.tenx.payment.dto.reconciliation.LedgerEntry;
 import com.tenx.payment.model.Account;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static com.tenx.payment.util.ConstantUtils.LEDGER_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
 @Repository
 public interface AccountRepository extends JpaRepository<Account, Long> {
 
-}
+    // Locked in the order of the identifiers, transactions locking the same accounts cannot deadlock
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select a from Account a where a.id in :ids order by a.id")
+    List<Account> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = LEDGER_FETCH_SIZE))
+    @Query("select new com.tenx.payment.dto.account.AccountCreation(a.id, a.createAtTimestamp) from Account a")
+    Stream<AccountCreation> streamCreations();
+
+    @Query("select new com.tenx.payment.dto.account.AccountVersion(a.version, a.balanceBuckets) from Account a " +
+            "where a.id = :id")
+    Optional<AccountVersion> findVersionById(@Param("id") long id);
 
+    @Query("select new com.tenx.payment.dto.account.AccountCreation(a.id, a.createAtTimestamp) from Account a " +
+            "where a.createAtTimestamp >= :since")
+    List<AccountCreation> findCreatedSince(@Param("since") long since);
+
+    @Query("select min(a.id) from Account a")
+    Long findMinId();
+
+    @Query("select max(a.id) from Account a")
+    Long findMaxId();
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = LEDGER_FETCH_SIZE))
+    @Query("select new com.tenx.payment.dto.reconciliation.LedgerEntry(a.id, a.balance) from Account a " +
+            "where a.id between :fromId and :toId")
+    Stream<LedgerEntry> streamBalances(@Param("fromId") long fromId, @Param("toId") long toId);
+}
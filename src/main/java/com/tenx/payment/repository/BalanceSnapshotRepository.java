@@ -0,0 +1,31 @@
+package com.tenx.payment.repository;
+
+import com.tenx.payment.dto.reconciliation.LedgerEntry;
+import com.tenx.payment.model.BalanceSnapshot;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static com.tenx.payment.util.ConstantUtils.LEDGER_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
+@Repository
+public interface BalanceSnapshotRepository extends JpaRepository<BalanceSnapshot, Long> {
+
+    Optional<BalanceSnapshot> findFirstByAccountIdAndEpochDayLessThanOrderByEpochDayDesc(long accountId, long epochDay);
+
+    boolean existsByAccountIdAndEpochDay(long accountId, long epochDay);
+
+    // The earliest snapshot of an account records its opening balance
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = LEDGER_FETCH_SIZE))
+    @Query("select new com.tenx.payment.dto.reconciliation.LedgerEntry(s.accountId, s.closingBalance) " +
+            "from BalanceSnapshot s where s.accountId between :fromId and :toId and s.epochDay = " +
+            "(select min(o.epochDay) from BalanceSnapshot o where o.accountId = s.accountId)")
+    Stream<LedgerEntry> streamOpeningBalances(@Param("fromId") long fromId, @Param("toId") long toId);
+}
@@ -0,0 +1,37 @@
+package com.tenx.payment.repository;
+
+import com.tenx.payment.dto.reconciliation.LedgerEntry;
+import com.tenx.payment.model.PendingTransferCredit;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static com.tenx.payment.util.ConstantUtils.LEDGER_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
+@Repository
+public interface PendingTransferCreditRepository extends JpaRepository<PendingTransferCredit, Long> {
+
+    @Query("select coalesce(sum(c.amount), 0) from PendingTransferCredit c where c.accountId = :accountId " +
+            "and c.status = com.tenx.payment.model.PendingTransferCredit$Status.CREDITED " +
+            "and c.createAtTimestamp >= :from and c.createAtTimestamp < :to")
+    BigDecimal sumCredits(@Param("accountId") long accountId, @Param("from") long from, @Param("to") long to);
+
+    @Query("select distinct c.accountId from PendingTransferCredit c " +
+            "where c.status = com.tenx.payment.model.PendingTransferCredit$Status.CREDITED " +
+            "and c.createAtTimestamp >= :from and c.createAtTimestamp < :to")
+    List<Long> findCreditedAccountIds(@Param("from") long from, @Param("to") long to);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = LEDGER_FETCH_SIZE))
+    @Query("select new com.tenx.payment.dto.reconciliation.LedgerEntry(c.accountId, c.amount) " +
+            "from PendingTransferCredit c where c.status = com.tenx.payment.model.PendingTransferCredit$Status.CREDITED " +
+            "and c.accountId between :fromId and :toId")
+    Stream<LedgerEntry> streamCredits(@Param("fromId") long fromId, @Param("toId") long toId);
+}
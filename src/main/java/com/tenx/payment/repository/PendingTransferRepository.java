@@ -0,0 +1,32 @@
+package com.tenx.payment.repository;
+
+import com.tenx.payment.dto.reconciliation.LedgerEntry;
+import com.tenx.payment.model.PendingTransfer;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static com.tenx.payment.util.ConstantUtils.LEDGER_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
+@Repository
+public interface PendingTransferRepository extends JpaRepository<PendingTransfer, Long> {
+
+    List<PendingTransfer> findAllByStatusAndCreateAtTimestampLessThan(PendingTransfer.Status status, long createAtTimestamp);
+
+    Optional<PendingTransfer> findByTransactionId(long transactionId);
+
+    // Debits applied to the source account whose transaction is not completed yet
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = LEDGER_FETCH_SIZE))
+    @Query("select new com.tenx.payment.dto.reconciliation.LedgerEntry(p.sourceAccountId, p.sourceAmount) " +
+            "from PendingTransfer p where p.status = com.tenx.payment.model.PendingTransfer$Status.DEBITED " +
+            "and p.sourceAccountId between :fromId and :toId")
+    Stream<LedgerEntry> streamInFlightDebits(@Param("fromId") long fromId, @Param("toId") long toId);
+}
@@ -0,0 +1,41 @@
+package com.tenx.payment.repository;
+
+import com.tenx.payment.model.ScheduledTransfer;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import static org.hibernate.jpa.SpecHints.HINT_SPEC_LOCK_TIMEOUT;
+
+@Repository
+public interface ScheduledTransferRepository extends JpaRepository<ScheduledTransfer, Long> {
+
+    interface DueTime {
+
+        long getId();
+
+        long getNextExecutionTimestamp();
+    }
+
+    // Including the overdue transfers, which are executed as soon as they are loaded
+    @Query("select s.id as id, s.nextExecutionTimestamp as nextExecutionTimestamp from ScheduledTransfer s " +
+            "where s.status = com.tenx.payment.model.ScheduledTransfer$Status.SCHEDULED and s.dueBucket <= :dueBucket")
+    List<DueTime> findScheduledUpTo(@Param("dueBucket") long dueBucket);
+
+    // Transfers claimed by another node are skipped rather than waited for: a lock timeout of -2 is rendered as
+    // "for update skip locked" by the databases supporting it, PostgreSQL among them, and as a plain "for update"
+    // otherwise, on H2 the claim then waits for the other node
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = HINT_SPEC_LOCK_TIMEOUT, value = "-2"))
+    @Query("select s from ScheduledTransfer s where s.id in :ids " +
+            "and s.status = com.tenx.payment.model.ScheduledTransfer$Status.SCHEDULED and s.nextExecutionTimestamp <= :now")
+    List<ScheduledTransfer> claimDue(@Param("ids") Collection<Long> ids, @Param("now") long now);
+}
@@ -1,10 +1,95 @@
 package com.tenx.payment.repository;
 
+import com.tenx.payment.archive.ArchivedTransaction;
+import com.tenx.payment.dto.reconciliation.LedgerEntry;
 import com.tenx.payment.model.Transaction;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static com.tenx.payment.util.ConstantUtils.LEDGER_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
 
+    // Transactions created before the given time are read from the archive, see TransactionArchive
+    @Query("select t from Transaction t where (t.sourceAccount.id = :accountId or t.targetAccount.id = :accountId) " +
+            "and t.createAtTimestamp >= :since order by t.id desc")
+    List<Transaction> findAllByAccountId(@Param("accountId") long accountId, @Param("since") long since, Pageable pageable);
+
+    List<Transaction> findAllByStatusAndCreateAtTimestampLessThanOrderById(Transaction.Status status, long createdBefore);
+
+    @Query("select coalesce(sum(t.sourceAmount), 0) from Transaction t where t.sourceAccount.id = :accountId " +
+            "and t.status = com.tenx.payment.model.Transaction$Status.COMPLETED " +
+            "and t.createAtTimestamp >= :from and t.createAtTimestamp < :to")
+    BigDecimal sumDebits(@Param("accountId") long accountId, @Param("from") long from, @Param("to") long to);
+
+    // Credits of cross-shard transfers are not known here, they are kept with the credit on the target shard
+    @Query("select coalesce(sum(t.targetAmount), 0) from Transaction t where t.targetAccount.id = :accountId " +
+            "and t.status = com.tenx.payment.model.Transaction$Status.COMPLETED and t.targetAmount is not null " +
+            "and t.createAtTimestamp >= :from and t.createAtTimestamp < :to")
+    BigDecimal sumCredits(@Param("accountId") long accountId, @Param("from") long from, @Param("to") long to);
+
+    @Query("select distinct t.sourceAccount.id from Transaction t " +
+            "where t.status = com.tenx.payment.model.Transaction$Status.COMPLETED " +
+            "and t.createAtTimestamp >= :from and t.createAtTimestamp < :to")
+    List<Long> findSourceAccountIds(@Param("from") long from, @Param("to") long to);
+
+    @Query("select distinct t.targetAccount.id from Transaction t " +
+            "where t.status = com.tenx.payment.model.Transaction$Status.COMPLETED and t.targetAmount is not null " +
+            "and t.createAtTimestamp >= :from and t.createAtTimestamp < :to")
+    List<Long> findTargetAccountIds(@Param("from") long from, @Param("to") long to);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = LEDGER_FETCH_SIZE))
+    @Query("select new com.tenx.payment.dto.reconciliation.LedgerEntry(t.sourceAccount.id, t.sourceAmount) " +
+            "from Transaction t where t.status = com.tenx.payment.model.Transaction$Status.COMPLETED " +
+            "and t.sourceAccount.id between :fromId and :toId and t.createAtTimestamp >= :since")
+    Stream<LedgerEntry> streamDebits(@Param("fromId") long fromId, @Param("toId") long toId, @Param("since") long since);
+
+    // Includes cross-shard transfers, whose target amount is null here
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = LEDGER_FETCH_SIZE))
+    @Query("select new com.tenx.payment.dto.reconciliation.LedgerEntry(t.targetAccount.id, t.targetAmount) " +
+            "from Transaction t where t.status = com.tenx.payment.model.Transaction$Status.COMPLETED " +
+            "and t.targetAccount.id between :fromId and :toId and t.createAtTimestamp >= :since")
+    Stream<LedgerEntry> streamCredits(@Param("fromId") long fromId, @Param("toId") long toId, @Param("since") long since);
+
+    @Query("select min(t.createAtTimestamp) from Transaction t")
+    Long findMinCreateAtTimestamp();
+
+    @Query("select min(t.createAtTimestamp) from Transaction t where t.status = com.tenx.payment.model.Transaction$Status.PENDING")
+    Long findMinPendingCreateAtTimestamp();
+
+    @Query("select count(t) > 0 from Transaction t where t.status = com.tenx.payment.model.Transaction$Status.PENDING " +
+            "and t.createAtTimestamp >= :from and t.createAtTimestamp < :to")
+    boolean existsPendingCreatedBetween(@Param("from") long from, @Param("to") long to);
+
+    // Legs of the archive, debits and credits each streamed in the order of their account
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = LEDGER_FETCH_SIZE))
+    @Query("select new com.tenx.payment.archive.ArchivedTransaction(t.id, t.sourceAccount.id, t.targetAccount.id, " +
+            "t.amount, t.currency, t.sourceAmount, t.targetAmount, t.status, t.failureReason, t.createAtTimestamp) " +
+            "from Transaction t where t.createAtTimestamp >= :from and t.createAtTimestamp < :to " +
+            "order by t.sourceAccount.id, t.id")
+    Stream<ArchivedTransaction> streamCreatedBetweenBySource(@Param("from") long from, @Param("to") long to);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = LEDGER_FETCH_SIZE))
+    @Query("select new com.tenx.payment.archive.ArchivedTransaction(t.id, t.sourceAccount.id, t.targetAccount.id, " +
+            "t.amount, t.currency, t.sourceAmount, t.targetAmount, t.status, t.failureReason, t.createAtTimestamp) " +
+            "from Transaction t where t.createAtTimestamp >= :from and t.createAtTimestamp < :to " +
+            "order by t.targetAccount.id, t.id")
+    Stream<ArchivedTransaction> streamCreatedBetweenByTarget(@Param("from") long from, @Param("to") long to);
+
+    @Modifying
+    @Query("delete from Transaction t where t.status <> com.tenx.payment.model.Transaction$Status.PENDING " +
+            "and t.createAtTimestamp >= :from and t.createAtTimestamp < :to")
+    int deleteCreatedBetween(@Param("from") long from, @Param("to") long to);
 }
@@ -0,0 +1,33 @@
+package com.tenx.payment.risk;
+
+import com.tenx.payment.exception.Rejection;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+/**
+ * Rejects a transfer of many times the average amount the account transferred within the window. Accounts with
+ * too few transfers in the window have no average to go by and are let through.
+ */
+public class AmountSpikeRule implements RiskRule {
+
+    private final BigDecimal multiplier;
+    private final long minTransfers;
+
+    public AmountSpikeRule(BigDecimal multiplier, long minTransfers) {
+        this.multiplier = multiplier;
+        this.minTransfers = Math.max(1, minTransfers);
+    }
+
+    @Override
+    public Optional<Rejection> evaluate(TransferRisk transferRisk) {
+        if (transferRisk.windowTransfers() < minTransfers) {
+            return Optional.empty();
+        }
+        // amount > multiplier * windowAmount / windowTransfers, without dividing
+        BigDecimal limit = transferRisk.windowAmount().multiply(multiplier);
+        return transferRisk.amount().multiply(BigDecimal.valueOf(transferRisk.windowTransfers())).compareTo(limit) > 0
+                ? Optional.of(Rejection.TRANSFER_RISK_REJECTED)
+                : Optional.empty();
+    }
+}
@@ -0,0 +1,42 @@
+package com.tenx.payment.risk;
+
+import com.tenx.payment.exception.Rejection;
+import com.tenx.payment.service.CurrencyService;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Limits the amount new accounts transfer within the window. The limit is configured in one currency and
+ * converted to the currency of the account, once per currency.
+ */
+public class NewAccountLimitRule implements RiskRule {
+
+    private final long maxAgeMillis;
+    private final BigDecimal maxAmount;
+    private final Currency currency;
+    private final CurrencyService currencyService;
+    private final Map<Currency, BigDecimal> maxAmounts = new ConcurrentHashMap<>();
+
+    public NewAccountLimitRule(long maxAgeMillis, BigDecimal maxAmount, Currency currency, CurrencyService currencyService) {
+        this.maxAgeMillis = maxAgeMillis;
+        this.maxAmount = maxAmount;
+        this.currency = currency;
+        this.currencyService = currencyService;
+    }
+
+    @Override
+    public Optional<Rejection> evaluate(TransferRisk transferRisk) {
+        if (transferRisk.timestamp() - transferRisk.sourceAccount().getCreateAtTimestamp() >= maxAgeMillis) {
+            return Optional.empty();
+        }
+        BigDecimal maxAmountOfAccount = maxAmounts.computeIfAbsent(transferRisk.sourceAccount().getCurrency(),
+                accountCurrency -> currencyService.convertCurrency(maxAmount, currency, accountCurrency));
+        return transferRisk.windowAmount().add(transferRisk.amount()).compareTo(maxAmountOfAccount) > 0
+                ? Optional.of(Rejection.TRANSFER_RISK_REJECTED)
+                : Optional.empty();
+    }
+}
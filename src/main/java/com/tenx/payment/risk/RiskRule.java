@@ -0,0 +1,19 @@
+package com.tenx.payment.risk;
+
+import com.tenx.payment.exception.Rejection;
+
+import java.util.Optional;
+
+/**
+ * Rule of the risk screening of transfers. Rules run inline on every transfer within a strict latency budget,
+ * they must decide from the {@link TransferRisk} alone, without any remote call or database query. Rules
+ * declared as beans are picked up by the screening after the built-in ones.
+ */
+public interface RiskRule {
+
+    /**
+     * @param transferRisk transfer to screen
+     * @return the reason to reject the transfer, empty to let it pass
+     */
+    Optional<Rejection> evaluate(TransferRisk transferRisk);
+}
@@ -0,0 +1,171 @@
+package com.tenx.payment.risk;
+
+import com.tenx.payment.exception.Rejection;
+import com.tenx.payment.model.Account;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Inline risk screening of the transfers, run before their balance check. The {@link RiskRule}s decide from the
+ * activity of the source account over a sliding window, kept in memory per account in a lock-free
+ * {@link SlidingWindow}, so screening costs neither a remote call nor a database query.
+ *
+ * Screening fails open: a transfer is let through when a rule fails or when the rules take longer than the
+ * latency budget, the rules not evaluated by then are skipped. Only the transfers let through and committed count
+ * towards the activity of the account, a transfer rejected later on or rolled back does not. The windows hold what this node screened, with several nodes behind a load balancer
+ * the limits apply per node.
+ */
+@Slf4j
+public class RiskScreening {
+
+    private static final BigDecimal MAX_UNITS = BigDecimal.valueOf(1_000_000_000_000_000L);
+
+    public record Stats(long screened, long rejected, long failedOpen) {
+    }
+
+    private final boolean enabled;
+    private final List<RiskRule> rules;
+    private final long tickMillis;
+    private final int ticks;
+    private final long latencyBudgetNanos;
+    private final LongSupplier clock;
+    private final LongSupplier nanoClock;
+    private final ConcurrentMap<Long, SlidingWindow> windows = new ConcurrentHashMap<>();
+    private final LongAdder screened = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failedOpen = new LongAdder();
+
+    public RiskScreening(boolean enabled, List<RiskRule> rules, long windowMillis, int ticks, long latencyBudgetNanos) {
+        this(enabled, rules, windowMillis, ticks, latencyBudgetNanos, System::currentTimeMillis, System::nanoTime);
+    }
+
+    RiskScreening(boolean enabled, List<RiskRule> rules, long windowMillis, int ticks, long latencyBudgetNanos,
+                  LongSupplier clock, LongSupplier nanoClock) {
+        this.enabled = enabled;
+        this.rules = List.copyOf(rules);
+        this.tickMillis = Math.max(1, windowMillis / ticks);
+        this.ticks = ticks;
+        this.latencyBudgetNanos = latencyBudgetNanos;
+        this.clock = clock;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Screens a transfer and, if it passes, records it in the activity of the source account once the current
+     * transaction commits, see {@link #recordAfterCommit(long, BigDecimal)}.
+     *
+     * @param sourceAccount account the transfer debits
+     * @param amount of the transfer in the currency of the source account
+     * @return the reason to reject the transfer, empty to let it pass
+     */
+    public Optional<Rejection> screen(Account sourceAccount, BigDecimal amount) {
+        Optional<Rejection> rejection = evaluate(sourceAccount, amount);
+        if (rejection.isEmpty()) {
+            recordAfterCommit(sourceAccount.getId(), amount);
+        }
+        return rejection;
+    }
+
+    /**
+     * Screens a transfer against the activity of the source account without recording it.
+     *
+     * @param sourceAccount account the transfer debits
+     * @param amount of the transfer in the currency of the source account
+     * @return the reason to reject the transfer, empty to let it pass
+     */
+    public Optional<Rejection> evaluate(Account sourceAccount, BigDecimal amount) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        long startedAt = nanoClock.getAsLong();
+        screened.increment();
+        try {
+            long now = clock.getAsLong();
+            long tick = Math.floorDiv(now, tickMillis);
+            SlidingWindow window = windows.get(sourceAccount.getId());
+            SlidingWindow.Totals totals = window != null ? window.totals(tick) : new SlidingWindow.Totals(0, 0);
+            TransferRisk transferRisk = new TransferRisk(sourceAccount, amount, now, totals.transfers(),
+                    BigDecimal.valueOf(totals.amountUnits(), 2));
+
+            for (RiskRule rule : rules) {
+                if (nanoClock.getAsLong() - startedAt > latencyBudgetNanos) {
+                    failedOpen.increment();
+                    break;
+                }
+                Optional<Rejection> rejection = rule.evaluate(transferRisk);
+                if (rejection.isPresent()) {
+                    rejected.increment();
+                    return rejection;
+                }
+            }
+            return Optional.empty();
+        } catch (RuntimeException e) {
+            failedOpen.increment();
+            log.warn("Risk screening failed for account {}, transfer let through", sourceAccount.getId(), e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Records a transfer let through in the activity of the source account once the current transaction commits,
+     * right away if there is none.
+     *
+     * @param sourceAccountId account the transfer debits
+     * @param amount of the transfer in the currency of the source account
+     */
+    public void recordAfterCommit(long sourceAccountId, BigDecimal amount) {
+        if (!enabled) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            record(sourceAccountId, amount);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                record(sourceAccountId, amount);
+            }
+        });
+    }
+
+    private void record(long sourceAccountId, BigDecimal amount) {
+        long tick = Math.floorDiv(clock.getAsLong(), tickMillis);
+        windows.computeIfAbsent(sourceAccountId, id -> new SlidingWindow(ticks)).record(tick, toUnits(amount));
+    }
+
+    public Stats getStats() {
+        return new Stats(screened.sum(), rejected.sum(), failedOpen.sum());
+    }
+
+    /**
+     * Removes the windows of the accounts without a transfer left in them.
+     */
+    @Scheduled(fixedDelay = 60_000)
+    public void evictIdleWindows() {
+        long tick = Math.floorDiv(clock.getAsLong(), tickMillis);
+        windows.values().removeIf(window -> window.isIdle(tick));
+    }
+
+    int size() {
+        return windows.size();
+    }
+
+    // Hundredths, capped so the sums of a window cannot overflow, the rules only need to tell large amounts apart
+    private static long toUnits(BigDecimal amount) {
+        BigDecimal units = amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP);
+        return units.compareTo(MAX_UNITS) > 0 ? MAX_UNITS.longValue() : units.longValue();
+    }
+}
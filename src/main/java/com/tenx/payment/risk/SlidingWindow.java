@@ -0,0 +1,75 @@
+package com.tenx.payment.risk;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Transfers of one account over a sliding window, a ring of buckets each holding the number and the sum of the
+ * transfers of one tick. A bucket is taken over by the tick it comes up for again once its own tick has left the
+ * window, so the window costs a fixed array however many transfers it sees.
+ *
+ * Lock-free, the buckets are updated with atomic adds. A transfer recorded by one thread while another one takes
+ * over the bucket may be lost, screening tolerates such an undercount rather than a lock on every transfer.
+ */
+class SlidingWindow {
+
+    private static final int STAMP = 0;
+    private static final int COUNT = 1;
+    private static final int SUM = 2;
+    private static final int FIELDS = 3;
+
+    record Totals(long transfers, long amountUnits) {
+    }
+
+    private final int size;
+    private final AtomicLongArray buckets;
+
+    SlidingWindow(int size) {
+        this.size = size;
+        this.buckets = new AtomicLongArray(size * FIELDS);
+    }
+
+    /**
+     * @param tick current tick
+     * @param amountUnits amount of the transfer in hundredths
+     */
+    void record(long tick, long amountUnits) {
+        int base = Math.floorMod(tick, size) * FIELDS;
+        long stamp = buckets.get(base + STAMP);
+        if (stamp < tick && buckets.compareAndSet(base + STAMP, stamp, tick)) {
+            buckets.set(base + COUNT, 0);
+            buckets.set(base + SUM, 0);
+        }
+        buckets.incrementAndGet(base + COUNT);
+        buckets.addAndGet(base + SUM, amountUnits);
+    }
+
+    /**
+     * @param tick current tick
+     * @return the transfers of the ticks of the window ending with the current one
+     */
+    Totals totals(long tick) {
+        long transfers = 0;
+        long amountUnits = 0;
+        for (int base = 0; base < size * FIELDS; base += FIELDS) {
+            long stamp = buckets.get(base + STAMP);
+            if (stamp > tick - size && stamp <= tick) {
+                transfers += buckets.get(base + COUNT);
+                amountUnits += buckets.get(base + SUM);
+            }
+        }
+        return new Totals(transfers, amountUnits);
+    }
+
+    /**
+     * @param tick current tick
+     * @return whether no transfer of the window is left
+     */
+    boolean isIdle(long tick) {
+        for (int base = 0; base < size * FIELDS; base += FIELDS) {
+            if (buckets.get(base + STAMP) > tick - size) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,18 @@
+package com.tenx.payment.risk;
+
+import com.tenx.payment.model.Account;
+
+import java.math.BigDecimal;
+
+/**
+ * A transfer to screen together with the activity of its source account over the window.
+ *
+ * @param sourceAccount account the transfer debits
+ * @param amount of the transfer in the currency of the source account
+ * @param timestamp epoch millis of the screening
+ * @param windowTransfers transfers of the source account within the window, this one excluded
+ * @param windowAmount sum of those transfers in the currency of the source account
+ */
+public record TransferRisk(Account sourceAccount, BigDecimal amount, long timestamp, long windowTransfers,
+                           BigDecimal windowAmount) {
+}
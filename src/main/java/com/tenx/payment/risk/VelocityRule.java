@@ -0,0 +1,24 @@
+package com.tenx.payment.risk;
+
+import com.tenx.payment.exception.Rejection;
+
+import java.util.Optional;
+
+/**
+ * Rejects the transfers of an account beyond a number of transfers per window.
+ */
+public class VelocityRule implements RiskRule {
+
+    private final long maxTransfers;
+
+    public VelocityRule(long maxTransfers) {
+        this.maxTransfers = maxTransfers;
+    }
+
+    @Override
+    public Optional<Rejection> evaluate(TransferRisk transferRisk) {
+        return transferRisk.windowTransfers() >= maxTransfers
+                ? Optional.of(Rejection.TRANSFER_VELOCITY_EXCEEDED)
+                : Optional.empty();
+    }
+}
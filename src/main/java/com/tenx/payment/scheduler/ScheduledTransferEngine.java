@@ -0,0 +1,173 @@
+package com.tenx.payment.scheduler;
+
+import com.tenx.payment.repository.ScheduledTransferRepository.DueTime;
+import com.tenx.payment.service.AsyncTransferService;
+import com.tenx.payment.service.ScheduledTransferService;
+import com.tenx.payment.shard.ShardContext;
+import com.tenx.payment.shard.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes the scheduled transfers when they are due, see {@link ScheduledTransferService}.
+ *
+ * Rather than polling for due transfers, the engine loads the transfers due within the next two load intervals
+ * through the due bucket index, one query per shard and interval, and holds them in a {@link TimingWheel} ticking
+ * on a single thread. The transfers coming up are handed to the workers in batches per shard, each batch claimed
+ * in one database transaction skipping the transfers locked by other nodes, so every node can run the engine and
+ * a transfer due on several of them is executed once.
+ */
+@Slf4j
+@Component
+public class ScheduledTransferEngine implements DisposableBean {
+
+    // 64 slots on three levels of 100 ms, 6.4 s and 6.8 min ticks reach more than seven hours ahead
+    private static final int WHEEL_SLOTS = 64;
+    private static final int WHEEL_LEVELS = 3;
+
+    private final ScheduledTransferService scheduledTransferService;
+    private final AsyncTransferService asyncTransferService;
+    private final ShardRouter shardRouter;
+    private final boolean enabled;
+    private final long tickMillis;
+    private final long loadIntervalMillis;
+    private final int claimBatchSize;
+    private final TimingWheel<Long> wheel;
+    // Transfers loaded and not yet claimed, or given up on, by this node
+    private final Set<Long> held = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService ticker;
+    private final ThreadPoolExecutor workers;
+    private long nextLoad;
+
+    @Autowired
+    public ScheduledTransferEngine(ScheduledTransferService scheduledTransferService,
+                                   AsyncTransferService asyncTransferService, ShardRouter shardRouter,
+                                   @Value("${thanks-pay.scheduled-transfer.enabled:true}") boolean enabled,
+                                   @Value("${thanks-pay.scheduled-transfer.tick-millis:100}") long tickMillis,
+                                   @Value("${thanks-pay.scheduled-transfer.load-interval-millis:30000}") long loadIntervalMillis,
+                                   @Value("${thanks-pay.scheduled-transfer.claim-batch-size:500}") int claimBatchSize,
+                                   @Value("${thanks-pay.scheduled-transfer.workers:8}") int workerCount) {
+        this.scheduledTransferService = scheduledTransferService;
+        this.asyncTransferService = asyncTransferService;
+        this.shardRouter = shardRouter;
+        this.enabled = enabled;
+        this.tickMillis = tickMillis;
+        this.loadIntervalMillis = loadIntervalMillis;
+        this.claimBatchSize = claimBatchSize;
+        this.wheel = new TimingWheel<>(tickMillis, WHEEL_SLOTS, WHEEL_LEVELS, System.currentTimeMillis());
+        this.ticker = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("scheduled-transfer-ticker-"));
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new CustomizableThreadFactory("scheduled-transfer-worker-"));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (enabled) {
+            ticker.scheduleWithFixedDelay(this::tick, 0, tickMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        // Transfers not claimed yet are loaded again by the next node to start, claimed ones are left pending
+        ticker.shutdownNow();
+        workers.shutdown();
+    }
+
+    private void tick() {
+        try {
+            long now = System.currentTimeMillis();
+            for (List<Long> batch : batches(collectDue(now))) {
+                workers.execute(() -> execute(batch, System.currentTimeMillis()));
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to advance the scheduled transfers", e);
+        }
+    }
+
+    /**
+     * Loads the upcoming transfers once per load interval and advances the wheel, on the ticker thread only.
+     *
+     * @return the identifiers of the transfers due
+     */
+    List<Long> collectDue(long now) {
+        List<Long> due = new ArrayList<>();
+        if (now >= nextLoad) {
+            load(now, due);
+            nextLoad = now + loadIntervalMillis;
+        }
+        due.addAll(wheel.advance(now));
+        return due;
+    }
+
+    /**
+     * Claims the due transfers of a batch and applies their pending transactions.
+     *
+     * @param ids identifiers of transfers on the same shard
+     * @return the number of transfers executed
+     */
+    int execute(List<Long> ids, long now) {
+        try {
+            List<Long> transactionIds;
+            try (ShardContext.Scope ignored = shardRouter.useShard(shardRouter.shardOf(ids.get(0)))) {
+                transactionIds = scheduledTransferService.claim(ids, now);
+            }
+            for (Long transactionId : transactionIds) {
+                asyncTransferService.applyPendingTransaction(transactionId);
+            }
+            return transactionIds.size();
+        } catch (RuntimeException e) {
+            // Loaded again with the next load
+            log.error("Failed to execute {} scheduled transfers", ids.size(), e);
+            return 0;
+        } finally {
+            ids.forEach(held::remove);
+        }
+    }
+
+    private void load(long now, List<Long> due) {
+        // The whole last bucket must fit into the wheel
+        long lastBucket = ScheduledTransferService.dueBucketOf(Math.min(now + 2 * loadIntervalMillis,
+                wheel.getHorizon() - ScheduledTransferService.DUE_BUCKET_MILLIS));
+        shardRouter.forEachShard(shardIndex -> {
+            for (DueTime dueTime : scheduledTransferService.findScheduledUpTo(lastBucket)) {
+                if (held.add(dueTime.getId()) && !wheel.add(dueTime.getNextExecutionTimestamp(), dueTime.getId())) {
+                    // Overdue
+                    due.add(dueTime.getId());
+                }
+            }
+        });
+    }
+
+    private List<List<Long>> batches(List<Long> ids) {
+        Map<Integer, List<Long>> idsByShard = new HashMap<>();
+        for (Long id : ids) {
+            idsByShard.computeIfAbsent(shardRouter.shardOf(id), shardIndex -> new ArrayList<>()).add(id);
+        }
+        List<List<Long>> batches = new ArrayList<>();
+        for (List<Long> shardIds : idsByShard.values()) {
+            for (int from = 0; from < shardIds.size(); from += claimBatchSize) {
+                batches.add(shardIds.subList(from, Math.min(shardIds.size(), from + claimBatchSize)));
+            }
+        }
+        return batches;
+    }
+}
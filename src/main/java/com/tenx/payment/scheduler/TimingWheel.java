@@ -0,0 +1,120 @@
+package com.tenx.payment.scheduler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel holding items until they are due. Each level is a ring of slots, a slot of a level
+ * spanning the whole ring of the level below. Items go into the lowest level whose ring reaches their due time
+ * and cascade down a level whenever the slot they are in comes up, so adding and expiring an item costs a few
+ * constant steps no matter how many items are waiting.
+ *
+ * Items are released once their tick is over, never before they are due. Not thread-safe, the wheel is meant to
+ * be driven by a single thread.
+ *
+ * @param <T> type of the items
+ */
+public class TimingWheel<T> {
+
+    private record Entry<T>(long due, T item) {
+    }
+
+    private final long[] tickMillis;
+    private final int slotCount;
+    private final ArrayDeque<Entry<T>>[][] slots;
+    private int size;
+
+    // Items due before this time have been released, aligned to the lowest tick
+    private long currentTime;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMillis, int slotCount, int levels, long startTime) {
+        this.tickMillis = new long[levels];
+        this.slotCount = slotCount;
+        this.slots = new ArrayDeque[levels][slotCount];
+        for (int level = 0; level < levels; level++) {
+            this.tickMillis[level] = level == 0 ? tickMillis : this.tickMillis[level - 1] * slotCount;
+            for (int slot = 0; slot < slotCount; slot++) {
+                slots[level][slot] = new ArrayDeque<>();
+            }
+        }
+        this.currentTime = startTime - Math.floorMod(startTime, tickMillis);
+    }
+
+    /**
+     * @param due epoch millis the item is due at
+     * @param item to hold until then
+     * @return false if the item is already due or lies beyond the reach of the wheel, it is not held then
+     */
+    public boolean add(long due, T item) {
+        if (due < currentTime) {
+            return false;
+        }
+
+        // The lowest level covers its whole ring from the current tick on, the higher levels the ticks after their
+        // current one, which has already been cascaded down
+        if (due < currentTime + tickMillis[0] * slotCount) {
+            slots[0][slotOf(due, 0)].add(new Entry<>(due, item));
+            size++;
+            return true;
+        }
+        for (int level = 1; level < tickMillis.length; level++) {
+            long nextTick = (Math.floorDiv(currentTime, tickMillis[level]) + 1) * tickMillis[level];
+            if (due < nextTick + tickMillis[level] * (slotCount - 1)) {
+                slots[level][slotOf(due, level)].add(new Entry<>(due, item));
+                size++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Advances the wheel to the given time.
+     *
+     * @param now epoch millis
+     * @return the items due before the start of the current tick, in the order of their ticks
+     */
+    public List<T> advance(long now) {
+        List<T> due = new ArrayList<>();
+        while (currentTime + tickMillis[0] <= now) {
+            for (int level = tickMillis.length - 1; level > 0; level--) {
+                if (Math.floorMod(currentTime, tickMillis[level]) == 0) {
+                    ArrayDeque<Entry<T>> slot = slots[level][slotOf(currentTime, level)];
+                    while (!slot.isEmpty()) {
+                        Entry<T> entry = slot.poll();
+                        size--;
+                        add(entry.due(), entry.item());
+                    }
+                }
+            }
+
+            ArrayDeque<Entry<T>> slot = slots[0][slotOf(currentTime, 0)];
+            while (!slot.isEmpty()) {
+                due.add(slot.poll().item());
+                size--;
+            }
+            currentTime += tickMillis[0];
+        }
+        return due;
+    }
+
+    /**
+     * @return the time up to which items can be added, exclusive
+     */
+    public long getHorizon() {
+        int top = tickMillis.length - 1;
+        return top == 0
+                ? currentTime + tickMillis[0] * slotCount
+                : (Math.floorDiv(currentTime, tickMillis[top]) + slotCount) * tickMillis[top];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int slotOf(long time, int level) {
+        return (int) Math.floorMod(Math.floorDiv(time, tickMillis[level]), (long) slotCount);
+    }
+}
@@ -0,0 +1,176 @@
+package com.tenx.payment.service;
+
+import com.tenx.payment.dto.account.AccountCreation;
+import com.tenx.payment.model.Account;
+import com.tenx.payment.repository.AccountRepository;
+import com.tenx.payment.shard.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+
+/**
+ * In-memory index of the identifiers of all accounts, answering for an identifier that it may exist or that it
+ * definitely does not, so lookups of unknown accounts are rejected without a database query.
+ *
+ * Identifiers are dense, they are kept in a bitmap split into chunks of 65536 identifiers, each chunk allocated on
+ * the first account it holds. A chunk takes 8 KiB, a million accounts about 128 KiB. Accounts are added when saved
+ * by this node and picked up by their creation time from the other nodes every refresh interval. Until the index is
+ * loaded on start every identifier may exist.
+ *
+ * An identifier is only reported as not found up to the highest one of its shard settled by the last refresh, that
+ * is created a refresh margin before it. Identifiers above it may have been drawn by another node since. Below it,
+ * the identifiers of an allocation block some account was created from are still looked up, the node that pooled
+ * the block may draw the rest of it at any time.
+ */
+@Slf4j
+@Component
+public class AccountIdIndex {
+
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_WORDS = (1 << CHUNK_BITS) / Long.SIZE;
+    // Allocation size of the account sequence, see Account
+    private static final int ID_BLOCK_SIZE = 50;
+
+    private final Map<Long, AtomicLongArray> chunks = new ConcurrentHashMap<>();
+    // Highest settled identifier by shard
+    private final AtomicLongArray settledIds;
+    private final AccountRepository accountRepository;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate readOnlyTransaction;
+    private final boolean enabled;
+    private final long refreshMarginMillis;
+    private volatile boolean loaded;
+    private long lastRefresh;
+
+    @Autowired
+    public AccountIdIndex(AccountRepository accountRepository, ShardRouter shardRouter,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${thanks-pay.account-index.enabled:true}") boolean enabled,
+                          @Value("${thanks-pay.account-index.refresh-margin-ms:10000}") long refreshMarginMillis) {
+        this.accountRepository = accountRepository;
+        this.shardRouter = shardRouter;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.enabled = enabled;
+        this.refreshMarginMillis = refreshMarginMillis;
+        this.settledIds = new AtomicLongArray(shardRouter.getShardCount());
+    }
+
+    /**
+     * @param id identifier of an account
+     * @return false if no account has the identifier, true if one may have it
+     */
+    public boolean mightContain(long id) {
+        if (!loaded || isIndexed(id)) {
+            return true;
+        }
+        if (id < 0) {
+            return false;
+        }
+        int shardIndex = shardRouter.shardOf(id);
+        return id > settledIds.get(shardIndex) || isBlockDrawn(id, shardIndex);
+    }
+
+    /**
+     * Adds a saved account, before its transaction commits.
+     *
+     * @param account persisted account
+     */
+    public void add(Account account) {
+        addId(account.getId());
+    }
+
+    /**
+     * Loads the identifiers of the accounts of every shard, streamed with a cursor.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        long startedAt = System.currentTimeMillis();
+        long settledBefore = startedAt - refreshMarginMillis;
+        shardRouter.forEachShard(shardIndex -> readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<AccountCreation> creations = accountRepository.streamCreations()) {
+                creations.forEach(creation -> {
+                    addId(creation.id());
+                    settle(creation, settledBefore);
+                });
+            }
+        }));
+        lastRefresh = startedAt;
+        loaded = true;
+        log.info("Indexed the identifiers of the accounts in {} ms, {} chunks", System.currentTimeMillis() - startedAt,
+                chunks.size());
+    }
+
+    /**
+     * Adds the accounts created since the last refresh, by any node. The margin covers the clocks of the nodes
+     * and the accounts committed a while after they were created. The identifiers are settled once all of them are
+     * added.
+     */
+    @Scheduled(fixedDelayString = "${thanks-pay.account-index.refresh-interval-ms:1000}")
+    public void refresh() {
+        if (!loaded) {
+            return;
+        }
+        long startedAt = System.currentTimeMillis();
+        long settledBefore = startedAt - refreshMarginMillis;
+        shardRouter.forEachShard(shardIndex -> {
+            List<AccountCreation> creations = accountRepository.findCreatedSince(lastRefresh - refreshMarginMillis);
+            creations.forEach(creation -> addId(creation.id()));
+            creations.forEach(creation -> settle(creation, settledBefore));
+        });
+        lastRefresh = startedAt;
+    }
+
+    // Accounts created a refresh margin before are committed, an identifier drawn before theirs is known by now
+    private void settle(AccountCreation creation, long settledBefore) {
+        if (creation.createAtTimestamp() < settledBefore) {
+            settledIds.accumulateAndGet(shardRouter.shardOf(creation.id()), creation.id(), Math::max);
+        }
+    }
+
+    // Whether an account was created from the allocation block of the identifier within its shard. The pooled
+    // optimizer hands out the first value of the sequence along with the block of the second one, 1 to 51, and
+    // every other block ending at the value drawn, 52 to 101, 102 to 151 and so on
+    private boolean isBlockDrawn(long id, int shardIndex) {
+        int shardCount = shardRouter.getShardCount();
+        long localId = id / shardCount;
+        long blockStart = localId <= ID_BLOCK_SIZE + 1 ? 1 : (localId - 2) / ID_BLOCK_SIZE * ID_BLOCK_SIZE + 2;
+        long blockEnd = blockStart == 1 ? ID_BLOCK_SIZE + 1 : blockStart + ID_BLOCK_SIZE - 1;
+        for (localId = blockStart; localId <= blockEnd; localId++) {
+            if (isIndexed(localId * shardCount + shardIndex)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isIndexed(long id) {
+        AtomicLongArray chunk = chunks.get(id >>> CHUNK_BITS);
+        return chunk != null && (chunk.get(wordOf(id)) & (1L << id)) != 0;
+    }
+
+    private void addId(long id) {
+        AtomicLongArray chunk = chunks.computeIfAbsent(id >>> CHUNK_BITS, key -> new AtomicLongArray(CHUNK_WORDS));
+        long bit = 1L << id;
+        chunk.accumulateAndGet(wordOf(id), bit, (word, mask) -> word | mask);
+    }
+
+    private static int wordOf(long id) {
+        return (int) (id & ((1 << CHUNK_BITS) - 1)) >>> 6;
+    }
+}
@@ -2,21 +2,47 @@ package com.tenx.payment.service;
 
 import com.tenx.payment.dto.account.AccountRequestDto;
 import com.tenx.payment.exception.AccountNotFoundException;
+import com.tenx.payment.exception.Rejection;
 import com.tenx.payment.model.Account;
 import com.tenx.payment.repository.AccountRepository;
+import com.tenx.payment.shard.ShardContext;
+import com.tenx.payment.shard.ShardRouter;
+import com.tenx.payment.store.AccountState;
+import com.tenx.payment.store.AccountStateStore;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
 public class AccountService {
 
     private final AccountRepository accountRepository;
+    private final BalanceBucketService balanceBucketService;
+    private final BalanceSnapshotService balanceSnapshotService;
+    private final ShardRouter shardRouter;
+    private final AccountIdIndex accountIdIndex;
+    private final AccountStateStore accountStateStore;
 
     @Autowired
-    public AccountService(AccountRepository accountRepository) {
+    public AccountService(AccountRepository accountRepository, BalanceBucketService balanceBucketService,
+                          BalanceSnapshotService balanceSnapshotService, ShardRouter shardRouter,
+                          AccountIdIndex accountIdIndex, AccountStateStore accountStateStore) {
         this.accountRepository = accountRepository;
+        this.balanceBucketService = balanceBucketService;
+        this.balanceSnapshotService = balanceSnapshotService;
+        this.shardRouter = shardRouter;
+        this.accountIdIndex = accountIdIndex;
+        this.accountStateStore = accountStateStore;
     }
 
     /**
@@ -25,28 +51,250 @@ public class AccountService {
      * @param id identifier of the account
      * @return the found {@link Account}
      */
+    @Transactional(readOnly = true)
     public Account findAccountById(long id) {
-        Optional<Account> account = accountRepository.findById(id);
-        return account.orElseThrow(() -> new AccountNotFoundException("Account not found with provided id"));
+        return findAccount(id).orElseThrow(Rejection.ACCOUNT_NOT_FOUND::exception);
+    }
+
+    /**
+     * Finds account by identifier. Identifiers unknown to the {@link AccountIdIndex} are not looked up.
+     *
+     * @param id identifier of the account
+     * @return the found {@link Account} or empty if not found
+     */
+    @Transactional(readOnly = true)
+    public Optional<Account> findAccount(long id) {
+        if (!accountIdIndex.mightContain(id)) {
+            return Optional.empty();
+        }
+        try (ShardContext.Scope ignored = shardRouter.useShardOf(id)) {
+            return accountRepository.findById(id);
+        }
+    }
+
+    /**
+     * Entity tag of the account, changing whenever the account or its balance including the sub-balance buckets
+     * do. Derived from the version of the account row without loading the account, for high-volume accounts along
+     * with the sum of their buckets itself, whose credits leave the account row untouched, so that no two balances
+     * share a tag.
+     *
+     * @param id identifier of the account
+     * @return the tag or empty if the account is not found
+     */
+    @Transactional(readOnly = true)
+    public Optional<String> findAccountTag(long id) {
+        if (!accountIdIndex.mightContain(id)) {
+            return Optional.empty();
+        }
+        try (ShardContext.Scope ignored = shardRouter.useShardOf(id)) {
+            return accountRepository.findVersionById(id).map(version -> version.balanceBuckets() == 0
+                    ? Long.toString(version.version())
+                    : version.version() + "-" + balanceBucketService.sumBuckets(id).stripTrailingZeros().toPlainString());
+        }
+    }
+
+    /**
+     * Finds the committed balance of the account, read through the {@link AccountStateStore} when it is enabled.
+     * Runs in a read-write transaction so a miss is read from the primary rather than a lagging replica.
+     *
+     * @param id identifier of the account
+     * @return the {@link AccountState} including the credits held in sub-balance buckets
+     */
+    @Transactional
+    public AccountState findAccountState(long id) {
+        AccountState state = accountStateStore.isEnabled() ? accountStateStore.get(id) : null;
+        if (state != null) {
+            return state;
+        }
+
+        Account account = findAccountById(id);
+        state = new AccountState(id, getTotalBalance(account), account.getCurrency(), account.getVersion());
+        if (accountStateStore.isEnabled() && !account.hasBalanceBuckets()) {
+            accountStateStore.put(state);
+        }
+        return state;
+    }
+
+    /**
+     * Loads and locks the accounts for the rest of the transaction, in the order of their identifiers.
+     * Must be invoked within a transaction on the shard of the accounts.
+     *
+     * @param ids identifiers of accounts on the current shard
+     * @return the found accounts by identifier, missing accounts are left out
+     */
+    public Map<Long, Account> lockAccounts(Collection<Long> ids) {
+        Map<Long, Account> accounts = new LinkedHashMap<>();
+        for (Account account : accountRepository.findAllByIdForUpdate(ids)) {
+            accounts.put(account.getId(), account);
+        }
+        return accounts;
+    }
+
+    /**
+     * Reference to the account without loading it, e.g. to link an account living on another shard.
+     *
+     * @param id identifier of the account
+     * @return a lazily loaded {@link Account}
+     */
+    public Account getAccountReference(long id) {
+        return accountRepository.getReferenceById(id);
     }
 
     /**
      * Creates {@link Account} with the passed account information and persists it.
+     * High-volume accounts are created together with their sub-balance buckets.
      *
      * @param accountRequestDto account data to be persisted
      * @return the saved {@link Account}
      */
+    @Transactional
     public Account saveAccount(AccountRequestDto accountRequestDto) {
-        return saveAccount(new Account(accountRequestDto.getBalance(), accountRequestDto.getCurrency()));
+        Account account = new Account(accountRequestDto.getBalance(), accountRequestDto.getCurrency());
+        if (!accountRequestDto.isHighVolume()) {
+            return saveAccount(account);
+        }
+
+        balanceBucketService.enableBuckets(account);
+        Account savedAccount = saveAccount(account);
+        try (ShardContext.Scope ignored = shardRouter.useShardOf(savedAccount.getId())) {
+            balanceBucketService.createBuckets(savedAccount);
+        }
+        return savedAccount;
     }
 
     /**
-     * Persists the passed account.
+     * Creates the accounts of a bulk import in one transaction on one shard. The inserts are sent in JDBC
+     * batches and the identifiers drawn from the pooled sequences, costing a round trip per batch rather than
+     * per account. The saved accounts are detached once the transaction commits, callers importing many chunks
+     * call it outside of a transaction of their own.
+     *
+     * @param accountRequestDtos validated account data
+     * @return the saved accounts in the order of the passed account data
+     */
+    @Transactional
+    public List<Account> saveAccounts(List<AccountRequestDto> accountRequestDtos) {
+        List<Account> accounts = new ArrayList<>(accountRequestDtos.size());
+        for (AccountRequestDto accountRequestDto : accountRequestDtos) {
+            Account account = new Account(accountRequestDto.getBalance(), accountRequestDto.getCurrency());
+            if (accountRequestDto.isHighVolume()) {
+                balanceBucketService.enableBuckets(account);
+            }
+            accounts.add(account);
+        }
+
+        try (ShardContext.Scope ignored = shardRouter.useShardForNewAccount()) {
+            List<Account> savedAccounts = accountRepository.saveAll(accounts);
+            for (Account savedAccount : savedAccounts) {
+                balanceSnapshotService.recordOpeningBalance(savedAccount);
+                accountIdIndex.add(savedAccount);
+                if (savedAccount.hasBalanceBuckets()) {
+                    balanceBucketService.createBuckets(savedAccount);
+                }
+            }
+            return savedAccounts;
+        }
+    }
+
+    /**
+     * Persists the passed account. A new account gets its opening balance recorded for the point-in-time balances.
      *
      * @param account to be saved
      * @return the saved {@link Account}
      */
     public Account saveAccount(Account account) {
-        return accountRepository.save(account);
+        if (account.getId() != null) {
+            try (ShardContext.Scope ignored = shardRouter.useShardOf(account.getId())) {
+                Account savedAccount = accountRepository.save(account);
+                storeStateAfterCommit(savedAccount);
+                return savedAccount;
+            }
+        }
+
+        try (ShardContext.Scope ignored = shardRouter.useShardForNewAccount()) {
+            Account savedAccount = accountRepository.save(account);
+            balanceSnapshotService.recordOpeningBalance(savedAccount);
+            accountIdIndex.add(savedAccount);
+            storeStateAfterCommit(savedAccount);
+            return savedAccount;
+        }
+    }
+
+    /**
+     * Returns the balance of the account including the credits still held in its sub-balance buckets.
+     *
+     * @param account to sum the balance for
+     * @return the aggregated balance
+     */
+    @Transactional(readOnly = true)
+    public BigDecimal getTotalBalance(Account account) {
+        if (!account.hasBalanceBuckets()) {
+            return account.getBalance();
+        }
+        try (ShardContext.Scope ignored = shardRouter.useShardOf(account.getId())) {
+            return account.getBalance().add(balanceBucketService.sumBuckets(account.getId()));
+        }
+    }
+
+    /**
+     * Returns the balance of the account at a point in time, see {@link BalanceSnapshotService}.
+     *
+     * @param account to get the balance for
+     * @param timestamp epoch millis
+     * @return the balance in the currency of the account
+     */
+    public BigDecimal getBalanceAt(Account account, long timestamp) {
+        return balanceSnapshotService.getBalanceAt(account, timestamp);
+    }
+
+    /**
+     * Credits a high-volume account through one of its sub-balance buckets.
+     *
+     * @param account high-volume account to credit
+     * @param amount in the currency of the account
+     */
+    public void creditBalanceBucket(Account account, BigDecimal amount) {
+        balanceBucketService.credit(account, amount);
+    }
+
+    /**
+     * Moves the credits held in the sub-balance buckets into the balance of the account.
+     * Must be invoked within the transaction that persists the account.
+     *
+     * @param account high-volume account to sweep
+     */
+    public void sweepBalanceBuckets(Account account) {
+        balanceBucketService.sweep(account);
+    }
+
+    /**
+     * Folds the sub-balance buckets of the account back into its balance and persists it.
+     *
+     * @param accountId identifier of the high-volume account
+     */
+    @Transactional
+    public void compactBalanceBuckets(long accountId) {
+        try (ShardContext.Scope ignored = shardRouter.useShardOf(accountId)) {
+            Account account = findAccountById(accountId);
+            balanceBucketService.sweep(account);
+            saveAccount(account);
+        }
+    }
+
+    // Accounts with sub-balance buckets are credited past the account row and read through every time
+    private void storeStateAfterCommit(Account account) {
+        if (!accountStateStore.isEnabled() || account.hasBalanceBuckets()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            accountStateStore.put(new AccountState(account.getId(), account.getBalance(), account.getCurrency(), account.getVersion()));
+            return;
+        }
+        // The version of the account is incremented on flush, the state is taken once committed
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                accountStateStore.put(new AccountState(account.getId(), account.getBalance(), account.getCurrency(), account.getVersion()));
+            }
+        });
     }
 }
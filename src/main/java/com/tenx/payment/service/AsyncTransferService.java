@@ -0,0 +1,209 @@
+package com.tenx.payment.service;
+
+import com.tenx.payment.dto.transaction.TransactionRequestDto;
+import com.tenx.payment.exception.ApiException;
+import com.tenx.payment.exception.Rejection;
+import com.tenx.payment.exception.UnsupportedCurrencyException;
+import com.tenx.payment.model.Transaction;
+import com.tenx.payment.shard.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies accepted transfers in the background. Transfers are partitioned by source account over
+ * single-threaded workers with bounded queues: the transfers of an account are applied in the order they
+ * were accepted, and a full queue rejects new transfers instead of piling them up.
+ *
+ * A transfer failing for another reason than its accounts, e.g. exhausted retries on a hot account or an
+ * unavailable database, is queued again with an exponential backoff and marked as failed after the maximum
+ * attempts. Transactions left pending without being queued, by a full queue or a crash, are picked up by
+ * {@link #resumePendingTransactions(long)}.
+ */
+@Slf4j
+@Service
+public class AsyncTransferService implements DisposableBean {
+
+    private final TransactionService transactionService;
+    private final CrossShardTransferService crossShardTransferService;
+    private final ShardRouter shardRouter;
+    private final ThreadPoolExecutor[] workers;
+    private final ScheduledExecutorService retryScheduler;
+    private final int maxAttempts;
+    private final long retryDelayMillis;
+    private final Set<Long> queued = ConcurrentHashMap.newKeySet();
+    private final ConcurrentMap<Long, Integer> failedAttempts = new ConcurrentHashMap<>();
+
+    @Autowired
+    public AsyncTransferService(TransactionService transactionService, CrossShardTransferService crossShardTransferService,
+                                ShardRouter shardRouter,
+                                @Value("${thanks-pay.transaction.async.workers:8}") int workerCount,
+                                @Value("${thanks-pay.transaction.async.queue-capacity:1000}") int queueCapacity,
+                                @Value("${thanks-pay.transaction.async.max-attempts:5}") int maxAttempts,
+                                @Value("${thanks-pay.transaction.async.retry-delay-ms:1000}") long retryDelayMillis) {
+        this.transactionService = transactionService;
+        this.crossShardTransferService = crossShardTransferService;
+        this.shardRouter = shardRouter;
+        this.maxAttempts = maxAttempts;
+        this.retryDelayMillis = retryDelayMillis;
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("transfer-retry-"));
+        this.workers = new ThreadPoolExecutor[workerCount];
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("transfer-worker-");
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+        }
+    }
+
+    /**
+     * Persists the transfer as a {@link Transaction.Status#PENDING} transaction and queues it for a worker.
+     * Rejects with {@link Rejection#TRANSFER_QUEUE_FULL} if the worker of the source account has no capacity left,
+     * the transaction is then marked as failed.
+     *
+     * @param transactionRequestDto screened by {@link TransactionService#assertAcceptableTransaction(TransactionRequestDto)}
+     * @return the pending {@link Transaction}
+     */
+    public Transaction submit(TransactionRequestDto transactionRequestDto) {
+        Transaction transaction = transactionService.acceptPendingTransaction(transactionRequestDto);
+        try {
+            enqueue(transaction.getId(), transactionRequestDto.getSourceAccountId());
+        } catch (RejectedExecutionException e) {
+            transactionService.failPendingTransaction(transaction.getId(), "Too many pending transfers");
+            throw Rejection.TRANSFER_QUEUE_FULL.exception();
+        }
+        return transaction;
+    }
+
+    /**
+     * Queues the transactions left pending by a previous run, in the order they were accepted.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumePendingTransactions() {
+        resumePendingTransactions(System.currentTimeMillis());
+    }
+
+    /**
+     * Queues the pending transactions accepted before the given time that are neither queued nor waiting for a
+     * retry on this node. A transaction finding the queue full is left to the next call.
+     *
+     * @param createdBefore epoch millis, the transactions accepted since are left out
+     */
+    public void resumePendingTransactions(long createdBefore) {
+        for (Long transactionId : transactionService.findPendingTransactionIds(createdBefore)) {
+            if (!queued.contains(transactionId) && !failedAttempts.containsKey(transactionId)) {
+                resume(transactionId);
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        // Queued transactions stay pending and are resumed on the next start
+        retryScheduler.shutdownNow();
+        for (ThreadPoolExecutor worker : workers) {
+            worker.shutdown();
+        }
+    }
+
+    private void resume(long transactionId) {
+        try {
+            Transaction transaction = transactionService.findTransactionById(transactionId);
+            enqueue(transactionId, transaction.getSourceAccount().getId());
+        } catch (RejectedExecutionException e) {
+            log.warn("Could not resume pending transaction {}, queue full", transactionId);
+        } catch (RuntimeException e) {
+            log.warn("Could not resume pending transaction {}", transactionId, e);
+        }
+    }
+
+    private void enqueue(long transactionId, long sourceAccountId) {
+        if (!queued.add(transactionId)) {
+            return;
+        }
+        try {
+            workers[Math.floorMod(Long.hashCode(sourceAccountId), workers.length)].execute(() -> {
+                queued.remove(transactionId);
+                applyPendingTransaction(transactionId);
+            });
+        } catch (RejectedExecutionException e) {
+            queued.remove(transactionId);
+            throw e;
+        }
+    }
+
+    /**
+     * Applies a pending transaction on the calling thread, does nothing if it is no longer pending. A transfer
+     * rejected by its accounts marks the transaction as failed, one failing for another reason is retried later.
+     *
+     * @param transactionId identifier of the {@link Transaction.Status#PENDING} transaction
+     */
+    public void applyPendingTransaction(long transactionId) {
+        try {
+            Transaction transaction = transactionService.findTransactionById(transactionId);
+            if (transaction.getStatus() != Transaction.Status.PENDING) {
+                failedAttempts.remove(transactionId);
+                return;
+            }
+
+            TransactionRequestDto transactionRequestDto = new TransactionRequestDto(transaction.getAmount(),
+                    transaction.getSourceAccount().getId(), transaction.getTargetAccount().getId(), transaction.getCurrency());
+            // The balance may have changed since the transfer was accepted
+            transactionService.assertValidTransaction(transactionRequestDto);
+            if (shardRouter.isSameShard(transactionRequestDto.getSourceAccountId(), transactionRequestDto.getTargetAccountId())) {
+                transactionService.completePendingTransaction(transactionId);
+            } else {
+                crossShardTransferService.execute(transactionRequestDto, transactionId);
+            }
+            failedAttempts.remove(transactionId);
+        } catch (ApiException | UnsupportedCurrencyException e) {
+            failedAttempts.remove(transactionId);
+            transactionService.failPendingTransaction(transactionId, e.getMessage());
+        } catch (RuntimeException e) {
+            retryLater(transactionId, e);
+        }
+    }
+
+    private void retryLater(long transactionId, RuntimeException failure) {
+        int attempts = failedAttempts.merge(transactionId, 1, Integer::sum);
+        if (attempts >= maxAttempts) {
+            log.error("Failed to apply pending transaction {} in {} attempts, marking it failed", transactionId, attempts, failure);
+            try {
+                transactionService.failPendingTransaction(transactionId, "Transfer could not be applied");
+                failedAttempts.remove(transactionId);
+            } catch (RuntimeException e) {
+                // Still counted as failed, marked on its next attempt
+                log.error("Failed to mark pending transaction {} failed", transactionId, e);
+                scheduleRetry(transactionId, attempts);
+            }
+            return;
+        }
+
+        log.warn("Failed to apply pending transaction {}, attempt {} of {}", transactionId, attempts, maxAttempts, failure);
+        scheduleRetry(transactionId, attempts);
+    }
+
+    private void scheduleRetry(long transactionId, int attempts) {
+        long delayMillis = retryDelayMillis << Math.min(attempts - 1, 16);
+        try {
+            retryScheduler.schedule(() -> resume(transactionId), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down, resumed on the next start
+            failedAttempts.remove(transactionId);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.tenx.payment.service;
+
+import com.tenx.payment.model.Account;
+import com.tenx.payment.model.AccountBalanceBucket;
+import com.tenx.payment.repository.AccountBalanceBucketRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Manages the sub-balance buckets of high-volume accounts.
+ *
+ * Credits to a bucketed account are spread across its buckets with an in-place increment, so concurrent
+ * incoming transfers neither touch nor bump the version of the {@link Account} row. The account balance
+ * itself stays the source of funds for debits and buckets are swept into it when it falls short.
+ */
+@Service
+public class BalanceBucketService {
+
+    private final AccountBalanceBucketRepository bucketRepository;
+    private final int bucketCount;
+
+    @Autowired
+    public BalanceBucketService(AccountBalanceBucketRepository bucketRepository,
+                                @Value("${thanks-pay.account.balance-buckets:8}") int bucketCount) {
+        this.bucketRepository = bucketRepository;
+        this.bucketCount = bucketCount;
+    }
+
+    /**
+     * Enables sub-balance buckets for a not yet persisted account. Buckets are created by
+     * {@link BalanceBucketService#createBuckets(Account)} once the account has an identifier.
+     *
+     * @param account to be flagged as high-volume
+     */
+    public void enableBuckets(Account account) {
+        account.setBalanceBuckets(bucketCount);
+    }
+
+    /**
+     * Creates the empty buckets of a persisted high-volume account.
+     *
+     * @param account the persisted account with {@link Account#getBalanceBuckets()} set
+     */
+    public void createBuckets(Account account) {
+        List<AccountBalanceBucket> buckets = new ArrayList<>(account.getBalanceBuckets());
+        for (int i = 0; i < account.getBalanceBuckets(); i++) {
+            buckets.add(new AccountBalanceBucket(account, i));
+        }
+        bucketRepository.saveAll(buckets);
+    }
+
+    /**
+     * Credits a random bucket of the account without loading or locking the account row.
+     *
+     * @param account high-volume account to credit
+     * @param amount in the currency of the account
+     */
+    @Transactional
+    public void credit(Account account, BigDecimal amount) {
+        int bucketIndex = ThreadLocalRandom.current().nextInt(account.getBalanceBuckets());
+        bucketRepository.addToBalance(account.getId(), bucketIndex, amount);
+    }
+
+    /**
+     * @param accountId identifier of the account
+     * @return the sum of all bucket balances of the account, zero if it has none
+     */
+    @Transactional(readOnly = true)
+    public BigDecimal sumBuckets(long accountId) {
+        return bucketRepository.sumBalanceByAccountId(accountId);
+    }
+
+    /**
+     * Moves the balance of every bucket into {@link Account#getBalance()}. The buckets stay locked until the
+     * surrounding transaction completes, the caller is responsible for persisting the account.
+     *
+     * @param account high-volume account to sweep
+     * @return the amount moved from the buckets to the account balance
+     */
+    @Transactional
+    public BigDecimal sweep(Account account) {
+        BigDecimal swept = BigDecimal.ZERO;
+        for (AccountBalanceBucket bucket : bucketRepository.findAllByAccountIdForUpdate(account.getId())) {
+            swept = swept.add(bucket.getBalance());
+            bucket.setBalance(BigDecimal.ZERO);
+        }
+        account.setBalance(account.getBalance().add(swept));
+        return swept;
+    }
+
+    /**
+     * @return identifiers of the accounts that have credits waiting in their buckets
+     */
+    @Transactional(readOnly = true)
+    public List<Long> findAccountIdsToCompact() {
+        return bucketRepository.findAccountIdsWithNonZeroBalance();
+    }
+}
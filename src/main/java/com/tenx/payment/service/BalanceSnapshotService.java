@@ -0,0 +1,177 @@
+package com.tenx.payment.service;
+
+import com.tenx.payment.archive.TransactionArchive;
+import com.tenx.payment.exception.Rejection;
+import com.tenx.payment.model.Account;
+import com.tenx.payment.model.BalanceSnapshot;
+import com.tenx.payment.repository.BalanceSnapshotRepository;
+import com.tenx.payment.repository.PendingTransferCreditRepository;
+import com.tenx.payment.repository.TransactionRepository;
+import com.tenx.payment.shard.ShardContext;
+import com.tenx.payment.shard.ShardRouter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.OptionalLong;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Balances of accounts at a point in time, answered from the {@link BalanceSnapshot} closing the last day
+ * before that point plus a replay of the transfers of the account since then. Snapshots are taken daily
+ * by {@link com.tenx.payment.job.BalanceSnapshotJob}, so a replay spans a day and a bit rather than the whole
+ * history of the account.
+ *
+ * Transfers are accounted at their creation time once completed, with the amounts in the currency of the
+ * account: debits and same-shard credits from {@link com.tenx.payment.model.Transaction}, credits of
+ * cross-shard transfers from {@link com.tenx.payment.model.PendingTransferCredit}. Both are kept on the
+ * shard of the account, the transactions before the archive horizon of the shard in its {@link TransactionArchive}.
+ */
+@Service
+public class BalanceSnapshotService {
+
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private final BalanceSnapshotRepository balanceSnapshotRepository;
+    private final TransactionRepository transactionRepository;
+    private final PendingTransferCreditRepository pendingTransferCreditRepository;
+    private final TransactionArchive transactionArchive;
+    private final ShardRouter shardRouter;
+
+    @Autowired
+    public BalanceSnapshotService(BalanceSnapshotRepository balanceSnapshotRepository,
+                                  TransactionRepository transactionRepository,
+                                  PendingTransferCreditRepository pendingTransferCreditRepository,
+                                  TransactionArchive transactionArchive, ShardRouter shardRouter) {
+        this.balanceSnapshotRepository = balanceSnapshotRepository;
+        this.transactionRepository = transactionRepository;
+        this.pendingTransferCreditRepository = pendingTransferCreditRepository;
+        this.transactionArchive = transactionArchive;
+        this.shardRouter = shardRouter;
+    }
+
+    /**
+     * Records the balance of a new account as the snapshot closing the day before its creation.
+     * Must be invoked on the shard of the account.
+     *
+     * @param account just persisted
+     */
+    public void recordOpeningBalance(Account account) {
+        balanceSnapshotRepository.save(new BalanceSnapshot(account.getId(), epochDay(account.getCreateAtTimestamp()) - 1,
+                BigDecimal.ZERO, BigDecimal.ZERO, account.getBalance()));
+    }
+
+    /**
+     * Balance of the account at the given time, including the credits held in its sub-balance buckets.
+     *
+     * @param account to get the balance for
+     * @param timestamp epoch millis, transfers created at that very millisecond are included
+     * @return the balance in the currency of the account
+     */
+    @Transactional(readOnly = true)
+    public BigDecimal getBalanceAt(Account account, long timestamp) {
+        if (timestamp < account.getCreateAtTimestamp()) {
+            throw Rejection.BALANCE_NOT_AVAILABLE.exception();
+        }
+
+        try (ShardContext.Scope ignored = shardRouter.useShardOf(account.getId())) {
+            BalanceSnapshot snapshot = balanceSnapshotRepository
+                    .findFirstByAccountIdAndEpochDayLessThanOrderByEpochDayDesc(account.getId(), epochDay(timestamp))
+                    .orElseThrow(Rejection.BALANCE_NOT_AVAILABLE::exception);
+            long replayFrom = startOfDay(snapshot.getEpochDay() + 1);
+            return snapshot.getClosingBalance()
+                    .add(sumCredits(account.getId(), replayFrom, timestamp + 1))
+                    .subtract(sumDebits(account.getId(), replayFrom, timestamp + 1));
+        }
+    }
+
+    /**
+     * @return the day the oldest pending transaction of the currently selected shard was accepted on, empty if none
+     */
+    @Transactional(readOnly = true)
+    public OptionalLong findOldestPendingDay() {
+        Long oldest = transactionRepository.findMinPendingCreateAtTimestamp();
+        return oldest != null ? OptionalLong.of(epochDay(oldest)) : OptionalLong.empty();
+    }
+
+    /**
+     * Snapshots the day for every account of the currently selected shard with transfers on that day and no
+     * snapshot of it yet. Days must be snapshotted in order, each snapshot builds on the previous one. A day
+     * must not be snapshotted while transactions accepted on it are pending on any shard: they are accounted at
+     * their acceptance time once completed, the snapshot would leave them out for good.
+     *
+     * @param epochDay days since 1970-01-01 in UTC
+     * @return the number of snapshots taken
+     */
+    @Transactional
+    public int snapshotDay(long epochDay) {
+        long from = startOfDay(epochDay);
+        long to = startOfDay(epochDay + 1);
+
+        TreeSet<Long> accountIds = new TreeSet<>(transactionRepository.findSourceAccountIds(from, to));
+        accountIds.addAll(transactionRepository.findTargetAccountIds(from, to));
+        accountIds.addAll(pendingTransferCreditRepository.findCreditedAccountIds(from, to));
+
+        int snapshots = 0;
+        for (Long accountId : accountIds) {
+            if (balanceSnapshotRepository.existsByAccountIdAndEpochDay(accountId, epochDay)) {
+                continue;
+            }
+            BalanceSnapshot previous = balanceSnapshotRepository
+                    .findFirstByAccountIdAndEpochDayLessThanOrderByEpochDayDesc(accountId, epochDay)
+                    .orElse(null);
+            if (previous == null) {
+                // Created before the snapshots were recorded, without an opening balance to build on
+                continue;
+            }
+
+            // Replays from the previous snapshot, the account had no transfers on the days in between
+            // unless those were never snapshotted
+            long replayFrom = startOfDay(previous.getEpochDay() + 1);
+            BigDecimal credits = sumCredits(accountId, replayFrom, to);
+            BigDecimal debits = sumDebits(accountId, replayFrom, to);
+            balanceSnapshotRepository.save(new BalanceSnapshot(accountId, epochDay, credits, debits,
+                    previous.getClosingBalance().add(credits).subtract(debits)));
+            snapshots++;
+        }
+        return snapshots;
+    }
+
+    /**
+     * @param timestamp epoch millis
+     * @return days since 1970-01-01 in UTC
+     */
+    public static long epochDay(long timestamp) {
+        return Math.floorDiv(timestamp, DAY_MILLIS);
+    }
+
+    private static long startOfDay(long epochDay) {
+        return epochDay * DAY_MILLIS;
+    }
+
+    private BigDecimal sumCredits(long accountId, long from, long to) {
+        int shardIndex = shardRouter.shardOf(accountId);
+        long archivedUntil = transactionArchive.archivedUntil(shardIndex);
+        BigDecimal credits = pendingTransferCreditRepository.sumCredits(accountId, from, to);
+        if (from < archivedUntil) {
+            credits = credits.add(transactionArchive.sumCredits(shardIndex, accountId, from, Math.min(to, archivedUntil)));
+        }
+        return to > archivedUntil
+                ? credits.add(transactionRepository.sumCredits(accountId, Math.max(from, archivedUntil), to))
+                : credits;
+    }
+
+    // Split at the archive horizon of the shard, the transactions before it are no longer in the hot table
+    private BigDecimal sumDebits(long accountId, long from, long to) {
+        int shardIndex = shardRouter.shardOf(accountId);
+        long archivedUntil = transactionArchive.archivedUntil(shardIndex);
+        BigDecimal debits = from < archivedUntil
+                ? transactionArchive.sumDebits(shardIndex, accountId, from, Math.min(to, archivedUntil))
+                : BigDecimal.ZERO;
+        return to > archivedUntil
+                ? debits.add(transactionRepository.sumDebits(accountId, Math.max(from, archivedUntil), to))
+                : debits;
+    }
+}
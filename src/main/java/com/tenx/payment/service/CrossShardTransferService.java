@@ -0,0 +1,262 @@
+package com.tenx.payment.service;
+
+import com.tenx.payment.dto.transaction.TransactionRequestDto;
+import com.tenx.payment.exception.Rejection;
+import com.tenx.payment.model.Account;
+import com.tenx.payment.model.PendingTransfer;
+import com.tenx.payment.model.PendingTransferCredit;
+import com.tenx.payment.model.Transaction;
+import com.tenx.payment.repository.AccountRepository;
+import com.tenx.payment.repository.PendingTransferCreditRepository;
+import com.tenx.payment.repository.PendingTransferRepository;
+import com.tenx.payment.repository.TransactionRepository;
+import com.tenx.payment.shard.ShardContext;
+import com.tenx.payment.shard.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Executes transfers between accounts living on different shards as a saga instead of a distributed
+ * transaction:
+ *
+ * 1. Debit the source account and record a {@link PendingTransfer} on the source shard.
+ * 2. Credit the target account and record a {@link PendingTransferCredit} on the target shard.
+ * 3. Record the {@link Transaction} with its outbox event and complete the pending transfer on the source shard.
+ *
+ * A failing credit compensates the debit. Transfers left in {@link PendingTransfer.Status#DEBITED} by a crash
+ * are resolved by {@link CrossShardTransferService#resolveInDoubt(PendingTransfer)}.
+ */
+@Slf4j
+@Service
+public class CrossShardTransferService {
+
+    private final ShardRouter shardRouter;
+    private final AccountService accountService;
+    private final CurrencyService currencyService;
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final PendingTransferRepository pendingTransferRepository;
+    private final PendingTransferCreditRepository pendingTransferCreditRepository;
+    private final OutboxService outboxService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public CrossShardTransferService(ShardRouter shardRouter, AccountService accountService,
+                                     CurrencyService currencyService, AccountRepository accountRepository,
+                                     TransactionRepository transactionRepository,
+                                     PendingTransferRepository pendingTransferRepository,
+                                     PendingTransferCreditRepository pendingTransferCreditRepository,
+                                     OutboxService outboxService, PlatformTransactionManager transactionManager) {
+        this.shardRouter = shardRouter;
+        this.accountService = accountService;
+        this.currencyService = currencyService;
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.pendingTransferRepository = pendingTransferRepository;
+        this.pendingTransferCreditRepository = pendingTransferCreditRepository;
+        this.outboxService = outboxService;
+        // Every step runs in its own transaction on its own shard
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Transfers the amount between accounts on different shards, see the class description for the steps.
+     *
+     * @param transactionRequestDto to be executed
+     * @return the persisted {@link Transaction}, stored on the shard of the source account
+     */
+    public Transaction execute(TransactionRequestDto transactionRequestDto) {
+        return execute(transactionRequestDto, null);
+    }
+
+    /**
+     * Applies a {@link Transaction.Status#PENDING} transaction between accounts on different shards. The saga
+     * completes the pending transaction instead of recording a new one, or marks it failed if compensated.
+     * A transfer already debited for the transaction is resumed rather than debited again.
+     *
+     * @param transactionRequestDto to be executed
+     * @param pendingTransactionId identifier of the pending transaction, {@code null} to record a new one
+     * @return the completed {@link Transaction}, stored on the shard of the source account
+     */
+    public Transaction execute(TransactionRequestDto transactionRequestDto, Long pendingTransactionId) {
+        PendingTransfer pendingTransfer = onShardOf(transactionRequestDto.getSourceAccountId(), () -> debit(transactionRequestDto, pendingTransactionId));
+
+        PendingTransferCredit.Status creditStatus;
+        try {
+            creditStatus = onShardOf(pendingTransfer.getTargetAccountId(), () -> credit(pendingTransfer));
+        } catch (RuntimeException e) {
+            compensate(pendingTransfer);
+            throw e;
+        }
+
+        if (creditStatus == PendingTransferCredit.Status.ABORTED) {
+            compensate(pendingTransfer);
+            throw Rejection.TRANSFER_ABORTED.exception();
+        }
+        try {
+            return onShardOf(pendingTransfer.getSourceAccountId(), () -> complete(pendingTransfer.getId()));
+        } catch (OptimisticLockingFailureException e) {
+            // Completed concurrently by the recovery, return the transaction it recorded
+            return onShardOf(pendingTransfer.getSourceAccountId(), () -> complete(pendingTransfer.getId()));
+        }
+    }
+
+    /**
+     * Completes or compensates a transfer whose outcome is unknown, e.g. after a crash between its steps.
+     * The credit is aborted unless it has already been applied, so a late credit can no longer be applied.
+     *
+     * @param pendingTransfer in {@link PendingTransfer.Status#DEBITED}
+     */
+    public void resolveInDoubt(PendingTransfer pendingTransfer) {
+        PendingTransferCredit.Status creditStatus = onShardOf(pendingTransfer.getTargetAccountId(), () -> abortCredit(pendingTransfer.getId()));
+        if (creditStatus == PendingTransferCredit.Status.CREDITED) {
+            onShardOf(pendingTransfer.getSourceAccountId(), () -> complete(pendingTransfer.getId()));
+        } else {
+            compensate(pendingTransfer);
+        }
+    }
+
+    /**
+     * @param createdBefore epoch millis
+     * @return the transfers on the currently selected shard still waiting for their credit
+     */
+    public List<PendingTransfer> findInDoubtTransfers(long createdBefore) {
+        return pendingTransferRepository.findAllByStatusAndCreateAtTimestampLessThan(PendingTransfer.Status.DEBITED, createdBefore);
+    }
+
+    private PendingTransfer debit(TransactionRequestDto transactionRequestDto, Long pendingTransactionId) {
+        if (pendingTransactionId != null) {
+            PendingTransfer existingTransfer = pendingTransferRepository.findByTransactionId(pendingTransactionId).orElse(null);
+            if (existingTransfer != null) {
+                return existingTransfer;
+            }
+        }
+
+        Account sourceAccount = accountService.findAccountById(transactionRequestDto.getSourceAccountId());
+        BigDecimal sourceAccountAmount = currencyService.convertCurrency(transactionRequestDto.getAmount(),
+                transactionRequestDto.getCurrency(), sourceAccount.getCurrency());
+
+        if (sourceAccount.hasBalanceBuckets() && sourceAccount.getBalance().compareTo(sourceAccountAmount) < 0) {
+            accountService.sweepBalanceBuckets(sourceAccount);
+        }
+        if (sourceAccount.getBalance().compareTo(sourceAccountAmount) < 0) {
+            throw Rejection.INSUFFICIENT_AMOUNT.exception();
+        }
+        sourceAccount.setBalance(sourceAccount.getBalance().subtract(sourceAccountAmount));
+        accountService.saveAccount(sourceAccount);
+
+        PendingTransfer pendingTransfer = new PendingTransfer(sourceAccount.getId(), transactionRequestDto.getTargetAccountId(),
+                transactionRequestDto.getAmount(), transactionRequestDto.getCurrency(), sourceAccountAmount);
+        pendingTransfer.setTransactionId(pendingTransactionId);
+        return pendingTransferRepository.save(pendingTransfer);
+    }
+
+    private PendingTransferCredit.Status credit(PendingTransfer pendingTransfer) {
+        PendingTransferCredit existingCredit = pendingTransferCreditRepository.findById(pendingTransfer.getId()).orElse(null);
+        if (existingCredit != null) {
+            return existingCredit.getStatus();
+        }
+
+        // Claims the credit first, a concurrent recovery aborting it makes this transaction fail
+        PendingTransferCredit credit = pendingTransferCreditRepository.saveAndFlush(
+                new PendingTransferCredit(pendingTransfer.getId(), PendingTransferCredit.Status.CREDITED));
+
+        Account targetAccount = accountService.findAccountById(pendingTransfer.getTargetAccountId());
+        BigDecimal targetAccountAmount = currencyService.convertCurrency(pendingTransfer.getAmount(),
+                pendingTransfer.getCurrency(), targetAccount.getCurrency());
+        credit.setAccountId(targetAccount.getId());
+        credit.setAmount(targetAccountAmount);
+        if (targetAccount.hasBalanceBuckets()) {
+            accountService.creditBalanceBucket(targetAccount, targetAccountAmount);
+        } else {
+            targetAccount.setBalance(targetAccount.getBalance().add(targetAccountAmount));
+            accountService.saveAccount(targetAccount);
+        }
+        return PendingTransferCredit.Status.CREDITED;
+    }
+
+    private PendingTransferCredit.Status abortCredit(long pendingTransferId) {
+        try {
+            return pendingTransferCreditRepository.findById(pendingTransferId)
+                    .orElseGet(() -> pendingTransferCreditRepository.saveAndFlush(
+                            new PendingTransferCredit(pendingTransferId, PendingTransferCredit.Status.ABORTED)))
+                    .getStatus();
+        } catch (DataIntegrityViolationException e) {
+            // The credit has been applied concurrently
+            return PendingTransferCredit.Status.CREDITED;
+        }
+    }
+
+    private Transaction complete(long pendingTransferId) {
+        PendingTransfer pendingTransfer = pendingTransferRepository.findById(pendingTransferId).orElseThrow();
+        if (pendingTransfer.getStatus() == PendingTransfer.Status.COMPLETED) {
+            return transactionRepository.findById(pendingTransfer.getTransactionId()).orElseThrow();
+        }
+
+        Transaction transaction;
+        if (pendingTransfer.getTransactionId() != null) {
+            // Transfer of a pending transaction
+            transaction = transactionRepository.findById(pendingTransfer.getTransactionId()).orElseThrow();
+            transaction.setStatus(Transaction.Status.COMPLETED);
+            transaction.setSourceAmount(pendingTransfer.getSourceAmount());
+            transaction = transactionRepository.save(transaction);
+        } else {
+            transaction = new Transaction(
+                    accountRepository.getReferenceById(pendingTransfer.getSourceAccountId()),
+                    accountRepository.getReferenceById(pendingTransfer.getTargetAccountId()),
+                    pendingTransfer.getAmount(), pendingTransfer.getCurrency());
+            transaction.setSourceAmount(pendingTransfer.getSourceAmount());
+            transaction = transactionRepository.save(transaction);
+        }
+        pendingTransfer.setStatus(PendingTransfer.Status.COMPLETED);
+        pendingTransfer.setTransactionId(transaction.getId());
+        pendingTransferRepository.save(pendingTransfer);
+        outboxService.recordTransferCompleted(transaction);
+        return transaction;
+    }
+
+    private void compensate(PendingTransfer pendingTransfer) {
+        try {
+            onShardOf(pendingTransfer.getSourceAccountId(), () -> revertDebit(pendingTransfer.getId()));
+        } catch (OptimisticLockingFailureException e) {
+            // Resolved concurrently by the recovery or by the saga itself
+            log.debug("Pending transfer {} resolved concurrently", pendingTransfer.getId());
+        }
+    }
+
+    private PendingTransfer revertDebit(long pendingTransferId) {
+        PendingTransfer pendingTransfer = pendingTransferRepository.findById(pendingTransferId).orElseThrow();
+        if (pendingTransfer.getStatus() != PendingTransfer.Status.DEBITED) {
+            return pendingTransfer;
+        }
+
+        Account sourceAccount = accountService.findAccountById(pendingTransfer.getSourceAccountId());
+        sourceAccount.setBalance(sourceAccount.getBalance().add(pendingTransfer.getSourceAmount()));
+        accountService.saveAccount(sourceAccount);
+        if (pendingTransfer.getTransactionId() != null) {
+            Transaction transaction = transactionRepository.findById(pendingTransfer.getTransactionId()).orElseThrow();
+            transaction.setStatus(Transaction.Status.FAILED);
+            transaction.setFailureReason(Rejection.TRANSFER_ABORTED.getMessage());
+            transactionRepository.save(transaction);
+        }
+        pendingTransfer.setStatus(PendingTransfer.Status.COMPENSATED);
+        return pendingTransferRepository.save(pendingTransfer);
+    }
+
+    private <T> T onShardOf(long id, Supplier<T> step) {
+        try (ShardContext.Scope ignored = shardRouter.useShardOf(id)) {
+            return transactionTemplate.execute(status -> step.get());
+        }
+    }
+}
@@ -4,31 +4,51 @@ import com.tenx.payment.exception.UnsupportedCurrencyException;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.math.MathContext;
 import java.math.RoundingMode;
+import java.util.ArrayList;
 import java.util.Currency;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.UnaryOperator;
 
 @Service
 public class CurrencyService {
 
+    // Cross rates are kept to 34 significant digits, far below the smallest unit of any currency
+    private static final MathContext CROSS_RATE_PRECISION = MathContext.DECIMAL128;
+
     private final Map<Currency, BigDecimal> exchangeRates;
 
+    // Rate from a currency to another, computed once per pair
+    private final Map<Currency, Map<Currency, BigDecimal>> crossRates;
+
     public CurrencyService() {
-        // 1 USD used as a base currency for intermediate conversions aka
+        // 1 USD used as a base currency for the quoted rates aka
         // GBP -> EUR
-        // First we convert the GBP to USD
-        // and then USD to BGN
+        // is quoted as GBP -> USD and USD -> EUR
+        // and converted with the cross rate of the two
         exchangeRates = new HashMap<>();
         exchangeRates.put(Currency.getInstance("USD"), new BigDecimal("1.00"));
         exchangeRates.put(Currency.getInstance("EUR"), new BigDecimal("0.91"));
         exchangeRates.put(Currency.getInstance("GBP"), new BigDecimal("0.78"));
         exchangeRates.put(Currency.getInstance("BGN"), new BigDecimal("1.78"));
+
+        crossRates = new HashMap<>();
+        exchangeRates.forEach((fromCurrency, fromRate) -> {
+            Map<Currency, BigDecimal> fromCrossRates = new HashMap<>();
+            exchangeRates.forEach((toCurrency, toRate) ->
+                    fromCrossRates.put(toCurrency, toRate.divide(fromRate, CROSS_RATE_PRECISION)));
+            crossRates.put(fromCurrency, fromCrossRates);
+        });
     }
 
     /**
-     * Converts amount from a given currency to targeted currency e.g. 50 USD to 46 EUR.
-     * It uses USD basis for internal conversions for mock purposes, as we don't have real conversion rates.
+     * Converts amount from a given currency to targeted currency e.g. 50 USD to 45.50 EUR.
+     * It uses USD basis for the quoted rates for mock purposes, as we don't have real conversion rates.
+     * The amount is converted with the cross rate of the two currencies and rounded once, half up to the
+     * fraction digits of the targeted currency.
      *
      * For the purposes of the assessment only USD, EUR, GBP and BGN are supported.
      *
@@ -38,21 +58,48 @@ public class CurrencyService {
      * @return the converted amount in the targeted currency
      */
     public BigDecimal convertCurrency(BigDecimal amount, Currency fromCurrency, Currency toCurrency) {
-        if (fromCurrency.equals(toCurrency)) {
-            return amount;
+        return converter(fromCurrency, toCurrency).apply(amount);
+    }
+
+    /**
+     * Converts many amounts between the same currencies, the cross rate and the rounding looked up once for all.
+     * Converts exactly like {@link CurrencyService#convertCurrency(BigDecimal, Currency, Currency)}.
+     *
+     * @param amounts to be converted
+     * @param fromCurrency from source currency
+     * @param toCurrency to targeted currency
+     * @return the converted amounts in the order of the passed amounts
+     */
+    public List<BigDecimal> convertAll(List<BigDecimal> amounts, Currency fromCurrency, Currency toCurrency) {
+        UnaryOperator<BigDecimal> converter = converter(fromCurrency, toCurrency);
+        List<BigDecimal> convertedAmounts = new ArrayList<>(amounts.size());
+        for (BigDecimal amount : amounts) {
+            convertedAmounts.add(converter.apply(amount));
         }
+        return convertedAmounts;
+    }
 
-        BigDecimal fromRate = exchangeRates.get(fromCurrency);
-        BigDecimal toRate = exchangeRates.get(toCurrency);
+    /**
+     * Conversion from a given currency to a targeted currency with the rates looked up once, for converting many
+     * amounts between the same currencies. Converts exactly like {@link CurrencyService#convertCurrency(BigDecimal, Currency, Currency)}.
+     *
+     * @param fromCurrency from source currency
+     * @param toCurrency to targeted currency
+     * @return the conversion of an amount in the source currency to the targeted currency
+     */
+    public UnaryOperator<BigDecimal> converter(Currency fromCurrency, Currency toCurrency) {
+        if (fromCurrency.equals(toCurrency)) {
+            return UnaryOperator.identity();
+        }
 
-        if (fromRate == null || toRate == null) {
+        Map<Currency, BigDecimal> fromCrossRates = crossRates.get(fromCurrency);
+        BigDecimal crossRate = fromCrossRates != null ? fromCrossRates.get(toCurrency) : null;
+        if (crossRate == null) {
             throw new UnsupportedCurrencyException("Not supported currency format, only USD, EUR, GBP and BGN supported");
         }
 
-        // Convert to USD as the intermediary currency
-        BigDecimal amountInUSD = amount.divide(fromRate, 2, RoundingMode.HALF_UP);
-
-        // Convert to the target currency
-        return amountInUSD.multiply(toRate).setScale(2, RoundingMode.HALF_UP);
+        // A single rounding, to the smallest unit of the targeted currency
+        int scale = Math.max(0, toCurrency.getDefaultFractionDigits());
+        return amount -> amount.multiply(crossRate).setScale(scale, RoundingMode.HALF_UP);
     }
 }
@@ -0,0 +1,75 @@
+package com.tenx.payment.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tenx.payment.model.OutboxEvent;
+import com.tenx.payment.model.Transaction;
+import com.tenx.payment.outbox.OutboxSink;
+import com.tenx.payment.outbox.TransferCompletedEvent;
+import com.tenx.payment.repository.OutboxEventRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Transactional outbox: events are stored by the transaction producing them and relayed to an
+ * {@link OutboxSink} afterwards, so that an event is published if and only if its change has been committed.
+ */
+@Service
+public class OutboxService {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public OutboxService(OutboxEventRepository outboxEventRepository, ObjectMapper objectMapper) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Stores a {@link TransferCompletedEvent} for the transaction. Must run in the transaction persisting it,
+     * on the shard of its source account.
+     *
+     * @param transaction the persisted {@link Transaction}
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordTransferCompleted(Transaction transaction) {
+        long sourceAccountId = transaction.getSourceAccount().getId();
+        TransferCompletedEvent event = new TransferCompletedEvent(transaction.getId(), sourceAccountId,
+                transaction.getTargetAccount().getId(), transaction.getAmount(), transaction.getCurrency(),
+                System.currentTimeMillis());
+        try {
+            outboxEventRepository.save(new OutboxEvent(sourceAccountId, TransferCompletedEvent.TYPE, objectMapper.writeValueAsString(event)));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Delivers the oldest events of the current shard to the sink and removes them from the outbox.
+     * The events stay locked until the sink acknowledged them, so concurrent relays cannot reorder them.
+     * If the sink fails nothing is removed and the batch is delivered again on the next attempt.
+     *
+     * @param sink to deliver the events to
+     * @param batchSize maximum number of events to deliver
+     * @return the number of delivered events
+     * @throws Exception thrown by the sink
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public int relay(OutboxSink sink, int batchSize) throws Exception {
+        List<OutboxEvent> events = outboxEventRepository.findOldestForUpdate(Pageable.ofSize(batchSize));
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        sink.publish(events);
+        outboxEventRepository.deleteAllInBatch(events);
+        return events.size();
+    }
+}
@@ -0,0 +1,242 @@
+package com.tenx.payment.service;
+
+import com.tenx.payment.archive.ArchivedTransaction;
+import com.tenx.payment.archive.TransactionArchive;
+import com.tenx.payment.dto.reconciliation.LedgerEntry;
+import com.tenx.payment.dto.reconciliation.ReconciliationReport;
+import com.tenx.payment.dto.reconciliation.ReconciliationReport.Discrepancy;
+import com.tenx.payment.dto.reconciliation.ReconciliationReport.Reason;
+import com.tenx.payment.model.Transaction;
+import com.tenx.payment.repository.AccountBalanceBucketRepository;
+import com.tenx.payment.repository.AccountRepository;
+import com.tenx.payment.repository.BalanceSnapshotRepository;
+import com.tenx.payment.repository.PendingTransferCreditRepository;
+import com.tenx.payment.repository.PendingTransferRepository;
+import com.tenx.payment.repository.TransactionRepository;
+import com.tenx.payment.shard.ShardContext;
+import com.tenx.payment.shard.ShardRouter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Verifies the ledger invariant of every account: its opening balance plus the credits minus the debits of
+ * its completed transfers equals its balance, including the credits held in its sub-balance buckets.
+ * Transfers are replayed with the amounts booked on each leg, so the rates of the day they were executed apply.
+ *
+ * The accounts of each shard are partitioned into ranges of identifiers which are reconciled in parallel on a
+ * fork-join pool, each range in a read-only transaction of its own streaming the ledger with a cursor. Every
+ * range holds a database connection while reconciled, the parallelism must stay below the connection pool size.
+ * The transfers before the archive horizon of a shard are replayed from its {@link TransactionArchive}.
+ */
+@Service
+public class ReconciliationService {
+
+    private final AccountRepository accountRepository;
+    private final AccountBalanceBucketRepository accountBalanceBucketRepository;
+    private final BalanceSnapshotRepository balanceSnapshotRepository;
+    private final TransactionRepository transactionRepository;
+    private final PendingTransferRepository pendingTransferRepository;
+    private final PendingTransferCreditRepository pendingTransferCreditRepository;
+    private final TransactionArchive transactionArchive;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int parallelism;
+    private final int partitionsPerShard;
+
+    @Autowired
+    public ReconciliationService(AccountRepository accountRepository,
+                                 AccountBalanceBucketRepository accountBalanceBucketRepository,
+                                 BalanceSnapshotRepository balanceSnapshotRepository,
+                                 TransactionRepository transactionRepository,
+                                 PendingTransferRepository pendingTransferRepository,
+                                 PendingTransferCreditRepository pendingTransferCreditRepository,
+                                 TransactionArchive transactionArchive,
+                                 ShardRouter shardRouter, PlatformTransactionManager transactionManager,
+                                 @Value("${thanks-pay.reconciliation.parallelism:4}") int parallelism,
+                                 @Value("${thanks-pay.reconciliation.partitions-per-shard:64}") int partitionsPerShard) {
+        this.accountRepository = accountRepository;
+        this.accountBalanceBucketRepository = accountBalanceBucketRepository;
+        this.balanceSnapshotRepository = balanceSnapshotRepository;
+        this.transactionRepository = transactionRepository;
+        this.pendingTransferRepository = pendingTransferRepository;
+        this.pendingTransferCreditRepository = pendingTransferCreditRepository;
+        this.transactionArchive = transactionArchive;
+        this.shardRouter = shardRouter;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        // Balances and ledger of a range are read from one snapshot while transfers go on
+        this.readOnlyTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.parallelism = parallelism;
+        this.partitionsPerShard = partitionsPerShard;
+    }
+
+    /**
+     * Reconciles every account of every shard.
+     *
+     * @return the report listing the accounts whose balance could not be confirmed
+     */
+    public ReconciliationReport reconcile() {
+        long startedAt = System.currentTimeMillis();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<ForkJoinTask<RangeResult>> tasks = new ArrayList<>();
+            shardRouter.forEachShard(shardIndex -> {
+                Long minId = accountRepository.findMinId();
+                Long maxId = accountRepository.findMaxId();
+                if (minId == null) {
+                    return;
+                }
+                long rangeSize = Math.max(1, (maxId - minId) / partitionsPerShard + 1);
+                for (long fromId = minId; fromId <= maxId; fromId += rangeSize) {
+                    long from = fromId;
+                    long to = Math.min(maxId, fromId + rangeSize - 1);
+                    tasks.add(pool.submit(() -> reconcileRange(shardIndex, from, to)));
+                }
+            });
+
+            long accounts = 0;
+            long legs = 0;
+            List<Discrepancy> discrepancies = new ArrayList<>();
+            for (ForkJoinTask<RangeResult> task : tasks) {
+                RangeResult result = task.join();
+                accounts += result.accounts();
+                legs += result.legs();
+                discrepancies.addAll(result.discrepancies());
+            }
+            discrepancies.sort(Comparator.comparingLong(Discrepancy::accountId));
+            return new ReconciliationReport(startedAt, System.currentTimeMillis(), accounts, legs, discrepancies);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private RangeResult reconcileRange(int shardIndex, long fromId, long toId) {
+        try (ShardContext.Scope ignored = shardRouter.useShard(shardIndex)) {
+            return readOnlyTransaction.execute(status -> {
+                Map<Long, Ledger> ledgers = new HashMap<>();
+                long archivedUntil = transactionArchive.archivedUntil(shardIndex);
+                long legs = consumeArchived(shardIndex, fromId, toId, archivedUntil, ledgers);
+
+                consume(balanceSnapshotRepository.streamOpeningBalances(fromId, toId),
+                        (ledger, amount) -> ledger.opening = amount, ledgers);
+                legs += consume(transactionRepository.streamDebits(fromId, toId, archivedUntil), Ledger::debit, ledgers);
+                legs += consume(pendingTransferRepository.streamInFlightDebits(fromId, toId), Ledger::debit, ledgers);
+                legs += consume(pendingTransferCreditRepository.streamCredits(fromId, toId), Ledger::credit, ledgers);
+                legs += consume(transactionRepository.streamCredits(fromId, toId, archivedUntil),
+                        (ledger, amount) -> credit(ledger, amount, shardIndex), ledgers);
+                consume(accountBalanceBucketRepository.streamBalances(fromId, toId),
+                        (ledger, amount) -> ledger.bucketBalance = amount, ledgers);
+
+                List<Discrepancy> discrepancies = new ArrayList<>();
+                long accounts = consume(accountRepository.streamBalances(fromId, toId), (ledger, balance) -> {
+                    Discrepancy discrepancy = ledger.verify(balance);
+                    if (discrepancy != null) {
+                        discrepancies.add(discrepancy);
+                    }
+                }, ledgers);
+                return new RangeResult(accounts, legs, discrepancies);
+            });
+        }
+    }
+
+    private long consumeArchived(int shardIndex, long fromId, long toId, long archivedUntil, Map<Long, Ledger> ledgers) {
+        long[] legs = {0};
+        transactionArchive.forEachLeg(shardIndex, fromId, toId, archivedUntil, leg -> {
+            ArchivedTransaction transaction = leg.transaction();
+            if (transaction.status() != Transaction.Status.COMPLETED) {
+                return;
+            }
+            Ledger ledger = ledgers.computeIfAbsent(leg.accountId(), Ledger::new);
+            if (leg.isDebit()) {
+                ledger.debit(transaction.sourceAmount());
+            } else {
+                credit(ledger, transaction.targetAmount(), shardIndex);
+            }
+            legs[0]++;
+        });
+        return legs[0];
+    }
+
+    // Credits of cross-shard transfers are booked on the shard of the target account
+    private void credit(Ledger ledger, BigDecimal amount, int shardIndex) {
+        if (amount != null || shardRouter.shardOf(ledger.accountId) == shardIndex) {
+            ledger.credit(amount);
+        }
+    }
+
+    private static long consume(Stream<LedgerEntry> entries, BiConsumer<Ledger, BigDecimal> booking, Map<Long, Ledger> ledgers) {
+        long count = 0;
+        try (entries) {
+            for (LedgerEntry entry : (Iterable<LedgerEntry>) entries::iterator) {
+                booking.accept(ledgers.computeIfAbsent(entry.accountId(), Ledger::new), entry.amount());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private record RangeResult(long accounts, long legs, List<Discrepancy> discrepancies) {
+    }
+
+    /**
+     * Ledger of an account replayed within a range, confined to the thread reconciling the range.
+     */
+    private static final class Ledger {
+
+        private final long accountId;
+        private BigDecimal opening;
+        private BigDecimal credits = BigDecimal.ZERO;
+        private BigDecimal debits = BigDecimal.ZERO;
+        private BigDecimal bucketBalance = BigDecimal.ZERO;
+        private boolean missingLegAmount;
+
+        private Ledger(long accountId) {
+            this.accountId = accountId;
+        }
+
+        private void credit(BigDecimal amount) {
+            if (amount == null) {
+                missingLegAmount = true;
+            } else {
+                credits = credits.add(amount);
+            }
+        }
+
+        private void debit(BigDecimal amount) {
+            if (amount == null) {
+                missingLegAmount = true;
+            } else {
+                debits = debits.add(amount);
+            }
+        }
+
+        private Discrepancy verify(BigDecimal balance) {
+            BigDecimal actual = balance.add(bucketBalance);
+            if (opening == null) {
+                return new Discrepancy(accountId, Reason.MISSING_OPENING_BALANCE, null, actual);
+            }
+            if (missingLegAmount) {
+                return new Discrepancy(accountId, Reason.MISSING_LEG_AMOUNT, null, actual);
+            }
+            BigDecimal expected = opening.add(credits).subtract(debits);
+            return expected.compareTo(actual) != 0
+                    ? new Discrepancy(accountId, Reason.BALANCE_MISMATCH, expected, actual)
+                    : null;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.tenx.payment.service;
+
+import com.tenx.payment.dto.transaction.ScheduledTransferRequestDto;
+import com.tenx.payment.dto.transaction.TransactionRequestDto;
+import com.tenx.payment.exception.InvalidTransactionException;
+import com.tenx.payment.exception.Rejection;
+import com.tenx.payment.model.ScheduledTransfer;
+import com.tenx.payment.model.Transaction;
+import com.tenx.payment.repository.ScheduledTransferRepository;
+import com.tenx.payment.repository.ScheduledTransferRepository.DueTime;
+import com.tenx.payment.shard.ShardContext;
+import com.tenx.payment.shard.ShardRouter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the future-dated and recurring transfers. A due transfer is executed by claiming it, which creates a
+ * {@link Transaction.Status#PENDING} transaction and moves the transfer to its next execution in the same database
+ * transaction: a claimed execution is never lost nor repeated, the pending transaction is applied like any other.
+ */
+@Service
+public class ScheduledTransferService {
+
+    public static final long DUE_BUCKET_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final ScheduledTransferRepository scheduledTransferRepository;
+    private final TransactionService transactionService;
+    private final AccountService accountService;
+    private final ShardRouter shardRouter;
+
+    @Autowired
+    public ScheduledTransferService(ScheduledTransferRepository scheduledTransferRepository,
+                                    TransactionService transactionService, AccountService accountService,
+                                    ShardRouter shardRouter) {
+        this.scheduledTransferRepository = scheduledTransferRepository;
+        this.transactionService = transactionService;
+        this.accountService = accountService;
+        this.shardRouter = shardRouter;
+    }
+
+    /**
+     * Schedules a transfer, either once at {@link ScheduledTransferRequestDto#getExecuteAt()} or on its cron schedule.
+     * A one-off transfer in the past is executed as soon as possible.
+     *
+     * Not transactional, the accounts may live on different shards and are each looked up on their own.
+     *
+     * @return the persisted {@link ScheduledTransfer}
+     */
+    public ScheduledTransfer schedule(ScheduledTransferRequestDto requestDto) {
+        if (requestDto.getSourceAccountId().equals(requestDto.getTargetAccountId())) {
+            throw Rejection.SAME_ACCOUNT.exception();
+        }
+        if ((requestDto.getExecuteAt() == null) == (requestDto.getCron() == null)) {
+            throw new InvalidTransactionException("Either executeAt or cron must be provided");
+        }
+        if (requestDto.getCron() != null && !CronExpression.isValidExpression(requestDto.getCron())) {
+            throw new InvalidTransactionException("Invalid cron expression");
+        }
+        String zone = requestDto.getZone() != null ? requestDto.getZone() : ZoneOffset.UTC.getId();
+        try {
+            ZoneId.of(zone);
+        } catch (DateTimeException e) {
+            throw new InvalidTransactionException("Invalid time zone");
+        }
+        accountService.findAccountById(requestDto.getSourceAccountId());
+        accountService.findAccountById(requestDto.getTargetAccountId());
+
+        ScheduledTransfer scheduledTransfer = new ScheduledTransfer(requestDto.getSourceAccountId(),
+                requestDto.getTargetAccountId(), requestDto.getAmount(), requestDto.getCurrency(), requestDto.getCron(), zone);
+        if (requestDto.getCron() != null) {
+            Long nextExecution = nextExecution(requestDto.getCron(), zone, System.currentTimeMillis());
+            if (nextExecution == null) {
+                throw new InvalidTransactionException("Cron expression never matches");
+            }
+            moveTo(scheduledTransfer, nextExecution);
+        } else {
+            moveTo(scheduledTransfer, requestDto.getExecuteAt());
+        }
+        try (ShardContext.Scope ignored = shardRouter.useShardOf(scheduledTransfer.getSourceAccountId())) {
+            return scheduledTransferRepository.save(scheduledTransfer);
+        }
+    }
+
+    public ScheduledTransfer findScheduledTransferById(long id) {
+        try (ShardContext.Scope ignored = shardRouter.useShardOf(id)) {
+            return scheduledTransferRepository.findById(id)
+                    .orElseThrow(Rejection.SCHEDULED_TRANSFER_NOT_FOUND::exception);
+        }
+    }
+
+    /**
+     * Cancels the future executions of a transfer, an execution already claimed is still applied.
+     *
+     * @return the {@link ScheduledTransfer}
+     */
+    @Transactional
+    public ScheduledTransfer cancel(long id) {
+        ScheduledTransfer scheduledTransfer = findScheduledTransferById(id);
+        if (scheduledTransfer.getStatus() == ScheduledTransfer.Status.SCHEDULED) {
+            scheduledTransfer.setStatus(ScheduledTransfer.Status.CANCELLED);
+        }
+        return scheduledTransfer;
+    }
+
+    /**
+     * @param dueBucket last minute since the epoch to include
+     * @return the transfers of the current shard due up to the end of the minute, including the overdue ones
+     */
+    @Transactional(readOnly = true)
+    public List<DueTime> findScheduledUpTo(long dueBucket) {
+        return scheduledTransferRepository.findScheduledUpTo(dueBucket);
+    }
+
+    /**
+     * Claims the transfers of the current shard that are due and not claimed by another node at the same time,
+     * creating the pending transaction of each. Transfers no longer due, because already claimed or cancelled,
+     * are left out.
+     *
+     * @param ids identifiers of the {@link ScheduledTransfer}s to claim
+     * @param now epoch millis
+     * @return the identifiers of the pending transactions to apply
+     */
+    @Transactional
+    public List<Long> claim(Collection<Long> ids, long now) {
+        List<Long> transactionIds = new ArrayList<>();
+        for (ScheduledTransfer scheduledTransfer : scheduledTransferRepository.claimDue(ids, now)) {
+            Transaction transaction = transactionService.createPendingTransaction(new TransactionRequestDto(
+                    scheduledTransfer.getAmount(), scheduledTransfer.getSourceAccountId(),
+                    scheduledTransfer.getTargetAccountId(), scheduledTransfer.getCurrency()));
+            scheduledTransfer.setLastTransactionId(transaction.getId());
+            scheduledTransfer.setExecutions(scheduledTransfer.getExecutions() + 1);
+
+            // Executions missed while no node was running are caught up once, not one by one
+            Long nextExecution = scheduledTransfer.getCron() == null ? null : nextExecution(scheduledTransfer.getCron(),
+                    scheduledTransfer.getZone(), Math.max(now, scheduledTransfer.getNextExecutionTimestamp()));
+            if (nextExecution == null) {
+                scheduledTransfer.setStatus(ScheduledTransfer.Status.COMPLETED);
+            } else {
+                moveTo(scheduledTransfer, nextExecution);
+            }
+            transactionIds.add(transaction.getId());
+        }
+        return transactionIds;
+    }
+
+    public static long dueBucketOf(long timestamp) {
+        return Math.floorDiv(timestamp, DUE_BUCKET_MILLIS);
+    }
+
+    private static void moveTo(ScheduledTransfer scheduledTransfer, long nextExecution) {
+        scheduledTransfer.setNextExecutionTimestamp(nextExecution);
+        scheduledTransfer.setDueBucket(dueBucketOf(nextExecution));
+    }
+
+    // Epoch millis of the first execution after the given time, null if there is none
+    private static Long nextExecution(String cron, String zone, long after) {
+        ZonedDateTime next = CronExpression.parse(cron)
+                .next(ZonedDateTime.ofInstant(Instant.ofEpochMilli(after), ZoneId.of(zone)));
+        return next != null ? next.toInstant().toEpochMilli() : null;
+    }
+}
@@ -0,0 +1,169 @@
+package com.tenx.payment.service;
+
+import com.tenx.payment.archive.ArchiveSegment;
+import com.tenx.payment.archive.ArchivedTransaction;
+import com.tenx.payment.archive.TransactionArchive;
+import com.tenx.payment.repository.TransactionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static com.tenx.payment.archive.TransactionArchive.startOf;
+
+/**
+ * Moves the transactions of whole months out of the hot table into the {@link TransactionArchive}. A month is
+ * archived once over and without a pending transaction, its debits and credits streamed each in the order of their
+ * account and merged into the legs of the segment, so the month is never held in memory.
+ *
+ * The rows of a month are deleted by the run after the one archiving it, day by day in a transaction of their own.
+ * By then every node reads the month from the archive, a node not knowing the segment yet still reads the rows.
+ */
+@Slf4j
+@Service
+public class TransactionArchiveService {
+
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final Comparator<ArchiveSegment.Leg> LEG_ORDER = Comparator.comparingLong(ArchiveSegment.Leg::accountId)
+            .thenComparingLong(leg -> leg.transaction().id());
+
+    private final TransactionRepository transactionRepository;
+    private final TransactionArchive transactionArchive;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+
+    @Autowired
+    public TransactionArchiveService(TransactionRepository transactionRepository, TransactionArchive transactionArchive,
+                                     PlatformTransactionManager transactionManager) {
+        this.transactionRepository = transactionRepository;
+        this.transactionArchive = transactionArchive;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Deletes the rows of the months archived by an earlier run, then archives the months of the currently
+     * selected shard over before the given time, oldest first, up to the first month with a pending transaction.
+     *
+     * @param shardIndex index of the currently selected shard
+     * @param before epoch millis, only the months over by then are archived
+     * @return the months archived
+     */
+    public List<YearMonth> archive(int shardIndex, long before) {
+        List<YearMonth> archivedMonths = transactionArchive.getArchivedMonths(shardIndex);
+        Long oldest = transactionRepository.findMinCreateAtTimestamp();
+        for (YearMonth month : archivedMonths) {
+            if (oldest != null && oldest < startOf(month.plusMonths(1))) {
+                log.info("Deleted {} archived transactions of {} on shard {}", deleteMonth(month), month, shardIndex);
+            }
+        }
+
+        oldest = transactionRepository.findMinCreateAtTimestamp();
+        if (oldest == null) {
+            return List.of();
+        }
+        List<YearMonth> archived = new ArrayList<>();
+        for (YearMonth month = YearMonth.from(Instant.ofEpochMilli(oldest).atOffset(ZoneOffset.UTC));
+             startOf(month.plusMonths(1)) <= before; month = month.plusMonths(1)) {
+            if (archivedMonths.contains(month)) {
+                continue;
+            }
+            long from = startOf(month);
+            long to = startOf(month.plusMonths(1));
+            if (transactionRepository.existsPendingCreatedBetween(from, to)) {
+                log.info("Archival of shard {} stopped at {}, pending transactions left", shardIndex, month);
+                break;
+            }
+            YearMonth archivedMonth = month;
+            ArchiveSegment segment = readOnlyTransaction.execute(status -> {
+                try (Stream<ArchivedTransaction> bySource = transactionRepository.streamCreatedBetweenBySource(from, to);
+                     Stream<ArchivedTransaction> byTarget = transactionRepository.streamCreatedBetweenByTarget(from, to)) {
+                    return transactionArchive.archive(shardIndex, archivedMonth,
+                            new MergedLegs(bySource.iterator(), byTarget.iterator()));
+                }
+            });
+            log.info("Archived {} legs of {} on shard {} in {} blocks", segment.getLegCount(), month, shardIndex,
+                    segment.getBlockCount());
+            archived.add(month);
+        }
+        return archived;
+    }
+
+    private int deleteMonth(YearMonth month) {
+        int deleted = 0;
+        for (long from = startOf(month); from < startOf(month.plusMonths(1)); from += DAY_MILLIS) {
+            long dayStart = from;
+            deleted += transactionTemplate.execute(status -> transactionRepository.deleteCreatedBetween(dayStart, dayStart + DAY_MILLIS));
+        }
+        return deleted;
+    }
+
+    /**
+     * Debit legs from the transactions in the order of their source account merged with the credit legs from the
+     * transactions in the order of their target account.
+     */
+    private static final class MergedLegs implements Iterator<ArchiveSegment.Leg> {
+
+        private final Iterator<ArchivedTransaction> bySource;
+        private final Iterator<ArchivedTransaction> byTarget;
+        private ArchiveSegment.Leg nextDebit;
+        private ArchiveSegment.Leg nextCredit;
+
+        private MergedLegs(Iterator<ArchivedTransaction> bySource, Iterator<ArchivedTransaction> byTarget) {
+            this.bySource = bySource;
+            this.byTarget = byTarget;
+            this.nextDebit = nextDebit();
+            this.nextCredit = nextCredit();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextDebit != null || nextCredit != null;
+        }
+
+        @Override
+        public ArchiveSegment.Leg next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ArchiveSegment.Leg leg;
+            if (nextCredit == null || nextDebit != null && LEG_ORDER.compare(nextDebit, nextCredit) <= 0) {
+                leg = nextDebit;
+                nextDebit = nextDebit();
+            } else {
+                leg = nextCredit;
+                nextCredit = nextCredit();
+            }
+            return leg;
+        }
+
+        private ArchiveSegment.Leg nextDebit() {
+            if (!bySource.hasNext()) {
+                return null;
+            }
+            ArchivedTransaction transaction = bySource.next();
+            return new ArchiveSegment.Leg(transaction.sourceAccountId(), transaction);
+        }
+
+        private ArchiveSegment.Leg nextCredit() {
+            if (!byTarget.hasNext()) {
+                return null;
+            }
+            ArchivedTransaction transaction = byTarget.next();
+            return new ArchiveSegment.Leg(transaction.targetAccountId(), transaction);
+        }
+    }
+}
@@ -1,18 +1,43 @@
 package com.tenx.payment.service;
 
+import com.tenx.payment.archive.ArchivedTransaction;
+import com.tenx.payment.archive.TransactionArchive;
+import com.tenx.payment.dto.transaction.SplitTransferRequestDto;
 import com.tenx.payment.dto.transaction.TransactionRequestDto;
+import com.tenx.payment.exception.ApiException;
 import com.tenx.payment.exception.InvalidTransactionException;
+import com.tenx.payment.exception.Rejection;
+import com.tenx.payment.exception.TransactionNotFoundException;
 import com.tenx.payment.model.Account;
 import com.tenx.payment.model.Transaction;
 import com.tenx.payment.repository.TransactionRepository;
-import jakarta.persistence.OptimisticLockException;
+import com.tenx.payment.risk.RiskScreening;
+import com.tenx.payment.shard.ShardContext;
+import com.tenx.payment.shard.ShardRouter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.retry.annotation.Backoff;
 import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Currency;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.UnaryOperator;
 
 @Service
 public class TransactionService {
@@ -20,13 +45,30 @@ public class TransactionService {
     private final AccountService accountService;
     private final TransactionRepository transactionRepository;
     private final CurrencyService currencyService;
+    private final ShardRouter shardRouter;
+    private final CrossShardTransferService crossShardTransferService;
+    private final OutboxService outboxService;
+    private final TransactionTemplate transactionTemplate;
+    private final TransferRetry transferRetry;
+    private final RiskScreening riskScreening;
+    private final TransactionArchive transactionArchive;
 
     @Autowired
     public TransactionService(AccountService accountService, TransactionRepository transactionRepository,
-                              CurrencyService currencyService) {
+                              CurrencyService currencyService, ShardRouter shardRouter,
+                              CrossShardTransferService crossShardTransferService, OutboxService outboxService,
+                              PlatformTransactionManager transactionManager, TransferRetry transferRetry,
+                              RiskScreening riskScreening, TransactionArchive transactionArchive) {
         this.accountService = accountService;
         this.transactionRepository = transactionRepository;
         this.currencyService = currencyService;
+        this.shardRouter = shardRouter;
+        this.crossShardTransferService = crossShardTransferService;
+        this.outboxService = outboxService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transferRetry = transferRetry;
+        this.riskScreening = riskScreening;
+        this.transactionArchive = transactionArchive;
     }
 
     /**
@@ -39,29 +81,104 @@ public class TransactionService {
      * 1. Check against same account money transfers.
      * 2. Check against insufficient currency is source account.
      *
+     * Runs as a read-only transaction and may therefore be served by a read replica.
+     *
      * @param transactionRequestDto to be validated
      */
+    @Transactional(readOnly = true)
     public void assertValidTransaction(TransactionRequestDto transactionRequestDto) {
+        assertValidTransaction(transactionRequestDto, false);
+    }
+
+    /**
+     * Validates the {@link TransactionRequestDto} like {@link TransactionService#assertValidTransaction(TransactionRequestDto)},
+     * screening the transfer by the {@link RiskScreening} before its balance check. Meant for transfers accepted
+     * from clients, each of them screened once. The transfer counts towards the activity of the source account once
+     * accepted by {@link TransactionService#acceptPendingTransaction(TransactionRequestDto)}.
+     *
+     * @param transactionRequestDto to be screened and validated
+     */
+    @Transactional(readOnly = true)
+    public void assertAcceptableTransaction(TransactionRequestDto transactionRequestDto) {
+        assertValidTransaction(transactionRequestDto, true);
+    }
+
+    private void assertValidTransaction(TransactionRequestDto transactionRequestDto, boolean screen) {
         if (transactionRequestDto.getSourceAccountId().equals(transactionRequestDto.getTargetAccountId())) {
-            throw new InvalidTransactionException("Source and target account must be different");
+            throw Rejection.SAME_ACCOUNT.exception();
         }
 
         Account sourceAccount = accountService.findAccountById(transactionRequestDto.getSourceAccountId());
+        BigDecimal sourceAmount = toSourceAmount(sourceAccount, transactionRequestDto);
+        if (screen) {
+            riskScreening.evaluate(sourceAccount, sourceAmount).ifPresent(rejection -> {
+                throw rejection.exception();
+            });
+        }
+        if (!hasSufficientBalance(sourceAccount, sourceAmount)) {
+            throw Rejection.INSUFFICIENT_AMOUNT.exception();
+        }
+    }
 
-        // Check if the amount in the currency we are transferring is available in source account
+    /**
+     * Validates and executes the transfer like {@link TransactionService#assertAcceptableTransaction(TransactionRequestDto)}
+     * followed by {@link TransactionService#execute(TransactionRequestDto)}, but reports expected business
+     * failures as a {@link Rejection} instead of throwing.
+     *
+     * @param transactionRequestDto to be validated and executed
+     * @return the persisted {@link Transaction} or the reason of the rejection
+     */
+    public TransferResult tryExecute(TransactionRequestDto transactionRequestDto) {
+        if (transactionRequestDto.getSourceAccountId().equals(transactionRequestDto.getTargetAccountId())) {
+            return TransferResult.rejected(Rejection.SAME_ACCOUNT);
+        }
+
+        Optional<Account> sourceAccount = accountService.findAccount(transactionRequestDto.getSourceAccountId());
+        if (sourceAccount.isEmpty() || accountService.findAccount(transactionRequestDto.getTargetAccountId()).isEmpty()) {
+            return TransferResult.rejected(Rejection.ACCOUNT_NOT_FOUND);
+        }
+        BigDecimal sourceAmount = toSourceAmount(sourceAccount.get(), transactionRequestDto);
+        Optional<Rejection> riskRejection = riskScreening.evaluate(sourceAccount.get(), sourceAmount);
+        if (riskRejection.isPresent()) {
+            return TransferResult.rejected(riskRejection.get());
+        }
+        if (!hasSufficientBalance(sourceAccount.get(), sourceAmount)) {
+            return TransferResult.rejected(Rejection.INSUFFICIENT_AMOUNT);
+        }
+
+        try {
+            // Invoked on this instance rather than through the proxy, retried here
+            Transaction transaction = transferRetry.execute(() ->
+                    transactionTemplate.execute(status -> execute(transactionRequestDto)));
+            // Counted once committed, not when rejected for its balance or rolled back
+            riskScreening.recordAfterCommit(sourceAccount.get().getId(), sourceAmount);
+            return TransferResult.completed(transaction);
+        } catch (ApiException e) {
+            if (e.getRejection() == null) {
+                throw e;
+            }
+            // Rejected by a concurrent change, e.g. an aborted cross-shard transfer
+            return TransferResult.rejected(e.getRejection());
+        }
+    }
+
+    // Amount of the transfer in the currency of the source account
+    private BigDecimal toSourceAmount(Account sourceAccount, TransactionRequestDto transactionRequestDto) {
         BigDecimal transactionAmount = transactionRequestDto.getAmount();
         Currency transactionCurrency = transactionRequestDto.getCurrency();
-        BigDecimal amountToVerify;
         if (!sourceAccount.getCurrency().equals(transactionCurrency)) {
             // Currencies are different => convert the amount in the source account currency
-            amountToVerify = currencyService.convertCurrency(transactionAmount, transactionCurrency, sourceAccount.getCurrency());
-        } else {
-            amountToVerify = transactionAmount;
+            return currencyService.convertCurrency(transactionAmount, transactionCurrency, sourceAccount.getCurrency());
         }
+        return transactionAmount;
+    }
 
-        if (sourceAccount.getBalance().compareTo(amountToVerify) < 0) {
-            throw new InvalidTransactionException("Insufficient amount");
-        }
+    private boolean hasSufficientBalance(Account sourceAccount, BigDecimal sourceAmount) {
+        // Check if the amount in the currency we are transferring is available in source account
+        BigDecimal availableBalance = sourceAccount.hasBalanceBuckets()
+                ? accountService.getTotalBalance(sourceAccount)
+                : sourceAccount.getBalance();
+        return availableBalance.compareTo(sourceAmount) >= 0;
     }
 
     /**
@@ -72,32 +189,410 @@ public class TransactionService {
      * The method must be executed with conjunction of {@link TransactionService#assertValidTransaction(TransactionRequestDto)}
      * to ensure the integrity of the transaction internals.
      *
+     * Transfers between accounts on different shards are delegated to {@link CrossShardTransferService}.
+     * A transfer completed event is recorded in the outbox as part of the same transaction.
+     *
      * @param transactionRequestDto to be executed and persisted
      * @return the persisted {@link Transaction}
      */
     @Transactional
-    @Retryable(retryFor = {OptimisticLockException.class})
+    @Retryable(retryFor = ConcurrencyFailureException.class, listeners = TransferRetry.LISTENER,
+            maxAttemptsExpression = "${thanks-pay.transfer.retry.max-attempts:5}",
+            backoff = @Backoff(delayExpression = "${thanks-pay.transfer.retry.delay-ms:5}",
+                    maxDelayExpression = "${thanks-pay.transfer.retry.max-delay-ms:100}", multiplier = 2, random = true))
     public Transaction execute(TransactionRequestDto transactionRequestDto) {
+        if (!shardRouter.isSameShard(transactionRequestDto.getSourceAccountId(), transactionRequestDto.getTargetAccountId())) {
+            // Accounts in different databases cannot share a transaction
+            return crossShardTransferService.execute(transactionRequestDto);
+        }
+
         Account sourceAccount = accountService.findAccountById(transactionRequestDto.getSourceAccountId());
         Account targetAccount = accountService.findAccountById(transactionRequestDto.getTargetAccountId());
-        BigDecimal transactionAmount = transactionRequestDto.getAmount();
-        Currency transactionCurrency = transactionRequestDto.getCurrency();
+        Transaction transaction = new Transaction(sourceAccount, targetAccount, transactionRequestDto.getAmount(), transactionRequestDto.getCurrency());
+        transfer(transaction, sourceAccount, targetAccount);
+
+        // Persist the transaction entity, its identifier is allocated on the shard of the source account
+        try (ShardContext.Scope ignored = shardRouter.useShardOf(sourceAccount.getId())) {
+            Transaction savedTransaction = transactionRepository.save(transaction);
+            outboxService.recordTransferCompleted(savedTransaction);
+            return savedTransaction;
+        }
+    }
+
+    /**
+     * Executes a split transfer atomically: all its debits and credits are applied in one database transaction or
+     * none is. The transfer is booked as one {@link Transaction} per pair of debited and credited account, pairing
+     * the legs in the order of the request, so the ledger, the point-in-time balances and the outbox handle it like
+     * any other transfer.
+     *
+     * The accounts are locked in the order of their identifiers up front, concurrent split transfers sharing
+     * accounts wait for each other instead of deadlocking or retrying. Amounts are converted with one converter per
+     * currency of the accounts. All accounts must live on the same shard, a split transfer cannot span databases.
+     * Every debited account is screened by the {@link RiskScreening} once, on its net debit, before the balances
+     * are checked.
+     *
+     * @param splitTransferRequestDto the validated legs of the transfer
+     * @return the persisted transactions
+     */
+    @Transactional
+    public List<Transaction> executeSplit(SplitTransferRequestDto splitTransferRequestDto) {
+        Map<Long, BigDecimal> debits = sumByAccount(splitTransferRequestDto.getDebits());
+        Map<Long, BigDecimal> credits = sumByAccount(splitTransferRequestDto.getCredits());
+        if (debits.keySet().stream().anyMatch(credits::containsKey)) {
+            throw Rejection.SAME_ACCOUNT.exception();
+        }
+        if (debits.values().stream().reduce(BigDecimal.ZERO, BigDecimal::add)
+                .compareTo(credits.values().stream().reduce(BigDecimal.ZERO, BigDecimal::add)) != 0) {
+            throw new InvalidTransactionException("Debits and credits must sum up to the same amount");
+        }
+        Set<Long> accountIds = new TreeSet<>(debits.keySet());
+        accountIds.addAll(credits.keySet());
+
+        try (ShardContext.Scope ignored = useShardOfAll(accountIds, "Accounts of a split transfer must live on the same shard")) {
+            Map<Long, Account> accounts = lockAccounts(accountIds);
+            Currency currency = splitTransferRequestDto.getCurrency();
+            Converters converters = new Converters();
+            List<Transaction> transactions = new ArrayList<>();
+            Iterator<Map.Entry<Long, BigDecimal>> debitLegs = debits.entrySet().iterator();
+            Iterator<Map.Entry<Long, BigDecimal>> creditLegs = credits.entrySet().iterator();
+            Map.Entry<Long, BigDecimal> debitLeg = debitLegs.next();
+            Map.Entry<Long, BigDecimal> creditLeg = creditLegs.next();
+            BigDecimal debitLeft = debitLeg.getValue();
+            BigDecimal creditLeft = creditLeg.getValue();
+            while (true) {
+                BigDecimal amount = debitLeft.min(creditLeft);
+                transactions.add(converters.book(new Transaction(accounts.get(debitLeg.getKey()),
+                        accounts.get(creditLeg.getKey()), amount, currency)));
+
+                debitLeft = debitLeft.subtract(amount);
+                creditLeft = creditLeft.subtract(amount);
+                if (debitLeft.signum() == 0) {
+                    if (!debitLegs.hasNext()) {
+                        break;
+                    }
+                    debitLeg = debitLegs.next();
+                    debitLeft = debitLeg.getValue();
+                }
+                if (creditLeft.signum() == 0) {
+                    creditLeg = creditLegs.next();
+                    creditLeft = creditLeg.getValue();
+                }
+            }
+            return settle(transactions);
+        }
+    }
+
+    /**
+     * Executes a batch of transfers atomically, netted: the transfers are not applied one by one, each account
+     * gets a single balance update by its net position over the whole batch, flows in opposite directions between
+     * the same accounts cancelling out. Every transfer is still recorded as a {@link Transaction} of its own,
+     * inserted in JDBC batches.
+     *
+     * Only the net positions must be covered by the balances, an account may pay out of what the same batch pays
+     * into it. The accounts are locked in the order of their identifiers and must all live on the same shard.
+     * Every account the batch debits on balance is screened by the {@link RiskScreening} once, on its net debit,
+     * before the balances are checked, a settlement run counts as a single transfer of each payer.
+     *
+     * @param transactionRequestDtos the validated transfers of the batch
+     * @return the persisted transactions, in the order of the batch
+     */
+    @Transactional
+    public List<Transaction> executeBatch(List<TransactionRequestDto> transactionRequestDtos) {
+        Set<Long> accountIds = new TreeSet<>();
+        for (TransactionRequestDto transactionRequestDto : transactionRequestDtos) {
+            if (transactionRequestDto.getSourceAccountId().equals(transactionRequestDto.getTargetAccountId())) {
+                throw Rejection.SAME_ACCOUNT.exception();
+            }
+            accountIds.add(transactionRequestDto.getSourceAccountId());
+            accountIds.add(transactionRequestDto.getTargetAccountId());
+        }
+        if (accountIds.isEmpty()) {
+            return List.of();
+        }
+
+        try (ShardContext.Scope ignored = useShardOfAll(accountIds, "Accounts of a transfer batch must live on the same shard")) {
+            Map<Long, Account> accounts = lockAccounts(accountIds);
+            Converters converters = new Converters();
+            List<Transaction> transactions = new ArrayList<>(transactionRequestDtos.size());
+            for (TransactionRequestDto transactionRequestDto : transactionRequestDtos) {
+                transactions.add(converters.book(new Transaction(accounts.get(transactionRequestDto.getSourceAccountId()),
+                        accounts.get(transactionRequestDto.getTargetAccountId()), transactionRequestDto.getAmount(),
+                        transactionRequestDto.getCurrency())));
+            }
+            return settle(transactions);
+        }
+    }
+
+    private ShardContext.Scope useShardOfAll(Set<Long> accountIds, String crossShardMessage) {
+        long firstAccountId = accountIds.iterator().next();
+        if (accountIds.stream().anyMatch(accountId -> !shardRouter.isSameShard(firstAccountId, accountId))) {
+            throw new InvalidTransactionException(crossShardMessage);
+        }
+        return shardRouter.useShardOf(firstAccountId);
+    }
+
+    private Map<Long, Account> lockAccounts(Set<Long> accountIds) {
+        Map<Long, Account> accounts = accountService.lockAccounts(accountIds);
+        if (accounts.size() != accountIds.size()) {
+            throw Rejection.ACCOUNT_NOT_FOUND.exception();
+        }
+        return accounts;
+    }
+
+    // Applies the net position of every account over the booked transactions with a single balance update each,
+    // screening every account debited on balance once on its net debit, then persists the transactions. The
+    // accounts must be locked.
+    private List<Transaction> settle(List<Transaction> transactions) {
+        Map<Long, Account> accounts = new HashMap<>();
+        Map<Long, BigDecimal> positions = new TreeMap<>();
+        for (Transaction transaction : transactions) {
+            accounts.putIfAbsent(transaction.getSourceAccount().getId(), transaction.getSourceAccount());
+            accounts.putIfAbsent(transaction.getTargetAccount().getId(), transaction.getTargetAccount());
+            positions.merge(transaction.getSourceAccount().getId(), transaction.getSourceAmount().negate(), BigDecimal::add);
+            positions.merge(transaction.getTargetAccount().getId(), transaction.getTargetAmount(), BigDecimal::add);
+        }
+
+        positions.forEach((accountId, position) -> {
+            if (position.signum() < 0) {
+                // Recorded in the activity of the account only once the settlement commits
+                riskScreening.screen(accounts.get(accountId), position.negate()).ifPresent(rejection -> {
+                    throw rejection.exception();
+                });
+            }
+        });
+        positions.forEach((accountId, position) -> {
+            Account account = accounts.get(accountId);
+            if (position.signum() < 0) {
+                if (accountService.getTotalBalance(account).compareTo(position.negate()) < 0) {
+                    throw Rejection.INSUFFICIENT_AMOUNT.exception();
+                }
+                debit(account, position.negate());
+            } else if (position.signum() > 0) {
+                credit(account, position);
+            }
+        });
+
+        List<Transaction> savedTransactions = transactionRepository.saveAll(transactions);
+        savedTransactions.forEach(outboxService::recordTransferCompleted);
+        return savedTransactions;
+    }
+
+    /**
+     * Persists a {@link Transaction.Status#PENDING} transaction to be applied later by
+     * {@link TransactionService#completePendingTransaction(long)}, or by {@link CrossShardTransferService}
+     * for accounts on different shards. The transaction is stored on the shard of the source account.
+     *
+     * @param transactionRequestDto validated by {@link TransactionService#assertValidTransaction(TransactionRequestDto)}
+     * @return the persisted pending {@link Transaction}
+     */
+    @Transactional
+    public Transaction createPendingTransaction(TransactionRequestDto transactionRequestDto) {
+        Account sourceAccount = accountService.findAccountById(transactionRequestDto.getSourceAccountId());
+        Account targetAccount = accountService.getAccountReference(transactionRequestDto.getTargetAccountId());
+        Transaction transaction = new Transaction(sourceAccount, targetAccount, transactionRequestDto.getAmount(), transactionRequestDto.getCurrency());
+        transaction.setStatus(Transaction.Status.PENDING);
+        try (ShardContext.Scope ignored = shardRouter.useShardOf(sourceAccount.getId())) {
+            return transactionRepository.save(transaction);
+        }
+    }
+
+    /**
+     * Persists a transfer accepted from a client like {@link TransactionService#createPendingTransaction(TransactionRequestDto)},
+     * counting it towards the activity of the source account in the {@link RiskScreening} once committed.
+     *
+     * @param transactionRequestDto screened by {@link TransactionService#assertAcceptableTransaction(TransactionRequestDto)}
+     * @return the persisted pending {@link Transaction}
+     */
+    @Transactional
+    public Transaction acceptPendingTransaction(TransactionRequestDto transactionRequestDto) {
+        Transaction transaction = createPendingTransaction(transactionRequestDto);
+        Account sourceAccount = transaction.getSourceAccount();
+        riskScreening.recordAfterCommit(sourceAccount.getId(), toSourceAmount(sourceAccount, transactionRequestDto));
+        return transaction;
+    }
+
+    /**
+     * Applies a pending transaction between accounts on the same shard, does nothing if it is no longer pending.
+     *
+     * @param transactionId identifier of the {@link Transaction.Status#PENDING} transaction
+     * @return the {@link Transaction}
+     */
+    @Transactional
+    @Retryable(retryFor = ConcurrencyFailureException.class, listeners = TransferRetry.LISTENER,
+            maxAttemptsExpression = "${thanks-pay.transfer.retry.max-attempts:5}",
+            backoff = @Backoff(delayExpression = "${thanks-pay.transfer.retry.delay-ms:5}",
+                    maxDelayExpression = "${thanks-pay.transfer.retry.max-delay-ms:100}", multiplier = 2, random = true))
+    public Transaction completePendingTransaction(long transactionId) {
+        Transaction transaction = findTransactionById(transactionId);
+        if (transaction.getStatus() != Transaction.Status.PENDING) {
+            return transaction;
+        }
+
+        Account sourceAccount = accountService.findAccountById(transaction.getSourceAccount().getId());
+        Account targetAccount = accountService.findAccountById(transaction.getTargetAccount().getId());
+        transfer(transaction, sourceAccount, targetAccount);
+
+        transaction.setStatus(Transaction.Status.COMPLETED);
+        outboxService.recordTransferCompleted(transaction);
+        return transactionRepository.save(transaction);
+    }
+
+    /**
+     * Marks a pending transaction as failed, does nothing if it is no longer pending.
+     *
+     * @param transactionId identifier of the {@link Transaction.Status#PENDING} transaction
+     * @param failureReason reported to the client
+     */
+    @Transactional
+    public void failPendingTransaction(long transactionId, String failureReason) {
+        Transaction transaction = findTransactionById(transactionId);
+        if (transaction.getStatus() == Transaction.Status.PENDING) {
+            transaction.setStatus(Transaction.Status.FAILED);
+            transaction.setFailureReason(failureReason);
+            transactionRepository.save(transaction);
+        }
+    }
+
+    /**
+     * Finds transaction by identifier or throws {@link TransactionNotFoundException} if not found. A transaction
+     * missing from the hot table of its shard is looked up in the {@link TransactionArchive} of the shard, reading the
+     * blocks of each archived month whose range of identifiers covers it.
+     *
+     * @param transactionId identifier of the transaction
+     * @return the found {@link Transaction}
+     */
+    @Transactional(readOnly = true)
+    public Transaction findTransactionById(long transactionId) {
+        int shardIndex = shardRouter.shardOf(transactionId);
+        long archivedUntil = transactionArchive.archivedUntil(shardIndex);
+        try (ShardContext.Scope ignored = shardRouter.useShard(shardIndex)) {
+            return transactionRepository.findById(transactionId)
+                    .or(() -> transactionArchive.findById(shardIndex, transactionId, archivedUntil)
+                            .map(ArchivedTransaction::toTransaction))
+                    .orElseThrow(Rejection.TRANSACTION_NOT_FOUND::exception);
+        }
+    }
+
+    /**
+     * @param createdBefore epoch millis, the transactions accepted since are left out
+     * @return the identifiers of the transactions of every shard still waiting to be applied, oldest first per shard
+     */
+    public List<Long> findPendingTransactionIds(long createdBefore) {
+        List<Long> transactionIds = new ArrayList<>();
+        shardRouter.forEachShard(shardIndex -> transactionRepository
+                .findAllByStatusAndCreateAtTimestampLessThanOrderById(Transaction.Status.PENDING, createdBefore)
+                .forEach(transaction -> transactionIds.add(transaction.getId())));
+        return transactionIds;
+    }
+
+    /**
+     * Finds the transactions the account took part in either as source or as target, newest first.
+     * Transactions are stored on the shard of their source account, so the history is gathered from every shard,
+     * from its hot table and from its {@link TransactionArchive}.
+     *
+     * @param accountId identifier of the account
+     * @param pageable the page of the history to return
+     * @return the page of {@link Transaction} of the account
+     */
+    public List<Transaction> findTransactionsByAccountId(long accountId, Pageable pageable) {
+        accountService.findAccountById(accountId);
+        if (!shardRouter.isSharded() && transactionArchive.archivedUntil(0) == 0) {
+            return transactionRepository.findAllByAccountId(accountId, 0, pageable);
+        }
+
+        // Every shard may contribute the whole page, fetch up to its end from each and merge. The archived
+        // transactions are older than the ones in the hot table, only needed when those do not fill the page.
+        int upToPageEnd = (int) pageable.getOffset() + pageable.getPageSize();
+        List<Transaction> transactions = new ArrayList<>();
+        shardRouter.forEachShard(shardIndex -> {
+            long archivedUntil = transactionArchive.archivedUntil(shardIndex);
+            List<Transaction> hot = transactionRepository.findAllByAccountId(accountId, archivedUntil, Pageable.ofSize(upToPageEnd));
+            transactions.addAll(hot);
+            if (archivedUntil > 0 && hot.size() < upToPageEnd) {
+                transactionArchive.findByAccountId(shardIndex, accountId, archivedUntil, upToPageEnd - hot.size())
+                        .forEach(archived -> transactions.add(archived.toTransaction()));
+            }
+        });
+        return transactions.stream()
+                .sorted(Comparator.comparing(Transaction::getId).reversed())
+                .skip(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .toList();
+    }
+
+    private void transfer(Transaction transaction, Account sourceAccount, Account targetAccount) {
+        BigDecimal transactionAmount = transaction.getAmount();
+        Currency transactionCurrency = transaction.getCurrency();
 
         // Convert transactionAmount with the source account currency
         BigDecimal sourceAccountAmount = currencyService.convertCurrency(transactionAmount, transactionCurrency, sourceAccount.getCurrency());
-
-        // Subtract the amount from the source account and persist
-        sourceAccount.setBalance(sourceAccount.getBalance().subtract(sourceAccountAmount));
-        accountService.saveAccount(sourceAccount);
+        debit(sourceAccount, sourceAccountAmount);
 
         // Convert transactionAmount with the target account currency
         BigDecimal targetAccountAmount = currencyService.convertCurrency(transactionAmount, transactionCurrency, targetAccount.getCurrency());
+        credit(targetAccount, targetAccountAmount);
 
-        // Add the transferred amount in currency format of the account and persist
-        targetAccount.setBalance(targetAccount.getBalance().add(targetAccountAmount));
-        accountService.saveAccount(targetAccount);
+        // Amounts in the currencies of the accounts, replayed by the point-in-time balances
+        transaction.setSourceAmount(sourceAccountAmount);
+        transaction.setTargetAmount(targetAccountAmount);
+    }
+
+    private void debit(Account account, BigDecimal amount) {
+        if (account.hasBalanceBuckets() && account.getBalance().compareTo(amount) < 0) {
+            // Not enough in the main balance, pull in the credits waiting in the sub-balance buckets
+            accountService.sweepBalanceBuckets(account);
+        }
 
-        // Persist the transaction entity
-        return transactionRepository.save(new Transaction(sourceAccount, targetAccount, transactionAmount,  transactionCurrency));
+        // Checked again within the transaction, the transfer may have been validated against an older balance
+        if (account.getBalance().compareTo(amount) < 0) {
+            throw Rejection.INSUFFICIENT_AMOUNT.exception();
+        }
+
+        // Subtract the amount from the account and persist
+        account.setBalance(account.getBalance().subtract(amount));
+        accountService.saveAccount(account);
+    }
+
+    private void credit(Account account, BigDecimal amount) {
+        if (account.hasBalanceBuckets()) {
+            // High-volume accounts are credited through a sub-balance bucket to keep their row uncontended
+            accountService.creditBalanceBucket(account, amount);
+        } else {
+            // Add the transferred amount in currency format of the account and persist
+            account.setBalance(account.getBalance().add(amount));
+            accountService.saveAccount(account);
+        }
+    }
+
+    // Legs of the same account merged, in the order of the request
+    private static Map<Long, BigDecimal> sumByAccount(List<SplitTransferRequestDto.Leg> legs) {
+        Map<Long, BigDecimal> amounts = new LinkedHashMap<>();
+        for (SplitTransferRequestDto.Leg leg : legs) {
+            amounts.merge(leg.getAccountId(), leg.getAmount(), BigDecimal::add);
+        }
+        return amounts;
+    }
+
+    /**
+     * Converters of the transactions booked together, looked up once per currency pair.
+     */
+    private final class Converters {
+
+        private final Map<Currency, Map<Currency, UnaryOperator<BigDecimal>>> converters = new HashMap<>();
+
+        // Sets the amounts of the transaction in the currencies of its accounts
+        private Transaction book(Transaction transaction) {
+            transaction.setSourceAmount(convert(transaction.getAmount(), transaction.getCurrency(),
+                    transaction.getSourceAccount().getCurrency()));
+            transaction.setTargetAmount(convert(transaction.getAmount(), transaction.getCurrency(),
+                    transaction.getTargetAccount().getCurrency()));
+            return transaction;
+        }
+
+        private BigDecimal convert(BigDecimal amount, Currency fromCurrency, Currency toCurrency) {
+            return converters.computeIfAbsent(fromCurrency, currency -> new HashMap<>())
+                    .computeIfAbsent(toCurrency, currency -> currencyService.converter(fromCurrency, currency))
+                    .apply(amount);
+        }
     }
 }
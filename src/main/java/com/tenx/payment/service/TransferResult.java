@@ -0,0 +1,23 @@
+package com.tenx.payment.service;
+
+import com.tenx.payment.exception.Rejection;
+import com.tenx.payment.model.Transaction;
+
+/**
+ * Outcome of {@link TransactionService#tryExecute(com.tenx.payment.dto.transaction.TransactionRequestDto)}:
+ * either the executed transaction or the reason it was rejected.
+ */
+public record TransferResult(Transaction transaction, Rejection rejection) {
+
+    public static TransferResult completed(Transaction transaction) {
+        return new TransferResult(transaction, null);
+    }
+
+    public static TransferResult rejected(Rejection rejection) {
+        return new TransferResult(null, rejection);
+    }
+
+    public boolean isCompleted() {
+        return rejection == null;
+    }
+}
@@ -0,0 +1,86 @@
+package com.tenx.payment.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.retry.RetryCallback;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.RetryListener;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Retries transfers failing on a concurrent change of their accounts, a version conflict on the account row or a
+ * deadlock, in a new database transaction each time. Backs off exponentially with jitter, so transfers colliding on
+ * a hot account do not collide again in lockstep.
+ *
+ * Listens to the {@link org.springframework.retry.annotation.Retryable} transfers as well and counts every attempt,
+ * so the conflicts under load can be told apart from the transfers that gave up.
+ */
+@Component(TransferRetry.LISTENER)
+public class TransferRetry implements RetryListener {
+
+    public static final String LISTENER = "transferRetry";
+
+    public record Stats(long transfers, long conflicts, long exhausted) {
+
+        /**
+         * @return the attempts repeated after a conflict, the conflicts of the transfers that gave up excluded
+         */
+        public long retries() {
+            return conflicts - exhausted;
+        }
+    }
+
+    private final RetryTemplate retryTemplate;
+    private final LongAdder transfers = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+
+    @Autowired
+    public TransferRetry(@Value("${thanks-pay.transfer.retry.max-attempts:5}") int maxAttempts,
+                         @Value("${thanks-pay.transfer.retry.delay-ms:5}") long delayMillis,
+                         @Value("${thanks-pay.transfer.retry.max-delay-ms:100}") long maxDelayMillis) {
+        this.retryTemplate = RetryTemplate.builder()
+                .maxAttempts(maxAttempts)
+                .exponentialBackoff(delayMillis, 2, maxDelayMillis, true)
+                .retryOn(ConcurrencyFailureException.class)
+                .withListener(this)
+                .build();
+    }
+
+    /**
+     * @param transfer executing the transfer in its own database transaction
+     * @return the result of the first attempt without a conflict
+     */
+    public <T> T execute(Supplier<T> transfer) {
+        return retryTemplate.execute(context -> transfer.get());
+    }
+
+    public Stats getStats() {
+        return new Stats(transfers.sum(), conflicts.sum(), exhausted.sum());
+    }
+
+    @Override
+    public <T, E extends Throwable> boolean open(RetryContext context, RetryCallback<T, E> callback) {
+        transfers.increment();
+        return true;
+    }
+
+    @Override
+    public <T, E extends Throwable> void onError(RetryContext context, RetryCallback<T, E> callback, Throwable throwable) {
+        if (throwable instanceof ConcurrencyFailureException) {
+            conflicts.increment();
+        }
+    }
+
+    @Override
+    public <T, E extends Throwable> void close(RetryContext context, RetryCallback<T, E> callback, Throwable throwable) {
+        if (throwable instanceof ConcurrencyFailureException) {
+            exhausted.increment();
+        }
+    }
+}
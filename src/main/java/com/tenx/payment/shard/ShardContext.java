@@ -0,0 +1,63 @@
+package com.tenx.payment.shard;
+
+/**
+ * Holds the shard the current thread works on. Shards are selected through {@link ShardRouter} and stay
+ * selected until the returned {@link Scope} is closed, scopes may be nested.
+ *
+ * Threads without a selected shard work on shard 0 of a single shard setup, which is what every
+ * non-sharded deployment uses.
+ */
+public final class ShardContext {
+
+    private static final Shard DEFAULT_SHARD = new Shard(0, 1);
+
+    private static final ThreadLocal<Shard> CURRENT_SHARD = new ThreadLocal<>();
+
+    private ShardContext() {
+
+    }
+
+    public record Shard(int index, int count) {
+    }
+
+    /**
+     * Selection of a shard, closing it restores the previously selected shard.
+     */
+    public interface Scope extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+
+    /**
+     * @return the shard selected by the current thread or the default shard if none is selected
+     */
+    public static Shard current() {
+        Shard shard = CURRENT_SHARD.get();
+        return shard != null ? shard : DEFAULT_SHARD;
+    }
+
+    /**
+     * Turns an identifier allocated by the database of the current shard into a globally unique identifier
+     * whose residue modulo the shard count is the index of the shard.
+     *
+     * @param localId identifier unique within the current shard
+     * @return the globally unique identifier
+     */
+    public static long toGlobalId(long localId) {
+        Shard shard = current();
+        return localId * shard.count() + shard.index();
+    }
+
+    static Scope enter(Shard shard) {
+        Shard previous = CURRENT_SHARD.get();
+        CURRENT_SHARD.set(shard);
+        return () -> {
+            if (previous != null) {
+                CURRENT_SHARD.set(previous);
+            } else {
+                CURRENT_SHARD.remove();
+            }
+        };
+    }
+}
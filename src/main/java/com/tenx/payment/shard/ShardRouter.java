@@ -0,0 +1,83 @@
+package com.tenx.payment.shard;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * Maps accounts and the records owned by them to database shards.
+ *
+ * Identifiers are allocated per shard and embed the index of the owning shard as their residue modulo
+ * the shard count, see {@link ShardContext#toGlobalId(long)}. Any record can therefore be routed by its
+ * identifier alone. With a single shard every identifier maps to shard 0.
+ */
+public class ShardRouter {
+
+    private final int shardCount;
+    private final AtomicInteger nextShard = new AtomicInteger();
+
+    public ShardRouter(int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.shardCount = shardCount;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public boolean isSharded() {
+        return shardCount > 1;
+    }
+
+    public int shardOf(long id) {
+        return Math.floorMod(id, shardCount);
+    }
+
+    public boolean isSameShard(long firstId, long secondId) {
+        return shardOf(firstId) == shardOf(secondId);
+    }
+
+    /**
+     * Selects the shard by index. Must be entered before the first statement of a transaction, which stays
+     * on the shard of that statement until it completes.
+     *
+     * @param shardIndex index of the shard
+     * @return the scope to close once the work on the shard is done
+     */
+    public ShardContext.Scope useShard(int shardIndex) {
+        return ShardContext.enter(new ShardContext.Shard(shardIndex, shardCount));
+    }
+
+    /**
+     * Selects the shard owning the record with the given identifier.
+     *
+     * @param id identifier of an account or of any record allocated on its shard
+     * @return the scope to close once the work on the shard is done
+     */
+    public ShardContext.Scope useShardOf(long id) {
+        return useShard(shardOf(id));
+    }
+
+    /**
+     * Selects the shard for a new account, spreading accounts evenly over the shards.
+     *
+     * @return the scope to close once the account is persisted
+     */
+    public ShardContext.Scope useShardForNewAccount() {
+        return useShard(Math.floorMod(nextShard.getAndIncrement(), shardCount));
+    }
+
+    /**
+     * Runs the work once per shard with the respective shard selected.
+     *
+     * @param work receiving the index of the shard
+     */
+    public void forEachShard(IntConsumer work) {
+        for (int shardIndex = 0; shardIndex < shardCount; shardIndex++) {
+            try (ShardContext.Scope ignored = useShard(shardIndex)) {
+                work.accept(shardIndex);
+            }
+        }
+    }
+}
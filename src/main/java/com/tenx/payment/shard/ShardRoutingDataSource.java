@@ -0,0 +1,53 @@
+package com.tenx.payment.shard;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Routes connections to the data source of the shard selected in {@link ShardContext}.
+ *
+ * Must be wrapped in a {@link LazyConnectionDataSourceProxy}, so that the shard selected within a
+ * transactional method is known by the time its first statement obtains the connection.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+    private final List<DataSource> shardDataSources;
+
+    public ShardRoutingDataSource(List<DataSource> shardDataSources) {
+        this.shardDataSources = List.copyOf(shardDataSources);
+        Map<Object, Object> targetDataSources = new HashMap<>();
+        for (int i = 0; i < shardDataSources.size(); i++) {
+            targetDataSources.put(i, shardDataSources.get(i));
+        }
+        setTargetDataSources(targetDataSources);
+        setDefaultTargetDataSource(shardDataSources.get(0));
+        setLenientFallback(false);
+    }
+
+    /**
+     * @return the data sources of the shards, by shard index
+     */
+    public List<DataSource> getShardDataSources() {
+        return shardDataSources;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return ShardContext.current().index();
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        for (DataSource dataSource : shardDataSources) {
+            if (dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+}
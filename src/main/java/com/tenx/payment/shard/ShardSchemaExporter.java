@@ -0,0 +1,30 @@
+package com.tenx.payment.shard;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.InitializingBean;
+
+/**
+ * Hibernate generates the schema on the default shard only, this creates the same schema on every other shard.
+ */
+public class ShardSchemaExporter implements InitializingBean {
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final ShardRouter shardRouter;
+
+    public ShardSchemaExporter(EntityManagerFactory entityManagerFactory, ShardRouter shardRouter) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.shardRouter = shardRouter;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        shardRouter.forEachShard(shardIndex -> {
+            if (shardIndex > 0) {
+                sessionFactory.getSchemaManager().dropMappedObjects(false);
+                sessionFactory.getSchemaManager().exportMappedObjects(false);
+            }
+        });
+    }
+}
@@ -0,0 +1,42 @@
+package com.tenx.payment.shard;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.Optimizer;
+import org.hibernate.id.enhanced.OptimizerFactory;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sequence based identifier generator for sharded entities. Values are drawn from the sequence of the
+ * shard selected in {@link ShardContext}, with a separate pool per shard, and turned into globally unique
+ * identifiers through {@link ShardContext#toGlobalId(long)}.
+ */
+public class ShardedSequenceGenerator extends SequenceStyleGenerator {
+
+    private final Map<Integer, Optimizer> shardOptimizers = new ConcurrentHashMap<>();
+
+    private String optimizerStrategy;
+    private long initialValue;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        super.configure(type, params, serviceRegistry);
+        int incrementSize = getOptimizer().getIncrementSize();
+        optimizerStrategy = params.getProperty(OPT_PARAM, OptimizerFactory.determineImplicitOptimizerName(incrementSize, params));
+        initialValue = Long.parseLong(params.getProperty(INITIAL_PARAM, String.valueOf(DEFAULT_INITIAL_VALUE)));
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        Optimizer optimizer = shardOptimizers.computeIfAbsent(ShardContext.current().index(), shardIndex ->
+                OptimizerFactory.buildOptimizer(optimizerStrategy, Long.class, getOptimizer().getIncrementSize(), initialValue));
+        long localId = ((Number) optimizer.generate(getDatabaseStructure().buildCallback(session))).longValue();
+        return ShardContext.toGlobalId(localId);
+    }
+}
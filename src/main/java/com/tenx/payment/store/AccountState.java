@@ -0,0 +1,15 @@
+package com.tenx.payment.store;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+/**
+ * Committed balance of an account as held by the {@link AccountStateStore}.
+ *
+ * @param id identifier of the account
+ * @param balance in the currency of the account, including the credits held in its sub-balance buckets
+ * @param currency of the account
+ * @param version of the account row the balance was committed with
+ */
+public record AccountState(long id, BigDecimal balance, Currency currency, long version) {
+}
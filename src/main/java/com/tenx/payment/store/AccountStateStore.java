@@ -0,0 +1,247 @@
+package com.tenx.payment.store;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Currency;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Off-heap store of the committed balances of the accounts, a memory-mapped table of fixed-size slots indexed
+ * by account identifier. Identifiers are dense, the slot of an account lies at its identifier and the table holds
+ * no object per account: tens of millions of accounts take a sparse file of 32 bytes per identifier instead of
+ * gigabytes of entities scanned by the garbage collector.
+ *
+ * A slot holds a sequence word, the version of the account row, the balance in minor units of the currency and the
+ * currency code. Writers take the slot by making its sequence odd, readers retry while it is odd or changed, so
+ * reads never block and never see a torn slot. A slot only moves forward in versions, a late write of an older
+ * state is dropped.
+ *
+ * The table lives in a file and survives restarts: closing the store marks the file clean, and a clean file is
+ * reopened as it is. A file left dirty by a crash is discarded, its slots may have missed the last commits, and the
+ * accounts are read through again. The store holds what this node committed, it is meant for nodes being the only
+ * writer of their accounts, e.g. one node per shard, and is disabled by default.
+ */
+@Slf4j
+@Component
+public class AccountStateStore implements DisposableBean {
+
+    private static final long MAGIC = 0x5448414E4B535031L;
+    private static final int HEADER_BYTES = 4096;
+    private static final int SLOT_BYTES = 32;
+    private static final int SEQUENCE_OFFSET = 0;
+    private static final int VERSION_OFFSET = 8;
+    private static final int BALANCE_OFFSET = 16;
+    private static final int CURRENCY_OFFSET = 24;
+    private static final int MAX_SEGMENTS = 4096;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final boolean enabled;
+    private final int segmentBits;
+    private final long segmentBytes;
+    private final Map<Integer, Currency> currencies = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<MappedByteBuffer> segments = new AtomicReferenceArray<>(MAX_SEGMENTS);
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+
+    @Autowired
+    public AccountStateStore(@Value("${thanks-pay.account-store.enabled:false}") boolean enabled,
+                             @Value("${thanks-pay.account-store.file:account-state.bin}") Path file,
+                             @Value("${thanks-pay.account-store.segment-bits:20}") int segmentBits) {
+        this.enabled = enabled;
+        this.segmentBits = segmentBits;
+        this.segmentBytes = (long) SLOT_BYTES << segmentBits;
+        if (!enabled) {
+            this.channel = null;
+            this.header = null;
+            return;
+        }
+
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            boolean clean = channel.size() >= HEADER_BYTES && isClean(channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES));
+            if (!clean) {
+                log.info("Account state store {} not closed cleanly, discarded", file);
+                channel.truncate(0);
+            }
+            this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+            header.putLong(0, MAGIC);
+            header.putInt(8, SLOT_BYTES);
+            header.putInt(12, segmentBits);
+            // Dirty until closed
+            header.putInt(16, 0);
+            header.force();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param id identifier of the account
+     * @return the state of the account, null if not held
+     */
+    public AccountState get(long id) {
+        MappedByteBuffer segment = segmentOf(id, false);
+        if (segment == null) {
+            return null;
+        }
+        int offset = slotOffset(id);
+        while (true) {
+            long sequence = (long) LONGS.getAcquire(segment, offset + SEQUENCE_OFFSET);
+            if ((sequence & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            long version = segment.getLong(offset + VERSION_OFFSET);
+            long minorUnits = segment.getLong(offset + BALANCE_OFFSET);
+            int currencyCode = segment.getInt(offset + CURRENCY_OFFSET);
+            VarHandle.acquireFence();
+            if ((long) LONGS.getVolatile(segment, offset + SEQUENCE_OFFSET) == sequence) {
+                if (currencyCode == 0) {
+                    return null;
+                }
+                Currency currency = currencyOf(currencyCode);
+                return new AccountState(id, BigDecimal.valueOf(minorUnits, fractionDigitsOf(currency)), currency, version);
+            }
+        }
+    }
+
+    /**
+     * Stores the committed state of an account, unless a newer version is held. A balance with more fraction
+     * digits than its currency has is not held, the account is then read through every time.
+     *
+     * @param state committed state of the account
+     */
+    public void put(AccountState state) {
+        MappedByteBuffer segment = segmentOf(state.id(), true);
+        if (segment == null) {
+            return;
+        }
+        Long minorUnits = toMinorUnits(state.balance(), state.currency());
+        int currencyCode = minorUnits != null ? encode(state.currency()) : 0;
+        write(segment, slotOffset(state.id()), state.version(), minorUnits != null ? minorUnits : 0, currencyCode);
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        for (int i = 0; i < MAX_SEGMENTS; i++) {
+            MappedByteBuffer segment = segments.get(i);
+            if (segment != null) {
+                segment.force();
+            }
+        }
+        header.putInt(16, 1);
+        header.force();
+        channel.close();
+    }
+
+    private void write(MappedByteBuffer segment, int offset, long version, long minorUnits, int currencyCode) {
+        long sequence;
+        do {
+            sequence = (long) LONGS.getVolatile(segment, offset + SEQUENCE_OFFSET);
+        } while ((sequence & 1) != 0 || !LONGS.compareAndSet(segment, offset + SEQUENCE_OFFSET, sequence, sequence + 1));
+        try {
+            // Slots never written have a sequence of 0
+            if (sequence != 0 && segment.getLong(offset + VERSION_OFFSET) > version) {
+                return;
+            }
+            segment.putLong(offset + VERSION_OFFSET, version);
+            segment.putLong(offset + BALANCE_OFFSET, minorUnits);
+            segment.putInt(offset + CURRENCY_OFFSET, currencyCode);
+        } finally {
+            LONGS.setRelease(segment, offset + SEQUENCE_OFFSET, sequence + 2);
+        }
+    }
+
+    private MappedByteBuffer segmentOf(long id, boolean create) {
+        if (!enabled || id < 0 || (id >>> segmentBits) >= MAX_SEGMENTS) {
+            return null;
+        }
+        int index = (int) (id >>> segmentBits);
+        MappedByteBuffer segment = segments.get(index);
+        if (segment != null || !create && HEADER_BYTES + (index + 1) * segmentBytes > fileSize()) {
+            return segment;
+        }
+        synchronized (segments) {
+            segment = segments.get(index);
+            if (segment == null) {
+                try {
+                    // Grows the file, sparse where no slot is written
+                    segment = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + index * segmentBytes, segmentBytes);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                segments.set(index, segment);
+            }
+            return segment;
+        }
+    }
+
+    private long fileSize() {
+        try {
+            return channel.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int slotOffset(long id) {
+        return (int) (id & ((1L << segmentBits) - 1)) * SLOT_BYTES;
+    }
+
+    private Currency currencyOf(int code) {
+        return currencies.computeIfAbsent(code, key ->
+                Currency.getInstance(new String(new char[]{(char) (key >>> 16), (char) ((key >>> 8) & 0xFF), (char) (key & 0xFF)})));
+    }
+
+    private static int encode(Currency currency) {
+        String code = currency.getCurrencyCode();
+        return code.charAt(0) << 16 | code.charAt(1) << 8 | code.charAt(2);
+    }
+
+    private static Long toMinorUnits(BigDecimal balance, Currency currency) {
+        try {
+            return balance.setScale(fractionDigitsOf(currency), RoundingMode.UNNECESSARY)
+                    .unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            return null;
+        }
+    }
+
+    private static int fractionDigitsOf(Currency currency) {
+        return Math.max(0, currency.getDefaultFractionDigits());
+    }
+
+    private boolean isClean(MappedByteBuffer header) {
+        return header.getLong(0) == MAGIC && header.getInt(8) == SLOT_BYTES && header.getInt(12) == segmentBits
+                && header.getInt(16) == 1;
+    }
+}
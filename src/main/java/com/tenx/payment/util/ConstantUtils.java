@@ -7,4 +7,7 @@ public class ConstantUtils {
 
     // Number of total digits for BigDecimal
     public static final int DECIMAL_DIGITS_PRECISION = DECIMAL_DIGITS_SCALE + 10;
+
+    // Rows fetched per round trip by the queries streaming the ledger
+    public static final String LEDGER_FETCH_SIZE = "10000";
 }
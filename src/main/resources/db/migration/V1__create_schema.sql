@@ -0,0 +1,87 @@
+-- Initial schema, validated by Hibernate on start. Runs on H2 and PostgreSQL.
+-- Amounts use numeric(20,10), the precision and scale accepted by the request validation (ConstantUtils).
+-- Timestamps are epoch millis.
+
+create sequence account_seq start with 1 increment by 50;
+create sequence account_balance_bucket_seq start with 1 increment by 50;
+create sequence transaction_seq start with 1 increment by 50;
+create sequence pending_transfer_seq start with 1 increment by 50;
+-- Not pooled, identifiers must follow the commit order of the events of an account
+create sequence outbox_event_seq start with 1 increment by 1;
+
+create table account (
+    id bigint not null,
+    version bigint not null,
+    balance numeric(20,10) not null,
+    currency varchar(3) not null,
+    balance_buckets integer not null,
+    create_at_timestamp bigint not null,
+    primary key (id)
+);
+
+create table account_balance_bucket (
+    id bigint not null,
+    account_id bigint not null,
+    bucket_index integer not null,
+    balance numeric(20,10) not null,
+    primary key (id),
+    constraint uk_account_balance_bucket unique (account_id, bucket_index),
+    constraint fk_account_balance_bucket_account foreign key (account_id) references account (id)
+);
+
+-- Stored on the shard of the source account. The target account may live on another shard,
+-- so only the source account is enforced by a foreign key.
+create table transaction (
+    id bigint not null,
+    version bigint not null,
+    source_account_id bigint not null,
+    target_account_id bigint not null,
+    amount numeric(20,10) not null,
+    currency varchar(3) not null,
+    status varchar(16) not null,
+    failure_reason varchar(255),
+    create_at_timestamp bigint not null,
+    primary key (id),
+    constraint fk_transaction_source_account foreign key (source_account_id) references account (id)
+);
+
+create index ix_transaction_source_account_id on transaction (source_account_id);
+create index ix_transaction_target_account_id on transaction (target_account_id);
+create index ix_transaction_create_at_timestamp on transaction (create_at_timestamp);
+-- Pending transactions resumed on start
+create index ix_transaction_status on transaction (status, id);
+
+create table pending_transfer (
+    id bigint not null,
+    version bigint not null,
+    source_account_id bigint not null,
+    target_account_id bigint not null,
+    amount numeric(20,10) not null,
+    currency varchar(3) not null,
+    source_amount numeric(20,10) not null,
+    status varchar(16) not null,
+    transaction_id bigint,
+    create_at_timestamp bigint not null,
+    primary key (id),
+    constraint fk_pending_transfer_source_account foreign key (source_account_id) references account (id)
+);
+
+-- Transfers in doubt found by the recovery
+create index ix_pending_transfer_status on pending_transfer (status, create_at_timestamp);
+create index ix_pending_transfer_transaction_id on pending_transfer (transaction_id);
+
+create table pending_transfer_credit (
+    pending_transfer_id bigint not null,
+    version bigint,
+    status varchar(16) not null,
+    primary key (pending_transfer_id)
+);
+
+create table outbox_event (
+    id bigint not null,
+    aggregate_id bigint not null,
+    type varchar(255) not null,
+    payload varchar(4000) not null,
+    create_at_timestamp bigint not null,
+    primary key (id)
+);
@@ -0,0 +1,34 @@
+-- Point-in-time balances: daily balance snapshots and the transfer amounts in the currencies of the accounts
+
+create sequence balance_snapshot_seq start with 1 increment by 50;
+
+create table balance_snapshot (
+    id bigint not null,
+    account_id bigint not null,
+    epoch_day bigint not null,
+    credits numeric(20,10) not null,
+    debits numeric(20,10) not null,
+    closing_balance numeric(20,10) not null,
+    create_at_timestamp bigint not null,
+    primary key (id),
+    constraint uk_balance_snapshot unique (account_id, epoch_day)
+);
+
+-- Null for the transactions recorded before, and for the credit of a cross-shard transfer
+alter table transaction add column source_amount numeric(20,10);
+alter table transaction add column target_amount numeric(20,10);
+
+alter table pending_transfer_credit add column account_id bigint;
+alter table pending_transfer_credit add column amount numeric(20,10);
+alter table pending_transfer_credit add column create_at_timestamp bigint default 0 not null;
+
+-- The replay reads the transfers of one account within a time range. H2 backs the foreign key with the
+-- index on the source account, so the constraint is recreated around it.
+alter table transaction drop constraint fk_transaction_source_account;
+drop index ix_transaction_source_account_id;
+create index ix_transaction_source_account_id on transaction (source_account_id, create_at_timestamp);
+alter table transaction add constraint fk_transaction_source_account foreign key (source_account_id) references account (id);
+drop index ix_transaction_target_account_id;
+create index ix_transaction_target_account_id on transaction (target_account_id, create_at_timestamp);
+create index ix_pending_transfer_credit_account_id on pending_transfer_credit (account_id, create_at_timestamp);
+create index ix_pending_transfer_credit_create_at_timestamp on pending_transfer_credit (create_at_timestamp);
@@ -0,0 +1,24 @@
+-- Future-dated and recurring transfers, stored on the shard of the source account
+
+create sequence scheduled_transfer_seq start with 1 increment by 50;
+
+create table scheduled_transfer (
+    id bigint not null,
+    version bigint not null,
+    source_account_id bigint not null,
+    target_account_id bigint not null,
+    amount numeric(20,10),
+    currency varchar(3),
+    cron varchar(255),
+    zone varchar(255),
+    next_execution_timestamp bigint not null,
+    due_bucket bigint not null,
+    status varchar(16),
+    executions integer not null,
+    last_transaction_id bigint,
+    create_at_timestamp bigint not null,
+    primary key (id)
+);
+
+-- Due transfers are loaded by the minute they are due in
+create index ix_scheduled_transfer_due on scheduled_transfer (status, due_bucket);
@@ -0,0 +1,3 @@
+-- The account id index of every node picks up the accounts created by the other nodes by their creation time
+
+create index ix_account_create_at_timestamp on account (create_at_timestamp);
@@ -0,0 +1,144 @@
+package com.tenx.payment;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Runs against the binary built by nativeCompile, see the nativeSmokeTest task of the native profile
+@EnabledIfSystemProperty(named = "thanks-pay.native.binary", matches = ".+")
+class NativeSmokeTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private static final HttpClient client = HttpClient.newHttpClient();
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static Process process;
+    private static String baseUrl;
+
+    @BeforeAll
+    static void startBinary(TestReporter testReporter) throws Exception {
+        int port = freePort();
+        baseUrl = "http://localhost:" + port + "/api/rest";
+
+        long start = System.nanoTime();
+        process = new ProcessBuilder(System.getProperty("thanks-pay.native.binary"), "--server.port=" + port,
+                "--spring.datasource.url=jdbc:h2:mem:native")
+                .inheritIO()
+                .start();
+        while (true) {
+            try {
+                client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/account/0")).build(), HttpResponse.BodyHandlers.discarding());
+                break;
+            } catch (ConnectException e) {
+                assertThat(process.isAlive()).as("native binary running").isTrue();
+                assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(TIMEOUT);
+                Thread.sleep(1);
+            }
+        }
+        // Published to the test report along with the results
+        testReporter.publishEntry(Map.of(
+                "firstRequestMillis", Long.toString(Duration.ofNanos(System.nanoTime() - start).toMillis()),
+                "residentSetSize", residentSetSize()));
+    }
+
+    @AfterAll
+    static void stopBinary() throws InterruptedException {
+        if (process != null) {
+            process.destroy();
+            process.waitFor();
+        }
+    }
+
+    @Test
+    void createAndGetAccount() throws Exception {
+        // Given
+        JsonNode account = post("/account", "{\"balance\":10.50,\"currency\":\"EUR\"}", 200);
+
+        // When
+        JsonNode found = get("/account/" + account.get("id").asLong(), 200);
+
+        // Then
+        assertThat(found.get("balance").decimalValue()).isEqualByComparingTo("10.50");
+        assertThat(found.get("currency").asText()).isEqualTo("EUR");
+    }
+
+    @Test
+    void rejectUnsupportedCurrency() throws Exception {
+        // When
+        JsonNode error = post("/account", "{\"balance\":10,\"currency\":\"JPY\"}", 400);
+
+        // Then
+        assertThat(error.get("messages").toString()).contains("Invalid currency supplied");
+    }
+
+    @Test
+    void transferAndGetTransaction() throws Exception {
+        // Given
+        long sourceAccountId = post("/account", "{\"balance\":100,\"currency\":\"USD\"}", 200).get("id").asLong();
+        long targetAccountId = post("/account", "{\"balance\":0,\"currency\":\"USD\"}", 200).get("id").asLong();
+
+        // When
+        JsonNode transaction = post("/transaction", "{\"amount\":25,\"sourceAccountId\":" + sourceAccountId
+                + ",\"targetAccountId\":" + targetAccountId + ",\"currency\":\"USD\"}", 200);
+
+        // Then
+        JsonNode found = get("/transaction/" + transaction.get("id").asLong(), 200);
+        assertThat(found.get("status").asText()).isEqualTo("COMPLETED");
+        assertThat(get("/account/" + sourceAccountId, 200).get("balance").decimalValue()).isEqualByComparingTo("75");
+        assertThat(get("/account/" + targetAccountId, 200).get("balance").decimalValue()).isEqualByComparingTo("25");
+    }
+
+    private static JsonNode post(String path, String body, int expectedStatus) throws Exception {
+        return send(HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build(), expectedStatus);
+    }
+
+    private static JsonNode get(String path, int expectedStatus) throws Exception {
+        return send(HttpRequest.newBuilder(URI.create(baseUrl + path)).build(), expectedStatus);
+    }
+
+    private static JsonNode send(HttpRequest request, int expectedStatus) throws Exception {
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        assertThat(response.statusCode()).as(response.body()).isEqualTo(expectedStatus);
+        return objectMapper.readTree(response.body());
+    }
+
+    private static String residentSetSize() throws IOException {
+        Path status = Path.of("/proc", Long.toString(process.pid()), "status");
+        if (!Files.exists(status)) {
+            return "unknown";
+        }
+        return Files.readAllLines(status).stream()
+                .filter(line -> line.startsWith("VmRSS:"))
+                .map(line -> line.substring("VmRSS:".length()).trim())
+                .findFirst()
+                .orElse("unknown");
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.tenx.payment.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long THRESHOLD = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 2, 20, THRESHOLD, 0.5, clock::get);
+
+    @Test
+    void rejectsBeyondTheLimit() {
+        // Given
+        for (int i = 0; i < 10; i++) {
+            assertThat(limiter.tryAcquire()).isTrue();
+        }
+
+        // When, Then
+        assertThat(limiter.tryAcquire()).isFalse();
+        limiter.release(THRESHOLD);
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.getInFlight()).isEqualTo(10);
+    }
+
+    @Test
+    void slowRequestsShrinkTheLimitOncePerThresholdInterval() {
+        // Given
+        for (int i = 0; i < 4; i++) {
+            limiter.tryAcquire();
+        }
+
+        // When
+        limiter.release(2 * THRESHOLD);
+        limiter.release(2 * THRESHOLD);
+
+        // Then
+        assertThat(limiter.getLimit()).isEqualTo(5);
+
+        clock.addAndGet(THRESHOLD);
+        limiter.release(2 * THRESHOLD);
+        clock.addAndGet(THRESHOLD);
+        limiter.release(2 * THRESHOLD);
+        assertThat(limiter.getLimit()).isEqualTo(2);
+    }
+
+    @Test
+    void fastRequestsGrowTheLimitWhileItIsInUse() {
+        // Given
+        for (int i = 0; i < 10; i++) {
+            limiter.tryAcquire();
+        }
+
+        // When
+        for (int i = 0; i < 20; i++) {
+            limiter.release(THRESHOLD / 2);
+            limiter.tryAcquire();
+        }
+
+        // Then
+        assertThat(limiter.getLimit()).isEqualTo(11);
+
+        for (int i = 0; i < 10; i++) {
+            limiter.release(THRESHOLD / 2);
+        }
+        int limit = limiter.getLimit();
+        // Idle capacity does not grow the limit
+        for (int i = 0; i < 100; i++) {
+            limiter.tryAcquire();
+            limiter.release(THRESHOLD / 2);
+        }
+        assertThat(limiter.getLimit()).isEqualTo(limit);
+    }
+}
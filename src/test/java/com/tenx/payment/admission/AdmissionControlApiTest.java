@@ -0,0 +1,223 @@
+package com.tenx.payment.admission;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tenx.payment.controller.account.AccountApi;
+import com.tenx.payment.controller.transaction.TransactionApi;
+import com.tenx.payment.dto.account.BulkAccountResultDto;
+import com.tenx.payment.dto.binary.TransferBinaryCodec;
+import com.tenx.payment.dto.transaction.SplitTransferRequestDto;
+import com.tenx.payment.dto.transaction.TransactionRequestDto;
+import com.tenx.payment.model.Account;
+import com.tenx.payment.service.AccountService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Currency;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@AutoConfigureMockMvc
+@SpringBootTest(properties = {
+        "thanks-pay.admission.enabled=true",
+        "thanks-pay.admission.client-id-header=" + AdmissionControlApiTest.GATEWAY_CLIENT_HEADER,
+        "thanks-pay.admission.client.per-second=0.5",
+        "thanks-pay.admission.client.burst=2",
+        "thanks-pay.admission.account.per-second=0.5",
+        "thanks-pay.admission.account.burst=1",
+        "thanks-pay.admission.concurrency.initial-limit=2",
+        "thanks-pay.admission.concurrency.min-limit=2"
+})
+class AdmissionControlApiTest {
+
+    static final String GATEWAY_CLIENT_HEADER = "X-Gateway-Client";
+
+    private static final Currency USD = Currency.getInstance("USD");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private AdmissionControl admissionControl;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void clientBeyondItsRateIsToldToRetryLater() throws Exception {
+        // Given
+        Account account = accountService.saveAccount(new Account(BigDecimal.TEN, USD));
+        mockMvc.perform(get("/api/rest/account/{id}", account.getId()).principal(() -> "employer"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/rest/account/{id}", account.getId()).principal(() -> "employer"))
+                .andExpect(status().isOk());
+
+        // When, Then the principal is not swapped for a header of its choice
+        mockMvc.perform(get("/api/rest/account/{id}", account.getId()).principal(() -> "employer")
+                        .header(GATEWAY_CLIENT_HEADER, "someone else"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "2"))
+                .andExpect(jsonPath("$.messages[0]").value("Too many requests, retry later"));
+        mockMvc.perform(get("/api/rest/account/{id}", account.getId()).principal(() -> "other employer"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void clientWithoutIdentityIsToldApartByItsAddress() throws Exception {
+        // Given
+        Account account = accountService.saveAccount(new Account(BigDecimal.TEN, USD));
+        mockMvc.perform(get("/api/rest/account/{id}", account.getId()).with(remoteAddress("10.0.0.1"))
+                        .header("X-Client-Id", "first"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/rest/account/{id}", account.getId()).with(remoteAddress("10.0.0.1"))
+                        .header("X-Client-Id", "second"))
+                .andExpect(status().isOk());
+
+        // When, Then a header of the client's choice is not trusted
+        mockMvc.perform(get("/api/rest/account/{id}", account.getId()).with(remoteAddress("10.0.0.1"))
+                        .header("X-Client-Id", "third"))
+                .andExpect(status().isTooManyRequests());
+        mockMvc.perform(get("/api/rest/account/{id}", account.getId()).with(remoteAddress("10.0.0.2")))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void sourceAccountBeyondItsRateIsToldToRetryLater() throws Exception {
+        // Given
+        Account sourceAccount = accountService.saveAccount(new Account(BigDecimal.TEN, USD));
+        Account targetAccount = accountService.saveAccount(new Account(BigDecimal.TEN, USD));
+        String transfer = objectMapper.writeValueAsString(new TransactionRequestDto(BigDecimal.ONE, sourceAccount.getId(), targetAccount.getId(), USD));
+        String reverseTransfer = objectMapper.writeValueAsString(new TransactionRequestDto(BigDecimal.ONE, targetAccount.getId(), sourceAccount.getId(), USD));
+        mockMvc.perform(post("/api/rest/transaction").header(GATEWAY_CLIENT_HEADER, "first payroll")
+                        .content(transfer).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        // When, Then
+        mockMvc.perform(post("/api/rest/transaction").header(GATEWAY_CLIENT_HEADER, "second payroll")
+                        .content(transfer).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "2"));
+        mockMvc.perform(post("/api/rest/transaction").header(GATEWAY_CLIENT_HEADER, "second payroll")
+                        .content(reverseTransfer).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void splitTransferWaitingForOneDebitedAccountSpendsNoTokenOfTheOthers() throws Exception {
+        // Given
+        Account firstPayer = accountService.saveAccount(new Account(BigDecimal.TEN, USD));
+        Account secondPayer = accountService.saveAccount(new Account(BigDecimal.TEN, USD));
+        Account payee = accountService.saveAccount(new Account(BigDecimal.TEN, USD));
+        mockMvc.perform(post("/api/rest/transaction").header(GATEWAY_CLIENT_HEADER, "first payroll")
+                        .content(objectMapper.writeValueAsString(new TransactionRequestDto(BigDecimal.ONE, secondPayer.getId(), payee.getId(), USD)))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        SplitTransferRequestDto splitTransfer = SplitTransferRequestDto.builder()
+                .debits(List.of(leg(firstPayer), leg(secondPayer)))
+                .credits(List.of(leg(payee), leg(payee)))
+                .currency(USD)
+                .build();
+
+        // When
+        mockMvc.perform(post("/api/rest/transaction/split").header(GATEWAY_CLIENT_HEADER, "second payroll")
+                        .content(objectMapper.writeValueAsString(splitTransfer)).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isTooManyRequests());
+
+        // Then the token of the first payer is still there
+        mockMvc.perform(post("/api/rest/transaction").header(GATEWAY_CLIENT_HEADER, "third payroll")
+                        .content(objectMapper.writeValueAsString(new TransactionRequestDto(BigDecimal.ONE, firstPayer.getId(), payee.getId(), USD)))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void streamAndBulkRequestsTakeASlotPerFrameAndChunk() throws Exception {
+        // Given
+        Account sourceAccount = accountService.saveAccount(new Account(BigDecimal.TEN, USD));
+        Account targetAccount = accountService.saveAccount(new Account(BigDecimal.TEN, USD));
+        ByteBuffer frame = ByteBuffer.allocate(8 + TransferBinaryCodec.REQUEST_LENGTH).putLong(1);
+        TransferBinaryCodec.encodeRequest(new TransactionRequestDto(BigDecimal.ONE, sourceAccount.getId(), targetAccount.getId(), USD), frame);
+        AdaptiveConcurrencyLimiter concurrencyLimiter = admissionControl.getConcurrencyLimiter();
+        while (concurrencyLimiter.tryAcquire()) {
+            // Requests in flight up to the limit
+        }
+
+        try {
+            // When
+            MvcResult streamResult = mockMvc.perform(post("/api/rest/transaction/stream").header(GATEWAY_CLIENT_HEADER, "streaming")
+                            .content(frame.array()).contentType(TransactionApi.STREAM_MEDIA_TYPE).accept(TransactionApi.STREAM_MEDIA_TYPE))
+                    .andExpect(status().isOk())
+                    .andReturn();
+            MvcResult bulkResult = mockMvc.perform(post("/api/rest/accounts/bulk").header(GATEWAY_CLIENT_HEADER, "importing")
+                            .content("balance,currency,highVolume\n1,USD,false\n-1,USD,false\n").contentType(AccountApi.CSV_MEDIA_TYPE))
+                    .andExpect(status().isOk())
+                    .andReturn();
+
+            // Then the frame and the valid rows are shed, not the requests
+            ByteBuffer streamBody = ByteBuffer.wrap(streamResult.getResponse().getContentAsByteArray());
+            assertThat(streamBody.getLong()).isEqualTo(1);
+            assertThat(streamBody.getShort()).isEqualTo((short) 503);
+            BulkAccountResultDto[] bulkResults = objectMapper.readValue(bulkResult.getResponse().getContentAsString(), BulkAccountResultDto[].class);
+            assertThat(bulkResults).extracting(BulkAccountResultDto::getRow, BulkAccountResultDto::getStatus)
+                    .containsExactly(tuple(1L, 503), tuple(2L, 400));
+        } finally {
+            while (concurrencyLimiter.getInFlight() > 0) {
+                concurrencyLimiter.release(0);
+            }
+        }
+    }
+
+    @Test
+    void requestsBeyondTheConcurrencyLimitAreShed() throws Exception {
+        // Given
+        AdaptiveConcurrencyLimiter concurrencyLimiter = admissionControl.getConcurrencyLimiter();
+        while (concurrencyLimiter.tryAcquire()) {
+            // Requests in flight up to the limit
+        }
+
+        try {
+            // When, Then
+            mockMvc.perform(get("/api/rest/transaction/{id}", 1).header(GATEWAY_CLIENT_HEADER, "overloaded"))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"))
+                    .andExpect(jsonPath("$.messages[0]").value("Service overloaded, retry later"));
+        } finally {
+            while (concurrencyLimiter.getInFlight() > 0) {
+                concurrencyLimiter.release(0);
+            }
+        }
+    }
+
+    private static SplitTransferRequestDto.Leg leg(Account account) {
+        return SplitTransferRequestDto.Leg.builder()
+                .accountId(account.getId())
+                .amount(BigDecimal.ONE)
+                .build();
+    }
+
+    private static RequestPostProcessor remoteAddress(String address) {
+        return request -> {
+            request.setRemoteAddr(address);
+            return request;
+        };
+    }
+}
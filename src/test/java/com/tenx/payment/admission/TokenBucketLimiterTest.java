@@ -0,0 +1,83 @@
+package com.tenx.payment.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBucketLimiterTest {
+
+    private static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final AtomicLong clock = new AtomicLong(-TimeUnit.DAYS.toNanos(1));
+
+    // 10 tokens per second, one every 100 ms, up to 3 at once
+    private final TokenBucketLimiter<String> limiter = new TokenBucketLimiter<>(10, 3, clock::get);
+
+    @Test
+    void admitsTheBurstAndTellsWhenTheNextTokenIsAvailable() {
+        // When, Then
+        assertThat(limiter.tryAcquire("client")).isZero();
+        assertThat(limiter.tryAcquire("client")).isZero();
+        assertThat(limiter.tryAcquire("client")).isZero();
+        assertThat(limiter.tryAcquire("client")).isEqualTo(100 * MILLI);
+
+        clock.addAndGet(40 * MILLI);
+        assertThat(limiter.tryAcquire("client")).isEqualTo(60 * MILLI);
+        assertThat(limiter.tryAcquire("other client")).isZero();
+    }
+
+    @Test
+    void refillsAtTheRateUpToTheBurst() {
+        // Given
+        for (int i = 0; i < 3; i++) {
+            limiter.tryAcquire("client");
+        }
+
+        // When
+        clock.addAndGet(250 * MILLI);
+
+        // Then
+        assertThat(limiter.tryAcquire("client")).isZero();
+        assertThat(limiter.tryAcquire("client")).isZero();
+        assertThat(limiter.tryAcquire("client")).isPositive();
+
+        clock.addAndGet(10_000 * MILLI);
+        for (int i = 0; i < 3; i++) {
+            assertThat(limiter.tryAcquire("client")).isZero();
+        }
+        assertThat(limiter.tryAcquire("client")).isPositive();
+    }
+
+    @Test
+    void tellsWhenATokenIsAvailableWithoutTakingIt() {
+        // Given
+        limiter.tryAcquire("client");
+        limiter.tryAcquire("client");
+
+        // When, Then
+        assertThat(limiter.availableIn("client")).isZero();
+        assertThat(limiter.availableIn("client")).isZero();
+        assertThat(limiter.availableIn("other client")).isZero();
+        assertThat(limiter.tryAcquire("client")).isZero();
+        assertThat(limiter.availableIn("client")).isEqualTo(100 * MILLI);
+        assertThat(limiter.size()).isEqualTo(1);
+    }
+
+    @Test
+    void evictsFullBuckets() {
+        // Given
+        limiter.tryAcquire("idle client");
+        limiter.tryAcquire("busy client");
+        clock.addAndGet(100 * MILLI);
+        limiter.tryAcquire("busy client");
+
+        // When
+        limiter.evictIdle();
+
+        // Then
+        assertThat(limiter.size()).isEqualTo(1);
+    }
+}
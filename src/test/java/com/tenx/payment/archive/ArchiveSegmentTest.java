@@ -0,0 +1,113 @@
+package com.tenx.payment.archive;
+
+import com.tenx.payment.model.Transaction;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ArchiveSegmentTest {
+
+    private static final Currency EUR = Currency.getInstance("EUR");
+    private static final Currency JPY = Currency.getInstance("JPY");
+    private static final long TIMESTAMP = 1_700_000_000_000L;
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void writeAndReadLegsAcrossBlocks() {
+        // Given
+        List<ArchiveSegment.Leg> legs = new ArrayList<>();
+        for (long accountId = 1; accountId <= 1000; accountId++) {
+            for (long i = 0; i < 3; i++) {
+                legs.add(new ArchiveSegment.Leg(accountId, transaction(accountId * 10 + i, accountId, accountId + 5000)));
+            }
+        }
+        ArchivedTransaction failed = new ArchivedTransaction(99_999L, 7000L, 1001L, new BigDecimal("300"), JPY,
+                null, null, Transaction.Status.FAILED, "Insufficient amount", TIMESTAMP - 1);
+        legs.add(new ArchiveSegment.Leg(1001L, failed));
+
+        // When
+        ArchiveSegment segment = ArchiveSegment.write(directory.resolve("transactions-2023-11.seg"), legs.iterator());
+
+        // Then
+        assertThat(segment.getLegCount()).isEqualTo(3001);
+        assertThat(segment.getBlockCount()).isEqualTo(3);
+        assertThat(directory.resolve("transactions-2023-11.seg.tmp")).doesNotExist();
+
+        ArchiveSegment reopened = ArchiveSegment.open(segment.getFile());
+        assertThat(reopened.getLegCount()).isEqualTo(3001);
+        assertThat(read(reopened, 1, 1001)).containsExactlyElementsOf(legs);
+        assertThat(read(reopened, 500, 500)).containsExactlyElementsOf(legs.subList(1497, 1500));
+        assertThat(read(reopened, 1001, 2000)).containsExactly(new ArchiveSegment.Leg(1001L, failed));
+        assertThat(read(reopened, 2000, 3000)).isEmpty();
+        assertThat(legs.get(0).isDebit()).isTrue();
+    }
+
+    @Test
+    void findTransactionReadsTheBlocksCoveringIt() {
+        // Given
+        List<ArchiveSegment.Leg> legs = new ArrayList<>();
+        for (long accountId = 1; accountId <= 1000; accountId++) {
+            legs.add(new ArchiveSegment.Leg(accountId, transaction(accountId * 10, accountId, accountId + 5000)));
+            legs.add(new ArchiveSegment.Leg(accountId, transaction(20_000 - accountId, 6000, accountId)));
+        }
+        ArchiveSegment segment = ArchiveSegment.open(ArchiveSegment.write(directory.resolve("transactions-2023-11.seg"),
+                legs.iterator()).getFile());
+
+        // When / Then
+        assertThat(segment.getBlockCount()).isGreaterThan(1);
+        assertThat(segment.findTransaction(5000)).contains(transaction(5000, 500, 5500));
+        assertThat(segment.findTransaction(19_001)).contains(transaction(19_001, 6000, 999));
+        assertThat(segment.findTransaction(5001)).isEmpty();
+        assertThat(segment.findTransaction(30_000)).isEmpty();
+    }
+
+    @Test
+    void writeCompressesTheColumns() throws Exception {
+        // Given
+        List<ArchiveSegment.Leg> legs = new ArrayList<>();
+        for (long accountId = 1; accountId <= 10_000; accountId++) {
+            legs.add(new ArchiveSegment.Leg(accountId, transaction(accountId, accountId, accountId + 1)));
+        }
+
+        // When
+        ArchiveSegment segment = ArchiveSegment.write(directory.resolve("transactions-2023-11.seg"), legs.iterator());
+
+        // Then, well below the 8 bytes taken by the transaction identifier alone
+        assertThat(Files.size(segment.getFile())).isLessThan(8 * 10_000);
+    }
+
+    @Test
+    void writeUnsortedLegsFails() {
+        // Given
+        Iterator<ArchiveSegment.Leg> legs = List.of(new ArchiveSegment.Leg(2L, transaction(1L, 2L, 3L)),
+                new ArchiveSegment.Leg(1L, transaction(2L, 1L, 3L))).iterator();
+
+        // When / Then
+        assertThatThrownBy(() -> ArchiveSegment.write(directory.resolve("transactions-2023-11.seg"), legs))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static ArchivedTransaction transaction(long id, long sourceAccountId, long targetAccountId) {
+        return new ArchivedTransaction(id, sourceAccountId, targetAccountId, new BigDecimal("12.50"), EUR,
+                new BigDecimal("12.5000000000"), new BigDecimal("1999.9999999999"), Transaction.Status.COMPLETED, null,
+                TIMESTAMP + id);
+    }
+
+    private static List<ArchiveSegment.Leg> read(ArchiveSegment segment, long fromAccountId, long toAccountId) {
+        List<ArchiveSegment.Leg> legs = new ArrayList<>();
+        segment.forEachLeg(fromAccountId, toAccountId, legs::add);
+        return legs;
+    }
+}
@@ -0,0 +1,48 @@
+package com.tenx.payment.config;
+
+import com.tenx.payment.job.OutboxRelayJob;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Own database, the schema must come from the migrations and be accepted by the validation of Hibernate
+@AutoConfigureMockMvc
+@ActiveProfiles("fast-startup")
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:fast-startup")
+class FastStartupProfileTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ConfigurableListableBeanFactory beanFactory;
+
+    @Test
+    void servesRequestsWithTheHandWrittenSchema() throws Exception {
+        // When
+        mockMvc.perform(post("/api/rest/account")
+                        .content("{\"balance\":10,\"currency\":\"USD\"}")
+                        .contentType(MediaType.APPLICATION_JSON))
+                // Then
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void createsBackgroundBeansEagerly() {
+        // When
+        String[] relayJobs = beanFactory.getBeanNamesForType(OutboxRelayJob.class, false, false);
+
+        // Then
+        assertThat(relayJobs).hasSize(1);
+        assertThat(beanFactory.containsSingleton(relayJobs[0])).isTrue();
+    }
+}
@@ -0,0 +1,46 @@
+package com.tenx.payment.config;
+
+import com.tenx.payment.dto.transaction.TransactionRequestDto;
+import com.tenx.payment.model.Account;
+import com.tenx.payment.validator.CurrencyValidator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import java.util.Currency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NativeConfigTest {
+
+    private final RuntimeHints hints = new RuntimeHints();
+
+    @BeforeEach
+    void setUp() {
+        new NativeConfig.Hints().registerHints(hints, getClass().getClassLoader());
+    }
+
+    @Test
+    void registersEntitiesForHibernate() {
+        assertThat(RuntimeHintsPredicates.reflection().onType(Account.class)
+                .withMemberCategories(MemberCategory.DECLARED_FIELDS, MemberCategory.INVOKE_DECLARED_CONSTRUCTORS))
+                .accepts(hints);
+    }
+
+    @Test
+    void registersDtosForBinding() throws NoSuchMethodException {
+        assertThat(RuntimeHintsPredicates.reflection().onMethod(TransactionRequestDto.class.getMethod("getAmount")))
+                .accepts(hints);
+    }
+
+    @Test
+    void registersValidatorAndCurrency() {
+        assertThat(RuntimeHintsPredicates.reflection().onType(CurrencyValidator.class)
+                .withMemberCategories(MemberCategory.INVOKE_DECLARED_CONSTRUCTORS))
+                .accepts(hints);
+        assertThat(RuntimeHintsPredicates.serialization().onType(Currency.class)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.resource().forResource("db/migration/V1__create_schema.sql")).accepts(hints);
+    }
+}
@@ -0,0 +1,62 @@
+package com.tenx.payment.config;
+
+import com.tenx.payment.model.Account;
+import com.zaxxer.hikari.HikariDataSource;
+import com.tenx.payment.service.AccountService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.util.Currency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// The replica points to the primary database itself, standing in for a replica without lag
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:replica-config;DB_CLOSE_DELAY=-1",
+        "thanks-pay.datasource.replica.url=jdbc:h2:mem:replica-config;DB_CLOSE_DELAY=-1",
+        "thanks-pay.datasource.replica.username=test",
+        "thanks-pay.datasource.replica.password=test",
+        "thanks-pay.datasource.replica.lag-query=SELECT 0",
+        "spring.datasource.hikari.maximum-pool-size=3"
+})
+class ReplicaDataSourceConfigTest {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ReplicaLagMonitor replicaLagMonitor;
+
+    @Autowired
+    private ReplicaRoutingDataSource replicaRoutingDataSource;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Test
+    void readsServedThroughReplicaRouting() {
+        // Given
+        Account account = accountService.saveAccount(new Account(BigDecimal.TEN, Currency.getInstance("EUR")));
+
+        // When
+        Account foundAccount = accountService.findAccountById(account.getId());
+
+        // Then
+        assertThat(dataSource).isInstanceOf(LazyConnectionDataSourceProxy.class);
+        assertThat(replicaLagMonitor.isReplicaUsable()).isTrue();
+        assertThat(foundAccount.getBalance()).isEqualByComparingTo(BigDecimal.TEN);
+    }
+
+    @Test
+    void primaryAndReplicaPoolsTunedByTheHikariProperties() {
+        // When, Then
+        assertThat(replicaRoutingDataSource.getResolvedDataSources().values())
+                .hasSize(2)
+                .allSatisfy(pool -> assertThat(pool).isInstanceOfSatisfying(HikariDataSource.class,
+                        hikariDataSource -> assertThat(hikariDataSource.getMaximumPoolSize()).isEqualTo(3)));
+    }
+}
@@ -0,0 +1,104 @@
+package com.tenx.payment.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tenx.payment.dto.account.AccountResponseDto;
+import com.tenx.payment.dto.transaction.TransactionRequestDto;
+import com.tenx.payment.model.Account;
+import com.tenx.payment.service.AccountService;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// The replica is a database of its own with the same migrations, its accounts copied over once and never replicated to
+@AutoConfigureMockMvc
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.jpa.hibernate.ddl-auto=validate",
+        "spring.flyway.enabled=true",
+        "spring.datasource.url=" + ReplicaRoutingApiTest.PRIMARY_URL,
+        "thanks-pay.datasource.replica.url=" + ReplicaRoutingApiTest.REPLICA_URL,
+        "thanks-pay.datasource.replica.username=test",
+        "thanks-pay.datasource.replica.password=test",
+        "thanks-pay.datasource.replica.lag-query=SELECT 0"
+})
+class ReplicaRoutingApiTest {
+
+    static final String PRIMARY_URL = "jdbc:h2:mem:replica-api-primary;DB_CLOSE_DELAY=-1";
+    static final String REPLICA_URL = "jdbc:h2:mem:replica-api-replica;DB_CLOSE_DELAY=-1";
+
+    private static final Currency USD = Currency.getInstance("USD");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final JdbcTemplate primary = new JdbcTemplate(new DriverManagerDataSource(PRIMARY_URL, "test", "test"));
+    private final JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "test", "test"));
+
+    @BeforeAll
+    static void migrateReplica() {
+        Flyway.configure().dataSource(REPLICA_URL, "test", "test").load().migrate();
+    }
+
+    @Test
+    void transferValidatedOnReplicaWrittenToPrimary() throws Exception {
+        // Given
+        Account sourceAccount = accountService.saveAccount(new Account(new BigDecimal("100"), USD));
+        Account targetAccount = accountService.saveAccount(new Account(new BigDecimal("100"), USD));
+        copyToReplica("account");
+        TransactionRequestDto transactionRequestDto = new TransactionRequestDto(new BigDecimal("10"), sourceAccount.getId(),
+                targetAccount.getId(), USD);
+
+        // When
+        mockMvc.perform(post("/api/rest/transaction")
+                        .content(objectMapper.writeValueAsString(transactionRequestDto))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        // Then the transfer is written to the primary only
+        assertThat(balance(primary, sourceAccount)).isEqualByComparingTo("90");
+        assertThat(balance(primary, targetAccount)).isEqualByComparingTo("110");
+        assertThat(balance(replica, sourceAccount)).isEqualByComparingTo("100");
+        assertThat(balance(replica, targetAccount)).isEqualByComparingTo("100");
+        assertThat(primary.queryForObject("select count(*) from transaction", Integer.class)).isOne();
+        assertThat(replica.queryForObject("select count(*) from transaction", Integer.class)).isZero();
+
+        // Reads still go to the replica
+        MvcResult mvcResult = mockMvc.perform(get("/api/rest/account/" + sourceAccount.getId())).andExpect(status().isOk()).andReturn();
+        AccountResponseDto accountResponseDto = objectMapper.readValue(mvcResult.getResponse().getContentAsString(), AccountResponseDto.class);
+        assertThat(accountResponseDto.getBalance()).isEqualByComparingTo("100");
+    }
+
+    private void copyToReplica(String table) {
+        for (Map<String, Object> row : primary.queryForList("select * from " + table)) {
+            replica.update("insert into " + table + " (" + String.join(", ", row.keySet()) + ") values ("
+                    + String.join(", ", Collections.nCopies(row.size(), "?")) + ")", row.values().toArray());
+        }
+    }
+
+    private static BigDecimal balance(JdbcTemplate database, Account account) {
+        return database.queryForObject("select balance from account where id = ?", BigDecimal.class, account.getId());
+    }
+}
@@ -0,0 +1,113 @@
+package com.tenx.payment.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReplicaRoutingDataSourceTest {
+
+    private DataSource primaryDataSource;
+    private DataSource replicaDataSource;
+    private JdbcTemplate replicaJdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        primaryDataSource = h2DataSource("primary");
+        replicaDataSource = h2DataSource("replica");
+        replicaJdbcTemplate = new JdbcTemplate(replicaDataSource);
+
+        new JdbcTemplate(primaryDataSource).execute("CREATE TABLE node (name VARCHAR(16)); INSERT INTO node VALUES ('primary')");
+        replicaJdbcTemplate.execute("CREATE TABLE node (name VARCHAR(16)); INSERT INTO node VALUES ('replica')");
+        replicaJdbcTemplate.execute("CREATE TABLE replication (lag_seconds INT); INSERT INTO replication VALUES (0)");
+    }
+
+    @AfterEach
+    void tearDown() {
+        new JdbcTemplate(primaryDataSource).execute("SHUTDOWN");
+        replicaJdbcTemplate.execute("SHUTDOWN");
+    }
+
+    @Test
+    void readOnlyTransactionRoutedToReplica() {
+        // Given
+        ReplicaLagMonitor replicaLagMonitor = new ReplicaLagMonitor(replicaDataSource, "SELECT lag_seconds FROM replication", Duration.ofSeconds(5));
+        DataSource routedDataSource = routedDataSource(replicaLagMonitor);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(routedDataSource);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(routedDataSource));
+
+        // When
+        transactionTemplate.setReadOnly(true);
+        String readOnlyNode = transactionTemplate.execute(status -> currentNode(jdbcTemplate));
+        transactionTemplate.setReadOnly(false);
+        String readWriteNode = transactionTemplate.execute(status -> currentNode(jdbcTemplate));
+
+        // Then
+        assertThat(readOnlyNode).isEqualTo("replica");
+        assertThat(readWriteNode).isEqualTo("primary");
+    }
+
+    @Test
+    void readOnlyTransactionFallsBackToPrimaryWhenReplicaLags() {
+        // Given
+        ReplicaLagMonitor replicaLagMonitor = new ReplicaLagMonitor(replicaDataSource, "SELECT lag_seconds FROM replication", Duration.ofSeconds(5));
+        DataSource routedDataSource = routedDataSource(replicaLagMonitor);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(routedDataSource);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(routedDataSource));
+        transactionTemplate.setReadOnly(true);
+
+        // When
+        replicaJdbcTemplate.update("UPDATE replication SET lag_seconds = 30");
+        replicaLagMonitor.refresh();
+        String laggingNode = transactionTemplate.execute(status -> currentNode(jdbcTemplate));
+
+        replicaJdbcTemplate.update("UPDATE replication SET lag_seconds = 1");
+        replicaLagMonitor.refresh();
+        String caughtUpNode = transactionTemplate.execute(status -> currentNode(jdbcTemplate));
+
+        // Then
+        assertThat(laggingNode).isEqualTo("primary");
+        assertThat(caughtUpNode).isEqualTo("replica");
+    }
+
+    @Test
+    void readOnlyTransactionFallsBackToPrimaryWhenLagUnknown() {
+        // Given
+        ReplicaLagMonitor replicaLagMonitor = new ReplicaLagMonitor(replicaDataSource, "SELECT lag_seconds FROM missing_table", Duration.ofSeconds(5));
+        DataSource routedDataSource = routedDataSource(replicaLagMonitor);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(routedDataSource);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(routedDataSource));
+        transactionTemplate.setReadOnly(true);
+
+        // When
+        String node = transactionTemplate.execute(status -> currentNode(jdbcTemplate));
+
+        // Then
+        assertThat(replicaLagMonitor.isReplicaUsable()).isFalse();
+        assertThat(node).isEqualTo("primary");
+    }
+
+    private DataSource routedDataSource(ReplicaLagMonitor replicaLagMonitor) {
+        ReplicaRoutingDataSource routingDataSource = new ReplicaRoutingDataSource(primaryDataSource, replicaLagMonitor);
+        routingDataSource.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    private static String currentNode(JdbcTemplate jdbcTemplate) {
+        return jdbcTemplate.queryForObject("SELECT name FROM node", String.class);
+    }
+
+    private static DataSource h2DataSource(String name) {
+        return new DriverManagerDataSource("jdbc:h2:mem:" + name + "-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+    }
+}
@@ -2,14 +2,19 @@ package com.tenx.payment.controller.account;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.tenx.payment.controller.ApiErrorDetails;
+import com.tenx.payment.dto.account.AccountBalanceResponseDto;
 import com.tenx.payment.dto.account.AccountRequestDto;
 import com.tenx.payment.dto.account.AccountResponseDto;
+import com.tenx.payment.dto.account.BulkAccountResultDto;
+import com.tenx.payment.dto.transaction.TransactionRequestDto;
 import com.tenx.payment.model.Account;
 import com.tenx.payment.service.AccountService;
+import com.tenx.payment.service.TransactionService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
@@ -18,8 +23,10 @@ import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilde
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.Currency;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -34,6 +41,9 @@ class AccountApiTest {
     @Autowired
     private AccountService accountService;
 
+    @Autowired
+    private TransactionService transactionService;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -145,13 +155,181 @@ class AccountApiTest {
     }
 
     @Test
-    void getAccountApiNonExistingAccount() throws Exception {
+    void getAccountApiNotModifiedWhileVersionUnchanged() throws Exception {
+        // Given
+        Currency currency = Currency.getInstance("USD");
+        Account account = accountService.saveAccount(new Account(BigDecimal.TEN, currency));
+        Account otherAccount = accountService.saveAccount(new Account(BigDecimal.TEN, currency));
+        String etag = mockMvc.perform(get("/api/rest/account/{id}", account.getId()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // When
+        MvcResult notModified = mockMvc.perform(get("/api/rest/account/{id}", account.getId()).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andReturn();
+        transactionService.execute(new TransactionRequestDto(BigDecimal.ONE, account.getId(), otherAccount.getId(), currency));
+        MvcResult modified = mockMvc.perform(get("/api/rest/account/{id}", account.getId()).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        // Then
+        assertThat(etag).isNotBlank();
+        assertThat(notModified.getResponse().getContentAsString()).isEmpty();
+        assertThat(notModified.getResponse().getHeader(HttpHeaders.ETAG)).isEqualTo(etag);
+        assertThat(modified.getResponse().getHeader(HttpHeaders.ETAG)).isNotEqualTo(etag);
+        AccountResponseDto accountResponseDto = objectMapper.readValue(modified.getResponse().getContentAsString(), AccountResponseDto.class);
+        assertThat(accountResponseDto.getBalance()).isEqualByComparingTo(BigDecimal.valueOf(9));
+    }
+
+    @Test
+    void getHighVolumeAccountApiModifiedByBalanceBucketCredit() throws Exception {
         // Given
-        long id = 7;
+        Currency currency = Currency.getInstance("USD");
+        Account sourceAccount = accountService.saveAccount(new Account(BigDecimal.valueOf(100), currency));
+        Account highVolumeAccount = accountService.saveAccount(AccountRequestDto.builder()
+                .balance(BigDecimal.TEN)
+                .currency(currency)
+                .highVolume(true)
+                .build());
+        String etag = mockMvc.perform(get("/api/rest/account/{id}", highVolumeAccount.getId()))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // When
+        transactionService.execute(new TransactionRequestDto(BigDecimal.valueOf(30), sourceAccount.getId(), highVolumeAccount.getId(), currency));
+        MvcResult mvcResult = mockMvc.perform(get("/api/rest/account/{id}", highVolumeAccount.getId()).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        // Then
+        assertThat(accountService.findAccountById(highVolumeAccount.getId()).getVersion())
+                .isEqualTo(highVolumeAccount.getVersion());
+        AccountResponseDto accountResponseDto = objectMapper.readValue(mvcResult.getResponse().getContentAsString(), AccountResponseDto.class);
+        assertThat(accountResponseDto.getBalance()).isEqualByComparingTo(BigDecimal.valueOf(40));
+    }
+
+    @Test
+    void getAccountApiNonExistingAccount() throws Exception {
+        // Given, beyond the accounts created by the other tests of the class
+        long id = Long.MAX_VALUE;
         MockHttpServletRequestBuilder requestBuilder = get("/api/rest/account/{id}", id);
 
         // When
         // Then
         mockMvc.perform(requestBuilder).andExpect(status().isNotFound()).andReturn();
     }
-}
\ No newline at end of file
+
+    @Test
+    void getHighVolumeAccountApiAggregatesBalanceBuckets() throws Exception {
+        // Given
+        Currency currency = Currency.getInstance("USD");
+        Account sourceAccount = accountService.saveAccount(new Account(BigDecimal.valueOf(100), currency));
+        Account highVolumeAccount = accountService.saveAccount(AccountRequestDto.builder()
+                .balance(BigDecimal.TEN)
+                .currency(currency)
+                .highVolume(true)
+                .build());
+        transactionService.execute(new TransactionRequestDto(BigDecimal.valueOf(30), sourceAccount.getId(), highVolumeAccount.getId(), currency));
+        transactionService.execute(new TransactionRequestDto(BigDecimal.valueOf(20), sourceAccount.getId(), highVolumeAccount.getId(), currency));
+        MockHttpServletRequestBuilder requestBuilder = get("/api/rest/account/{id}", highVolumeAccount.getId());
+
+        // When
+        MvcResult mvcResult = mockMvc.perform(requestBuilder).andExpect(status().isOk()).andReturn();
+
+        // Then
+        AccountResponseDto accountResponseDto =  objectMapper.readValue(mvcResult.getResponse().getContentAsString(), AccountResponseDto.class);
+        assertThat(accountResponseDto.getBalance()).isEqualByComparingTo(BigDecimal.valueOf(60));
+        assertThat(accountService.findAccountById(highVolumeAccount.getId()).getBalance()).isEqualByComparingTo(BigDecimal.TEN);
+
+        // When
+        accountService.compactBalanceBuckets(highVolumeAccount.getId());
+
+        // Then
+        assertThat(accountService.findAccountById(highVolumeAccount.getId()).getBalance()).isEqualByComparingTo(BigDecimal.valueOf(60));
+        assertThat(accountService.getTotalBalance(accountService.findAccountById(highVolumeAccount.getId()))).isEqualByComparingTo(BigDecimal.valueOf(60));
+    }
+
+    @Test
+    void getAccountBalanceApi() throws Exception {
+        // Given
+        Currency currency = Currency.getInstance("USD");
+        Account sourceAccount = accountService.saveAccount(new Account(BigDecimal.valueOf(100), currency));
+        Account targetAccount = accountService.saveAccount(new Account(BigDecimal.ZERO, currency));
+        transactionService.execute(new TransactionRequestDto(BigDecimal.valueOf(30), sourceAccount.getId(), targetAccount.getId(), currency));
+        MockHttpServletRequestBuilder requestBuilder = get("/api/rest/account/{id}/balance", sourceAccount.getId());
+
+        // When
+        MvcResult mvcResult = mockMvc.perform(requestBuilder).andExpect(status().isOk()).andReturn();
+
+        // Then
+        AccountBalanceResponseDto balanceResponseDto = objectMapper.readValue(mvcResult.getResponse().getContentAsString(), AccountBalanceResponseDto.class);
+        assertThat(balanceResponseDto.getId()).isEqualTo(sourceAccount.getId());
+        assertThat(balanceResponseDto.getBalance()).isEqualByComparingTo(BigDecimal.valueOf(70));
+        assertThat(balanceResponseDto.getCurrency()).isEqualTo(currency);
+    }
+
+    @Test
+    void getAccountBalanceApiBeforeCreation() throws Exception {
+        // Given
+        Account account = accountService.saveAccount(new Account(BigDecimal.TEN, Currency.getInstance("USD")));
+        MockHttpServletRequestBuilder requestBuilder = get("/api/rest/account/{id}/balance", account.getId())
+                .param("at", Long.toString(account.getCreateAtTimestamp() - 1));
+
+        // When
+        // Then
+        mockMvc.perform(requestBuilder).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void createAccountsBulkApiFromJson() throws Exception {
+        // Given
+        String requestBody = """
+                [{"balance": 10, "currency": "USD"},
+                 {"balance": -1, "currency": "EUR"},
+                 {"balance": 5, "currency": "NOPE"},
+                 {"balance": 20.5, "currency": "EUR", "highVolume": true}]
+                """;
+
+        // When
+        MockHttpServletRequestBuilder requestBuilder = post("/api/rest/accounts/bulk").content(requestBody).contentType(MediaType.APPLICATION_JSON);
+        MvcResult mvcResult = mockMvc.perform(requestBuilder).andExpect(status().isOk()).andReturn();
+
+        // Then
+        BulkAccountResultDto[] results = objectMapper.readValue(mvcResult.getResponse().getContentAsString(), BulkAccountResultDto[].class);
+        assertThat(results).extracting(BulkAccountResultDto::getRow, BulkAccountResultDto::getStatus)
+                .containsExactly(tuple(1L, 200), tuple(2L, 400), tuple(3L, 400), tuple(4L, 200));
+        assertThat(results[1].getErrors()).containsExactly("balance field : must be greater than or equal to 0");
+        assertThat(results[2].getErrors()).singleElement().asString().startsWith("JSON parse error");
+        assertThat(accountService.findAccountById(results[0].getId()).getBalance()).isEqualByComparingTo("10");
+        Account highVolumeAccount = accountService.findAccountById(results[3].getId());
+        assertThat(highVolumeAccount.getCurrency()).isEqualTo(Currency.getInstance("EUR"));
+        assertThat(highVolumeAccount.hasBalanceBuckets()).isTrue();
+    }
+
+    @Test
+    void createAccountsBulkApiFromCsv() throws Exception {
+        // Given
+        StringBuilder requestBody = new StringBuilder("balance,currency,highVolume\n");
+        for (int i = 0; i < 1500; i++) {
+            requestBody.append(i).append(",USD,false\n");
+        }
+        requestBody.append("1,JPY,false\n").append("abc,USD,false\n");
+
+        // When
+        MockHttpServletRequestBuilder requestBuilder = post("/api/rest/accounts/bulk").content(requestBody.toString())
+                .contentType(AccountApi.CSV_MEDIA_TYPE);
+        MvcResult mvcResult = mockMvc.perform(requestBuilder).andExpect(status().isOk()).andReturn();
+
+        // Then
+        BulkAccountResultDto[] results = objectMapper.readValue(mvcResult.getResponse().getContentAsString(), BulkAccountResultDto[].class);
+        assertThat(results).hasSize(1502);
+        List<BulkAccountResultDto> createdResults = List.of(results).subList(0, 1500);
+        assertThat(createdResults).extracting(BulkAccountResultDto::getStatus).containsOnly(200);
+        assertThat(createdResults).extracting(BulkAccountResultDto::getId).doesNotContainNull().doesNotHaveDuplicates();
+        assertThat(accountService.findAccountById(results[1499].getId()).getBalance()).isEqualByComparingTo("1499");
+        assertThat(results[1500].getStatus()).isEqualTo(400);
+        assertThat(results[1500].getErrors()).singleElement().asString().startsWith("currency field : ");
+        assertThat(results[1501].getStatus()).isEqualTo(400);
+        assertThat(results[1501].getErrors()).singleElement().asString().startsWith("CSV parse error");
+    }
+}
@@ -0,0 +1,94 @@
+package com.tenx.payment.controller.transaction;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tenx.payment.controller.ApiErrorDetails;
+import com.tenx.payment.dto.transaction.ScheduledTransferRequestDto;
+import com.tenx.payment.dto.transaction.ScheduledTransferResponseDto;
+import com.tenx.payment.model.Account;
+import com.tenx.payment.model.ScheduledTransfer;
+import com.tenx.payment.service.AccountService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@AutoConfigureMockMvc
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ScheduledTransferApiTest {
+
+    private static final Currency USD = Currency.getInstance("USD");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void scheduleAndCancelRecurringTransfer() throws Exception {
+        // Given
+        ScheduledTransferRequestDto requestDto = mockRequestDto();
+        requestDto.setCron("0 0 9 * * FRI");
+        requestDto.setZone("Europe/Athens");
+
+        // When
+        MvcResult created = mockMvc.perform(post("/api/rest/scheduled-transfer")
+                        .content(objectMapper.writeValueAsString(requestDto))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk()).andReturn();
+        ScheduledTransferResponseDto createdDto = objectMapper.readValue(created.getResponse().getContentAsString(),
+                ScheduledTransferResponseDto.class);
+        MvcResult cancelled = mockMvc.perform(delete("/api/rest/scheduled-transfer/" + createdDto.getId()))
+                .andExpect(status().isOk()).andReturn();
+
+        // Then
+        assertThat(createdDto.getStatus()).isEqualTo(ScheduledTransfer.Status.SCHEDULED);
+        assertThat(createdDto.getNextExecutionTimestamp()).isGreaterThan(System.currentTimeMillis());
+        assertThat(objectMapper.readValue(cancelled.getResponse().getContentAsString(), ScheduledTransferResponseDto.class)
+                .getStatus()).isEqualTo(ScheduledTransfer.Status.CANCELLED);
+        mockMvc.perform(get("/api/rest/scheduled-transfer/" + createdDto.getId())).andExpect(status().isOk());
+    }
+
+    @Test
+    void scheduleWithInvalidCronIsRejected() throws Exception {
+        // Given
+        ScheduledTransferRequestDto requestDto = mockRequestDto();
+        requestDto.setCron("every friday");
+
+        // When
+        MvcResult mvcResult = mockMvc.perform(post("/api/rest/scheduled-transfer")
+                        .content(objectMapper.writeValueAsString(requestDto))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest()).andReturn();
+        ApiErrorDetails apiErrorDetails = objectMapper.readValue(mvcResult.getResponse().getContentAsString(), ApiErrorDetails.class);
+
+        // Then
+        assertThat(apiErrorDetails.getMessages().get(0)).isEqualTo("Invalid cron expression");
+    }
+
+    private ScheduledTransferRequestDto mockRequestDto() {
+        Account sourceAccount = accountService.saveAccount(new Account(new BigDecimal("100"), USD));
+        Account targetAccount = accountService.saveAccount(new Account(new BigDecimal("0"), USD));
+        return ScheduledTransferRequestDto.builder()
+                .amount(new BigDecimal("10"))
+                .sourceAccountId(sourceAccount.getId())
+                .targetAccountId(targetAccount.getId())
+                .currency(USD)
+                .build();
+    }
+}
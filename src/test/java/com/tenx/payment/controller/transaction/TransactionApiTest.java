@@ -2,16 +2,22 @@ package com.tenx.payment.controller.transaction;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.tenx.payment.controller.ApiErrorDetails;
+import com.tenx.payment.dto.binary.TransferBinaryCodec;
+import com.tenx.payment.dto.transaction.SplitTransferRequestDto;
+import com.tenx.payment.dto.transaction.TransactionBatchRequestDto;
 import com.tenx.payment.dto.transaction.TransactionRequestDto;
 import com.tenx.payment.dto.transaction.TransactionResponseDto;
 import com.tenx.payment.model.Account;
 import com.tenx.payment.model.Transaction;
 import com.tenx.payment.repository.TransactionRepository;
 import com.tenx.payment.service.AccountService;
+import com.tenx.payment.service.TransactionService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.dao.CannotAcquireLockException;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
@@ -19,9 +25,16 @@ import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilde
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Currency;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doThrow;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -39,6 +52,9 @@ class TransactionApiTest {
     @Autowired
     private AccountService accountService;
 
+    @SpyBean
+    private TransactionService transactionService;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -139,6 +155,280 @@ class TransactionApiTest {
         assertThat(transactionResponseDto.getTargetAccountId()).isEqualTo(transaction.getTargetAccount().getId());
     }
 
+    @Test
+    void executeTransactionAsync() throws Exception {
+        // Given
+        TransactionRequestDto transactionRequestDto = mockTransactionRequestDto("USD", 50);
+        String requestBody = objectMapper.writeValueAsString(transactionRequestDto);
+
+        // When
+        MockHttpServletRequestBuilder requestBuilder = post("/api/rest/transaction").content(requestBody)
+                .contentType(MediaType.APPLICATION_JSON).header("Prefer", "respond-async");
+        MvcResult mvcResult = mockMvc.perform(requestBuilder).andExpect(status().isAccepted()).andReturn();
+
+        // Then
+        TransactionResponseDto transactionResponseDto = objectMapper.readValue(mvcResult.getResponse().getContentAsString(), TransactionResponseDto.class);
+        assertThat(mvcResult.getResponse().getHeader("Location")).endsWith("/api/rest/transaction/" + transactionResponseDto.getId());
+
+        TransactionResponseDto polledTransaction = transactionResponseDto;
+        long deadline = System.currentTimeMillis() + 5000;
+        while (polledTransaction.getStatus() == Transaction.Status.PENDING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            MvcResult pollResult = mockMvc.perform(get("/api/rest/transaction/{id}", transactionResponseDto.getId()))
+                    .andExpect(status().isOk()).andReturn();
+            polledTransaction = objectMapper.readValue(pollResult.getResponse().getContentAsString(), TransactionResponseDto.class);
+        }
+        assertThat(polledTransaction.getStatus()).isEqualTo(Transaction.Status.COMPLETED);
+        assertThat(accountService.findAccountById(transactionRequestDto.getTargetAccountId()).getBalance()).isEqualByComparingTo("50");
+    }
+
+    @Test
+    void executeTransactionBinary() throws Exception {
+        // Given
+        TransactionRequestDto transactionRequestDto = mockTransactionRequestDto("USD", 50);
+        ByteBuffer requestBody = ByteBuffer.allocate(TransferBinaryCodec.REQUEST_LENGTH);
+        TransferBinaryCodec.encodeRequest(transactionRequestDto, requestBody);
+
+        // When
+        MockHttpServletRequestBuilder requestBuilder = post("/api/rest/transaction").content(requestBody.array())
+                .contentType(TransferBinaryCodec.MEDIA_TYPE).accept(TransferBinaryCodec.MEDIA_TYPE);
+        MvcResult mvcResult = mockMvc.perform(requestBuilder).andExpect(status().isOk()).andReturn();
+
+        // Then
+        TransactionResponseDto transactionResponseDto = TransferBinaryCodec.decodeResponse(ByteBuffer.wrap(mvcResult.getResponse().getContentAsByteArray()));
+        assertThat(transactionResponseDto.getAmount()).isEqualByComparingTo("50");
+        assertThat(transactionResponseDto.getStatus()).isEqualTo(Transaction.Status.COMPLETED);
+        assertThat(transactionRepository.findById(transactionResponseDto.getId())).isPresent();
+    }
+
+    @Test
+    void streamTransactions() throws Exception {
+        // Given
+        TransactionRequestDto transactionRequestDto = mockTransactionRequestDto("USD", 60);
+        ByteBuffer requestBody = ByteBuffer.allocate(3 * (8 + TransferBinaryCodec.REQUEST_LENGTH));
+        for (long correlationId = 1; correlationId <= 3; correlationId++) {
+            requestBody.putLong(correlationId);
+            TransferBinaryCodec.encodeRequest(transactionRequestDto, requestBody);
+        }
+
+        // When
+        MockHttpServletRequestBuilder requestBuilder = post("/api/rest/transaction/stream").content(requestBody.array())
+                .contentType(TransactionApi.STREAM_MEDIA_TYPE).accept(TransactionApi.STREAM_MEDIA_TYPE);
+        MvcResult mvcResult = mockMvc.perform(requestBuilder).andExpect(status().isOk()).andReturn();
+
+        // Then
+        ByteBuffer responseBody = ByteBuffer.wrap(mvcResult.getResponse().getContentAsByteArray());
+        List<Long> correlationIds = new ArrayList<>();
+        List<Short> statusCodes = new ArrayList<>();
+        while (responseBody.hasRemaining()) {
+            correlationIds.add(responseBody.getLong());
+            statusCodes.add(responseBody.getShort());
+            int payloadLength = responseBody.getInt();
+            responseBody.position(responseBody.position() + payloadLength);
+        }
+        // The source account of 100 covers a single transfer of 60
+        assertThat(correlationIds).containsExactly(1L, 2L, 3L);
+        assertThat(statusCodes).containsExactly((short) 200, (short) 400, (short) 400);
+    }
+
+    @Test
+    void streamTransactionsAnswersFramesFailingMidStream() throws Exception {
+        // Given
+        Account sourceAccount = accountService.saveAccount(new Account(BigDecimal.valueOf(100), Currency.getInstance("USD")));
+        Account targetAccount = accountService.saveAccount(new Account(BigDecimal.ZERO, Currency.getInstance("USD")));
+        doThrow(new CannotAcquireLockException("Lock wait timeout")).when(transactionService)
+                .tryExecute(argThat(dto -> dto.getAmount().intValue() == 2));
+        doThrow(new IllegalStateException("Broken")).when(transactionService)
+                .tryExecute(argThat(dto -> dto.getAmount().intValue() == 3));
+        ByteBuffer requestBody = ByteBuffer.allocate(4 * (8 + TransferBinaryCodec.REQUEST_LENGTH));
+        for (int amount : new int[]{1, 2, 3, 4}) {
+            requestBody.putLong(10L + amount);
+            TransferBinaryCodec.encodeRequest(new TransactionRequestDto(BigDecimal.valueOf(amount), sourceAccount.getId(),
+                    targetAccount.getId(), Currency.getInstance("USD")), requestBody);
+        }
+
+        // When
+        MockHttpServletRequestBuilder requestBuilder = post("/api/rest/transaction/stream").content(requestBody.array())
+                .contentType(TransactionApi.STREAM_MEDIA_TYPE).accept(TransactionApi.STREAM_MEDIA_TYPE);
+        MvcResult mvcResult = mockMvc.perform(requestBuilder).andExpect(status().isOk()).andReturn();
+
+        // Then every frame is answered, the stream goes on after the failed ones
+        ByteBuffer responseBody = ByteBuffer.wrap(mvcResult.getResponse().getContentAsByteArray());
+        List<Long> correlationIds = new ArrayList<>();
+        List<Short> statusCodes = new ArrayList<>();
+        while (responseBody.hasRemaining()) {
+            correlationIds.add(responseBody.getLong());
+            statusCodes.add(responseBody.getShort());
+            int payloadLength = responseBody.getInt();
+            responseBody.position(responseBody.position() + payloadLength);
+        }
+        assertThat(correlationIds).containsExactly(11L, 12L, 13L, 14L);
+        assertThat(statusCodes).containsExactly((short) 200, (short) 503, (short) 500, (short) 200);
+        assertThat(accountService.findAccountById(sourceAccount.getId()).getBalance()).isEqualByComparingTo("95");
+    }
+
+    @Test
+    void getTransactionNonExistingTransaction() throws Exception {
+        // Given
+        MockHttpServletRequestBuilder requestBuilder = get("/api/rest/transaction/{id}", Long.MAX_VALUE);
+
+        // When
+        // Then
+        mockMvc.perform(requestBuilder).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void getAccountTransactions() throws Exception {
+        // Given
+        TransactionRequestDto transactionRequestDto = mockTransactionRequestDto("USD", 20);
+        Transaction firstTransaction = transactionService.execute(transactionRequestDto);
+        Transaction secondTransaction = transactionService.execute(transactionRequestDto);
+
+        // When
+        MockHttpServletRequestBuilder requestBuilder = get("/api/rest/account/{id}/transactions", transactionRequestDto.getTargetAccountId());
+        MvcResult mvcResult = mockMvc.perform(requestBuilder).andExpect(status().isOk()).andReturn();
+
+        // Then
+        TransactionResponseDto[] transactions = objectMapper.readValue(mvcResult.getResponse().getContentAsString(), TransactionResponseDto[].class);
+        assertThat(transactions).extracting(TransactionResponseDto::getId).containsExactly(secondTransaction.getId(), firstTransaction.getId());
+        assertThat(transactions).allSatisfy(transaction -> assertThat(transaction.getTargetAccountId()).isEqualTo(transactionRequestDto.getTargetAccountId()));
+    }
+
+    @Test
+    void getAccountTransactionsNonExistingAccount() throws Exception {
+        // Given
+        MockHttpServletRequestBuilder requestBuilder = get("/api/rest/account/{id}/transactions", Long.MAX_VALUE);
+
+        // When
+        // Then
+        mockMvc.perform(requestBuilder).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void executeSplitTransaction() throws Exception {
+        // Given
+        Account payer = accountService.saveAccount(new Account(BigDecimal.valueOf(100), Currency.getInstance("USD")));
+        Account payee = accountService.saveAccount(new Account(BigDecimal.ZERO, Currency.getInstance("EUR")));
+        Account feeAccount = accountService.saveAccount(new Account(BigDecimal.ZERO, Currency.getInstance("USD")));
+        SplitTransferRequestDto splitTransferRequestDto = SplitTransferRequestDto.builder()
+                .debits(List.of(leg(payer, "50")))
+                .credits(List.of(leg(payee, "49"), leg(feeAccount, "1")))
+                .currency(Currency.getInstance("USD"))
+                .build();
+
+        // When
+        MockHttpServletRequestBuilder requestBuilder = post("/api/rest/transaction/split")
+                .content(objectMapper.writeValueAsString(splitTransferRequestDto)).contentType(MediaType.APPLICATION_JSON);
+        MvcResult mvcResult = mockMvc.perform(requestBuilder).andExpect(status().isOk()).andReturn();
+
+        // Then
+        TransactionResponseDto[] transactions = objectMapper.readValue(mvcResult.getResponse().getContentAsString(), TransactionResponseDto[].class);
+        assertThat(transactions).extracting(TransactionResponseDto::getSourceAccountId, TransactionResponseDto::getTargetAccountId)
+                .containsExactly(tuple(payer.getId(), payee.getId()), tuple(payer.getId(), feeAccount.getId()));
+        assertThat(accountService.findAccountById(payer.getId()).getBalance()).isEqualByComparingTo("50");
+        assertThat(accountService.findAccountById(payee.getId()).getBalance()).isEqualByComparingTo("44.59");
+        assertThat(accountService.findAccountById(feeAccount.getId()).getBalance()).isEqualByComparingTo("1");
+    }
+
+    @Test
+    void executeSplitTransactionNotEnoughAmountAppliesNoLeg() throws Exception {
+        // Given
+        Account firstPayer = accountService.saveAccount(new Account(BigDecimal.valueOf(100), Currency.getInstance("USD")));
+        Account secondPayer = accountService.saveAccount(new Account(BigDecimal.valueOf(10), Currency.getInstance("USD")));
+        Account payee = accountService.saveAccount(new Account(BigDecimal.ZERO, Currency.getInstance("USD")));
+        SplitTransferRequestDto splitTransferRequestDto = SplitTransferRequestDto.builder()
+                .debits(List.of(leg(firstPayer, "50"), leg(secondPayer, "50")))
+                .credits(List.of(leg(payee, "100")))
+                .currency(Currency.getInstance("USD"))
+                .build();
+
+        // When
+        MockHttpServletRequestBuilder requestBuilder = post("/api/rest/transaction/split")
+                .content(objectMapper.writeValueAsString(splitTransferRequestDto)).contentType(MediaType.APPLICATION_JSON);
+        MvcResult mvcResult = mockMvc.perform(requestBuilder).andExpect(status().isBadRequest()).andReturn();
+        ApiErrorDetails apiErrorDetails =  objectMapper.readValue(mvcResult.getResponse().getContentAsString(), ApiErrorDetails.class);
+
+        // Then
+        assertThat(apiErrorDetails.getMessages().get(0)).isEqualTo("Insufficient amount");
+        assertThat(accountService.findAccountById(firstPayer.getId()).getBalance()).isEqualByComparingTo("100");
+        assertThat(accountService.findAccountById(payee.getId()).getBalance()).isEqualByComparingTo("0");
+    }
+
+    @Test
+    void executeTransactionBatchNetsTheBalanceUpdates() throws Exception {
+        // Given
+        Currency usd = Currency.getInstance("USD");
+        Account buyer = accountService.saveAccount(new Account(BigDecimal.valueOf(100), usd));
+        Account seller = accountService.saveAccount(new Account(BigDecimal.ZERO, usd));
+        Account platform = accountService.saveAccount(new Account(BigDecimal.ZERO, usd));
+        // The seller pays the fee and a refund out of the sale of the same batch
+        TransactionBatchRequestDto transactionBatchRequestDto = new TransactionBatchRequestDto(List.of(
+                new TransactionRequestDto(BigDecimal.valueOf(100), buyer.getId(), seller.getId(), usd),
+                new TransactionRequestDto(BigDecimal.valueOf(5), seller.getId(), platform.getId(), usd),
+                new TransactionRequestDto(BigDecimal.valueOf(10), seller.getId(), buyer.getId(), usd),
+                new TransactionRequestDto(BigDecimal.valueOf(10), buyer.getId(), seller.getId(), usd)));
+
+        // When
+        MockHttpServletRequestBuilder requestBuilder = post("/api/rest/transaction/batch")
+                .content(objectMapper.writeValueAsString(transactionBatchRequestDto)).contentType(MediaType.APPLICATION_JSON);
+        MvcResult mvcResult = mockMvc.perform(requestBuilder).andExpect(status().isOk()).andReturn();
+
+        // Then
+        TransactionResponseDto[] transactions = objectMapper.readValue(mvcResult.getResponse().getContentAsString(), TransactionResponseDto[].class);
+        assertThat(transactions).extracting(TransactionResponseDto::getAmount)
+                .usingElementComparator(BigDecimal::compareTo)
+                .containsExactly(BigDecimal.valueOf(100), BigDecimal.valueOf(5), BigDecimal.valueOf(10), BigDecimal.valueOf(10));
+        assertThat(transactions).extracting(TransactionResponseDto::getId)
+                .allSatisfy(id -> assertThat(transactionRepository.existsById(id)).isTrue());
+        Account settledSeller = accountService.findAccountById(seller.getId());
+        assertThat(settledSeller.getBalance()).isEqualByComparingTo("95");
+        assertThat(settledSeller.getVersion()).isEqualTo(seller.getVersion() + 1);
+        assertThat(accountService.findAccountById(buyer.getId()).getBalance()).isEqualByComparingTo("0");
+        assertThat(accountService.findAccountById(platform.getId()).getBalance()).isEqualByComparingTo("5");
+    }
+
+    @Test
+    void executeTransactionBatchNotEnoughNetAmountAppliesNoTransfer() throws Exception {
+        // Given
+        Currency usd = Currency.getInstance("USD");
+        Account buyer = accountService.saveAccount(new Account(BigDecimal.valueOf(100), usd));
+        Account seller = accountService.saveAccount(new Account(BigDecimal.ZERO, usd));
+        TransactionBatchRequestDto transactionBatchRequestDto = new TransactionBatchRequestDto(List.of(
+                new TransactionRequestDto(BigDecimal.valueOf(50), buyer.getId(), seller.getId(), usd),
+                new TransactionRequestDto(BigDecimal.valueOf(60), seller.getId(), buyer.getId(), usd)));
+
+        // When
+        MockHttpServletRequestBuilder requestBuilder = post("/api/rest/transaction/batch")
+                .content(objectMapper.writeValueAsString(transactionBatchRequestDto)).contentType(MediaType.APPLICATION_JSON);
+
+        // Then
+        mockMvc.perform(requestBuilder).andExpect(status().isBadRequest());
+        assertThat(accountService.findAccountById(buyer.getId()).getBalance()).isEqualByComparingTo("100");
+        assertThat(accountService.findAccountById(seller.getId()).getBalance()).isEqualByComparingTo("0");
+    }
+
+    @Test
+    void executeTransactionBatchBeyondTheVelocityLimitOfAnAccount() throws Exception {
+        // Given a settlement run paying out 400 times from the platform, more than its transfers allowed per window
+        Currency usd = Currency.getInstance("USD");
+        Account platform = accountService.saveAccount(new Account(BigDecimal.valueOf(1000), usd));
+        List<Account> sellers = List.of(accountService.saveAccount(new Account(BigDecimal.ZERO, usd)),
+                accountService.saveAccount(new Account(BigDecimal.ZERO, usd)));
+        List<TransactionRequestDto> payouts = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            payouts.add(new TransactionRequestDto(BigDecimal.ONE, platform.getId(), sellers.get(i % 2).getId(), usd));
+        }
+        MockHttpServletRequestBuilder requestBuilder = post("/api/rest/transaction/batch")
+                .content(objectMapper.writeValueAsString(new TransactionBatchRequestDto(payouts))).contentType(MediaType.APPLICATION_JSON);
+
+        // When
+        mockMvc.perform(requestBuilder).andExpect(status().isOk());
+        mockMvc.perform(requestBuilder).andExpect(status().isOk());
+
+        // Then
+        assertThat(accountService.findAccountById(platform.getId()).getBalance()).isEqualByComparingTo("200");
+        assertThat(accountService.findAccountById(sellers.get(0).getId()).getBalance()).isEqualByComparingTo("400");
+    }
 
     private TransactionRequestDto mockTransactionRequestDto(String USD, int amount) {
         Currency usdCurrency = Currency.getInstance(USD);
@@ -147,4 +437,11 @@ class TransactionApiTest {
 
         return new TransactionRequestDto(BigDecimal.valueOf(amount), sourceAccount.getId(), targetAccount.getId(), usdCurrency);
     }
-}
\ No newline at end of file
+
+    private static SplitTransferRequestDto.Leg leg(Account account, String amount) {
+        return SplitTransferRequestDto.Leg.builder()
+                .accountId(account.getId())
+                .amount(new BigDecimal(amount))
+                .build();
+    }
+}
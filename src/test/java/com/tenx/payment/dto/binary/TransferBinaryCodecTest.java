@@ -0,0 +1,59 @@
+package com.tenx.payment.dto.binary;
+
+import com.tenx.payment.dto.transaction.TransactionRequestDto;
+import com.tenx.payment.dto.transaction.TransactionResponseDto;
+import com.tenx.payment.model.Transaction;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Currency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TransferBinaryCodecTest {
+
+    @Test
+    void requestRoundTrip() {
+        // Given
+        TransactionRequestDto request = new TransactionRequestDto(new BigDecimal("1234567890.0123456789"), 1L, Long.MAX_VALUE, Currency.getInstance("EUR"));
+        ByteBuffer buffer = ByteBuffer.allocate(TransferBinaryCodec.REQUEST_LENGTH);
+
+        // When
+        TransferBinaryCodec.encodeRequest(request, buffer);
+        TransactionRequestDto decoded = TransferBinaryCodec.decodeRequest(buffer.flip());
+
+        // Then
+        assertThat(buffer.limit()).isEqualTo(TransferBinaryCodec.REQUEST_LENGTH);
+        assertThat(decoded).isEqualTo(request);
+    }
+
+    @Test
+    void responseRoundTrip() {
+        // Given
+        TransactionResponseDto response = new TransactionResponseDto(new BigDecimal("-0.50"), 1L, 2L, Currency.getInstance("USD"), 3L,
+                Transaction.Status.FAILED, "Insufficient amount");
+        ByteBuffer buffer = ByteBuffer.allocate(TransferBinaryCodec.responseLength(response));
+
+        // When
+        TransferBinaryCodec.encodeResponse(response, buffer);
+        TransactionResponseDto decoded = TransferBinaryCodec.decodeResponse(buffer.flip());
+
+        // Then
+        assertThat(decoded.getAmount()).isEqualTo(response.getAmount());
+        assertThat(decoded.getId()).isEqualTo(3L);
+        assertThat(decoded.getStatus()).isEqualTo(Transaction.Status.FAILED);
+        assertThat(decoded.getFailureReason()).isEqualTo("Insufficient amount");
+        assertThat(buffer.hasRemaining()).isFalse();
+    }
+
+    @Test
+    void truncatedRequestRejected() {
+        // Given
+        ByteBuffer buffer = ByteBuffer.allocate(10);
+
+        // When // Then
+        assertThatThrownBy(() -> TransferBinaryCodec.decodeRequest(buffer)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
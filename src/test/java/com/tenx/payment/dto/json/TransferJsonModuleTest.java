@@ -0,0 +1,93 @@
+package com.tenx.payment.dto.json;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import com.tenx.payment.dto.account.AccountResponseDto;
+import com.tenx.payment.dto.transaction.TransactionRequestDto;
+import com.tenx.payment.dto.transaction.TransactionResponseDto;
+import com.tenx.payment.model.Transaction;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TransferJsonModuleTest {
+
+    private static final Currency USD = Currency.getInstance("USD");
+
+    private final ObjectMapper reflectiveMapper = new ObjectMapper();
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new TransferJsonModule());
+
+    @Test
+    void transactionResponseMatchesBeanBinding() throws Exception {
+        // Given
+        TransactionResponseDto transaction = new TransactionResponseDto(new BigDecimal("-1234.5600"), 1L, 2L, USD, 3L,
+                Transaction.Status.FAILED, null);
+
+        // When
+        String json = objectMapper.writeValueAsString(transaction);
+
+        // Then
+        assertThat(json).isEqualTo(reflectiveMapper.writeValueAsString(transaction));
+    }
+
+    @Test
+    void accountResponseMatchesBeanBinding() throws Exception {
+        // Given
+        AccountResponseDto account = new AccountResponseDto(7L, new BigDecimal("0.05"), USD, 1700000000000L);
+
+        // When
+        String json = objectMapper.writeValueAsString(account);
+
+        // Then
+        assertThat(json).isEqualTo(reflectiveMapper.writeValueAsString(account));
+    }
+
+    @Test
+    void amountsWrittenInPlainNotation() throws Exception {
+        // Given
+        AccountResponseDto account = new AccountResponseDto(7L, new BigDecimal("0.00000001"), USD, 0L);
+
+        // When
+        String json = objectMapper.writeValueAsString(account);
+
+        // Then
+        assertThat(json).contains("\"balance\":0.00000001");
+        assertThat(objectMapper.writeValueAsString(new AccountResponseDto(7L, new BigDecimal("1E+3"), USD, 0L)))
+                .contains("\"balance\":1E+3");
+    }
+
+    @Test
+    void transactionRequestRead() throws Exception {
+        // Given
+        String json = "{\"currency\":\"EUR\",\"amount\":12.50,\"unknown\":{\"nested\":[1]},\"sourceAccountId\":1,\"targetAccountId\":2}";
+
+        // When
+        TransactionRequestDto transactionRequestDto = objectMapper.readValue(json, TransactionRequestDto.class);
+
+        // Then
+        assertThat(transactionRequestDto).isEqualTo(new TransactionRequestDto(new BigDecimal("12.50"), 1L, 2L, Currency.getInstance("EUR")));
+    }
+
+    @Test
+    void transactionRequestMissingFieldRejected() {
+        // Given
+        String json = "{\"amount\":12.50,\"sourceAccountId\":1,\"targetAccountId\":2}";
+
+        // When // Then
+        assertThatThrownBy(() -> objectMapper.readValue(json, TransactionRequestDto.class)).isInstanceOf(MismatchedInputException.class);
+    }
+
+    @Test
+    void transactionRequestUnknownCurrencyRejected() {
+        // Given
+        String json = "{\"amount\":1,\"sourceAccountId\":1,\"targetAccountId\":2,\"currency\":\"XYZ\"}";
+
+        // When // Then
+        assertThatThrownBy(() -> objectMapper.readValue(json, TransactionRequestDto.class)).isInstanceOf(MismatchedInputException.class);
+    }
+}
@@ -0,0 +1,117 @@
+package com.tenx.payment.outbox;
+
+import com.tenx.payment.dto.transaction.TransactionRequestDto;
+import com.tenx.payment.job.OutboxRelayJob;
+import com.tenx.payment.model.Account;
+import com.tenx.payment.model.Transaction;
+import com.tenx.payment.repository.OutboxEventRepository;
+import com.tenx.payment.service.AccountService;
+import com.tenx.payment.service.OutboxService;
+import com.tenx.payment.service.TransactionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.event.EventListener;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Own database, the scheduled relays of the other cached contexts would drain the shared one
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:outbox",
+        "thanks-pay.outbox.relay-interval-ms=3600000"
+})
+class OutboxRelayTest {
+
+    private static final Currency USD = Currency.getInstance("USD");
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private OutboxRelayJob outboxRelayJob;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private TransferListener transferListener;
+
+    @BeforeEach
+    void setUp() {
+        outboxRelayJob.relay();
+        transferListener.events.clear();
+    }
+
+    @Test
+    void relayPublishesCompletedTransfersInOrder() {
+        // Given
+        Account sourceAccount = accountService.saveAccount(new Account(new BigDecimal("100"), USD));
+        Account targetAccount = accountService.saveAccount(new Account(new BigDecimal("0"), USD));
+        Transaction first = transactionService.execute(new TransactionRequestDto(new BigDecimal("10"), sourceAccount.getId(), targetAccount.getId(), USD));
+        Transaction second = transactionService.execute(new TransactionRequestDto(new BigDecimal("20"), sourceAccount.getId(), targetAccount.getId(), USD));
+
+        // When
+        outboxRelayJob.relay();
+
+        // Then
+        assertThat(transferListener.events).extracting(TransferCompletedEvent::transactionId)
+                .containsExactly(first.getId(), second.getId());
+        assertThat(transferListener.events.get(1).amount()).isEqualByComparingTo("20");
+        assertThat(transferListener.events.get(1).sourceAccountId()).isEqualTo(sourceAccount.getId());
+        assertThat(outboxEventRepository.count()).isZero();
+    }
+
+    @Test
+    void relayKeepsEventsWhenSinkFails() {
+        // Given
+        Account sourceAccount = accountService.saveAccount(new Account(new BigDecimal("100"), USD));
+        Account targetAccount = accountService.saveAccount(new Account(new BigDecimal("0"), USD));
+        transactionService.execute(new TransactionRequestDto(new BigDecimal("10"), sourceAccount.getId(), targetAccount.getId(), USD));
+
+        // When
+        assertThatThrownBy(() -> outboxService.relay(events -> {
+            throw new IllegalStateException("Sink unavailable");
+        }, 10)).isInstanceOf(IllegalStateException.class);
+
+        // Then
+        assertThat(outboxEventRepository.count()).isEqualTo(1);
+        outboxRelayJob.relay();
+        assertThat(transferListener.events).hasSize(1);
+        assertThat(outboxEventRepository.count()).isZero();
+    }
+
+    @TestConfiguration
+    static class TransferListenerConfig {
+
+        @Bean
+        TransferListener transferListener() {
+            return new TransferListener();
+        }
+    }
+
+    static class TransferListener {
+
+        private final List<TransferCompletedEvent> events = Collections.synchronizedList(new ArrayList<>());
+
+        @EventListener
+        void onTransferCompleted(TransferCompletedEvent event) {
+            events.add(event);
+        }
+    }
+}
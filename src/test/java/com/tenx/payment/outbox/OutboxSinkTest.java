@@ -0,0 +1,70 @@
+package com.tenx.payment.outbox;
+
+import com.tenx.payment.model.OutboxEvent;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OutboxSinkTest {
+
+    private final List<OutboxEvent> events = List.of(
+            new OutboxEvent(1L, TransferCompletedEvent.TYPE, "{\"transactionId\":1}"),
+            new OutboxEvent(2L, TransferCompletedEvent.TYPE, "{\"transactionId\":2}"));
+
+    @Test
+    void kafkaSinkSendsEventsKeyedByAccount() throws Exception {
+        // Given
+        MockProducer<String, String> producer = new MockProducer<>(true, new StringSerializer(), new StringSerializer());
+        KafkaOutboxSink sink = new KafkaOutboxSink(producer, "transfers");
+
+        // When
+        sink.publish(events);
+
+        // Then
+        assertThat(producer.history()).extracting(ProducerRecord::key).containsExactly("1", "2");
+        assertThat(producer.history()).extracting(ProducerRecord::value)
+                .containsExactly("{\"transactionId\":1}", "{\"transactionId\":2}");
+        assertThat(producer.history()).extracting(ProducerRecord::topic).containsOnly("transfers");
+    }
+
+    @Test
+    void kafkaSinkFailsWhenBrokerRejectsEvent() {
+        // Given
+        MockProducer<String, String> producer = new MockProducer<>(false, new StringSerializer(), new StringSerializer()) {
+            @Override
+            public synchronized void flush() {
+                while (errorNext(new IllegalStateException("Broker unavailable"))) {
+                    // Fail every pending send
+                }
+            }
+        };
+        KafkaOutboxSink sink = new KafkaOutboxSink(producer, "transfers");
+
+        // When // Then
+        assertThatThrownBy(() -> sink.publish(events.subList(0, 1))).isInstanceOf(ExecutionException.class);
+    }
+
+    @Test
+    void fileSinkAppendsJsonLines(@TempDir Path directory) throws Exception {
+        // Given
+        Path file = directory.resolve("events.jsonl");
+        FileOutboxSink sink = new FileOutboxSink(file);
+
+        // When
+        sink.publish(events.subList(0, 1));
+        sink.publish(events.subList(1, 2));
+
+        // Then
+        assertThat(Files.readAllLines(file)).containsExactly("{\"transactionId\":1}", "{\"transactionId\":2}");
+    }
+}
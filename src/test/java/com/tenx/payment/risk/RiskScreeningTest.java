@@ -0,0 +1,177 @@
+package com.tenx.payment.risk;
+
+import com.tenx.payment.exception.Rejection;
+import com.tenx.payment.model.Account;
+import com.tenx.payment.service.CurrencyService;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RiskScreeningTest {
+
+    private static final long WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final long BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+    private final AtomicLong nanoClock = new AtomicLong();
+    private final Account account = account(1L);
+
+    @Test
+    void velocityRejectsTransfersBeyondTheLimitWithinTheWindow() {
+        // Given
+        RiskScreening riskScreening = screening(new VelocityRule(3));
+        for (int i = 0; i < 3; i++) {
+            assertThat(riskScreening.screen(account, BigDecimal.TEN)).isEmpty();
+        }
+
+        // When
+        Optional<Rejection> rejection = riskScreening.screen(account, BigDecimal.TEN);
+
+        // Then
+        assertThat(rejection).contains(Rejection.TRANSFER_VELOCITY_EXCEEDED);
+        assertThat(riskScreening.screen(account(2L), BigDecimal.TEN)).isEmpty();
+        clock.addAndGet(WINDOW_MILLIS);
+        assertThat(riskScreening.screen(account, BigDecimal.TEN)).isEmpty();
+        assertThat(riskScreening.getStats()).isEqualTo(new RiskScreening.Stats(6, 1, 0));
+    }
+
+    @Test
+    void amountSpikeRejectsManyTimesTheAverage() {
+        // Given
+        RiskScreening riskScreening = screening(new AmountSpikeRule(new BigDecimal(10), 3));
+        for (int i = 0; i < 3; i++) {
+            riskScreening.screen(account, new BigDecimal("20.00"));
+        }
+
+        // When, Then
+        assertThat(riskScreening.screen(account, new BigDecimal("200.00"))).isEmpty();
+        assertThat(riskScreening.screen(account, new BigDecimal("1000.00"))).contains(Rejection.TRANSFER_RISK_REJECTED);
+    }
+
+    @Test
+    void newAccountLimitAppliesUntilTheAccountAges() {
+        // Given
+        RiskScreening riskScreening = screening(new NewAccountLimitRule(TimeUnit.DAYS.toMillis(1), new BigDecimal("100.00"),
+                Currency.getInstance("EUR"), new CurrencyService()));
+        riskScreening.screen(account, new BigDecimal("60.00"));
+
+        // When, Then
+        assertThat(riskScreening.screen(account, new BigDecimal("60.00"))).contains(Rejection.TRANSFER_RISK_REJECTED);
+        clock.addAndGet(TimeUnit.DAYS.toMillis(2));
+        assertThat(riskScreening.screen(account, new BigDecimal("500.00"))).isEmpty();
+    }
+
+    @Test
+    void newAccountLimitConvertedToTheCurrencyOfTheAccount() {
+        // Given 100 USD, that is 91 EUR and 78 GBP
+        RiskScreening riskScreening = screening(new NewAccountLimitRule(TimeUnit.DAYS.toMillis(1), new BigDecimal("100.00"),
+                Currency.getInstance("USD"), new CurrencyService()));
+        Account gbpAccount = new Account(new BigDecimal("1000.00"), Currency.getInstance("GBP"));
+        gbpAccount.setId(2L);
+
+        // When, Then
+        assertThat(riskScreening.screen(account, new BigDecimal("90.00"))).isEmpty();
+        assertThat(riskScreening.screen(account, new BigDecimal("2.00"))).contains(Rejection.TRANSFER_RISK_REJECTED);
+        assertThat(riskScreening.screen(gbpAccount, new BigDecimal("78.00"))).isEmpty();
+        assertThat(riskScreening.screen(gbpAccount, new BigDecimal("0.01"))).contains(Rejection.TRANSFER_RISK_REJECTED);
+    }
+
+    @Test
+    void transfersCountOnceTheirTransactionCommits() {
+        // Given
+        RiskScreening riskScreening = screening(new VelocityRule(1));
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            assertThat(riskScreening.screen(account, BigDecimal.TEN)).isEmpty();
+
+            // When rolled back, Then
+            assertThat(riskScreening.evaluate(account, BigDecimal.TEN)).isEmpty();
+            TransactionSynchronizationManager.clearSynchronization();
+            TransactionSynchronizationManager.initSynchronization();
+            assertThat(riskScreening.screen(account, BigDecimal.TEN)).isEmpty();
+
+            // When committed, Then
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            assertThat(riskScreening.evaluate(account, BigDecimal.TEN)).contains(Rejection.TRANSFER_VELOCITY_EXCEEDED);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void failingRuleLetsTransferThrough() {
+        // Given
+        RiskScreening riskScreening = screening(transferRisk -> {
+            throw new IllegalStateException("Rule failed");
+        });
+
+        // When
+        Optional<Rejection> rejection = riskScreening.screen(account, BigDecimal.TEN);
+
+        // Then
+        assertThat(rejection).isEmpty();
+        assertThat(riskScreening.getStats().failedOpen()).isEqualTo(1);
+    }
+
+    @Test
+    void rulesBeyondTheLatencyBudgetAreSkipped() {
+        // Given
+        RiskRule slowRule = transferRisk -> {
+            nanoClock.addAndGet(2 * BUDGET_NANOS);
+            return Optional.empty();
+        };
+        RiskScreening riskScreening = screening(slowRule, new VelocityRule(0));
+
+        // When
+        Optional<Rejection> rejection = riskScreening.screen(account, BigDecimal.TEN);
+
+        // Then
+        assertThat(rejection).isEmpty();
+        assertThat(riskScreening.getStats()).isEqualTo(new RiskScreening.Stats(1, 0, 1));
+    }
+
+    @Test
+    void disabledScreeningLetsEverythingThrough() {
+        // Given
+        RiskScreening riskScreening = new RiskScreening(false, List.of(new VelocityRule(0)), WINDOW_MILLIS, 12, BUDGET_NANOS);
+
+        // When, Then
+        assertThat(riskScreening.screen(account, BigDecimal.TEN)).isEmpty();
+        assertThat(riskScreening.getStats().screened()).isZero();
+    }
+
+    @Test
+    void evictIdleWindowsRemovesAccountsWithoutRecentTransfers() {
+        // Given
+        RiskScreening riskScreening = screening(new VelocityRule(100));
+        riskScreening.screen(account, BigDecimal.TEN);
+        clock.addAndGet(WINDOW_MILLIS / 2);
+        riskScreening.screen(account(2L), BigDecimal.TEN);
+
+        // When
+        clock.addAndGet(WINDOW_MILLIS / 2 + 1);
+        riskScreening.evictIdleWindows();
+
+        // Then
+        assertThat(riskScreening.size()).isEqualTo(1);
+    }
+
+    private RiskScreening screening(RiskRule... rules) {
+        return new RiskScreening(true, List.of(rules), WINDOW_MILLIS, 12, BUDGET_NANOS, clock::get, nanoClock::get);
+    }
+
+    private static Account account(long id) {
+        Account account = new Account(new BigDecimal("1000.00"), Currency.getInstance("EUR"));
+        account.setId(id);
+        return account;
+    }
+}
@@ -0,0 +1,41 @@
+package com.tenx.payment.risk;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SlidingWindowTest {
+
+    private final SlidingWindow window = new SlidingWindow(4);
+
+    @Test
+    void totalsSumTheTicksOfTheWindow() {
+        // Given
+        window.record(100, 250);
+        window.record(100, 50);
+        window.record(102, 1_000);
+
+        // When
+        SlidingWindow.Totals totals = window.totals(103);
+
+        // Then
+        assertThat(totals).isEqualTo(new SlidingWindow.Totals(3, 1_300));
+    }
+
+    @Test
+    void ticksLeavingTheWindowAreDropped() {
+        // Given
+        window.record(100, 250);
+        window.record(102, 1_000);
+
+        // When
+        // Tick 104 takes over the bucket of tick 100
+        window.record(104, 10);
+
+        // Then
+        assertThat(window.totals(104)).isEqualTo(new SlidingWindow.Totals(2, 1_010));
+        assertThat(window.totals(106)).isEqualTo(new SlidingWindow.Totals(1, 10));
+        assertThat(window.isIdle(106)).isFalse();
+        assertThat(window.isIdle(108)).isTrue();
+    }
+}
@@ -0,0 +1,184 @@
+package com.tenx.payment.scheduler;
+
+import com.tenx.payment.dto.transaction.ScheduledTransferRequestDto;
+import com.tenx.payment.model.Account;
+import com.tenx.payment.model.ScheduledTransfer;
+import com.tenx.payment.model.Transaction;
+import com.tenx.payment.service.AccountService;
+import com.tenx.payment.service.AsyncTransferService;
+import com.tenx.payment.service.ScheduledTransferService;
+import com.tenx.payment.service.TransactionService;
+import com.tenx.payment.shard.ShardRouter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Own database, the engine is driven by the test instead of its ticker
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:scheduled-transfer",
+        "thanks-pay.scheduled-transfer.enabled=false"
+})
+class ScheduledTransferEngineTest {
+
+    private static final Currency USD = Currency.getInstance("USD");
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private ScheduledTransferService scheduledTransferService;
+
+    @Autowired
+    private AsyncTransferService asyncTransferService;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    // Every node runs an engine of its own
+    private final List<ScheduledTransferEngine> engines = new ArrayList<>();
+
+    private long now;
+
+    @BeforeEach
+    void setUp() {
+        now = System.currentTimeMillis();
+    }
+
+    @AfterEach
+    void tearDown() {
+        engines.forEach(ScheduledTransferEngine::destroy);
+    }
+
+    @Test
+    void executesOneOffTransferOnceDue() {
+        // Given
+        Account sourceAccount = accountService.saveAccount(new Account(new BigDecimal("100"), USD));
+        Account targetAccount = accountService.saveAccount(new Account(new BigDecimal("0"), USD));
+        ScheduledTransfer scheduledTransfer = scheduledTransferService.schedule(request(sourceAccount, targetAccount)
+                .executeAt(now + 1000)
+                .build());
+        ScheduledTransferEngine engine = newEngine();
+
+        // When
+        List<Long> notYetDue = engine.collectDue(now);
+        List<Long> due = engine.collectDue(now + 1100);
+        int executed = engine.execute(new ArrayList<>(List.of(scheduledTransfer.getId())), now + 1100);
+
+        // Then
+        assertThat(notYetDue).doesNotContain(scheduledTransfer.getId());
+        assertThat(due).contains(scheduledTransfer.getId());
+        assertThat(executed).isEqualTo(1);
+        ScheduledTransfer executedTransfer = scheduledTransferService.findScheduledTransferById(scheduledTransfer.getId());
+        assertThat(executedTransfer.getStatus()).isEqualTo(ScheduledTransfer.Status.COMPLETED);
+        assertThat(executedTransfer.getExecutions()).isEqualTo(1);
+        assertThat(transactionService.findTransactionById(executedTransfer.getLastTransactionId()).getStatus())
+                .isEqualTo(Transaction.Status.COMPLETED);
+        assertThat(accountService.findAccountById(sourceAccount.getId()).getBalance()).isEqualByComparingTo("90");
+        assertThat(accountService.findAccountById(targetAccount.getId()).getBalance()).isEqualByComparingTo("10");
+
+        assertThat(engine.execute(new ArrayList<>(List.of(scheduledTransfer.getId())), now + 1200)).isZero();
+    }
+
+    @Test
+    void executesOverdueTransferAsSoonAsLoaded() {
+        // Given
+        Account sourceAccount = accountService.saveAccount(new Account(new BigDecimal("100"), USD));
+        Account targetAccount = accountService.saveAccount(new Account(new BigDecimal("0"), USD));
+        ScheduledTransfer scheduledTransfer = scheduledTransferService.schedule(request(sourceAccount, targetAccount)
+                .executeAt(now - HOUR)
+                .build());
+
+        // When
+        List<Long> due = newEngine().collectDue(now);
+
+        // Then
+        assertThat(due).contains(scheduledTransfer.getId());
+    }
+
+    @Test
+    void movesRecurringTransferToItsNextExecution() {
+        // Given
+        Account sourceAccount = accountService.saveAccount(new Account(new BigDecimal("100"), USD));
+        Account targetAccount = accountService.saveAccount(new Account(new BigDecimal("0"), USD));
+        ScheduledTransfer scheduledTransfer = scheduledTransferService.schedule(request(sourceAccount, targetAccount)
+                .cron("0 0 * * * *")
+                .build());
+        long topOfTheHour = scheduledTransfer.getNextExecutionTimestamp();
+        ScheduledTransferEngine engine = newEngine();
+
+        // When
+        List<Long> due = engine.collectDue(topOfTheHour + 100);
+        int executed = engine.execute(new ArrayList<>(List.of(scheduledTransfer.getId())), topOfTheHour + 100);
+
+        // Then
+        assertThat(topOfTheHour % HOUR).isZero();
+        assertThat(due).contains(scheduledTransfer.getId());
+        assertThat(executed).isEqualTo(1);
+        ScheduledTransfer executedTransfer = scheduledTransferService.findScheduledTransferById(scheduledTransfer.getId());
+        assertThat(executedTransfer.getStatus()).isEqualTo(ScheduledTransfer.Status.SCHEDULED);
+        assertThat(executedTransfer.getExecutions()).isEqualTo(1);
+        assertThat(executedTransfer.getNextExecutionTimestamp()).isEqualTo(topOfTheHour + HOUR);
+        assertThat(executedTransfer.getDueBucket()).isEqualTo(ScheduledTransferService.dueBucketOf(topOfTheHour + HOUR));
+        assertThat(accountService.findAccountById(targetAccount.getId()).getBalance()).isEqualByComparingTo("10");
+    }
+
+    @Test
+    void executesTransferDueOnSeveralNodesOnce() {
+        // Given
+        Account sourceAccount = accountService.saveAccount(new Account(new BigDecimal("100"), USD));
+        Account targetAccount = accountService.saveAccount(new Account(new BigDecimal("0"), USD));
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            ids.add(scheduledTransferService.schedule(request(sourceAccount, targetAccount)
+                    .executeAt(now)
+                    .build()).getId());
+        }
+        ScheduledTransferEngine firstEngine = newEngine();
+        ScheduledTransferEngine secondEngine = newEngine();
+        List<Long> firstDue = firstEngine.collectDue(now + 100);
+        List<Long> secondDue = secondEngine.collectDue(now + 100);
+
+        // When
+        CompletableFuture<Integer> first = CompletableFuture.supplyAsync(() -> firstEngine.execute(new ArrayList<>(ids), now + 100));
+        CompletableFuture<Integer> second = CompletableFuture.supplyAsync(() -> secondEngine.execute(new ArrayList<>(ids), now + 100));
+
+        // Then
+        assertThat(firstDue).containsAll(ids);
+        assertThat(secondDue).containsAll(ids);
+        assertThat(first.join() + second.join()).isEqualTo(20);
+        // Ten transfers overdraw the source account and fail
+        assertThat(accountService.findAccountById(sourceAccount.getId()).getBalance()).isEqualByComparingTo("0");
+        assertThat(accountService.findAccountById(targetAccount.getId()).getBalance()).isEqualByComparingTo("100");
+    }
+
+    private ScheduledTransferEngine newEngine() {
+        ScheduledTransferEngine engine = new ScheduledTransferEngine(scheduledTransferService, asyncTransferService,
+                shardRouter, false, 100, 30_000, 500, 2);
+        engines.add(engine);
+        return engine;
+    }
+
+    private static ScheduledTransferRequestDto.ScheduledTransferRequestDtoBuilder request(Account sourceAccount,
+                                                                                          Account targetAccount) {
+        return ScheduledTransferRequestDto.builder()
+                .amount(new BigDecimal("10"))
+                .sourceAccountId(sourceAccount.getId())
+                .targetAccountId(targetAccount.getId())
+                .currency(USD);
+    }
+}
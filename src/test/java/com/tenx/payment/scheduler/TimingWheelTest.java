@@ -0,0 +1,64 @@
+package com.tenx.payment.scheduler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimingWheelTest {
+
+    private static final long START = 1_000_000;
+
+    // Ticks of 10 ms on level 0, 80 ms on level 1 and 640 ms on level 2
+    private final TimingWheel<String> wheel = new TimingWheel<>(10, 8, 3, START);
+
+    @Test
+    void releasesItemsOnceTheirTickIsOver() {
+        // Given
+        wheel.add(START + 15, "first");
+        wheel.add(START + 15, "second");
+        wheel.add(START + 25, "third");
+
+        // When, Then
+        assertThat(wheel.advance(START + 15)).isEmpty();
+        assertThat(wheel.advance(START + 20)).containsExactly("first", "second");
+        assertThat(wheel.advance(START + 40)).containsExactly("third");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void cascadesItemsFromTheHigherLevels() {
+        // Given
+        List<Long> dues = List.of(START + 75, START + 81, START + 300, START + 639, START + 2000, START + 4000);
+        dues.forEach(due -> wheel.add(due, "due at " + due));
+
+        // When
+        List<String> released = new ArrayList<>();
+        for (long now = START; now <= START + 5000; now += 10) {
+            List<String> items = wheel.advance(now);
+            // Never before, and at most one tick after they are due
+            for (String item : items) {
+                assertThat(Long.parseLong(item.substring(7))).isBetween(now - 20, now - 1);
+            }
+            released.addAll(items);
+        }
+
+        // Then
+        assertThat(released).containsExactly(dues.stream().map(due -> "due at " + due).toArray(String[]::new));
+    }
+
+    @Test
+    void refusesItemsAlreadyDueOrBeyondTheHorizon() {
+        // Given
+        wheel.advance(START + 100);
+
+        // When, Then
+        assertThat(wheel.add(START + 99, "overdue")).isFalse();
+        assertThat(wheel.add(START + 100, "current tick")).isTrue();
+        assertThat(wheel.add(wheel.getHorizon() - 1, "last")).isTrue();
+        assertThat(wheel.add(wheel.getHorizon(), "too far")).isFalse();
+        assertThat(wheel.size()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,108 @@
+package com.tenx.payment.service;
+
+import com.tenx.payment.ThanksPayApplication;
+import com.tenx.payment.model.Account;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Own database, accounts are inserted behind the back of the service and the index is refreshed by the test
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + AccountIdIndexTest.DATASOURCE_URL,
+        "thanks-pay.account-index.refresh-interval-ms=3600000",
+        "thanks-pay.account-index.refresh-margin-ms=" + AccountIdIndexTest.REFRESH_MARGIN_MILLIS
+})
+class AccountIdIndexTest {
+
+    static final String DATASOURCE_URL = "jdbc:h2:mem:account-id-index";
+    static final long REFRESH_MARGIN_MILLIS = 1000;
+
+    private static final Currency USD = Currency.getInstance("USD");
+
+    @Autowired
+    private AccountIdIndex accountIdIndex;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void savedAccountsAreIndexed() {
+        // Given
+        Account account = accountService.saveAccount(new Account(BigDecimal.TEN, USD));
+
+        // When, Then
+        assertThat(accountIdIndex.mightContain(account.getId())).isTrue();
+        assertThat(accountService.findAccount(account.getId())).isPresent();
+        assertThat(accountService.findAccount(Long.MAX_VALUE)).isEmpty();
+    }
+
+    @Test
+    void accountsCreatedBehindTheIndexAreLookedUpUntilSettled() {
+        // Given, created by other nodes
+        long recentId = 7_000_000;
+        long settledId = 9_000_000;
+        insertAccount(recentId, System.currentTimeMillis());
+        insertAccount(settledId, System.currentTimeMillis() - REFRESH_MARGIN_MILLIS - 1);
+
+        // When, Then above the highest settled identifier every identifier may exist
+        assertThat(accountIdIndex.mightContain(recentId)).isTrue();
+        assertThat(accountService.findAccountById(recentId).getBalance()).isEqualByComparingTo("10");
+
+        // When
+        accountIdIndex.refresh();
+
+        // Then identifiers up to the settled one are answered by the index, unless their block is drawn from
+        assertThat(accountIdIndex.mightContain(recentId)).isTrue();
+        assertThat(accountIdIndex.mightContain(settledId)).isTrue();
+        assertThat(accountIdIndex.mightContain(8_000_000)).isFalse();
+        assertThat(accountIdIndex.mightContain(settledId - 1)).isTrue();
+        assertThat(accountIdIndex.mightContain(settledId - 50)).isFalse();
+        assertThat(accountIdIndex.mightContain(settledId + 1)).isTrue();
+        assertThat(accountService.findAccount(8_000_000)).isEmpty();
+    }
+
+    @Test
+    void accountsCreatedByAnotherNodeKeepTheRestOfTheirBlockLookedUp() {
+        // Given the sequence drawn from by this node, and accounts created by another node pooling the next block
+        accountService.saveAccount(new Account(BigDecimal.TEN, USD));
+        long firstId;
+        try (ConfigurableApplicationContext otherNode = new SpringApplicationBuilder(ThanksPayApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=" + DATASOURCE_URL,
+                        "--spring.jpa.hibernate.ddl-auto=none",
+                        "--thanks-pay.account-index.enabled=false")) {
+            AccountService otherAccountService = otherNode.getBean(AccountService.class);
+            firstId = otherAccountService.saveAccount(new Account(BigDecimal.TEN, USD)).getId();
+            otherAccountService.saveAccount(new Account(BigDecimal.TEN, USD));
+        }
+        jdbcTemplate.update("update account set create_at_timestamp = ? where id >= ?",
+                System.currentTimeMillis() - REFRESH_MARGIN_MILLIS - 1, firstId);
+        insertAccount(firstId + 1_000, System.currentTimeMillis() - REFRESH_MARGIN_MILLIS - 1);
+
+        // When
+        accountIdIndex.refresh();
+
+        // Then the other node may still draw up to the end of its block, not beyond
+        for (long id = firstId; id < firstId + 50; id++) {
+            assertThat(accountIdIndex.mightContain(id)).as("identifier %d", id).isTrue();
+        }
+        assertThat(accountIdIndex.mightContain(firstId + 50)).isFalse();
+    }
+
+    private void insertAccount(long id, long createAtTimestamp) {
+        jdbcTemplate.update("insert into account (id, version, balance, currency, balance_buckets, create_at_timestamp) " +
+                "values (?, 0, 10, 'USD', 0, ?)", id, createAtTimestamp);
+    }
+}
@@ -1,22 +1,31 @@
 package com.tenx.payment.service;
 
 import com.tenx.payment.dto.account.AccountRequestDto;
+import com.tenx.payment.dto.account.AccountVersion;
 import com.tenx.payment.exception.AccountNotFoundException;
 import com.tenx.payment.model.Account;
 import com.tenx.payment.repository.AccountRepository;
+import com.tenx.payment.shard.ShardRouter;
+import com.tenx.payment.store.AccountState;
+import com.tenx.payment.store.AccountStateStore;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 
 import java.math.BigDecimal;
 import java.util.Currency;
+import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -28,9 +37,25 @@ class AccountServiceTest {
     @Mock
     private AccountRepository accountRepository;
 
+    @Mock
+    private BalanceBucketService balanceBucketService;
+
+    @Mock
+    private BalanceSnapshotService balanceSnapshotService;
+
+    @Spy
+    private ShardRouter shardRouter = new ShardRouter(1);
+
+    @Mock
+    private AccountIdIndex accountIdIndex;
+
+    @Mock
+    private AccountStateStore accountStateStore;
+
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        when(accountIdIndex.mightContain(anyLong())).thenReturn(true);
     }
 
     @Test
@@ -65,6 +90,99 @@ class AccountServiceTest {
         verify(accountRepository).findById(accountId);
     }
 
+    @Test
+    void findAccountUnknownToIndexVerifyNoQuery() {
+        // Given
+        when(accountIdIndex.mightContain(1L)).thenReturn(false);
+
+        // When
+        // Then
+        assertThatThrownBy(() -> accountService.findAccountById(1))
+                .isExactlyInstanceOf(AccountNotFoundException.class);
+        verify(accountRepository, never()).findById(any());
+    }
+
+    @Test
+    void findAccountTagFromVersion() {
+        // Given
+        when(accountRepository.findVersionById(1L)).thenReturn(Optional.of(new AccountVersion(3, 0)));
+
+        // When
+        Optional<String> tag = accountService.findAccountTag(1L);
+
+        // Then
+        assertThat(tag).contains("3");
+        verify(accountRepository, never()).findById(any());
+        verify(balanceBucketService, never()).sumBuckets(anyLong());
+    }
+
+    @Test
+    void findAccountTagOfHighVolumeAccountIncludesBalanceBuckets() {
+        // Given
+        when(accountRepository.findVersionById(1L)).thenReturn(Optional.of(new AccountVersion(3, 4)));
+        when(balanceBucketService.sumBuckets(1L)).thenReturn(new BigDecimal("30.00"), new BigDecimal("30"), new BigDecimal("50"),
+                new BigDecimal("2"), new BigDecimal("1E-31"));
+
+        // When
+        Optional<String> first = accountService.findAccountTag(1L);
+        Optional<String> sameSum = accountService.findAccountTag(1L);
+        Optional<String> credited = accountService.findAccountTag(1L);
+        Optional<String> two = accountService.findAccountTag(1L);
+        Optional<String> sameHashCode = accountService.findAccountTag(1L);
+
+        // Then
+        assertThat(first).contains("3-30");
+        assertThat(sameSum).isEqualTo(first);
+        assertThat(credited).contains("3-50");
+        assertThat(new BigDecimal("2").hashCode()).isEqualTo(new BigDecimal("1E-31").hashCode());
+        assertThat(sameHashCode).isNotEqualTo(two);
+    }
+
+    @Test
+    void findAccountTagUnknownAccount() {
+        // Given
+        when(accountIdIndex.mightContain(7L)).thenReturn(false);
+
+        // When
+        Optional<String> tag = accountService.findAccountTag(7L);
+
+        // Then
+        assertThat(tag).isEmpty();
+        verify(accountRepository, never()).findVersionById(anyLong());
+    }
+
+    @Test
+    void findAccountStateHeldInStoreVerifyNoQuery() {
+        // Given
+        AccountState state = new AccountState(1L, new BigDecimal("12.50"), Currency.getInstance("EUR"), 3);
+        when(accountStateStore.isEnabled()).thenReturn(true);
+        when(accountStateStore.get(1L)).thenReturn(state);
+
+        // When
+        AccountState foundState = accountService.findAccountState(1L);
+
+        // Then
+        assertThat(foundState).isEqualTo(state);
+        verify(accountRepository, never()).findById(any());
+    }
+
+    @Test
+    void findAccountStateNotHeldReadsThrough() {
+        // Given
+        Account account = new Account(new BigDecimal("12.50"), Currency.getInstance("EUR"));
+        account.setId(1L);
+        when(accountStateStore.isEnabled()).thenReturn(true);
+        when(accountRepository.findById(1L)).thenReturn(Optional.of(account));
+
+        // When
+        AccountState foundState = accountService.findAccountState(1L);
+
+        // Then
+        assertThat(foundState.balance()).isEqualByComparingTo("12.50");
+        assertThat(foundState.currency()).isEqualTo(account.getCurrency());
+        verify(accountStateStore).put(foundState);
+    }
+
     @Test
     void saveAccountWithRequestDto() {
         // Given
@@ -94,5 +212,75 @@ class AccountServiceTest {
         // Then
         assertThat(result).isNotNull();
         verify(accountRepository).save(any(Account.class));
+        verify(balanceSnapshotService).recordOpeningBalance(account);
+    }
+
+    @Test
+    void saveHighVolumeAccountCreatesBalanceBuckets() {
+        // Given
+        AccountRequestDto accountRequestDto = AccountRequestDto.builder()
+                .balance(BigDecimal.ZERO)
+                .currency(Currency.getInstance("EUR"))
+                .highVolume(true)
+                .build();
+        Account savedAccount = new Account(accountRequestDto.getBalance(), accountRequestDto.getCurrency());
+        savedAccount.setId(1L);
+        when(accountRepository.save(any(Account.class))).thenReturn(savedAccount);
+
+        // When
+        Account result = accountService.saveAccount(accountRequestDto);
+
+        // Then
+        assertThat(result).isSameAs(savedAccount);
+        verify(balanceBucketService).enableBuckets(any(Account.class));
+        verify(balanceBucketService).createBuckets(savedAccount);
+    }
+
+    @Test
+    void saveAccountsRecordsOpeningBalances() {
+        // Given
+        List<AccountRequestDto> accountRequestDtos = List.of(
+                AccountRequestDto.builder().balance(BigDecimal.TEN).currency(Currency.getInstance("EUR")).build(),
+                AccountRequestDto.builder().balance(BigDecimal.ONE).currency(Currency.getInstance("USD")).highVolume(true).build());
+        when(accountRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        List<Account> accounts = accountService.saveAccounts(accountRequestDtos);
+
+        // Then
+        assertThat(accounts).extracting(Account::getBalance).containsExactly(BigDecimal.TEN, BigDecimal.ONE);
+        verify(accountRepository, never()).save(any(Account.class));
+        verify(balanceBucketService).enableBuckets(accounts.get(1));
+        verify(balanceSnapshotService).recordOpeningBalance(accounts.get(0));
+        verify(balanceSnapshotService).recordOpeningBalance(accounts.get(1));
+    }
+
+    @Test
+    void getTotalBalanceIncludesBalanceBuckets() {
+        // Given
+        Account account = new Account(new BigDecimal("10.00"), Currency.getInstance("EUR"));
+        account.setId(1L);
+        account.setBalanceBuckets(4);
+        when(balanceBucketService.sumBuckets(account.getId())).thenReturn(new BigDecimal("32.50"));
+
+        // When
+        BigDecimal totalBalance = accountService.getTotalBalance(account);
+
+        // Then
+        assertThat(totalBalance).isEqualByComparingTo(new BigDecimal("42.50"));
+    }
+
+    @Test
+    void getTotalBalanceRegularAccountSkipsBalanceBuckets() {
+        // Given
+        Account account = new Account(new BigDecimal("10.00"), Currency.getInstance("EUR"));
+        account.setId(1L);
+
+        // When
+        BigDecimal totalBalance = accountService.getTotalBalance(account);
+
+        // Then
+        assertThat(totalBalance).isEqualByComparingTo(new BigDecimal("10.00"));
+        verify(balanceBucketService, never()).sumBuckets(account.getId());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,169 @@
+package com.tenx.payment.service;
+
+import com.tenx.payment.dto.transaction.TransactionRequestDto;
+import com.tenx.payment.exception.InvalidTransactionException;
+import com.tenx.payment.exception.TransferQueueFullException;
+import com.tenx.payment.model.Account;
+import com.tenx.payment.model.Transaction;
+import com.tenx.payment.shard.ShardRouter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AsyncTransferServiceTest {
+
+    private static final Currency USD = Currency.getInstance("USD");
+    private static final int MAX_ATTEMPTS = 3;
+
+    @Mock
+    private TransactionService transactionService;
+
+    @Mock
+    private CrossShardTransferService crossShardTransferService;
+
+    private AsyncTransferService asyncTransferService;
+
+    private final List<Transaction> transactions = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        asyncTransferService = new AsyncTransferService(transactionService, crossShardTransferService, new ShardRouter(1), 1, 1,
+                MAX_ATTEMPTS, 10);
+        when(transactionService.acceptPendingTransaction(any())).thenAnswer(invocation -> {
+            TransactionRequestDto transactionRequestDto = invocation.getArgument(0);
+            Account sourceAccount = new Account(BigDecimal.TEN, USD);
+            sourceAccount.setId(transactionRequestDto.getSourceAccountId());
+            Account targetAccount = new Account(BigDecimal.ZERO, USD);
+            targetAccount.setId(transactionRequestDto.getTargetAccountId());
+            Transaction transaction = new Transaction(sourceAccount, targetAccount, transactionRequestDto.getAmount(), USD);
+            transaction.setStatus(Transaction.Status.PENDING);
+            transaction.setId((long) transactions.size() + 1);
+            transactions.add(transaction);
+            return transaction;
+        });
+        when(transactionService.findTransactionById(any(Long.class)))
+                .thenAnswer(invocation -> transactions.get((int) (long) invocation.<Long>getArgument(0) - 1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        asyncTransferService.destroy();
+    }
+
+    @Test
+    void submitAppliesTransfersOfAnAccountInOrder() {
+        // Given
+        List<Long> appliedTransactionIds = Collections.synchronizedList(new ArrayList<>());
+        when(transactionService.completePendingTransaction(any(Long.class))).thenAnswer(invocation -> {
+            appliedTransactionIds.add(invocation.getArgument(0));
+            return null;
+        });
+
+        // When
+        asyncTransferService.submit(new TransactionRequestDto(BigDecimal.ONE, 1L, 2L, USD));
+        asyncTransferService.submit(new TransactionRequestDto(BigDecimal.ONE, 1L, 2L, USD));
+
+        // Then
+        verify(transactionService, timeout(1000)).completePendingTransaction(2L);
+        assertThat(appliedTransactionIds).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void submitRejectsTransferWhenQueueIsFull() throws InterruptedException {
+        // Given
+        CountDownLatch applying = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(transactionService.completePendingTransaction(1L)).thenAnswer(invocation -> {
+            applying.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        });
+        asyncTransferService.submit(new TransactionRequestDto(BigDecimal.ONE, 1L, 2L, USD));
+        assertThat(applying.await(5, TimeUnit.SECONDS)).isTrue();
+        asyncTransferService.submit(new TransactionRequestDto(BigDecimal.ONE, 1L, 2L, USD));
+
+        // When
+        // Then
+        assertThatThrownBy(() -> asyncTransferService.submit(new TransactionRequestDto(BigDecimal.ONE, 1L, 2L, USD)))
+                .isInstanceOf(TransferQueueFullException.class);
+        verify(transactionService).failPendingTransaction(3L, "Too many pending transfers");
+        release.countDown();
+    }
+
+    @Test
+    void submitFailsTransferWhenNoLongerValid() {
+        // Given
+        doThrow(new InvalidTransactionException("Insufficient amount")).when(transactionService).assertValidTransaction(any());
+
+        // When
+        asyncTransferService.submit(new TransactionRequestDto(BigDecimal.ONE, 1L, 2L, USD));
+
+        // Then
+        verify(transactionService, timeout(1000)).failPendingTransaction(1L, "Insufficient amount");
+    }
+
+    @Test
+    void submitRetriesTransferFailingForOtherReasons() {
+        // Given, a hot account exhausting the retries of the first attempt
+        when(transactionService.completePendingTransaction(1L))
+                .thenThrow(new ConcurrencyFailureException("Account updated concurrently"))
+                .thenReturn(null);
+
+        // When
+        asyncTransferService.submit(new TransactionRequestDto(BigDecimal.ONE, 1L, 2L, USD));
+
+        // Then
+        verify(transactionService, timeout(1000).times(2)).completePendingTransaction(1L);
+        verify(transactionService, never()).failPendingTransaction(anyLong(), any());
+    }
+
+    @Test
+    void submitFailsTransferOnceItsAttemptsAreExhausted() {
+        // Given
+        when(transactionService.completePendingTransaction(1L)).thenThrow(new DataAccessResourceFailureException("Database unavailable"));
+
+        // When
+        asyncTransferService.submit(new TransactionRequestDto(BigDecimal.ONE, 1L, 2L, USD));
+
+        // Then
+        verify(transactionService, timeout(1000)).failPendingTransaction(1L, "Transfer could not be applied");
+        verify(transactionService, times(MAX_ATTEMPTS)).completePendingTransaction(1L);
+    }
+
+    @Test
+    void resumePendingTransactionsQueuesTransactionsLeftPending() {
+        // Given, accepted while the queue was full
+        Transaction transaction = transactionService.acceptPendingTransaction(new TransactionRequestDto(BigDecimal.ONE, 1L, 2L, USD));
+        when(transactionService.findPendingTransactionIds(anyLong())).thenReturn(List.of(transaction.getId()));
+
+        // When
+        asyncTransferService.resumePendingTransactions(System.currentTimeMillis());
+
+        // Then
+        verify(transactionService, timeout(1000)).completePendingTransaction(transaction.getId());
+    }
+}
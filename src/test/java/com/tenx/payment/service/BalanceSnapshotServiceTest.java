@@ -0,0 +1,162 @@
+package com.tenx.payment.service;
+
+import com.tenx.payment.dto.transaction.TransactionRequestDto;
+import com.tenx.payment.exception.AccountNotFoundException;
+import com.tenx.payment.job.BalanceSnapshotJob;
+import com.tenx.payment.model.Account;
+import com.tenx.payment.model.BalanceSnapshot;
+import com.tenx.payment.model.Transaction;
+import com.tenx.payment.repository.BalanceSnapshotRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Own database, the timestamps of the records are moved into the past
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:balance-snapshot")
+class BalanceSnapshotServiceTest {
+
+    private static final Currency USD = Currency.getInstance("USD");
+    private static final Currency EUR = Currency.getInstance("EUR");
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private BalanceSnapshotService balanceSnapshotService;
+
+    @Autowired
+    private BalanceSnapshotJob balanceSnapshotJob;
+
+    @Autowired
+    private BalanceSnapshotRepository balanceSnapshotRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private long threeDaysAgo;
+
+    @BeforeEach
+    void setUp() {
+        threeDaysAgo = (BalanceSnapshotService.epochDay(System.currentTimeMillis()) - 3) * DAY;
+    }
+
+    @Test
+    void balanceAtReplaysTransfersSinceTheLastSnapshot() {
+        // Given
+        Account sourceAccount = createAccountAt(new BigDecimal("100"), USD, threeDaysAgo);
+        Account targetAccount = createAccountAt(new BigDecimal("0"), USD, threeDaysAgo);
+        transferAt(new BigDecimal("10"), sourceAccount, targetAccount, threeDaysAgo + HOUR);
+        transferAt(new BigDecimal("20"), sourceAccount, targetAccount, threeDaysAgo + DAY + HOUR);
+        transferAt(new BigDecimal("5"), targetAccount, sourceAccount, threeDaysAgo + DAY + 2 * HOUR);
+
+        // When
+        balanceSnapshotJob.snapshot();
+
+        // Then
+        BalanceSnapshot firstDay = snapshotOf(sourceAccount, threeDaysAgo);
+        assertThat(firstDay.getDebits()).isEqualByComparingTo("10");
+        assertThat(firstDay.getClosingBalance()).isEqualByComparingTo("90");
+        BalanceSnapshot secondDay = snapshotOf(sourceAccount, threeDaysAgo + DAY);
+        assertThat(secondDay.getCredits()).isEqualByComparingTo("5");
+        assertThat(secondDay.getDebits()).isEqualByComparingTo("20");
+        assertThat(secondDay.getClosingBalance()).isEqualByComparingTo("75");
+
+        assertThat(balanceAt(sourceAccount, threeDaysAgo + HOUR - 1)).isEqualByComparingTo("100");
+        assertThat(balanceAt(sourceAccount, threeDaysAgo + HOUR)).isEqualByComparingTo("90");
+        assertThat(balanceAt(sourceAccount, threeDaysAgo + DAY + HOUR)).isEqualByComparingTo("70");
+        assertThat(balanceAt(sourceAccount, System.currentTimeMillis())).isEqualByComparingTo("75");
+        assertThat(balanceAt(targetAccount, threeDaysAgo + DAY + 3 * HOUR)).isEqualByComparingTo("25");
+    }
+
+    @Test
+    void dayWithPendingTransfersIsSnapshottedOnceTheyComplete() {
+        // Given, accepted beyond the lookback of the job and completed only after its run
+        long tenDaysAgo = threeDaysAgo - 7 * DAY;
+        Account sourceAccount = createAccountAt(new BigDecimal("100"), USD, tenDaysAgo);
+        Account targetAccount = createAccountAt(new BigDecimal("0"), USD, tenDaysAgo);
+        Transaction pending = transactionService.createPendingTransaction(new TransactionRequestDto(new BigDecimal("10"),
+                sourceAccount.getId(), targetAccount.getId(), USD));
+        jdbcTemplate.update("update transaction set create_at_timestamp = ? where id = ?", tenDaysAgo + HOUR, pending.getId());
+        transferAt(new BigDecimal("20"), sourceAccount, targetAccount, tenDaysAgo + 2 * HOUR);
+
+        // When
+        balanceSnapshotJob.snapshot();
+
+        // Then
+        assertThat(balanceSnapshotRepository.existsByAccountIdAndEpochDay(sourceAccount.getId(),
+                BalanceSnapshotService.epochDay(tenDaysAgo))).isFalse();
+
+        // When
+        transactionService.completePendingTransaction(pending.getId());
+        balanceSnapshotJob.snapshot();
+
+        // Then
+        BalanceSnapshot snapshot = snapshotOf(sourceAccount, tenDaysAgo);
+        assertThat(snapshot.getEpochDay()).isEqualTo(BalanceSnapshotService.epochDay(tenDaysAgo));
+        assertThat(snapshot.getDebits()).isEqualByComparingTo("30");
+        assertThat(snapshot.getClosingBalance()).isEqualByComparingTo("70");
+        assertThat(balanceAt(targetAccount, System.currentTimeMillis())).isEqualByComparingTo("30");
+    }
+
+    @Test
+    void balanceAtWithoutSnapshotsReplaysFromTheOpeningBalance() {
+        // Given
+        Account sourceAccount = createAccountAt(new BigDecimal("100"), USD, threeDaysAgo);
+        Account targetAccount = createAccountAt(new BigDecimal("0"), EUR, threeDaysAgo);
+        transferAt(new BigDecimal("50"), sourceAccount, targetAccount, threeDaysAgo + DAY);
+
+        // When
+        BigDecimal targetBalance = balanceAt(targetAccount, threeDaysAgo + 2 * DAY);
+
+        // Then
+        assertThat(balanceAt(sourceAccount, threeDaysAgo + 2 * DAY)).isEqualByComparingTo("50");
+        assertThat(targetBalance).isEqualByComparingTo(accountService.findAccountById(targetAccount.getId()).getBalance());
+    }
+
+    @Test
+    void balanceBeforeCreationIsNotAvailable() {
+        // Given
+        Account account = createAccountAt(new BigDecimal("100"), USD, threeDaysAgo);
+
+        // When, Then
+        assertThatThrownBy(() -> balanceAt(account, threeDaysAgo - 1))
+                .isInstanceOf(AccountNotFoundException.class);
+    }
+
+    private Account createAccountAt(BigDecimal balance, Currency currency, long timestamp) {
+        Account account = accountService.saveAccount(new Account(balance, currency));
+        jdbcTemplate.update("update account set create_at_timestamp = ? where id = ?", timestamp, account.getId());
+        jdbcTemplate.update("update balance_snapshot set epoch_day = ? where account_id = ?",
+                BalanceSnapshotService.epochDay(timestamp) - 1, account.getId());
+        return accountService.findAccountById(account.getId());
+    }
+
+    private void transferAt(BigDecimal amount, Account sourceAccount, Account targetAccount, long timestamp) {
+        Transaction transaction = transactionService.execute(new TransactionRequestDto(amount, sourceAccount.getId(),
+                targetAccount.getId(), USD));
+        jdbcTemplate.update("update transaction set create_at_timestamp = ? where id = ?", timestamp, transaction.getId());
+    }
+
+    private BigDecimal balanceAt(Account account, long timestamp) {
+        return balanceSnapshotService.getBalanceAt(account, timestamp);
+    }
+
+    private BalanceSnapshot snapshotOf(Account account, long timestamp) {
+        return balanceSnapshotRepository.findFirstByAccountIdAndEpochDayLessThanOrderByEpochDayDesc(account.getId(),
+                BalanceSnapshotService.epochDay(timestamp) + 1).orElseThrow();
+    }
+}
@@ -6,6 +6,8 @@ import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
 import java.util.Currency;
+import java.util.List;
+import java.util.function.UnaryOperator;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
@@ -90,6 +92,39 @@ class CurrencyServiceTest {
         assertThat(convertedAmount).isEqualTo(expectedAmount);
     }
 
+    @Test
+    void convertCurrencyFromGBPToEURRoundsOnce() {
+        // Given
+        BigDecimal amount = new BigDecimal("250.00");
+        Currency fromCurrency = Currency.getInstance("GBP");
+        Currency toCurrency = Currency.getInstance("EUR");
+
+        // When
+        BigDecimal convertedAmount = currencyService.convertCurrency(amount, fromCurrency, toCurrency);
+
+        // Then
+        // 250 * 0.91 / 0.78 = 291.666..., rounding into USD first would give 320.51 * 0.91 = 291.66
+        assertThat(convertedAmount).isEqualTo(new BigDecimal("291.67"));
+    }
+
+    @Test
+    void convertAllConvertsLikeConvertCurrency() {
+        // Given
+        Currency fromCurrency = Currency.getInstance("EUR");
+        Currency toCurrency = Currency.getInstance("BGN");
+        List<BigDecimal> amounts = List.of(new BigDecimal("0.01"), new BigDecimal("250.00"), new BigDecimal("1234.5678"));
+
+        // When
+        List<BigDecimal> convertedAmounts = currencyService.convertAll(amounts, fromCurrency, toCurrency);
+
+        // Then
+        assertThat(convertedAmounts).containsExactly(
+                currencyService.convertCurrency(amounts.get(0), fromCurrency, toCurrency),
+                currencyService.convertCurrency(amounts.get(1), fromCurrency, toCurrency),
+                currencyService.convertCurrency(amounts.get(2), fromCurrency, toCurrency));
+        assertThat(convertedAmounts.get(1)).isEqualTo(new BigDecimal("489.01"));
+    }
+
     @Test
     void convertToUnsupportedCurrencyRub() {
         // Given
@@ -103,4 +138,20 @@ class CurrencyServiceTest {
                 .isInstanceOf(UnsupportedCurrencyException.class)
                 .hasMessage("Not supported currency format, only USD, EUR, GBP and BGN supported");
     }
-}
\ No newline at end of file
+
+    @Test
+    void converterConvertsLikeConvertCurrency() {
+        // Given
+        Currency fromCurrency = Currency.getInstance("GBP");
+        Currency toCurrency = Currency.getInstance("BGN");
+
+        // When
+        UnaryOperator<BigDecimal> converter = currencyService.converter(fromCurrency, toCurrency);
+
+        // Then
+        for (String amount : List.of("0.01", "12.34", "1000")) {
+            assertThat(converter.apply(new BigDecimal(amount)))
+                    .isEqualTo(currencyService.convertCurrency(new BigDecimal(amount), fromCurrency, toCurrency));
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.tenx.payment.service;
+
+import com.tenx.payment.dto.account.AccountRequestDto;
+import com.tenx.payment.dto.reconciliation.ReconciliationReport;
+import com.tenx.payment.dto.reconciliation.ReconciliationReport.Discrepancy;
+import com.tenx.payment.dto.reconciliation.ReconciliationReport.Reason;
+import com.tenx.payment.dto.transaction.TransactionRequestDto;
+import com.tenx.payment.job.ReconciliationJob;
+import com.tenx.payment.model.Account;
+import com.tenx.payment.model.Transaction;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Currency;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+// Own database, the balances and ledger of the accounts are tampered with
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:reconciliation",
+        "thanks-pay.reconciliation.partitions-per-shard=3",
+        "thanks-pay.reconciliation.report-dir=build/reconciliation-test"
+})
+class ReconciliationServiceTest {
+
+    private static final Currency USD = Currency.getInstance("USD");
+    private static final Currency EUR = Currency.getInstance("EUR");
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private ReconciliationService reconciliationService;
+
+    @Autowired
+    private ReconciliationJob reconciliationJob;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void reconcileConfirmsBalancesOfConvertedAndBucketedTransfers() {
+        // Given
+        Account sourceAccount = accountService.saveAccount(new Account(new BigDecimal("1000"), USD));
+        Account targetAccount = accountService.saveAccount(new Account(new BigDecimal("10"), EUR));
+        Account highVolumeAccount = accountService.saveAccount(AccountRequestDto.builder()
+                .balance(BigDecimal.ONE)
+                .currency(USD)
+                .highVolume(true)
+                .build());
+        transactionService.execute(new TransactionRequestDto(new BigDecimal("123.45"), sourceAccount.getId(), targetAccount.getId(), EUR));
+        transactionService.execute(new TransactionRequestDto(new BigDecimal("7"), targetAccount.getId(), sourceAccount.getId(), USD));
+        transactionService.execute(new TransactionRequestDto(new BigDecimal("50"), sourceAccount.getId(), highVolumeAccount.getId(), USD));
+
+        // When
+        ReconciliationReport report = reconciliationService.reconcile();
+
+        // Then
+        assertThat(report.accounts()).isGreaterThanOrEqualTo(3);
+        assertThat(report.legs()).isGreaterThanOrEqualTo(6);
+        assertThat(discrepanciesOf(report, sourceAccount, targetAccount, highVolumeAccount)).isEmpty();
+    }
+
+    @Test
+    void reconcileReportsTamperedBalances() {
+        // Given
+        Account sourceAccount = accountService.saveAccount(new Account(new BigDecimal("100"), USD));
+        Account targetAccount = accountService.saveAccount(new Account(new BigDecimal("0"), USD));
+        transactionService.execute(new TransactionRequestDto(new BigDecimal("40"), sourceAccount.getId(), targetAccount.getId(), USD));
+        jdbcTemplate.update("update account set balance = balance + 1 where id = ?", targetAccount.getId());
+
+        // When
+        ReconciliationReport report = reconciliationService.reconcile();
+
+        // Then
+        assertThat(discrepanciesOf(report, sourceAccount, targetAccount)).singleElement().satisfies(discrepancy -> {
+            assertThat(discrepancy.accountId()).isEqualTo(targetAccount.getId());
+            assertThat(discrepancy.reason()).isEqualTo(Reason.BALANCE_MISMATCH);
+            assertThat(discrepancy.expectedBalance()).isEqualByComparingTo("40");
+            assertThat(discrepancy.actualBalance()).isEqualByComparingTo("41");
+        });
+    }
+
+    @Test
+    void reconcileReportsTransfersWithoutLegAmounts() {
+        // Given
+        Account sourceAccount = accountService.saveAccount(new Account(new BigDecimal("100"), USD));
+        Account targetAccount = accountService.saveAccount(new Account(new BigDecimal("0"), USD));
+        Transaction transaction = transactionService.execute(new TransactionRequestDto(new BigDecimal("40"),
+                sourceAccount.getId(), targetAccount.getId(), USD));
+        jdbcTemplate.update("update transaction set source_amount = null where id = ?", transaction.getId());
+
+        // When
+        ReconciliationReport report = reconciliationService.reconcile();
+
+        // Then
+        assertThat(discrepanciesOf(report, sourceAccount, targetAccount))
+                .extracting(Discrepancy::accountId, Discrepancy::reason)
+                .containsExactly(tuple(sourceAccount.getId(), Reason.MISSING_LEG_AMOUNT));
+    }
+
+    @Test
+    void jobWritesTheDiscrepancyReport() throws IOException {
+        // Given
+        Account account = accountService.saveAccount(new Account(new BigDecimal("100"), USD));
+        jdbcTemplate.update("update account set balance = 99 where id = ?", account.getId());
+
+        // When
+        reconciliationJob.reconcile();
+
+        // Then
+        try (Stream<Path> reports = Files.list(Path.of("build/reconciliation-test"))) {
+            Path report = reports.max(Path::compareTo).orElseThrow();
+            assertThat(Files.readAllLines(report))
+                    .startsWith("account_id,reason,expected_balance,actual_balance")
+                    .anyMatch(line -> line.startsWith(account.getId() + ",BALANCE_MISMATCH,100"));
+        }
+    }
+
+    private static List<Discrepancy> discrepanciesOf(ReconciliationReport report, Account... accounts) {
+        List<Long> accountIds = Stream.of(accounts).map(Account::getId).toList();
+        return report.discrepancies().stream()
+                .filter(discrepancy -> accountIds.contains(discrepancy.accountId()))
+                .toList();
+    }
+}
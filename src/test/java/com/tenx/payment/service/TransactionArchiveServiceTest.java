@@ -0,0 +1,153 @@
+package com.tenx.payment.service;
+
+import com.tenx.payment.archive.ArchivedTransaction;
+import com.tenx.payment.archive.TransactionArchive;
+import com.tenx.payment.dto.reconciliation.ReconciliationReport;
+import com.tenx.payment.dto.transaction.TransactionRequestDto;
+import com.tenx.payment.exception.Rejection;
+import com.tenx.payment.job.TransactionArchiveJob;
+import com.tenx.payment.model.Account;
+import com.tenx.payment.model.Transaction;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Own database and archive, the timestamps of the records are moved into the past
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:transaction-archive",
+        "thanks-pay.archive.enabled=true"
+})
+class TransactionArchiveServiceTest {
+
+    private static final Currency USD = Currency.getInstance("USD");
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    @TempDir
+    private static Path archiveDirectory;
+
+    @DynamicPropertySource
+    static void archiveProperties(DynamicPropertyRegistry registry) {
+        registry.add("thanks-pay.archive.dir", archiveDirectory::toString);
+    }
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private BalanceSnapshotService balanceSnapshotService;
+
+    @Autowired
+    private ReconciliationService reconciliationService;
+
+    @Autowired
+    private TransactionArchiveJob transactionArchiveJob;
+
+    @Autowired
+    private TransactionArchive transactionArchive;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void archivedTransactionsAreReadFromTheArchiveOnceDeleted() {
+        // Given
+        YearMonth month = YearMonth.now(ZoneOffset.UTC).minusMonths(5);
+        long monthStart = TransactionArchive.startOf(month);
+        Account sourceAccount = createAccountAt(new BigDecimal("1000"), monthStart);
+        Account targetAccount = createAccountAt(new BigDecimal("0"), monthStart);
+        Transaction first = transferAt(new BigDecimal("100"), sourceAccount, targetAccount, monthStart + HOUR);
+        Transaction second = transferAt(new BigDecimal("50.25"), sourceAccount, targetAccount, monthStart + 2 * HOUR);
+        Transaction recent = transactionService.execute(new TransactionRequestDto(new BigDecimal("10"),
+                sourceAccount.getId(), targetAccount.getId(), USD));
+
+        // When
+        transactionArchiveJob.archive();
+
+        // Then the month is archived along with the empty months up to the horizon, its rows are left until the next run
+        assertThat(transactionArchive.getArchivedMonths(0)).startsWith(month);
+        assertThat(transactionArchive.archivedUntil(0)).isGreaterThanOrEqualTo(TransactionArchive.startOf(month.plusMonths(1)));
+        assertThat(countTransactions(sourceAccount)).isEqualTo(3);
+        assertThat(historyIds(sourceAccount, 0, 10)).containsExactly(recent.getId(), second.getId(), first.getId());
+
+        // When
+        transactionArchiveJob.archive();
+
+        // Then
+        assertThat(countTransactions(sourceAccount)).isEqualTo(1);
+        assertThat(historyIds(sourceAccount, 0, 10)).containsExactly(recent.getId(), second.getId(), first.getId());
+        assertThat(historyIds(targetAccount, 1, 2)).containsExactly(first.getId());
+
+        Transaction archived = transactionService.findTransactionsByAccountId(targetAccount.getId(), PageRequest.of(0, 10)).get(1);
+        assertThat(archived.getCreateAtTimestamp()).isEqualTo(monthStart + 2 * HOUR);
+        assertThat(archived.getSourceAccount().getId()).isEqualTo(sourceAccount.getId());
+        assertThat(archived.getAmount()).isEqualByComparingTo("50.25");
+        assertThat(archived.getTargetAmount()).isEqualByComparingTo("50.25");
+        assertThat(archived.getStatus()).isEqualTo(Transaction.Status.COMPLETED);
+
+        Transaction archivedById = transactionService.findTransactionById(first.getId());
+        assertThat(archivedById.getCreateAtTimestamp()).isEqualTo(monthStart + HOUR);
+        assertThat(archivedById.getTargetAccount().getId()).isEqualTo(targetAccount.getId());
+        assertThat(archivedById.getAmount()).isEqualByComparingTo("100");
+        assertThat(transactionService.findTransactionById(recent.getId()).getAmount()).isEqualByComparingTo("10");
+        assertThatThrownBy(() -> transactionService.findTransactionById(recent.getId() + 1000))
+                .isSameAs(Rejection.TRANSACTION_NOT_FOUND.exception());
+
+        assertThat(balanceSnapshotService.getBalanceAt(sourceAccount, monthStart + 2 * HOUR)).isEqualByComparingTo("849.75");
+        assertThat(balanceSnapshotService.getBalanceAt(targetAccount, System.currentTimeMillis())).isEqualByComparingTo("160.25");
+
+        ReconciliationReport report = reconciliationService.reconcile();
+        assertThat(report.discrepancies()).isEmpty();
+
+        // Picked up from the directory, e.g. by another node
+        TransactionArchive reopened = new TransactionArchive(archiveDirectory);
+        assertThat(reopened.archivedUntil(0)).isEqualTo(transactionArchive.archivedUntil(0));
+        assertThat(reopened.findByAccountId(0, sourceAccount.getId(), reopened.archivedUntil(0), 1))
+                .extracting(ArchivedTransaction::id)
+                .containsExactly(second.getId());
+    }
+
+    private Account createAccountAt(BigDecimal balance, long timestamp) {
+        Account account = accountService.saveAccount(new Account(balance, USD));
+        jdbcTemplate.update("update account set create_at_timestamp = ? where id = ?", timestamp, account.getId());
+        jdbcTemplate.update("update balance_snapshot set epoch_day = ? where account_id = ?",
+                BalanceSnapshotService.epochDay(timestamp) - 1, account.getId());
+        return accountService.findAccountById(account.getId());
+    }
+
+    private Transaction transferAt(BigDecimal amount, Account sourceAccount, Account targetAccount, long timestamp) {
+        Transaction transaction = transactionService.execute(new TransactionRequestDto(amount, sourceAccount.getId(),
+                targetAccount.getId(), USD));
+        jdbcTemplate.update("update transaction set create_at_timestamp = ? where id = ?", timestamp, transaction.getId());
+        return transaction;
+    }
+
+    private int countTransactions(Account account) {
+        return jdbcTemplate.queryForObject("select count(*) from transaction where source_account_id = ?", Integer.class,
+                account.getId());
+    }
+
+    private List<Long> historyIds(Account account, int page, int size) {
+        return transactionService.findTransactionsByAccountId(account.getId(), PageRequest.of(page, size)).stream()
+                .map(Transaction::getId)
+                .toList();
+    }
+}
@@ -1,23 +1,38 @@
 package com.tenx.payment.service;
 
+import com.tenx.payment.archive.TransactionArchive;
+import com.tenx.payment.dto.transaction.SplitTransferRequestDto;
 import com.tenx.payment.dto.transaction.TransactionRequestDto;
 import com.tenx.payment.exception.InvalidTransactionException;
+import com.tenx.payment.exception.Rejection;
 import com.tenx.payment.exception.UnsupportedCurrencyException;
 import com.tenx.payment.model.Account;
 import com.tenx.payment.model.Transaction;
 import com.tenx.payment.repository.TransactionRepository;
+import com.tenx.payment.risk.RiskScreening;
+import com.tenx.payment.shard.ShardRouter;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.math.BigDecimal;
 import java.util.Currency;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.UnaryOperator;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -32,6 +47,27 @@ class TransactionServiceTest {
     @Mock
     private CurrencyService currencyService;
 
+    @Mock
+    private CrossShardTransferService crossShardTransferService;
+
+    @Mock
+    private OutboxService outboxService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Spy
+    private ShardRouter shardRouter = new ShardRouter(1);
+
+    @Spy
+    private TransferRetry transferRetry = new TransferRetry(1, 1, 2);
+
+    @Mock
+    private RiskScreening riskScreening;
+
+    @Mock
+    private TransactionArchive transactionArchive;
+
     @InjectMocks
     private TransactionService transactionService;
 
@@ -157,6 +193,98 @@ class TransactionServiceTest {
         verify(currencyService).convertCurrency(amountInUSD, transactionDtoCurrency, sourceAccountCurrency);
     }
 
+    @Test
+    void tryExecuteInsufficientAmountReturnsRejection() {
+        // Given
+        Account sourceAccount = new Account(new BigDecimal("10.00"), Currency.getInstance("USD"));
+        sourceAccount.setId(1L);
+        when(accountService.findAccount(1L)).thenReturn(Optional.of(sourceAccount));
+        when(accountService.findAccount(2L)).thenReturn(Optional.of(new Account(BigDecimal.ZERO, Currency.getInstance("USD"))));
+        TransactionRequestDto transactionRequestDto = new TransactionRequestDto(new BigDecimal("50.00"), 1L, 2L, Currency.getInstance("USD"));
+
+        // When
+        TransferResult transferResult = transactionService.tryExecute(transactionRequestDto);
+
+        // Then
+        assertThat(transferResult.isCompleted()).isFalse();
+        assertThat(transferResult.rejection()).isEqualTo(Rejection.INSUFFICIENT_AMOUNT);
+        verify(transactionRepository, never()).save(any());
+        verify(riskScreening, never()).recordAfterCommit(anyLong(), any());
+    }
+
+    @Test
+    void tryExecuteNonExistingTargetAccountReturnsRejection() {
+        // Given
+        when(accountService.findAccount(1L)).thenReturn(Optional.of(new Account(BigDecimal.TEN, Currency.getInstance("USD"))));
+        when(accountService.findAccount(2L)).thenReturn(Optional.empty());
+        TransactionRequestDto transactionRequestDto = new TransactionRequestDto(BigDecimal.ONE, 1L, 2L, Currency.getInstance("USD"));
+
+        // When
+        TransferResult transferResult = transactionService.tryExecute(transactionRequestDto);
+
+        // Then
+        assertThat(transferResult.rejection()).isEqualTo(Rejection.ACCOUNT_NOT_FOUND);
+    }
+
+    @Test
+    void tryExecuteRiskRejectionReturnsRejectionBeforeBalanceCheck() {
+        // Given
+        Account sourceAccount = new Account(new BigDecimal("100.00"), Currency.getInstance("USD"));
+        sourceAccount.setId(1L);
+        Account targetAccount = new Account(BigDecimal.ZERO, Currency.getInstance("USD"));
+        targetAccount.setId(2L);
+        when(accountService.findAccount(1L)).thenReturn(Optional.of(sourceAccount));
+        when(accountService.findAccount(2L)).thenReturn(Optional.of(targetAccount));
+        when(riskScreening.evaluate(sourceAccount, new BigDecimal("40.00"))).thenReturn(Optional.of(Rejection.TRANSFER_VELOCITY_EXCEEDED));
+        TransactionRequestDto transactionRequestDto = new TransactionRequestDto(new BigDecimal("40.00"), 1L, 2L, Currency.getInstance("USD"));
+
+        // When
+        TransferResult transferResult = transactionService.tryExecute(transactionRequestDto);
+
+        // Then
+        assertThat(transferResult.rejection()).isEqualTo(Rejection.TRANSFER_VELOCITY_EXCEEDED);
+        verify(accountService, never()).findAccountById(anyLong());
+        verify(transactionRepository, never()).save(any());
+    }
+
+    @Test
+    void tryExecuteValidTransactionCompletes() {
+        // Given
+        Account sourceAccount = new Account(new BigDecimal("100.00"), Currency.getInstance("USD"));
+        sourceAccount.setId(1L);
+        Account targetAccount = new Account(BigDecimal.ZERO, Currency.getInstance("USD"));
+        targetAccount.setId(2L);
+        when(accountService.findAccount(1L)).thenReturn(Optional.of(sourceAccount));
+        when(accountService.findAccount(2L)).thenReturn(Optional.of(targetAccount));
+        when(accountService.findAccountById(1L)).thenReturn(sourceAccount);
+        when(accountService.findAccountById(2L)).thenReturn(targetAccount);
+        when(currencyService.convertCurrency(any(), any(), any())).thenAnswer(invocation -> invocation.getArgument(0));
+        TransactionRequestDto transactionRequestDto = new TransactionRequestDto(new BigDecimal("40.00"), 1L, 2L, Currency.getInstance("USD"));
+        Transaction expectedTransaction = new Transaction(sourceAccount, targetAccount, transactionRequestDto.getAmount(), transactionRequestDto.getCurrency());
+        when(transactionRepository.save(any())).thenReturn(expectedTransaction);
+
+        // When
+        TransferResult transferResult = transactionService.tryExecute(transactionRequestDto);
+
+        // Then
+        assertThat(transferResult.isCompleted()).isTrue();
+        assertThat(transferResult.transaction()).isSameAs(expectedTransaction);
+        assertThat(sourceAccount.getBalance()).isEqualByComparingTo("60.00");
+        assertThat(targetAccount.getBalance()).isEqualByComparingTo("40.00");
+        verify(riskScreening).recordAfterCommit(1L, new BigDecimal("40.00"));
+    }
+
+    @Test
+    void rejectionExceptionsAreSharedAndStackless() {
+        // When
+        InvalidTransactionException exception = (InvalidTransactionException) Rejection.INSUFFICIENT_AMOUNT.exception();
+
+        // Then
+        assertThat(exception).isSameAs(Rejection.INSUFFICIENT_AMOUNT.exception());
+        assertThat(exception.getStackTrace()).isEmpty();
+        assertThat(exception.getMessage()).isEqualTo("Insufficient amount");
+    }
+
     @Test
     void executeTransactionSupportedCurrency() {
         // Given
@@ -190,6 +318,7 @@ class TransactionServiceTest {
         verify(accountService).saveAccount(sourceAccount);
         verify(accountService).saveAccount(targetAccount);
         verify(transactionRepository).save(any());
+        verify(outboxService).recordTransferCompleted(expectedTransaction);
     }
 
     @Test
@@ -218,4 +347,117 @@ class TransactionServiceTest {
                 .isInstanceOf(UnsupportedCurrencyException.class)
                 .hasMessage(errorMessage);
     }
-}
\ No newline at end of file
+
+    @Test
+    void executeTransactionHighVolumeTargetAccountCreditsBalanceBucket() {
+        // Given
+        Currency currency = Currency.getInstance("USD");
+        Account sourceAccount = new Account(new BigDecimal("100.00"), currency);
+        sourceAccount.setId(1L);
+        when(accountService.findAccountById(sourceAccount.getId())).thenReturn(sourceAccount);
+
+        Account targetAccount = new Account(new BigDecimal("200.00"), currency);
+        targetAccount.setId(2L);
+        targetAccount.setBalanceBuckets(8);
+        when(accountService.findAccountById(targetAccount.getId())).thenReturn(targetAccount);
+
+        BigDecimal transactionAmount = new BigDecimal("50.00");
+        TransactionRequestDto transactionRequestDto = new TransactionRequestDto(transactionAmount, sourceAccount.getId(), targetAccount.getId(), currency);
+        when(currencyService.convertCurrency(transactionAmount, currency, currency)).thenReturn(transactionAmount);
+
+        // When
+        transactionService.execute(transactionRequestDto);
+
+        // Then
+        assertThat(sourceAccount.getBalance()).isEqualByComparingTo(new BigDecimal("50.00"));
+        assertThat(targetAccount.getBalance()).isEqualByComparingTo(new BigDecimal("200.00"));
+        verify(accountService).creditBalanceBucket(targetAccount, transactionAmount);
+        verify(accountService, never()).saveAccount(targetAccount);
+    }
+
+    @Test
+    void executeTransactionAccountsOnDifferentShardsDelegatesToSaga() {
+        // Given
+        Currency currency = Currency.getInstance("USD");
+        TransactionRequestDto transactionRequestDto = new TransactionRequestDto(new BigDecimal("50.00"), 1L, 2L, currency);
+        doReturn(false).when(shardRouter).isSameShard(1L, 2L);
+        Transaction expectedTransaction = new Transaction();
+        when(crossShardTransferService.execute(transactionRequestDto)).thenReturn(expectedTransaction);
+
+        // When
+        Transaction transaction = transactionService.execute(transactionRequestDto);
+
+        // Then
+        assertThat(transaction).isSameAs(expectedTransaction);
+        verify(accountService, never()).findAccountById(1L);
+        verify(transactionRepository, never()).save(any());
+    }
+
+    @Test
+    void executeSplitUnbalancedLegsVerifyInvalidTransactionException() {
+        // Given
+        SplitTransferRequestDto splitTransferRequestDto = SplitTransferRequestDto.builder()
+                .debits(List.of(SplitTransferRequestDto.Leg.builder().accountId(1L).amount(new BigDecimal("10")).build()))
+                .credits(List.of(SplitTransferRequestDto.Leg.builder().accountId(2L).amount(new BigDecimal("9")).build()))
+                .currency(Currency.getInstance("USD"))
+                .build();
+
+        // When
+        // Then
+        assertThatThrownBy(() -> transactionService.executeSplit(splitTransferRequestDto))
+                .isInstanceOf(InvalidTransactionException.class)
+                .hasMessage("Debits and credits must sum up to the same amount");
+        verify(accountService, never()).lockAccounts(any());
+    }
+
+    @Test
+    void executeBatchVelocityLimitedAccountRejected() {
+        // Given
+        Account sourceAccount = new Account(new BigDecimal("100.00"), Currency.getInstance("USD"));
+        sourceAccount.setId(1L);
+        Account targetAccount = new Account(BigDecimal.ZERO, Currency.getInstance("USD"));
+        targetAccount.setId(2L);
+        when(accountService.lockAccounts(any())).thenReturn(Map.of(1L, sourceAccount, 2L, targetAccount));
+        when(currencyService.converter(any(), any())).thenReturn(UnaryOperator.identity());
+        when(riskScreening.screen(eq(sourceAccount), any())).thenReturn(Optional.of(Rejection.TRANSFER_VELOCITY_EXCEEDED));
+        List<TransactionRequestDto> transactionRequestDtos = List.of(
+                new TransactionRequestDto(new BigDecimal("10.00"), 2L, 1L, Currency.getInstance("USD")),
+                new TransactionRequestDto(new BigDecimal("40.00"), 1L, 2L, Currency.getInstance("USD")));
+
+        // When
+        // Then
+        assertThatThrownBy(() -> transactionService.executeBatch(transactionRequestDtos))
+                .isSameAs(Rejection.TRANSFER_VELOCITY_EXCEEDED.exception());
+        // Screened once on the net debit, the target account is paid more than it pays
+        verify(riskScreening).screen(sourceAccount, new BigDecimal("30.00"));
+        verify(riskScreening, never()).screen(eq(targetAccount), any());
+        verify(transactionRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void executeSplitScreensEveryDebit() {
+        // Given
+        Account firstAccount = new Account(new BigDecimal("100.00"), Currency.getInstance("USD"));
+        firstAccount.setId(1L);
+        Account secondAccount = new Account(new BigDecimal("100.00"), Currency.getInstance("USD"));
+        secondAccount.setId(2L);
+        Account targetAccount = new Account(BigDecimal.ZERO, Currency.getInstance("USD"));
+        targetAccount.setId(3L);
+        when(accountService.lockAccounts(any())).thenReturn(Map.of(1L, firstAccount, 2L, secondAccount, 3L, targetAccount));
+        when(currencyService.converter(any(), any())).thenReturn(UnaryOperator.identity());
+        when(riskScreening.screen(eq(secondAccount), any())).thenReturn(Optional.of(Rejection.TRANSFER_RISK_REJECTED));
+        SplitTransferRequestDto splitTransferRequestDto = SplitTransferRequestDto.builder()
+                .debits(List.of(SplitTransferRequestDto.Leg.builder().accountId(1L).amount(new BigDecimal("10")).build(),
+                        SplitTransferRequestDto.Leg.builder().accountId(2L).amount(new BigDecimal("5")).build()))
+                .credits(List.of(SplitTransferRequestDto.Leg.builder().accountId(3L).amount(new BigDecimal("15")).build()))
+                .currency(Currency.getInstance("USD"))
+                .build();
+
+        // When
+        // Then
+        assertThatThrownBy(() -> transactionService.executeSplit(splitTransferRequestDto))
+                .isSameAs(Rejection.TRANSFER_RISK_REJECTED.exception());
+        verify(riskScreening).screen(eq(firstAccount), any());
+        verify(transactionRepository, never()).saveAll(any());
+    }
+}
@@ -0,0 +1,194 @@
+package com.tenx.payment.service;
+
+import com.tenx.payment.dto.transaction.TransactionRequestDto;
+import com.tenx.payment.exception.ApiException;
+import com.tenx.payment.exception.Rejection;
+import com.tenx.payment.model.Account;
+import com.tenx.payment.model.Transaction;
+import com.tenx.payment.repository.AccountRepository;
+import com.tenx.payment.repository.TransactionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.ConcurrencyFailureException;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Fires thousands of concurrent transfers at the account graphs below through the real database and checks the
+ * invariants of the ledger afterwards. The transfers of a graph are generated from a fixed seed, only their
+ * interleaving varies from run to run, which the invariants must hold for.
+ *
+ * The load is configurable with -Dtransfer-concurrency.transfers and -Dtransfer-concurrency.threads, the
+ * throughput and the conflict rate of each graph are logged.
+ */
+@Slf4j
+// Own database, the invariants are checked against every transaction of the accounts of the run
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:transfer-concurrency",
+        "spring.datasource.hikari.maximum-pool-size=16",
+        "thanks-pay.transfer.retry.max-attempts=20",
+        "thanks-pay.scheduled-transfer.enabled=false"
+})
+class TransferConcurrencyTest {
+
+    private static final int TRANSFERS = Integer.getInteger("transfer-concurrency.transfers", 2_000);
+    private static final int THREADS = Integer.getInteger("transfer-concurrency.threads", 16);
+    private static final BigDecimal OPENING_BALANCE = new BigDecimal("1000.00");
+    private static final List<Currency> CURRENCIES = List.of(Currency.getInstance("USD"), Currency.getInstance("EUR"),
+            Currency.getInstance("GBP"), Currency.getInstance("BGN"));
+
+    enum Graph {
+        // Every transfer debits or credits one of a few hot accounts
+        HOT_SPOT(64, false) {
+            @Override
+            int[] pair(Random random, int accounts) {
+                int hot = random.nextInt(4);
+                int other = 4 + random.nextInt(accounts - 4);
+                return random.nextBoolean() ? new int[]{hot, other} : new int[]{other, hot};
+            }
+        },
+        // Each account transfers to its neighbour, contending with one account on either side
+        RING(64, false) {
+            @Override
+            int[] pair(Random random, int accounts) {
+                int source = random.nextInt(accounts);
+                return new int[]{source, (source + 1) % accounts};
+            }
+        },
+        // Transfers between any two accounts of a small graph in four currencies
+        DENSE_FX(16, true) {
+            @Override
+            int[] pair(Random random, int accounts) {
+                int source = random.nextInt(accounts);
+                int target = (source + 1 + random.nextInt(accounts - 1)) % accounts;
+                return new int[]{source, target};
+            }
+        };
+
+        private final int accounts;
+        private final boolean mixedCurrencies;
+
+        Graph(int accounts, boolean mixedCurrencies) {
+            this.accounts = accounts;
+            this.mixedCurrencies = mixedCurrencies;
+        }
+
+        abstract int[] pair(Random random, int accounts);
+    }
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private TransferRetry transferRetry;
+
+    @ParameterizedTest
+    @EnumSource(Graph.class)
+    void concurrentTransfersKeepLedgerInvariants(Graph graph) throws Exception {
+        // Given
+        Random random = new Random(graph.ordinal());
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < graph.accounts; i++) {
+            Currency currency = graph.mixedCurrencies ? CURRENCIES.get(i % CURRENCIES.size()) : CURRENCIES.get(0);
+            accounts.add(accountService.saveAccount(new Account(OPENING_BALANCE, currency)));
+        }
+        List<TransactionRequestDto> transfers = new ArrayList<>();
+        for (int i = 0; i < TRANSFERS; i++) {
+            int[] pair = graph.pair(random, graph.accounts);
+            Currency currency = CURRENCIES.get(graph.mixedCurrencies ? random.nextInt(CURRENCIES.size()) : 0);
+            BigDecimal amount = BigDecimal.valueOf(1 + random.nextInt(5_000), 2);
+            transfers.add(new TransactionRequestDto(amount, accounts.get(pair[0]).getId(), accounts.get(pair[1]).getId(), currency));
+        }
+        TransferRetry.Stats statsBefore = transferRetry.getStats();
+
+        // When
+        AtomicLong completed = new AtomicLong();
+        AtomicLong rejected = new AtomicLong();
+        AtomicLong exhausted = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        for (TransactionRequestDto transfer : transfers) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                    transactionService.execute(transfer);
+                    completed.incrementAndGet();
+                } catch (ApiException e) {
+                    assertThat(e.getRejection()).isEqualTo(Rejection.INSUFFICIENT_AMOUNT);
+                    rejected.incrementAndGet();
+                } catch (ConcurrencyFailureException e) {
+                    exhausted.incrementAndGet();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        long startedAt = System.nanoTime();
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(5, TimeUnit.MINUTES)).isTrue();
+        long elapsedNanos = System.nanoTime() - startedAt;
+
+        // Then
+        TransferRetry.Stats stats = transferRetry.getStats();
+        long conflicts = stats.conflicts() - statsBefore.conflicts();
+        log.info("{}: {} transfers on {} threads, {} transfers/s, {} completed, {} rejected, {} conflicts ({} per transfer), {} exhausted",
+                graph, TRANSFERS, THREADS, TRANSFERS * TimeUnit.SECONDS.toNanos(1) / elapsedNanos, completed, rejected,
+                conflicts, String.format("%.3f", (double) conflicts / TRANSFERS), exhausted);
+
+        // Every transfer ended exactly once and every attempt is accounted for
+        assertThat(completed.get() + rejected.get() + exhausted.get()).isEqualTo(TRANSFERS);
+        assertThat(stats.transfers() - statsBefore.transfers()).isEqualTo(TRANSFERS);
+        assertThat(stats.exhausted() - statsBefore.exhausted()).isEqualTo(exhausted.get());
+        assertThat(stats.retries() - statsBefore.retries()).isEqualTo(conflicts - exhausted.get());
+
+        Map<Long, Currency> currencyByAccount = accounts.stream().collect(Collectors.toMap(Account::getId, Account::getCurrency));
+        Set<Long> accountIds = currencyByAccount.keySet();
+        List<Transaction> transactions = transactionRepository.findAll().stream()
+                .filter(transaction -> accountIds.contains(transaction.getSourceAccount().getId()))
+                .toList();
+        assertThat(transactions).hasSize((int) completed.get());
+
+        // Money is conserved per currency, the amounts converted on either side of a transfer balance out
+        Map<Currency, BigDecimal> expectedTotals = new HashMap<>();
+        accounts.forEach(account -> expectedTotals.merge(account.getCurrency(), OPENING_BALANCE, BigDecimal::add));
+        for (Transaction transaction : transactions) {
+            expectedTotals.merge(currencyByAccount.get(transaction.getSourceAccount().getId()), transaction.getSourceAmount().negate(), BigDecimal::add);
+            expectedTotals.merge(currencyByAccount.get(transaction.getTargetAccount().getId()), transaction.getTargetAmount(), BigDecimal::add);
+        }
+        Map<Currency, BigDecimal> totals = new HashMap<>();
+        List<Account> finalAccounts = accountRepository.findAllById(accountIds);
+        finalAccounts.forEach(account -> totals.merge(account.getCurrency(), account.getBalance(), BigDecimal::add));
+        assertThat(totals).hasSameSizeAs(expectedTotals);
+        totals.forEach((currency, total) -> assertThat(total).as(currency.getCurrencyCode()).isEqualByComparingTo(expectedTotals.get(currency)));
+
+        assertThat(finalAccounts).allSatisfy(account -> assertThat(account.getBalance()).isNotNegative());
+    }
+}
@@ -0,0 +1,72 @@
+package com.tenx.payment.shard;
+
+import com.tenx.payment.dto.transaction.TransactionRequestDto;
+import com.tenx.payment.model.Account;
+import com.tenx.payment.model.Transaction;
+import com.tenx.payment.service.AccountService;
+import com.tenx.payment.service.TransactionService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "spring.jpa.hibernate.ddl-auto=validate",
+        "spring.flyway.enabled=true",
+        "thanks-pay.sharding.enabled=true",
+        "thanks-pay.sharding.shards[0].url=" + ShardMigrationTest.SHARD_0_URL,
+        "thanks-pay.sharding.shards[0].username=test",
+        "thanks-pay.sharding.shards[1].url=" + ShardMigrationTest.SHARD_1_URL,
+        "thanks-pay.sharding.shards[1].username=test"
+})
+class ShardMigrationTest {
+
+    static final String SHARD_0_URL = "jdbc:h2:mem:migrated-shard-0;DB_CLOSE_DELAY=-1";
+    static final String SHARD_1_URL = "jdbc:h2:mem:migrated-shard-1;DB_CLOSE_DELAY=-1";
+
+    private static final Currency USD = Currency.getInstance("USD");
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    private final JdbcTemplate[] shards = {
+            new JdbcTemplate(new DriverManagerDataSource(SHARD_0_URL, "test", "")),
+            new JdbcTemplate(new DriverManagerDataSource(SHARD_1_URL, "test", ""))
+    };
+
+    @Test
+    void migratesEveryShard() {
+        for (JdbcTemplate shard : shards) {
+            assertThat(shard.queryForObject("select count(*) from \"flyway_schema_history\" where \"success\"", Integer.class))
+                    .isPositive();
+            assertThat(shard.queryForList("select index_name from information_schema.indexes where table_name = 'TRANSACTION'", String.class))
+                    .contains("IX_TRANSACTION_SOURCE_ACCOUNT_ID", "IX_TRANSACTION_TARGET_ACCOUNT_ID",
+                            "IX_TRANSACTION_CREATE_AT_TIMESTAMP");
+        }
+    }
+
+    @Test
+    void transfersAcrossMigratedShards() {
+        // Given
+        Account sourceAccount = accountService.saveAccount(new Account(new BigDecimal("100"), USD));
+        Account targetAccount = accountService.saveAccount(new Account(new BigDecimal("0"), USD));
+
+        // When
+        Transaction transaction = transactionService.execute(new TransactionRequestDto(new BigDecimal("40"),
+                sourceAccount.getId(), targetAccount.getId(), USD));
+
+        // Then
+        assertThat(transaction.getStatus()).isEqualTo(Transaction.Status.COMPLETED);
+        assertThat(accountService.findAccountById(sourceAccount.getId()).getBalance()).isEqualByComparingTo("60");
+        assertThat(accountService.findAccountById(targetAccount.getId()).getBalance()).isEqualByComparingTo("40");
+    }
+}
@@ -0,0 +1,189 @@
+package com.tenx.payment.shard;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tenx.payment.controller.account.AccountApi;
+import com.tenx.payment.dto.account.BulkAccountResultDto;
+import com.tenx.payment.dto.transaction.ScheduledTransferRequestDto;
+import com.tenx.payment.dto.transaction.ScheduledTransferResponseDto;
+import com.tenx.payment.dto.transaction.TransactionRequestDto;
+import com.tenx.payment.dto.transaction.TransactionResponseDto;
+import com.tenx.payment.model.Account;
+import com.tenx.payment.model.ScheduledTransfer;
+import com.tenx.payment.service.AccountService;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Own shard databases, the requests go through the web layer like those of clients
+@AutoConfigureMockMvc
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "thanks-pay.sharding.enabled=true",
+        "thanks-pay.sharding.shards[0].url=" + ShardedApiTest.SHARD_0_URL,
+        "thanks-pay.sharding.shards[0].username=test",
+        "thanks-pay.sharding.shards[1].url=" + ShardedApiTest.SHARD_1_URL,
+        "thanks-pay.sharding.shards[1].username=test",
+        "spring.datasource.hikari.maximum-pool-size=3"
+})
+class ShardedApiTest {
+
+    static final String SHARD_0_URL = "jdbc:h2:mem:shard-api-0;DB_CLOSE_DELAY=-1";
+    static final String SHARD_1_URL = "jdbc:h2:mem:shard-api-1;DB_CLOSE_DELAY=-1";
+
+    private static final Currency USD = Currency.getInstance("USD");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private ShardRoutingDataSource shardRoutingDataSource;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final JdbcTemplate[] shards = {
+            new JdbcTemplate(new DriverManagerDataSource(SHARD_0_URL, "test", "")),
+            new JdbcTemplate(new DriverManagerDataSource(SHARD_1_URL, "test", ""))
+    };
+
+    @Test
+    void shardPoolsTunedByTheHikariProperties() {
+        // When, Then
+        assertThat(shardRoutingDataSource.getShardDataSources())
+                .hasSize(2)
+                .allSatisfy(pool -> assertThat(pool).isInstanceOfSatisfying(HikariDataSource.class,
+                        hikariDataSource -> assertThat(hikariDataSource.getMaximumPoolSize()).isEqualTo(3)));
+    }
+
+    @Test
+    void crossShardTransfersInBothDirections() throws Exception {
+        // Given
+        Account firstAccount = accountService.saveAccount(new Account(new BigDecimal("100"), USD));
+        Account secondAccount = saveAccountOnOtherShard(firstAccount, new BigDecimal("100"));
+
+        // When
+        TransactionResponseDto forth = transfer(new BigDecimal("30"), firstAccount, secondAccount);
+        TransactionResponseDto back = transfer(new BigDecimal("10"), secondAccount, firstAccount);
+
+        // Then
+        assertThat(accountService.findAccountById(firstAccount.getId()).getBalance()).isEqualByComparingTo("80");
+        assertThat(accountService.findAccountById(secondAccount.getId()).getBalance()).isEqualByComparingTo("120");
+        assertThat(historyIds(firstAccount)).containsExactlyInAnyOrder(forth.getId(), back.getId());
+        assertThat(historyIds(secondAccount)).containsExactlyInAnyOrder(forth.getId(), back.getId());
+        mockMvc.perform(get("/api/rest/transaction/" + back.getId())).andExpect(status().isOk());
+    }
+
+    @Test
+    void scheduleCrossShardTransfersInBothDirections() throws Exception {
+        // Given
+        Account firstAccount = accountService.saveAccount(new Account(new BigDecimal("100"), USD));
+        Account secondAccount = saveAccountOnOtherShard(firstAccount, new BigDecimal("100"));
+
+        // When
+        ScheduledTransferResponseDto forth = schedule(firstAccount, secondAccount);
+        ScheduledTransferResponseDto back = schedule(secondAccount, firstAccount);
+
+        // Then
+        assertThat(forth.getStatus()).isEqualTo(ScheduledTransfer.Status.SCHEDULED);
+        assertThat(back.getStatus()).isEqualTo(ScheduledTransfer.Status.SCHEDULED);
+        assertThat(shardRouter.shardOf(forth.getId())).isEqualTo(shardRouter.shardOf(firstAccount.getId()));
+        assertThat(shardRouter.shardOf(back.getId())).isEqualTo(shardRouter.shardOf(secondAccount.getId()));
+        mockMvc.perform(get("/api/rest/scheduled-transfer/" + back.getId())).andExpect(status().isOk());
+    }
+
+    @Test
+    void bulkImportChunksLandOnTheirShards() throws Exception {
+        // Given, three chunks
+        StringBuilder requestBody = new StringBuilder("balance,currency,highVolume\n");
+        for (int i = 0; i < 2500; i++) {
+            requestBody.append(i).append(",USD,").append(i % 500 == 0).append('\n');
+        }
+
+        // When
+        MvcResult mvcResult = mockMvc.perform(post("/api/rest/accounts/bulk")
+                        .content(requestBody.toString())
+                        .contentType(AccountApi.CSV_MEDIA_TYPE))
+                .andExpect(status().isOk()).andReturn();
+
+        // Then every account and its opening balance are stored on the shard its identifier points to
+        BulkAccountResultDto[] results = objectMapper.readValue(mvcResult.getResponse().getContentAsString(), BulkAccountResultDto[].class);
+        assertThat(results).hasSize(2500).extracting(BulkAccountResultDto::getStatus).containsOnly(200);
+        Set<Integer> shardsUsed = new HashSet<>();
+        for (BulkAccountResultDto result : results) {
+            JdbcTemplate shard = shards[shardRouter.shardOf(result.getId())];
+            assertThat(shard.queryForObject("select count(*) from account where id = ?", Integer.class, result.getId())).isOne();
+            assertThat(shard.queryForObject("select count(*) from balance_snapshot where account_id = ?", Integer.class,
+                    result.getId())).isOne();
+            shardsUsed.add(shardRouter.shardOf(result.getId()));
+        }
+        assertThat(shardsUsed).containsExactlyInAnyOrder(0, 1);
+        assertThat(accountService.findAccountById(results[2000].getId()).hasBalanceBuckets()).isTrue();
+        assertThat(accountService.findAccountById(results[2499].getId()).getBalance()).isEqualByComparingTo("2499");
+    }
+
+    private TransactionResponseDto transfer(BigDecimal amount, Account sourceAccount, Account targetAccount) throws Exception {
+        TransactionRequestDto transactionRequestDto = new TransactionRequestDto(amount, sourceAccount.getId(), targetAccount.getId(), USD);
+        MvcResult mvcResult = mockMvc.perform(post("/api/rest/transaction")
+                        .content(objectMapper.writeValueAsString(transactionRequestDto))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk()).andReturn();
+        return objectMapper.readValue(mvcResult.getResponse().getContentAsString(), TransactionResponseDto.class);
+    }
+
+    private ScheduledTransferResponseDto schedule(Account sourceAccount, Account targetAccount) throws Exception {
+        ScheduledTransferRequestDto requestDto = ScheduledTransferRequestDto.builder()
+                .amount(new BigDecimal("10"))
+                .sourceAccountId(sourceAccount.getId())
+                .targetAccountId(targetAccount.getId())
+                .currency(USD)
+                .cron("0 0 9 * * FRI")
+                .build();
+        MvcResult mvcResult = mockMvc.perform(post("/api/rest/scheduled-transfer")
+                        .content(objectMapper.writeValueAsString(requestDto))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk()).andReturn();
+        return objectMapper.readValue(mvcResult.getResponse().getContentAsString(), ScheduledTransferResponseDto.class);
+    }
+
+    private long[] historyIds(Account account) throws Exception {
+        MvcResult mvcResult = mockMvc.perform(get("/api/rest/account/" + account.getId() + "/transactions"))
+                .andExpect(status().isOk()).andReturn();
+        TransactionResponseDto[] transactions = objectMapper.readValue(mvcResult.getResponse().getContentAsString(),
+                TransactionResponseDto[].class);
+        long[] ids = new long[transactions.length];
+        for (int i = 0; i < transactions.length; i++) {
+            ids[i] = transactions[i].getId();
+        }
+        return ids;
+    }
+
+    private Account saveAccountOnOtherShard(Account account, BigDecimal balance) {
+        Account savedAccount = accountService.saveAccount(new Account(balance, USD));
+        while (shardRouter.isSameShard(account.getId(), savedAccount.getId())) {
+            savedAccount = accountService.saveAccount(new Account(balance, USD));
+        }
+        return savedAccount;
+    }
+}
@@ -0,0 +1,182 @@
+package com.tenx.payment.shard;
+
+import com.tenx.payment.dto.reconciliation.ReconciliationReport;
+import com.tenx.payment.dto.transaction.TransactionRequestDto;
+import com.tenx.payment.model.Account;
+import com.tenx.payment.model.PendingTransfer;
+import com.tenx.payment.model.Transaction;
+import com.tenx.payment.repository.PendingTransferRepository;
+import com.tenx.payment.service.AccountService;
+import com.tenx.payment.service.CrossShardTransferService;
+import com.tenx.payment.service.ReconciliationService;
+import com.tenx.payment.service.TransactionService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {
+        "thanks-pay.sharding.enabled=true",
+        "thanks-pay.sharding.shards[0].url=" + ShardedTransferTest.SHARD_0_URL,
+        "thanks-pay.sharding.shards[0].username=test",
+        "thanks-pay.sharding.shards[1].url=" + ShardedTransferTest.SHARD_1_URL,
+        "thanks-pay.sharding.shards[1].username=test"
+})
+class ShardedTransferTest {
+
+    static final String SHARD_0_URL = "jdbc:h2:mem:shard-0;DB_CLOSE_DELAY=-1";
+    static final String SHARD_1_URL = "jdbc:h2:mem:shard-1;DB_CLOSE_DELAY=-1";
+
+    private static final Currency USD = Currency.getInstance("USD");
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private CrossShardTransferService crossShardTransferService;
+
+    @Autowired
+    private PendingTransferRepository pendingTransferRepository;
+
+    @Autowired
+    private ReconciliationService reconciliationService;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    private final JdbcTemplate[] shards = {
+            new JdbcTemplate(new DriverManagerDataSource(SHARD_0_URL, "test", "")),
+            new JdbcTemplate(new DriverManagerDataSource(SHARD_1_URL, "test", ""))
+    };
+
+    @Test
+    void accountsSpreadAcrossShards() {
+        // When
+        Account firstAccount = accountService.saveAccount(new Account(BigDecimal.TEN, USD));
+        Account secondAccount = accountService.saveAccount(new Account(BigDecimal.TEN, USD));
+
+        // Then
+        assertThat(shardRouter.isSameShard(firstAccount.getId(), secondAccount.getId())).isFalse();
+        assertThat(countAccountsOnShard(firstAccount.getId())).isOne();
+        assertThat(countAccountsOnShard(secondAccount.getId())).isOne();
+        assertThat(accountService.findAccountById(firstAccount.getId()).getId()).isEqualTo(firstAccount.getId());
+        assertThat(accountService.findAccountById(secondAccount.getId()).getId()).isEqualTo(secondAccount.getId());
+    }
+
+    @Test
+    void executeCrossShardTransaction() {
+        // Given
+        Account sourceAccount = accountService.saveAccount(new Account(BigDecimal.valueOf(100), USD));
+        Account targetAccount = saveAccountOnOtherShard(sourceAccount, new Account(BigDecimal.valueOf(10), Currency.getInstance("EUR")));
+
+        // When
+        Transaction transaction = transactionService.execute(new TransactionRequestDto(new BigDecimal("54.95"), sourceAccount.getId(), targetAccount.getId(), USD));
+
+        // Then
+        assertThat(accountService.findAccountById(sourceAccount.getId()).getBalance()).isEqualByComparingTo(new BigDecimal("45.05"));
+        assertThat(accountService.findAccountById(targetAccount.getId()).getBalance()).isEqualByComparingTo(new BigDecimal("60.00"));
+        assertThat(shardRouter.shardOf(transaction.getId())).isEqualTo(shardRouter.shardOf(sourceAccount.getId()));
+        assertThat(transaction.getTargetAccount().getId()).isEqualTo(targetAccount.getId());
+        assertThat(transactionService.findTransactionsByAccountId(targetAccount.getId(), PageRequest.of(0, 10)))
+                .extracting(Transaction::getId)
+                .containsExactly(transaction.getId());
+        // The credit is replayed from the target shard
+        long now = System.currentTimeMillis();
+        assertThat(accountService.getBalanceAt(sourceAccount, now)).isEqualByComparingTo(new BigDecimal("45.05"));
+        assertThat(accountService.getBalanceAt(targetAccount, now)).isEqualByComparingTo(new BigDecimal("60.00"));
+        assertThat(reconciliationService.reconcile().discrepancies())
+                .extracting(ReconciliationReport.Discrepancy::accountId)
+                .doesNotContain(sourceAccount.getId(), targetAccount.getId());
+    }
+
+    @Test
+    void executeCrossShardTransactionFailingCreditCompensated() {
+        // Given
+        Account sourceAccount = accountService.saveAccount(new Account(BigDecimal.valueOf(100), USD));
+        // Target account in a currency without conversion rate makes the credit fail
+        Account targetAccount = saveAccountOnOtherShard(sourceAccount, new Account(BigDecimal.ZERO, Currency.getInstance("RUB")));
+        TransactionRequestDto transactionRequestDto = new TransactionRequestDto(BigDecimal.valueOf(40), sourceAccount.getId(), targetAccount.getId(), USD);
+
+        // When
+        assertThatThrownBy(() -> transactionService.execute(transactionRequestDto));
+
+        // Then
+        assertThat(accountService.findAccountById(sourceAccount.getId()).getBalance()).isEqualByComparingTo(BigDecimal.valueOf(100));
+        assertThat(findPendingTransfers(sourceAccount)).extracting(PendingTransfer::getStatus).containsExactly(PendingTransfer.Status.COMPENSATED);
+    }
+
+    @Test
+    void completePendingCrossShardTransaction() {
+        // Given
+        Account sourceAccount = accountService.saveAccount(new Account(BigDecimal.valueOf(100), USD));
+        Account targetAccount = saveAccountOnOtherShard(sourceAccount, new Account(BigDecimal.ZERO, USD));
+        TransactionRequestDto transactionRequestDto = new TransactionRequestDto(BigDecimal.valueOf(30), sourceAccount.getId(), targetAccount.getId(), USD);
+        Transaction pendingTransaction = transactionService.createPendingTransaction(transactionRequestDto);
+
+        // When
+        crossShardTransferService.execute(transactionRequestDto, pendingTransaction.getId());
+        // Applying it again resumes the completed transfer instead of debiting twice
+        crossShardTransferService.execute(transactionRequestDto, pendingTransaction.getId());
+
+        // Then
+        assertThat(accountService.findAccountById(sourceAccount.getId()).getBalance()).isEqualByComparingTo(BigDecimal.valueOf(70));
+        assertThat(accountService.findAccountById(targetAccount.getId()).getBalance()).isEqualByComparingTo(BigDecimal.valueOf(30));
+        assertThat(transactionService.findTransactionById(pendingTransaction.getId()).getStatus()).isEqualTo(Transaction.Status.COMPLETED);
+        assertThat(transactionService.findTransactionsByAccountId(targetAccount.getId(), PageRequest.of(0, 10)))
+                .extracting(Transaction::getId)
+                .containsExactly(pendingTransaction.getId());
+    }
+
+    @Test
+    void resolveInDoubtTransferWithoutCreditCompensated() {
+        // Given
+        Account sourceAccount = accountService.saveAccount(new Account(BigDecimal.valueOf(60), USD));
+        Account targetAccount = saveAccountOnOtherShard(sourceAccount, new Account(BigDecimal.ZERO, USD));
+        PendingTransfer pendingTransfer;
+        try (ShardContext.Scope ignored = shardRouter.useShardOf(sourceAccount.getId())) {
+            // Debit recorded but the credit never happened
+            pendingTransfer = pendingTransferRepository.save(new PendingTransfer(sourceAccount.getId(), targetAccount.getId(),
+                    BigDecimal.TEN, USD, BigDecimal.TEN));
+        }
+
+        // When
+        crossShardTransferService.resolveInDoubt(pendingTransfer);
+
+        // Then
+        assertThat(accountService.findAccountById(sourceAccount.getId()).getBalance()).isEqualByComparingTo(BigDecimal.valueOf(70));
+        assertThat(accountService.findAccountById(targetAccount.getId()).getBalance()).isEqualByComparingTo(BigDecimal.ZERO);
+        assertThat(findPendingTransfers(sourceAccount)).extracting(PendingTransfer::getStatus).containsExactly(PendingTransfer.Status.COMPENSATED);
+    }
+
+    private Account saveAccountOnOtherShard(Account account, Account otherAccount) {
+        Account savedAccount = accountService.saveAccount(otherAccount);
+        while (shardRouter.isSameShard(account.getId(), savedAccount.getId())) {
+            savedAccount = accountService.saveAccount(new Account(otherAccount.getBalance(), otherAccount.getCurrency()));
+        }
+        return savedAccount;
+    }
+
+    private List<PendingTransfer> findPendingTransfers(Account sourceAccount) {
+        try (ShardContext.Scope ignored = shardRouter.useShardOf(sourceAccount.getId())) {
+            return pendingTransferRepository.findAll().stream()
+                    .filter(pendingTransfer -> pendingTransfer.getSourceAccountId() == sourceAccount.getId())
+                    .toList();
+        }
+    }
+
+    private int countAccountsOnShard(long accountId) {
+        return shards[shardRouter.shardOf(accountId)].queryForObject("SELECT COUNT(*) FROM account WHERE id = ?", Integer.class, accountId);
+    }
+}
@@ -0,0 +1,112 @@
+package com.tenx.payment.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.Currency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AccountStateStoreTest {
+
+    private static final Currency EUR = Currency.getInstance("EUR");
+    private static final Currency JPY = Currency.getInstance("JPY");
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void putAndGetAcrossSegments() throws Exception {
+        // Given
+        AccountStateStore store = open();
+
+        // When
+        store.put(new AccountState(7L, new BigDecimal("12.5"), EUR, 1));
+        store.put(new AccountState(5000L, new BigDecimal("300"), JPY, 2));
+
+        // Then
+        assertThat(store.get(7L)).isEqualTo(new AccountState(7L, new BigDecimal("12.50"), EUR, 1));
+        assertThat(store.get(5000L)).isEqualTo(new AccountState(5000L, new BigDecimal("300"), JPY, 2));
+        assertThat(store.get(8L)).isNull();
+        assertThat(store.get(1L << 30)).isNull();
+        store.destroy();
+    }
+
+    @Test
+    void putOlderVersionIsDropped() throws Exception {
+        // Given
+        AccountStateStore store = open();
+        store.put(new AccountState(1L, new BigDecimal("20.00"), EUR, 5));
+
+        // When
+        store.put(new AccountState(1L, new BigDecimal("10.00"), EUR, 4));
+
+        // Then
+        assertThat(store.get(1L).balance()).isEqualTo(new BigDecimal("20.00"));
+        assertThat(store.get(1L).version()).isEqualTo(5);
+        store.destroy();
+    }
+
+    @Test
+    void putBalanceWithMoreFractionDigitsThanCurrencyIsNotHeld() throws Exception {
+        // Given
+        AccountStateStore store = open();
+        store.put(new AccountState(1L, new BigDecimal("20.00"), EUR, 1));
+
+        // When
+        store.put(new AccountState(1L, new BigDecimal("20.005"), EUR, 2));
+
+        // Then
+        assertThat(store.get(1L)).isNull();
+        store.destroy();
+    }
+
+    @Test
+    void reopenAfterCloseRecoversStates() throws Exception {
+        // Given
+        AccountStateStore store = open();
+        store.put(new AccountState(3L, new BigDecimal("99.99"), EUR, 7));
+        store.destroy();
+
+        // When
+        AccountStateStore reopenedStore = open();
+
+        // Then
+        assertThat(reopenedStore.get(3L)).isEqualTo(new AccountState(3L, new BigDecimal("99.99"), EUR, 7));
+        reopenedStore.destroy();
+    }
+
+    @Test
+    void reopenAfterCrashDiscardsStates() throws Exception {
+        // Given
+        AccountStateStore store = open();
+        store.put(new AccountState(3L, new BigDecimal("99.99"), EUR, 7));
+
+        // When
+        AccountStateStore reopenedStore = open();
+
+        // Then
+        assertThat(reopenedStore.get(3L)).isNull();
+        reopenedStore.destroy();
+    }
+
+    @Test
+    void disabledStoreHoldsNothing() throws Exception {
+        // Given
+        AccountStateStore store = new AccountStateStore(false, directory.resolve("account-state.bin"), 10);
+
+        // When
+        store.put(new AccountState(1L, BigDecimal.TEN, EUR, 1));
+
+        // Then
+        assertThat(store.isEnabled()).isFalse();
+        assertThat(store.get(1L)).isNull();
+        store.destroy();
+    }
+
+    private AccountStateStore open() {
+        return new AccountStateStore(true, directory.resolve("account-state.bin"), 10);
+    }
+}